@@ -29,10 +29,19 @@ public interface IMService {
 	/** Send post request alert message by dingding. */
 	public void sendPostMsgByDingDing(String data, String url);
 
+	/** Send alert message by dingding, coalesced with a recent one of the same key. */
+	public void sendPostMsgByDingDing(String data, String url, String coalesceKey);
+
 	/** Send alert message by wechat. */
 	public void sendPostMsgByWeChat(String data,String url);
 
+	/** Send alert message by wechat, coalesced with a recent one of the same key. */
+	public void sendPostMsgByWeChat(String data, String url, String coalesceKey);
+
 	/** Send alert message by mail. */
 	public void sendPostMsgByMail(String data, String url);
 
+	/** Send alert message by mail, coalesced with a recent one of the same key. */
+	public void sendPostMsgByMail(String data, String url, String coalesceKey);
+
 }
@@ -17,13 +17,10 @@
  */
 package org.smartloli.kafka.eagle.api.im;
 
-import java.util.Date;
-
 import org.smartloli.kafka.eagle.api.im.queue.DingDingJob;
+import org.smartloli.kafka.eagle.api.im.queue.IMDispatcher;
 import org.smartloli.kafka.eagle.api.im.queue.MailJob;
 import org.smartloli.kafka.eagle.api.im.queue.WeChatJob;
-import org.smartloli.kafka.eagle.common.protocol.alarm.queue.BaseJobContext;
-import org.smartloli.kafka.eagle.common.util.QuartzManagerUtils;
 
 /**
  * Implements IMService all method.
@@ -34,31 +31,35 @@ import org.smartloli.kafka.eagle.common.util.QuartzManagerUtils;
  */
 public class IMServiceImpl implements IMService {
 
-	private static final String KE_JOB_ID = "ke_job_id_";
-
 	/** Send Json msg by dingding. */
 	@Override
 	public void sendPostMsgByDingDing(String data, String url) {
-		BaseJobContext jobContext = new BaseJobContext();
-		jobContext.setData(data);
-		jobContext.setUrl(url);
-		QuartzManagerUtils.addJob(jobContext, KE_JOB_ID + new Date().getTime(), DingDingJob.class, QuartzManagerUtils.getCron(new Date(), 5));
+		sendPostMsgByDingDing(data, url, null);
+	}
+
+	@Override
+	public void sendPostMsgByDingDing(String data, String url, String coalesceKey) {
+		IMDispatcher.dispatch(IMDispatcher.DINGDING, coalesceKey, data, url, DingDingJob::send);
 	}
 
 	@Override
 	public void sendPostMsgByWeChat(String data, String url) {
-		BaseJobContext jobContext = new BaseJobContext();
-		jobContext.setData(data);
-		jobContext.setUrl(url);
-		QuartzManagerUtils.addJob(jobContext, KE_JOB_ID + new Date().getTime(), WeChatJob.class, QuartzManagerUtils.getCron(new Date(), 5));
+		sendPostMsgByWeChat(data, url, null);
+	}
+
+	@Override
+	public void sendPostMsgByWeChat(String data, String url, String coalesceKey) {
+		IMDispatcher.dispatch(IMDispatcher.WECHAT, coalesceKey, data, url, WeChatJob::send);
 	}
 
 	@Override
 	public void sendPostMsgByMail(String data, String url) {
-		BaseJobContext jobContext = new BaseJobContext();
-		jobContext.setData(data);
-		jobContext.setUrl(url);
-		QuartzManagerUtils.addJob(jobContext, KE_JOB_ID + new Date().getTime(), MailJob.class, QuartzManagerUtils.getCron(new Date(), 5));
+		sendPostMsgByMail(data, url, null);
+	}
+
+	@Override
+	public void sendPostMsgByMail(String data, String url, String coalesceKey) {
+		IMDispatcher.dispatch(IMDispatcher.MAIL, coalesceKey, data, url, MailJob::send);
 	}
 
 }
@@ -44,19 +44,22 @@ public class DingDingJob implements Job {
      */
     public void execute(JobExecutionContext jobContext) throws JobExecutionException {
         BaseJobContext bjc = (BaseJobContext) jobContext.getJobDetail().getJobDataMap().get(AlarmQueue.JOB_PARAMS);
-        sendMsg(bjc.getData(), bjc.getUrl());
-    }
-
-    private int sendMsg(String data, String url) {
         try {
-            Map<String, Object> dingDingMarkdownMessage = getDingDingMarkdownMessage(IM.TITLE, data, true);
-            String result = HttpClientUtils.doPostJson(url, JSONObject.toJSONString(dingDingMarkdownMessage));
-            LoggerUtils.print(this.getClass()).info("DingDing SendMsg Result: " + result);
+            send(bjc.getData(), bjc.getUrl());
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Send alarm message has error by dingding, msg is ", e);
-            return 0;
         }
-        return 1;
+    }
+
+    /**
+     * Send the markdown message to the robot, throw the error when the request
+     * fails or the robot returns an error code.
+     */
+    public static void send(String data, String url) throws Exception {
+        Map<String, Object> dingDingMarkdownMessage = getDingDingMarkdownMessage(IM.TITLE, data, true);
+        String result = HttpClientUtils.postJson(url, JSONObject.toJSONString(dingDingMarkdownMessage), true);
+        LoggerUtils.print(DingDingJob.class).info("DingDing SendMsg Result: " + result);
+        IMDispatcher.checkErrorCode(result);
     }
 
     /**
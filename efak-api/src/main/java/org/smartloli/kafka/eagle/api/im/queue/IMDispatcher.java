@@ -0,0 +1,303 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.api.im.queue;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.util.JSONUtils;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Send the alarm messages of all channels in the background.
+ * <p>
+ * A message is queued and sent by a small worker pool, so the alert tasks
+ * never wait for dingding, wechat or the mail server. Messages of the same
+ * alert, given by the coalesce key of the caller, to the same address within
+ * the coalesce window are sent once. The rendered message is not the key, it
+ * holds the alarm date and the current values, which differ on every firing. Each channel sends at
+ * most the configured messages per minute, a message over the limit waits for
+ * the next free slot. A failed message is retried with a doubled backoff, and
+ * when the queue is full a new message is dropped and counted.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class IMDispatcher {
+
+    public static final String DINGDING = "dingding";
+    public static final String WECHAT = "wechat";
+    public static final String MAIL = "mail";
+
+    private static final int CAPACITY = SystemConfigUtils.getIntProperty("efak.alert.dispatch.capacity", 1000);
+    private static final int RETRIES = SystemConfigUtils.getIntProperty("efak.alert.dispatch.retries", 3);
+    private static final long BACKOFF_MS = SystemConfigUtils.getLongProperty("efak.alert.dispatch.backoff.ms", 2000L);
+    private static final long COALESCE_MS = SystemConfigUtils.getLongProperty("efak.alert.dispatch.coalesce.ms", 60 * 1000L);
+    private static final int RATE_PER_MINUTE = SystemConfigUtils.getIntProperty("efak.alert.dispatch.rate.per.minute", 20);
+
+    private static final AtomicInteger THREAD_ID = new AtomicInteger(0);
+
+    private static final ScheduledThreadPoolExecutor DISPATCH_EXECUTOR = new ScheduledThreadPoolExecutor(SystemConfigUtils.getIntProperty("efak.alert.dispatch.threads", 4), r -> {
+        Thread thread = new Thread(r, "efak-alert-dispatch-" + THREAD_ID.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Last accepted time of each alert, the key is channel, url and coalesce key.
+     */
+    private static final Map<String, Long> RECENT = new ConcurrentHashMap<>();
+
+    private static final Map<String, Channel> CHANNELS = new ConcurrentHashMap<>();
+
+    /**
+     * Messages accepted and not sent or given up yet.
+     */
+    private static final AtomicInteger PENDING = new AtomicInteger(0);
+
+    private IMDispatcher() {
+
+    }
+
+    /**
+     * Sender of one channel, throw the error when the message is not sent.
+     */
+    public interface Sender {
+        void send(String data, String url) throws Exception;
+    }
+
+    /**
+     * Queue the message of the channel, return false when it is coalesced
+     * with a recent one of the same key or dropped because the queue is full.
+     * A message without coalesce key, such as a test message, is always queued.
+     */
+    public static boolean dispatch(String channel, String coalesceKey, String data, String url, Sender sender) {
+        Channel stats = channel(channel);
+        long now = System.currentTimeMillis();
+        // a dropped message must not hold the coalesce window of the next one of its alert
+        if (PENDING.incrementAndGet() > CAPACITY) {
+            PENDING.decrementAndGet();
+            stats.dropped.incrementAndGet();
+            LoggerUtils.print(IMDispatcher.class).warn("Alert dispatch queue is full, drop " + channel + " message to [" + url + "].");
+            return false;
+        }
+        String key = coalesceKey == null ? null : channel + "\u0001" + url + "\u0001" + coalesceKey;
+        if (key != null && !accept(key, now)) {
+            PENDING.decrementAndGet();
+            stats.coalesced.incrementAndGet();
+            return false;
+        }
+        try {
+            DISPATCH_EXECUTOR.execute(new Message(stats, data, url, sender, now));
+        } catch (RejectedExecutionException e) {
+            PENDING.decrementAndGet();
+            if (key != null) {
+                RECENT.remove(key, now);
+            }
+            stats.dropped.incrementAndGet();
+            LoggerUtils.print(IMDispatcher.class).warn("Alert dispatch is rejected, drop " + channel + " message to [" + url + "].");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Build the coalesce key of an alert from its identity, such as the alarm
+     * id and the status, never from values which change between firings.
+     */
+    public static String coalesceKey(Object... identity) {
+        StringBuilder key = new StringBuilder();
+        for (Object part : identity) {
+            key.append(part).append('\u0001');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Throw the error of an im response whose errcode is not 0, such as a
+     * robot over its rate limit, so the message is retried.
+     */
+    public static void checkErrorCode(String result) {
+        if (JSONUtils.isJsonObject(result)) {
+            JSONObject object = JSON.parseObject(result);
+            if (object.containsKey("errcode") && object.getIntValue("errcode") != 0) {
+                throw new IllegalStateException("IM returns errcode[" + object.getIntValue("errcode") + "], errmsg is " + object.getString("errmsg"));
+            }
+        }
+    }
+
+    /**
+     * Get the queue usage and the send stats of each channel.
+     */
+    public static Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("pending", PENDING.get());
+        metrics.put("capacity", CAPACITY);
+        Map<String, Object> channels = new TreeMap<>();
+        for (Channel channel : CHANNELS.values()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("sent", channel.sent.get());
+            stats.put("failed", channel.failed.get());
+            stats.put("retried", channel.retried.get());
+            stats.put("dropped", channel.dropped.get());
+            stats.put("coalesced", channel.coalesced.get());
+            stats.put("lastLatencyMs", channel.lastLatencyMs);
+            stats.put("maxLatencyMs", channel.maxLatencyMs);
+            stats.put("avgLatencyMs", channel.sent.get() == 0L ? 0L : channel.totalLatencyMs.get() / channel.sent.get());
+            channels.put(channel.name, stats);
+        }
+        metrics.put("channels", channels);
+        return metrics;
+    }
+
+    private static Channel channel(String name) {
+        return CHANNELS.computeIfAbsent(name, Channel::new);
+    }
+
+    private static boolean accept(String key, long now) {
+        if (COALESCE_MS <= 0L) {
+            return true;
+        }
+        if (RECENT.size() > CAPACITY) {
+            Iterator<Long> accepted = RECENT.values().iterator();
+            while (accepted.hasNext()) {
+                if (now - accepted.next() >= COALESCE_MS) {
+                    accepted.remove();
+                }
+            }
+        }
+        boolean[] accepted = new boolean[1];
+        RECENT.compute(key, (k, last) -> {
+            if (last == null || now - last >= COALESCE_MS) {
+                accepted[0] = true;
+                return now;
+            }
+            return last;
+        });
+        return accepted[0];
+    }
+
+    private static void schedule(Message message, long delayMs) {
+        try {
+            DISPATCH_EXECUTOR.schedule(message, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            PENDING.decrementAndGet();
+            message.channel.dropped.incrementAndGet();
+        }
+    }
+
+    private static class Message implements Runnable {
+        private final Channel channel;
+        private final String data;
+        private final String url;
+        private final Sender sender;
+        private final long accepted;
+        private int attempts = 0;
+        private boolean reserved = false;
+
+        private Message(Channel channel, String data, String url, Sender sender, long accepted) {
+            this.channel = channel;
+            this.data = data;
+            this.url = url;
+            this.sender = sender;
+            this.accepted = accepted;
+        }
+
+        @Override
+        public void run() {
+            if (!reserved) {
+                reserved = true;
+                long waitMs = channel.acquire();
+                if (waitMs > 0L) {
+                    schedule(this, waitMs);
+                    return;
+                }
+            }
+            try {
+                sender.send(data, url);
+                long latency = System.currentTimeMillis() - accepted;
+                channel.sent.incrementAndGet();
+                channel.lastLatencyMs = latency;
+                channel.maxLatencyMs = Math.max(channel.maxLatencyMs, latency);
+                channel.totalLatencyMs.addAndGet(latency);
+                PENDING.decrementAndGet();
+            } catch (Exception e) {
+                if (attempts++ < RETRIES) {
+                    // the retry takes a new slot after its backoff
+                    reserved = false;
+                    channel.retried.incrementAndGet();
+                    LoggerUtils.print(IMDispatcher.class).warn("Send " + channel.name + " message to [" + url + "] has error, retry " + attempts + " of " + RETRIES + ", msg is " + e.getMessage());
+                    schedule(this, BACKOFF_MS << (attempts - 1));
+                } else {
+                    channel.failed.incrementAndGet();
+                    PENDING.decrementAndGet();
+                    LoggerUtils.print(IMDispatcher.class).error("Send " + channel.name + " message to [" + url + "] has error, give up after " + attempts + " attempts, msg is ", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Send stats and the rate limit of one channel. The limit spaces the
+     * messages evenly over a minute.
+     */
+    private static class Channel {
+        private final String name;
+        private final AtomicLong sent = new AtomicLong(0L);
+        private final AtomicLong failed = new AtomicLong(0L);
+        private final AtomicLong retried = new AtomicLong(0L);
+        private final AtomicLong dropped = new AtomicLong(0L);
+        private final AtomicLong coalesced = new AtomicLong(0L);
+        private final AtomicLong totalLatencyMs = new AtomicLong(0L);
+        private volatile long lastLatencyMs = 0L;
+        private volatile long maxLatencyMs = 0L;
+        private long nextSlot = 0L;
+
+        private Channel(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Reserve the next free send slot, return the milliseconds until the
+         * slot, 0 when the message can be sent now. Each message waiting in
+         * the queue holds its own slot, so they are sent one interval apart.
+         */
+        private synchronized long acquire() {
+            if (RATE_PER_MINUTE <= 0) {
+                return 0L;
+            }
+            long now = System.currentTimeMillis();
+            long slot = Math.max(nextSlot, now);
+            nextSlot = slot + 60 * 1000L / RATE_PER_MINUTE;
+            return slot - now;
+        }
+    }
+
+}
@@ -47,30 +47,27 @@ public class MailJob implements Job {
      */
     public void execute(JobExecutionContext jobContext) throws JobExecutionException {
         BaseJobContext bjc = (BaseJobContext) jobContext.getJobDetail().getJobDataMap().get(AlarmQueue.JOB_PARAMS);
-        sendMsg(bjc.getData(), bjc.getUrl());
+        try {
+            send(bjc.getData(), bjc.getUrl());
+        } catch (Exception e) {
+            LoggerUtils.print(this.getClass()).error("Send alarm message has error by mail, msg is ", e);
+        }
     }
 
-    private int sendMsg(String data, String url) {
+    /**
+     * Send the message by the mail server when the url is a mail json,
+     * otherwise post it to the mail webhook. Throw the error when it fails.
+     */
+    public static void send(String data, String url) throws Exception {
         if (JSONUtils.isJsonObject(url)) {
-            try {
-                AlarmEmailJsonInfo email = JSON.parseObject(url, AlarmEmailJsonInfo.class);
-                MailFactoryUtils.send(email, data);
-            } catch (Exception e) {
-                LoggerUtils.print(this.getClass()).error("Send alarm message has error by mail address, msg is ", e);
-                return 0;
-            }
+            AlarmEmailJsonInfo email = JSON.parseObject(url, AlarmEmailJsonInfo.class);
+            MailFactoryUtils.send(email, data);
         } else {
-            try {
-                JSONObject object = JSON.parseObject(data);
-                BasicNameValuePair address = new BasicNameValuePair("address", object.getString("address"));
-                BasicNameValuePair msg = new BasicNameValuePair("msg", object.getString("msg"));
-                HttpClientUtils.doPostForm(url, Arrays.asList(address, msg));
-            } catch (Exception e) {
-                LoggerUtils.print(this.getClass()).error("Send alarm message has error by mail, msg is ", e);
-                return 0;
-            }
+            JSONObject object = JSON.parseObject(data);
+            BasicNameValuePair address = new BasicNameValuePair("address", object.getString("address"));
+            BasicNameValuePair msg = new BasicNameValuePair("msg", object.getString("msg"));
+            HttpClientUtils.postForm(url, Arrays.asList(address, msg), true);
         }
-        return 1;
     }
 
 }
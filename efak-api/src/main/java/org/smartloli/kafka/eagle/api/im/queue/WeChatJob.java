@@ -44,19 +44,22 @@ public class WeChatJob implements Job {
      */
     public void execute(JobExecutionContext jobContext) throws JobExecutionException {
         BaseJobContext bjc = (BaseJobContext) jobContext.getJobDetail().getJobDataMap().get(AlarmQueue.JOB_PARAMS);
-        sendMsg(bjc.getData(), bjc.getUrl());
-    }
-
-    private int sendMsg(String data, String url) {
         try {
-            Map<String, Object> wechatMarkdownMessage = getWeChatMarkdownMessage(data);
-            String result = HttpClientUtils.doPostJson(url, JSONObject.toJSONString(wechatMarkdownMessage));
-            LoggerUtils.print(this.getClass()).info("DingDing SendMsg Result: " + result);
+            send(bjc.getData(), bjc.getUrl());
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Send alarm message has error by wechat, msg is ", e);
-            return 0;
         }
-        return 1;
+    }
+
+    /**
+     * Send the markdown message to the application, throw the error when the
+     * request fails or wechat returns an error code.
+     */
+    public static void send(String data, String url) throws Exception {
+        Map<String, Object> wechatMarkdownMessage = getWeChatMarkdownMessage(data);
+        String result = HttpClientUtils.postJson(url, JSONObject.toJSONString(wechatMarkdownMessage), true);
+        LoggerUtils.print(WeChatJob.class).info("WeChat SendMsg Result: " + result);
+        IMDispatcher.checkErrorCode(result);
     }
 
     private static Map<String, Object> getWeChatMarkdownMessage(String text) {
@@ -39,6 +39,9 @@ public class PartitionsInfo extends BaseProtocol {
 	private String created = "";
 	private String modify = "";
 
+	/** Truncate state of the topic, 0 while truncating, 1 when done and -1 when never truncated. */
+	private long truncate = -1L;
+
 	public long getBrokersSkewed() {
 		return brokersSkewed;
 	}
@@ -71,6 +74,14 @@ public class PartitionsInfo extends BaseProtocol {
 		this.created = created;
 	}
 
+	public long getTruncate() {
+		return truncate;
+	}
+
+	public void setTruncate(long truncate) {
+		this.truncate = truncate;
+	}
+
 	public String getModify() {
 		return modify;
 	}
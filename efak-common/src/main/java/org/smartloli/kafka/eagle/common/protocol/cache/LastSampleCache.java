@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.protocol.cache;
+
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.common.protocol.topic.TopicLogSize;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Last sample written by a collector for each series, used to compute the
+ * diff of the next sample without reading the last row back from the
+ * database.
+ * <p>
+ * A series is loaded from the database the first time it is read after a
+ * start, then every write replaces it. A sample older than the expire time is
+ * loaded again, so a series collected by another node in distributed mode is
+ * not diffed against an old value. Such samples are also evicted once per
+ * expire time, so a deleted topic or group does not stay in the cache.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class LastSampleCache<V> {
+
+    private static final long EXPIRE_MS = SystemConfigUtils.getLongProperty("efak.last.sample.expire.ms", 10 * 60 * 1000L);
+
+    /**
+     * Last ke_consumer_bscreen_press row by cluster, group and topic.
+     */
+    public static final LastSampleCache<BScreenConsumerInfo> BSCREEN_CONSUMER = new LastSampleCache<>();
+
+    /**
+     * Last ke_logsize row by cluster and topic.
+     */
+    public static final LastSampleCache<TopicLogSize> TOPIC_LOGSIZE = new LastSampleCache<>();
+
+    private final Map<String, Sample<V>> samples = new ConcurrentHashMap<>();
+    private volatile long lastEvict = System.currentTimeMillis();
+
+    /**
+     * Get the last sample of the series, the loader reads it from the database
+     * on a miss and may return null.
+     */
+    public V get(String series, Supplier<V> loader) {
+        long now = System.currentTimeMillis();
+        Sample<V> sample = samples.get(series);
+        if (sample == null || now - sample.updated > EXPIRE_MS) {
+            sample = new Sample<>(loader.get(), now);
+            samples.put(series, sample);
+        }
+        return sample.value;
+    }
+
+    /**
+     * Replace the last sample of the series when it is written.
+     */
+    public void put(String series, V value) {
+        long now = System.currentTimeMillis();
+        samples.put(series, new Sample<>(value, now));
+        if (now - lastEvict > EXPIRE_MS) {
+            lastEvict = now;
+            evict(now);
+        }
+    }
+
+    /**
+     * Drop the samples which would be loaded again on the next read.
+     */
+    private void evict(long now) {
+        samples.values().removeIf(sample -> now - sample.updated > EXPIRE_MS);
+    }
+
+    public void remove(String series) {
+        samples.remove(series);
+    }
+
+    public int size() {
+        return samples.size();
+    }
+
+    public static String series(String... names) {
+        return String.join("\u0001", names);
+    }
+
+    private static class Sample<V> {
+        private final V value;
+        private final long updated;
+
+        private Sample(V value, long updated) {
+            this.value = value;
+            this.updated = updated;
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.protocol.cache;
+
+import org.smartloli.kafka.eagle.common.constant.JmxConstants.BrokerServer;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Topic meter rates of each cluster collected from the brokers, kept per broker
+ * and summed per topic when a collect cycle finishes.
+ * <p>
+ * A broker which fails in one cycle keeps its last rates until they expire, so
+ * a slow broker does not make the topic rates drop for a cycle. A cluster
+ * whose last cycle is older than the expire time is not served and the caller
+ * reads the brokers itself.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TopicMBeanCache {
+
+    private static final long EXPIRE_MS = SystemConfigUtils.getLongProperty("efak.topic.mbean.expire.ms", 3 * 60 * 1000L);
+
+    /**
+     * Meter mbeans of the topic detail page.
+     */
+    public static final List<BrokerServer> METERS = Collections.unmodifiableList(Arrays.asList(BrokerServer.MESSAGES_IN_PER_SEC, BrokerServer.BYTES_IN_PER_SEC,
+            BrokerServer.BYTES_OUT_PER_SEC, BrokerServer.BYTES_REJECTED_PER_SEC, BrokerServer.FAILED_FETCH_REQUESTS_PER_SEC, BrokerServer.FAILED_PRODUCE_REQUESTS_PER_SEC,
+            BrokerServer.PRODUCE_MESSAGE_CONVERSIONS_PER_SEC, BrokerServer.TOTAL_FETCH_REQUESTS_PER_SEC, BrokerServer.TOTAL_PRODUCE_REQUESTS_PER_SEC));
+
+    /**
+     * Position of each rate in a rates array.
+     */
+    public static final int FIFTEEN_MINUTE = 0;
+    public static final int FIVE_MINUTE = 1;
+    public static final int MEAN_RATE = 2;
+    public static final int ONE_MINUTE = 3;
+    public static final int RATES = 4;
+
+    private static final Map<String, ClusterRates> CLUSTERS = new ConcurrentHashMap<>();
+
+    private TopicMBeanCache() {
+
+    }
+
+    /**
+     * Update the cluster with one collect cycle. The key is every current
+     * broker of the cluster, the value is the rates of each topic read from
+     * the broker, or null when the broker failed in this cycle.
+     */
+    public static synchronized void update(String clusterAlias, Map<String, Map<String, Map<BrokerServer, double[]>>> brokerRates) {
+        long now = System.currentTimeMillis();
+        ClusterRates last = CLUSTERS.get(clusterAlias);
+        Map<String, BrokerRates> brokers = new HashMap<>();
+        boolean collected = false;
+        for (Map.Entry<String, Map<String, Map<BrokerServer, double[]>>> entry : brokerRates.entrySet()) {
+            if (entry.getValue() != null) {
+                brokers.put(entry.getKey(), new BrokerRates(entry.getValue(), now));
+                collected = true;
+            } else if (last != null && last.brokers.containsKey(entry.getKey()) && now - last.brokers.get(entry.getKey()).collected <= EXPIRE_MS) {
+                brokers.put(entry.getKey(), last.brokers.get(entry.getKey()));
+            }
+        }
+        if (!collected) {
+            // no broker answered, let the cluster expire instead of serving old rates as new
+            return;
+        }
+
+        Map<String, Map<BrokerServer, double[]>> topics = new HashMap<>();
+        for (BrokerRates broker : brokers.values()) {
+            for (Map.Entry<String, Map<BrokerServer, double[]>> topic : broker.topics.entrySet()) {
+                Map<BrokerServer, double[]> sums = topics.computeIfAbsent(topic.getKey(), k -> new HashMap<>());
+                for (Map.Entry<BrokerServer, double[]> meter : topic.getValue().entrySet()) {
+                    double[] sum = sums.computeIfAbsent(meter.getKey(), k -> new double[RATES]);
+                    for (int i = 0; i < RATES; i++) {
+                        sum[i] += meter.getValue()[i];
+                    }
+                }
+            }
+        }
+        CLUSTERS.put(clusterAlias, new ClusterRates(brokers, topics, now));
+    }
+
+    /**
+     * Get the rates of the topic summed over all brokers by meter mbean, a
+     * meter without traffic is absent. Return null when the cluster has not
+     * been collected within the expire time. The arrays are shared and must
+     * not be changed.
+     */
+    public static Map<BrokerServer, double[]> get(String clusterAlias, String topic) {
+        ClusterRates cluster = CLUSTERS.get(clusterAlias);
+        if (cluster == null || System.currentTimeMillis() - cluster.updated > EXPIRE_MS) {
+            return null;
+        }
+        Map<BrokerServer, double[]> rates = cluster.topics.get(topic);
+        return rates == null ? Collections.emptyMap() : rates;
+    }
+
+    private static class BrokerRates {
+        private final Map<String, Map<BrokerServer, double[]>> topics;
+        private final long collected;
+
+        private BrokerRates(Map<String, Map<BrokerServer, double[]>> topics, long collected) {
+            this.topics = topics;
+            this.collected = collected;
+        }
+    }
+
+    private static class ClusterRates {
+        private final Map<String, BrokerRates> brokers;
+        private final Map<String, Map<BrokerServer, double[]>> topics;
+        private final long updated;
+
+        private ClusterRates(Map<String, BrokerRates> brokers, Map<String, Map<BrokerServer, double[]>> topics, long updated) {
+            this.brokers = brokers;
+            this.topics = topics;
+            this.updated = updated;
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.protocol.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+import org.smartloli.kafka.eagle.common.protocol.BaseProtocol;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Committed offsets of consumer groups and the log end offsets of all
+ * partitions of their topics, taken at one point in time, with per partition
+ * and per topic lags. A snapshot whose log end offsets failed to be read is
+ * not complete, its lags are zero and must not be written. The same holds for
+ * a group whose committed offsets failed to be read.
+ * <p>
+ * The per topic log sizes, offsets and lags are summed once on the first read
+ * after the snapshot has been filled, so reading them for every group and
+ * topic does not scan every partition again.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class ConsumerLagsInfo extends BaseProtocol {
+
+    private String cluster;
+    private long timespan;
+    private boolean complete = false;
+    private Set<String> failedGroups = new HashSet<>();
+    private Map<String, Map<TopicPartition, Long>> offsets = new HashMap<>();
+    private Map<TopicPartition, Long> logSizes = new HashMap<>();
+
+    /**
+     * Sums by topic, built by {@link #index()} and dropped on every add.
+     */
+    private transient Map<String, Long> topicLogSizes;
+    private transient Map<String, Map<String, Long>> topicOffsets;
+    private transient Map<String, Map<String, Long>> topicLags;
+
+    public String getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(String cluster) {
+        this.cluster = cluster;
+    }
+
+    public long getTimespan() {
+        return timespan;
+    }
+
+    public void setTimespan(long timespan) {
+        this.timespan = timespan;
+    }
+
+    /**
+     * Return true when the log end offsets of all partitions have been read.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    /**
+     * Return true when the snapshot is complete and the committed offsets of
+     * the group have been read.
+     */
+    public boolean isComplete(String group) {
+        return complete && !failedGroups.contains(group);
+    }
+
+    /**
+     * Mark the committed offsets of the group as failed to be read.
+     */
+    public void addFailedGroup(String group) {
+        failedGroups.add(group);
+    }
+
+    /**
+     * Add the committed offset of a group on one partition.
+     */
+    public void addOffset(String group, TopicPartition tp, long offset) {
+        offsets.computeIfAbsent(group, k -> new HashMap<>()).put(tp, offset);
+        topicLogSizes = null;
+    }
+
+    /**
+     * Add the log end offset of one partition.
+     */
+    public void addLogSize(TopicPartition tp, long logSize) {
+        logSizes.put(tp, logSize);
+        topicLogSizes = null;
+    }
+
+    public Set<String> getGroups() {
+        return offsets.keySet();
+    }
+
+    /**
+     * Get committed offsets of the group, the key is topic partition.
+     */
+    public Map<TopicPartition, Long> getOffsets(String group) {
+        Map<TopicPartition, Long> committed = offsets.get(group);
+        return committed == null ? new HashMap<>() : committed;
+    }
+
+    /**
+     * Get committed offset of the group on the partition, -1 if never committed.
+     */
+    public long getOffset(String group, TopicPartition tp) {
+        Long offset = getOffsets(group).get(tp);
+        return offset == null ? -1L : offset;
+    }
+
+    public long getLogSize(TopicPartition tp) {
+        Long logSize = logSizes.get(tp);
+        return logSize == null ? 0L : logSize;
+    }
+
+    /**
+     * Sum of the log end offsets of all partitions of the topic.
+     */
+    public long getLogSize(String topic) {
+        index();
+        Long logSize = topicLogSizes.get(topic);
+        return logSize == null ? 0L : logSize;
+    }
+
+    /**
+     * Sum of the committed offsets of the group on the topic.
+     */
+    public long getOffsets(String group, String topic) {
+        index();
+        Long total = topicOffsets.getOrDefault(group, Collections.emptyMap()).get(topic);
+        return total == null ? 0L : total;
+    }
+
+    /**
+     * Get lag of the group on the partition, a partition without committed
+     * offset has no lag.
+     */
+    public long getLag(String group, TopicPartition tp) {
+        long offset = getOffset(group, tp);
+        return offset < 0 ? 0L : Math.max(0L, getLogSize(tp) - offset);
+    }
+
+    /**
+     * Get lag of the group on each partition of the topic, the key is partition id.
+     */
+    public Map<Integer, Long> getPartitionLags(String group, String topic) {
+        Map<Integer, Long> lags = new HashMap<>();
+        for (TopicPartition tp : getOffsets(group).keySet()) {
+            if (topic.equals(tp.topic())) {
+                lags.put(tp.partition(), getLag(group, tp));
+            }
+        }
+        return lags;
+    }
+
+    /**
+     * Get lag of the group on each of its topics.
+     */
+    public Map<String, Long> getTopicLags(String group) {
+        index();
+        return Collections.unmodifiableMap(topicLags.getOrDefault(group, Collections.emptyMap()));
+    }
+
+    /**
+     * Get lag of the group on the topic.
+     */
+    public long getLag(String group, String topic) {
+        index();
+        Long lag = topicLags.getOrDefault(group, Collections.emptyMap()).get(topic);
+        return lag == null ? 0L : lag;
+    }
+
+    /**
+     * Sum the log sizes, committed offsets and lags by topic in one pass over
+     * the partitions.
+     */
+    private void index() {
+        if (topicLogSizes != null) {
+            return;
+        }
+        Map<String, Long> logSizesByTopic = new HashMap<>();
+        for (Map.Entry<TopicPartition, Long> entry : logSizes.entrySet()) {
+            logSizesByTopic.merge(entry.getKey().topic(), entry.getValue(), Long::sum);
+        }
+        Map<String, Map<String, Long>> offsetsByTopic = new HashMap<>();
+        Map<String, Map<String, Long>> lagsByTopic = new HashMap<>();
+        for (Map.Entry<String, Map<TopicPartition, Long>> group : offsets.entrySet()) {
+            Map<String, Long> groupOffsets = new HashMap<>();
+            Map<String, Long> groupLags = new HashMap<>();
+            for (Map.Entry<TopicPartition, Long> entry : group.getValue().entrySet()) {
+                groupOffsets.merge(entry.getKey().topic(), entry.getValue(), Long::sum);
+                groupLags.merge(entry.getKey().topic(), getLag(group.getKey(), entry.getKey()), Long::sum);
+            }
+            offsetsByTopic.put(group.getKey(), groupOffsets);
+            lagsByTopic.put(group.getKey(), groupLags);
+        }
+        topicOffsets = offsetsByTopic;
+        topicLags = lagsByTopic;
+        topicLogSizes = logSizesByTopic;
+    }
+
+}
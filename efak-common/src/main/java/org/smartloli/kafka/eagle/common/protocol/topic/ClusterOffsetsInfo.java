@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.protocol.topic;
+
+import org.apache.kafka.common.TopicPartition;
+import org.smartloli.kafka.eagle.common.protocol.BaseProtocol;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Begin and end offsets of every partition in a cluster, taken at one point in
+ * time, with per topic aggregates. A snapshot whose read failed is not
+ * complete and must not be written as zero logsizes.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class ClusterOffsetsInfo extends BaseProtocol {
+
+    private String cluster;
+    private long timespan;
+    private boolean complete = false;
+    private Map<TopicPartition, Long> beginOffsets = new HashMap<>();
+    private Map<TopicPartition, Long> endOffsets = new HashMap<>();
+    private Map<String, Long> beginLogSizes = new HashMap<>();
+    private Map<String, Long> endLogSizes = new HashMap<>();
+
+    public String getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(String cluster) {
+        this.cluster = cluster;
+    }
+
+    public long getTimespan() {
+        return timespan;
+    }
+
+    public void setTimespan(long timespan) {
+        this.timespan = timespan;
+    }
+
+    /**
+     * Return true when the offsets of every partition have been read.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    public Map<TopicPartition, Long> getBeginOffsets() {
+        return beginOffsets;
+    }
+
+    public Map<TopicPartition, Long> getEndOffsets() {
+        return endOffsets;
+    }
+
+    /**
+     * Add begin and end offsets of one partition.
+     */
+    public void addOffsets(TopicPartition tp, long begin, long end) {
+        beginOffsets.put(tp, begin);
+        endOffsets.put(tp, end);
+        beginLogSizes.merge(tp.topic(), begin, Long::sum);
+        endLogSizes.merge(tp.topic(), end, Long::sum);
+    }
+
+    public Set<String> getTopics() {
+        return endLogSizes.keySet();
+    }
+
+    public boolean containsTopic(String topic) {
+        return endLogSizes.containsKey(topic);
+    }
+
+    /**
+     * Sum of all partition end offsets, same as producer logsize.
+     */
+    public long getProducerLogSize(String topic) {
+        Long end = endLogSizes.get(topic);
+        return end == null ? 0L : end;
+    }
+
+    /**
+     * Records currently retained by the topic, end offsets minus begin offsets.
+     */
+    public long getRealLogSize(String topic) {
+        Long end = endLogSizes.get(topic);
+        Long begin = beginLogSizes.get(topic);
+        if (end == null || begin == null) {
+            return 0L;
+        }
+        return end - begin;
+    }
+
+    public long getLogSize(TopicPartition tp) {
+        Long end = endOffsets.get(tp);
+        return end == null ? 0L : end;
+    }
+
+    public long getRealLogSize(TopicPartition tp) {
+        Long end = endOffsets.get(tp);
+        Long begin = beginOffsets.get(tp);
+        if (end == null || begin == null) {
+            return 0L;
+        }
+        return end - begin;
+    }
+
+}
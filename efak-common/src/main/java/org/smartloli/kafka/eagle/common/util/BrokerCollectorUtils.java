@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.util;
+
+import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Collect broker metrics of one or more clusters in parallel.
+ * <p>
+ * Every broker is collected on a shared and bounded executor and must finish
+ * within its timeout, counted from when its task starts running, otherwise its
+ * samples are dropped and the other brokers are still returned. A broker which
+ * waits in the queue longer than the timeout is dropped the same way. The jmx
+ * connects of a broker are bounded by its deadline and a broker whose connect
+ * failed is not connected again in the cycle, so a dead broker frees its
+ * thread at the deadline. A collector which
+ * reads much more than the broker kpis, such as the rates of every topic,
+ * passes its own timeout and executor, so it cannot hold the threads of the
+ * broker kpis. The latency and the missed deadlines of each
+ * broker are kept so a slow broker can be found from the logs,
+ * {@link #getLatencies()} or {@link #getTimeouts()}.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class BrokerCollectorUtils {
+
+    private static final ExecutorService COLLECT_EXECUTOR = newExecutor(SystemConfigUtils.getIntProperty("efak.metrics.collect.threads", 16));
+
+    /**
+     * Max time a broker can spend in one collect cycle.
+     */
+    private static final long BROKER_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.metrics.collect.broker.timeout.ms", 10 * 1000L);
+
+    /**
+     * Last collect latency of each broker, the key is cluster@host:jmxPort.
+     */
+    private static final Map<String, Long> LATENCIES = new ConcurrentHashMap<>();
+
+    /**
+     * Number of collect cycles in which each broker missed the deadline.
+     */
+    private static final Map<String, AtomicLong> TIMEOUTS = new ConcurrentHashMap<>();
+
+    private BrokerCollectorUtils() {
+
+    }
+
+    /**
+     * Run the collector for every broker of every cluster and wait until all
+     * brokers finish or reach the deadline. Brokers which fail or time out are
+     * absent from the result.
+     */
+    public static <T> Map<String, Map<BrokersInfo, T>> collect(Map<String, List<BrokersInfo>> clusterBrokers, BiFunction<String, BrokersInfo, T> collector) {
+        return collect(clusterBrokers, BROKER_TIMEOUT_MS, collector);
+    }
+
+    /**
+     * Run the collector for every broker of every cluster with the given
+     * timeout of each broker.
+     */
+    public static <T> Map<String, Map<BrokersInfo, T>> collect(Map<String, List<BrokersInfo>> clusterBrokers, long timeoutMs, BiFunction<String, BrokersInfo, T> collector) {
+        return collect(clusterBrokers, timeoutMs, COLLECT_EXECUTOR, collector);
+    }
+
+    /**
+     * Run the collector for every broker of every cluster on the given
+     * executor, see {@link #newExecutor(int)}.
+     */
+    public static <T> Map<String, Map<BrokersInfo, T>> collect(Map<String, List<BrokersInfo>> clusterBrokers, long timeoutMs, ExecutorService executor, BiFunction<String, BrokersInfo, T> collector) {
+        List<Collecting<T>> collectings = new ArrayList<>();
+        for (Map.Entry<String, List<BrokersInfo>> entry : clusterBrokers.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            for (BrokersInfo broker : entry.getValue()) {
+                String clusterAlias = entry.getKey();
+                String key = key(clusterAlias, broker);
+                Collecting<T> collecting = new Collecting<>(clusterAlias, broker, System.currentTimeMillis());
+                try {
+                    collecting.future = executor.submit(() -> {
+                        long start = System.currentTimeMillis();
+                        if (!collecting.start.compareAndSet(0L, start)) {
+                            // dropped by the caller after waiting in the queue
+                            return null;
+                        }
+                        JMXFactoryUtils.beginDeadline(start + timeoutMs);
+                        try {
+                            return collector.apply(clusterAlias, broker);
+                        } finally {
+                            JMXFactoryUtils.endDeadline();
+                            LATENCIES.put(key, System.currentTimeMillis() - start);
+                        }
+                    });
+                    collectings.add(collecting);
+                } catch (RejectedExecutionException e) {
+                    LoggerUtils.print(BrokerCollectorUtils.class).warn("Collect broker[" + key + "] is rejected, executor is busy.");
+                }
+            }
+        }
+
+        Map<String, Map<BrokersInfo, T>> results = new LinkedHashMap<>();
+        for (String clusterAlias : clusterBrokers.keySet()) {
+            results.put(clusterAlias, new LinkedHashMap<>());
+        }
+        for (Collecting<T> collecting : collectings) {
+            String key = key(collecting.clusterAlias, collecting.broker);
+            try {
+                T value = await(collecting, timeoutMs);
+                if (value != null) {
+                    results.get(collecting.clusterAlias).put(collecting.broker, value);
+                }
+            } catch (TimeoutException e) {
+                collecting.future.cancel(true);
+                LATENCIES.put(key, timeoutMs);
+                long timeouts = TIMEOUTS.computeIfAbsent(key, k -> new AtomicLong(0L)).incrementAndGet();
+                String reason = collecting.start.get() < 0L ? "waits in the queue over " : "exceeds ";
+                LoggerUtils.print(BrokerCollectorUtils.class).warn("Collect broker[" + key + "] " + reason + timeoutMs + "ms, drop its samples, missed " + timeouts + " deadlines so far.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                LoggerUtils.print(BrokerCollectorUtils.class).error("Collect broker[" + key + "] has error, msg is ", e);
+            }
+        }
+        if (LoggerUtils.print(BrokerCollectorUtils.class).isDebugEnabled()) {
+            LoggerUtils.print(BrokerCollectorUtils.class).debug("Collect broker latencies " + getLatencies());
+        }
+        return results;
+    }
+
+    /**
+     * Wait for a broker until its deadline, which starts when its task starts
+     * running. A task still queued after the timeout is marked so it does not
+     * run any more.
+     */
+    private static <T> T await(Collecting<T> collecting, long timeoutMs) throws Exception {
+        while (true) {
+            long started = collecting.start.get();
+            long deadline = (started > 0L ? started : collecting.submitted) + timeoutMs;
+            long wait = deadline - System.currentTimeMillis();
+            if (started == 0L && wait <= 0L && collecting.start.compareAndSet(0L, -1L)) {
+                throw new TimeoutException();
+            }
+            try {
+                return collecting.future.get(Math.max(0L, wait), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (started > 0L) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Run the collector for every broker of one cluster.
+     */
+    public static <T> Map<BrokersInfo, T> collect(String clusterAlias, List<BrokersInfo> brokers, BiFunction<String, BrokersInfo, T> collector) {
+        return collect(clusterAlias, brokers, BROKER_TIMEOUT_MS, collector);
+    }
+
+    /**
+     * Run the collector for every broker of one cluster with the given
+     * timeout of each broker.
+     */
+    public static <T> Map<BrokersInfo, T> collect(String clusterAlias, List<BrokersInfo> brokers, long timeoutMs, BiFunction<String, BrokersInfo, T> collector) {
+        return collect(clusterAlias, brokers, timeoutMs, COLLECT_EXECUTOR, collector);
+    }
+
+    /**
+     * Run the collector for every broker of one cluster on the given executor.
+     */
+    public static <T> Map<BrokersInfo, T> collect(String clusterAlias, List<BrokersInfo> brokers, long timeoutMs, ExecutorService executor, BiFunction<String, BrokersInfo, T> collector) {
+        Map<String, List<BrokersInfo>> clusterBrokers = new HashMap<>();
+        clusterBrokers.put(clusterAlias, brokers);
+        return collect(clusterBrokers, timeoutMs, executor, collector).get(clusterAlias);
+    }
+
+    /**
+     * Create a bounded executor of daemon threads for a collector which must
+     * not share the threads of the broker kpis.
+     */
+    public static ExecutorService newExecutor(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1024), new DaemonThreadFactory());
+    }
+
+    /**
+     * Get last collect latency in milliseconds of each broker.
+     */
+    public static Map<String, Long> getLatencies() {
+        return Collections.unmodifiableMap(new HashMap<>(LATENCIES));
+    }
+
+    /**
+     * Get the number of missed deadlines of each broker since the start.
+     */
+    public static Map<String, Long> getTimeouts() {
+        Map<String, Long> timeouts = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : TIMEOUTS.entrySet()) {
+            timeouts.put(entry.getKey(), entry.getValue().get());
+        }
+        return timeouts;
+    }
+
+    private static String key(String clusterAlias, BrokersInfo broker) {
+        return clusterAlias + "@" + broker.getHost() + ":" + broker.getJmxPort();
+    }
+
+    private static class Collecting<T> {
+        private final String clusterAlias;
+        private final BrokersInfo broker;
+        private final long submitted;
+
+        /**
+         * Start time of the task, 0 while queued and -1 once dropped.
+         */
+        private final AtomicLong start = new AtomicLong(0L);
+        private Future<T> future;
+
+        private Collecting(String clusterAlias, BrokersInfo broker, long submitted) {
+            this.clusterAlias = clusterAlias;
+            this.broker = broker;
+            this.submitted = submitted;
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        public Thread newThread(Runnable r) {
+            Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+}
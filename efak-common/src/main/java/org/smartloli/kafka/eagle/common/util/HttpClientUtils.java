@@ -18,22 +18,31 @@
 package org.smartloli.kafka.eagle.common.util;
 
 import org.apache.http.HttpEntity;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.util.EntityUtils;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Request http client,such as get or post etc.
+ * <p>
+ * All requests share one pooled client, which keeps the connections of each
+ * endpoint alive between requests instead of opening a new client per request.
  *
  * @author smartloli.
  * <p>
@@ -41,6 +50,20 @@ import java.util.List;
  */
 public class HttpClientUtils {
 
+    private static final CloseableHttpClient CLIENT;
+
+    static {
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        manager.setMaxTotal(SystemConfigUtils.getIntProperty("efak.http.pool.max.total", 64));
+        manager.setDefaultMaxPerRoute(SystemConfigUtils.getIntProperty("efak.http.pool.max.per.route", 8));
+        RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(SystemConfigUtils.getIntProperty("efak.http.connect.timeout.ms", 5000))
+                .setConnectionRequestTimeout(SystemConfigUtils.getIntProperty("efak.http.connect.timeout.ms", 5000))
+                .setSocketTimeout(SystemConfigUtils.getIntProperty("efak.http.socket.timeout.ms", 10000)).build();
+        CLIENT = HttpClients.custom().setConnectionManager(manager).setDefaultRequestConfig(config)
+                .evictExpiredConnections().evictIdleConnections(60, TimeUnit.SECONDS).build();
+    }
+
     private HttpClientUtils() {
 
     }
@@ -51,30 +74,12 @@ public class HttpClientUtils {
      * @param uri: http://ip:port/demo?httpcode=200&name=smartloli
      */
     public static String doGet(String uri) {
-        String result = "";
-        CloseableHttpClient client = null;
-        CloseableHttpResponse response = null;
         try {
-            HttpGet httpGet = new HttpGet(uri);
-            client = HttpClients.createDefault();
-            response = client.execute(httpGet);
-            HttpEntity entity = response.getEntity();
-            result = EntityUtils.toString(entity);
+            return execute(new HttpGet(uri), false);
         } catch (Exception e) {
             LoggerUtils.print(HttpClientUtils.class).error("Do get request has error, msg is ", e);
-        } finally {
-            try {
-                if (response != null) {
-                    response.close();
-                }
-                if (client != null) {
-                    client.close();
-                }
-            } catch (Exception e) {
-                LoggerUtils.print(HttpClientUtils.class).error("Release get httpclient request has error, msg is ", e);
-            }
         }
-        return result;
+        return "";
     }
 
     /**
@@ -86,31 +91,12 @@ public class HttpClientUtils {
      *                 new BasicNameValuePair("name", "smartloli")
      */
     public static String doPostForm(String uri, List<BasicNameValuePair> parames) {
-        String result = "";
-        CloseableHttpClient client = null;
-        CloseableHttpResponse response = null;
         try {
-            HttpPost httpPost = new HttpPost(uri);
-            httpPost.setEntity(new UrlEncodedFormEntity(parames, "UTF-8"));
-            client = HttpClients.createDefault();
-            response = client.execute(httpPost);
-            HttpEntity entity = response.getEntity();
-            result = EntityUtils.toString(entity);
+            return postForm(uri, parames, false);
         } catch (Exception e) {
             LoggerUtils.print(HttpClientUtils.class).error("Do post form request has error, msg is ", e);
-        } finally {
-            try {
-                if (response != null) {
-                    response.close();
-                }
-                if (client != null) {
-                    client.close();
-                }
-            } catch (Exception e) {
-                LoggerUtils.print(HttpClientUtils.class).error("Release post httpclient request has error, msg is ", e);
-            }
         }
-        return result;
+        return "";
     }
 
     /**
@@ -119,32 +105,45 @@ public class HttpClientUtils {
      * @param uri: http://ip:port/demo
      */
     public static String doPostJson(String uri, String data) {
-        String result = "";
-        CloseableHttpClient client = null;
-        CloseableHttpResponse response = null;
         try {
-            HttpPost httpPost = new HttpPost(uri);
-            httpPost.setHeader(HTTP.CONTENT_TYPE, "application/json");
-            httpPost.setEntity(new StringEntity(data, ContentType.create("text/json", "UTF-8")));
-            client = HttpClients.createDefault();
-            response = client.execute(httpPost);
-            HttpEntity entity = response.getEntity();
-            result = EntityUtils.toString(entity);
+            return postJson(uri, data, false);
         } catch (Exception e) {
             LoggerUtils.print(HttpClientUtils.class).error("Do post json request has error, msg is ", e);
-        } finally {
-            try {
-                if (response != null) {
-                    response.close();
-                }
-                if (client != null) {
-                    client.close();
-                }
-            } catch (Exception e) {
-                LoggerUtils.print(HttpClientUtils.class).error("Release post json request has error, msg is ", e);
+        }
+        return "";
+    }
+
+    /**
+     * Send form by post method, throw the error to the caller. When checked, a
+     * response status other than 2xx is an error too.
+     */
+    public static String postForm(String uri, List<BasicNameValuePair> parames, boolean checked) throws IOException {
+        HttpPost httpPost = new HttpPost(uri);
+        httpPost.setEntity(new UrlEncodedFormEntity(parames, "UTF-8"));
+        return execute(httpPost, checked);
+    }
+
+    /**
+     * Send json by post method, throw the error to the caller. When checked, a
+     * response status other than 2xx is an error too.
+     */
+    public static String postJson(String uri, String data, boolean checked) throws IOException {
+        HttpPost httpPost = new HttpPost(uri);
+        httpPost.setHeader(HTTP.CONTENT_TYPE, "application/json");
+        httpPost.setEntity(new StringEntity(data, ContentType.create("text/json", "UTF-8")));
+        return execute(httpPost, checked);
+    }
+
+    private static String execute(HttpUriRequest request, boolean checked) throws IOException {
+        try (CloseableHttpResponse response = CLIENT.execute(request)) {
+            HttpEntity entity = response.getEntity();
+            String result = entity == null ? "" : EntityUtils.toString(entity);
+            int status = response.getStatusLine().getStatusCode();
+            if (checked && (status < 200 || status >= 300)) {
+                throw new HttpResponseException(status, "Request [" + request.getURI() + "] returns " + status + ", body is " + result);
             }
+            return result;
         }
-        return result;
     }
 
 }
@@ -17,22 +17,32 @@
  */
 package org.smartloli.kafka.eagle.common.util;
 
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnectionNotification;
 import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
 import javax.management.remote.rmi.RMIConnectorServer;
 import javax.naming.Context;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
-import javax.rmi.ssl.SslRMIClientSocketFactory;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manager jmx connector object && release.
@@ -48,59 +58,295 @@ public class JMXFactoryUtils {
 
     private static final ThreadFactory daemonThreadFactory = new DaemonThreadFactory();
 
+    /**
+     * Shared and bounded executor used to connect jmx with timeout.
+     */
+    private static final ExecutorService CONNECT_EXECUTOR = new ThreadPoolExecutor(
+            SystemConfigUtils.getIntProperty("efak.jmx.connect.threads", 16),
+            SystemConfigUtils.getIntProperty("efak.jmx.connect.threads", 16),
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1024), daemonThreadFactory);
+
+    /**
+     * Cached jmx connectors are closed after being unused for this time.
+     */
+    private static final long IDLE_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.jmx.connection.idle.ms", 5 * 60 * 1000L);
+
+    /**
+     * Cached jmx connectors not used for this time are checked before reuse.
+     */
+    private static final long VALIDATE_INTERVAL_MS = 30 * 1000L;
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 30L;
+
+    /**
+     * Reads on a cached jmx connection which wait longer than this fail, so a
+     * hung broker does not block its callers forever.
+     */
+    private static final long READ_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.jmx.read.timeout.ms", 30 * 1000L);
+
+    static {
+        // rmi reads the response timeout once when its transport is loaded
+        if (System.getProperty("sun.rmi.transport.tcp.responseTimeout") == null) {
+            System.setProperty("sun.rmi.transport.tcp.responseTimeout", String.valueOf(READ_TIMEOUT_MS));
+        }
+    }
+
+    private static final Map<String, CachedConnector> CONNECTORS = new ConcurrentHashMap<>();
+    private static final Map<String, ReentrantLock> CONNECT_LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * Deadline of the collect task running on the thread, see
+     * {@link #beginDeadline(long)}.
+     */
+    private static final ThreadLocal<Deadline> DEADLINES = new ThreadLocal<>();
+    private static final Map<String, SSLContext> SSL_CONTEXTS = new ConcurrentHashMap<>();
+    private static volatile long lastIdleCheck = System.currentTimeMillis();
+
     private JMXFactoryUtils() {
 
     }
 
     public static JMXConnector connectWithTimeout(String clusterAlias, final JMXServiceURL url, long timeout, TimeUnit unit) {
         final BlockingQueue<Object> blockQueue = new ArrayBlockingQueue<>(1);
-        ExecutorService executor = Executors.newSingleThreadExecutor(daemonThreadFactory);
-        executor.submit(new Runnable() {
-            public void run() {
-                try {
-                    JMXConnector connector = null;
-                    if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.jmx.acl")) {
-                        Map<String, Object> envs = new HashMap<>();
-                        String user = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.user");
-                        String passwd = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.password");
-                        String[] credentials = new String[]{user, passwd};
-                        envs.put(JMXConnector.CREDENTIALS, credentials);
-                        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.jmx.ssl")) {
-                            envs.put(Context.SECURITY_PROTOCOL, "ssl");
-                            envs.put(RMIConnectorServer.RMI_CLIENT_SOCKET_FACTORY_ATTRIBUTE, new SslRMIClientSocketFactory());
-                            String truststoreLocation = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.truststore.location");
-                            String truststorePassword = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.truststore.password");
-                            TrustManager[] tms = getTrustManagers(truststoreLocation, truststorePassword);
-                            SSLContext sslContext = SSLContext.getInstance("TLS");
-                            sslContext.init(null, tms, null);
-                            SSLContext.setDefault(sslContext);
-                            envs.put("com.sun.jndi.rmi.factory.socket", new SslRMIClientSocketFactory());
+        try {
+            CONNECT_EXECUTOR.submit(new Runnable() {
+                public void run() {
+                    try {
+                        JMXConnector connector = null;
+                        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.jmx.acl")) {
+                            Map<String, Object> envs = new HashMap<>();
+                            String user = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.user");
+                            String passwd = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.password");
+                            String[] credentials = new String[]{user, passwd};
+                            envs.put(JMXConnector.CREDENTIALS, credentials);
+                            if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.jmx.ssl")) {
+                                envs.put(Context.SECURITY_PROTOCOL, "ssl");
+                                SSLContext sslContext = sslContext(clusterAlias);
+                                ClusterSslSocketFactory socketFactory = new ClusterSslSocketFactory(clusterAlias, sslContext.getSocketFactory());
+                                envs.put(RMIConnectorServer.RMI_CLIENT_SOCKET_FACTORY_ATTRIBUTE, socketFactory);
+                                envs.put("com.sun.jndi.rmi.factory.socket", socketFactory);
+                                // stubs exported by the broker bring their own ssl factory, which uses the default context
+                                SSLContext.setDefault(sslContext);
+                            }
+                            connector = JMXConnectorFactory.connect(url, envs);
+                        } else {
+                            connector = JMXConnectorFactory.connect(url);
+                        }
+                        if (!blockQueue.offer(connector))
+                            connector.close();
+                    } catch (Exception e) {
+                        if (!blockQueue.offer(e)) {
+                            LoggerUtils.print(JMXFactoryUtils.class).error("Block queue is full, error msg is ", e);
                         }
-                        connector = JMXConnectorFactory.connect(url, envs);
-                    } else {
-                        connector = JMXConnectorFactory.connect(url);
-                    }
-                    if (!blockQueue.offer(connector))
-                        connector.close();
-                } catch (Exception e) {
-                    if (!blockQueue.offer(e)) {
-                        LoggerUtils.print(JMXFactoryUtils.class).error("Block queue is full, error msg is ", e);
                     }
                 }
-            }
-        });
+            });
+        } catch (RejectedExecutionException e) {
+            LoggerUtils.print(JMXFactoryUtils.class).error("JMX connect executor is busy, reject url[" + url + "].");
+            return null;
+        }
         Object result = null;
         try {
             result = blockQueue.poll(timeout, unit);
-            if (result == null && !blockQueue.offer("")) {
-                result = blockQueue.take();
+        } catch (InterruptedException e) {
+            // keep the interrupt for the caller, the late connector is closed by the task
+            Thread.currentThread().interrupt();
+        }
+        if (result == null && !blockQueue.offer("")) {
+            result = blockQueue.poll();
+        }
+        if (result instanceof JMXConnector) {
+            return (JMXConnector) result;
+        }
+        if (result instanceof Exception) {
+            LoggerUtils.print(JMXFactoryUtils.class).error("Connect jmx url[" + url + "] has error, msg is ", (Exception) result);
+        }
+        return null;
+    }
+
+    /**
+     * Bound the jmx connects of the current thread by the deadline until
+     * {@link #endDeadline()}. A connect waits at most until the deadline, and
+     * after a url fails to connect the later calls for it fail at once.
+     */
+    public static void beginDeadline(long deadline) {
+        DEADLINES.set(new Deadline(deadline));
+    }
+
+    public static void endDeadline() {
+        DEADLINES.remove();
+    }
+
+    /**
+     * Get a cached jmx connection of the broker, connect it when it does not
+     * exist or is no longer alive. Do not close the returned connection, call
+     * {@link #invalidate(String, JMXServiceURL)} when it fails with an io error.
+     */
+    public static MBeanServerConnection getConnection(String clusterAlias, JMXServiceURL url) throws IOException {
+        evictIdle();
+        String key = clusterAlias + "@" + url;
+        Deadline deadline = DEADLINES.get();
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Connect jmx url[" + url + "] is interrupted.");
+        }
+        if (deadline != null && deadline.failed.contains(key)) {
+            throw new IOException("Connect jmx url[" + url + "] failed before in this collect.");
+        }
+        long now = System.currentTimeMillis();
+        CachedConnector cached = CONNECTORS.get(key);
+        if (cached != null && (now - cached.lastUsed < VALIDATE_INTERVAL_MS || isAlive(cached))) {
+            cached.lastUsed = now;
+            return cached.connection;
+        }
+        ReentrantLock lock = CONNECT_LOCKS.computeIfAbsent(key, k -> new ReentrantLock());
+        try {
+            if (!lock.tryLock(connectTimeoutMs(deadline, url), TimeUnit.MILLISECONDS)) {
+                throw new IOException("Wait for another connect of jmx url[" + url + "] timeout.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Connect jmx url[" + url + "] is interrupted.");
+        }
+        try {
+            CachedConnector current = CONNECTORS.get(key);
+            if (current != null && current != cached) {
+                current.lastUsed = now;
+                return current.connection;
+            }
+            if (current != null) {
+                CONNECTORS.remove(key, current);
+                close(current.connector);
+            }
+            JMXConnector connector = connectWithTimeout(clusterAlias, url, connectTimeoutMs(deadline, url), TimeUnit.MILLISECONDS);
+            if (connector == null) {
+                if (deadline != null) {
+                    deadline.failed.add(key);
+                }
+                throw new IOException("Connect jmx url[" + url + "] failed.");
+            }
+            try {
+                CachedConnector created = new CachedConnector(connector, connector.getMBeanServerConnection(), now);
+                connector.addConnectionNotificationListener((notification, handback) -> {
+                    String type = notification.getType();
+                    if (JMXConnectionNotification.FAILED.equals(type) || JMXConnectionNotification.CLOSED.equals(type)) {
+                        CONNECTORS.remove(key, created);
+                    }
+                }, null, null);
+                CONNECTORS.put(key, created);
+                return created.connection;
+            } catch (IOException e) {
+                close(connector);
+                throw e;
             }
-        } catch (Exception e) {
-            LoggerUtils.print(JMXFactoryUtils.class).error("Take block queue has error, msg is ", e);
         } finally {
-            executor.shutdown();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the time left for a connect, the remaining time of the deadline when
+     * it is shorter than the connect timeout.
+     */
+    private static long connectTimeoutMs(Deadline deadline, JMXServiceURL url) throws IOException {
+        long timeoutMs = TimeUnit.SECONDS.toMillis(CONNECT_TIMEOUT_SECONDS);
+        if (deadline == null) {
+            return timeoutMs;
+        }
+        long remaining = deadline.deadline - System.currentTimeMillis();
+        if (remaining <= 0L) {
+            throw new IOException("Connect jmx url[" + url + "] exceeds the collect deadline.");
+        }
+        return Math.min(timeoutMs, remaining);
+    }
+
+    /**
+     * Drop a cached jmx connection which failed, the next call reconnects.
+     */
+    public static void invalidate(String clusterAlias, JMXServiceURL url) {
+        CachedConnector cached = CONNECTORS.remove(clusterAlias + "@" + url);
+        if (cached != null) {
+            close(cached.connector);
+        }
+    }
+
+    /**
+     * Check if a jmx read failed because of its connection. Reads through a
+     * platform mxbean proxy wrap the io error in an
+     * {@link UndeclaredThrowableException}.
+     */
+    public static boolean isConnectionError(Throwable e) {
+        Throwable cause = e;
+        for (int depth = 0; cause != null && depth < 8; depth++) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+            if (cause instanceof UndeclaredThrowableException) {
+                cause = ((UndeclaredThrowableException) cause).getUndeclaredThrowable();
+            } else {
+                cause = cause.getCause();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get current cached jmx connection size.
+     */
+    public static int getConnectionSize() {
+        return CONNECTORS.size();
+    }
+
+    private static boolean isAlive(CachedConnector cached) {
+        try {
+            cached.connection.getMBeanCount();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static void evictIdle() {
+        long now = System.currentTimeMillis();
+        if (now - lastIdleCheck < VALIDATE_INTERVAL_MS) {
+            return;
+        }
+        lastIdleCheck = now;
+        for (Map.Entry<String, CachedConnector> entry : CONNECTORS.entrySet()) {
+            CachedConnector cached = entry.getValue();
+            if (now - cached.lastUsed > IDLE_TIMEOUT_MS && CONNECTORS.remove(entry.getKey(), cached)) {
+                close(cached.connector);
+            }
+        }
+    }
+
+    private static void close(JMXConnector connector) {
+        try {
+            connector.close();
+        } catch (Exception e) {
+            LoggerUtils.print(JMXFactoryUtils.class).debug("Close jmx connector has error, msg is " + e.getMessage());
+        }
+    }
+
+    /**
+     * Build the ssl context of the cluster once instead of on every connect.
+     */
+    private static SSLContext sslContext(String clusterAlias) throws IOException, GeneralSecurityException {
+        SSLContext sslContext = SSL_CONTEXTS.get(clusterAlias);
+        if (sslContext != null) {
+            return sslContext;
+        }
+        synchronized (SSL_CONTEXTS) {
+            sslContext = SSL_CONTEXTS.get(clusterAlias);
+            if (sslContext == null) {
+                String truststoreLocation = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.truststore.location");
+                String truststorePassword = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.truststore.password");
+                TrustManager[] tms = getTrustManagers(truststoreLocation, truststorePassword);
+                sslContext = SSLContext.getInstance("TLS");
+                sslContext.init(null, tms, null);
+                SSL_CONTEXTS.put(clusterAlias, sslContext);
+            }
+            return sslContext;
         }
-        return (JMXConnector) result;
     }
 
     private static TrustManager[] getTrustManagers(String location, String password)
@@ -118,6 +364,58 @@ public class JMXFactoryUtils {
         return tms;
     }
 
+    /**
+     * Rmi client socket factory using the ssl context of one cluster. Rmi
+     * reuses connections of equal factories, so it is equal per cluster.
+     */
+    private static class ClusterSslSocketFactory implements RMIClientSocketFactory, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String clusterAlias;
+        private final transient SSLSocketFactory socketFactory;
+
+        private ClusterSslSocketFactory(String clusterAlias, SSLSocketFactory socketFactory) {
+            this.clusterAlias = clusterAlias;
+            this.socketFactory = socketFactory;
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return socketFactory.createSocket(host, port);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ClusterSslSocketFactory && clusterAlias.equals(((ClusterSslSocketFactory) obj).clusterAlias);
+        }
+
+        @Override
+        public int hashCode() {
+            return clusterAlias.hashCode();
+        }
+    }
+
+    private static class CachedConnector {
+        private final JMXConnector connector;
+        private final MBeanServerConnection connection;
+        private volatile long lastUsed;
+
+        private CachedConnector(JMXConnector connector, MBeanServerConnection connection, long lastUsed) {
+            this.connector = connector;
+            this.connection = connection;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private static class Deadline {
+        private final long deadline;
+        private final Set<String> failed = new HashSet<>();
+
+        private Deadline(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+
     private static class DaemonThreadFactory implements ThreadFactory {
         public Thread newThread(Runnable r) {
             Thread t = Executors.defaultThreadFactory().newThread(r);
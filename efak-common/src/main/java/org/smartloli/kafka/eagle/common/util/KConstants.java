@@ -415,6 +415,8 @@ public class KConstants {
         public static final String SHARD_TASK = "SHARD_TASK";
         public static final String KSQL_QUERY = "KSQL_QUERY";
         public static final String KSQL_QUERY_LOG = "KSQL_QUERY_LOG";
+        public static final String HEART_BEAT_REPORT = "HEART_BEAT_REPORT";
+        public static final String WORK_NODE_ALIVE = "WORK_NODE_ALIVE";
 
         public static final String KSQL_PHYSICS = "KSQL_PHYSICS";
         public static final String KSQL_LOGICAL = "KSQL_LOGICAL";
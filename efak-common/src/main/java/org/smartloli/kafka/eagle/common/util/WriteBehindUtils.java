@@ -0,0 +1,268 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Write behind queue of the collector rows.
+ * <p>
+ * The collectors only append rows to the buffer of a table and go on with
+ * kafka. A single flusher writes every table with one multi row insert per
+ * batch, once a buffer holds a batch or the flush interval passes. When the
+ * database falls behind and the pending rows reach the capacity, the
+ * collectors wait for the flusher before appending more rows. Rows which
+ * still find the queue full after the block time are dropped and counted,
+ * so the queue never grows past its capacity.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class WriteBehindUtils {
+
+    private static final int BATCH_SIZE = SystemConfigUtils.getIntProperty("efak.write.behind.batch.size", 500);
+    private static final long FLUSH_INTERVAL_MS = SystemConfigUtils.getLongProperty("efak.write.behind.flush.ms", 1000L);
+    private static final int CAPACITY = SystemConfigUtils.getIntProperty("efak.write.behind.capacity", 50000);
+    private static final long BLOCK_MS = SystemConfigUtils.getLongProperty("efak.write.behind.block.ms", 5000L);
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static final Condition NOT_FULL = LOCK.newCondition();
+    private static final Condition FLUSH = LOCK.newCondition();
+
+    /**
+     * Tables by name, guarded by the lock.
+     */
+    private static final Map<String, Table<?>> TABLES = new LinkedHashMap<>();
+
+    /**
+     * Rows appended but not written yet, guarded by the lock.
+     */
+    private static int pending = 0;
+    private static long blocked = 0L;
+    private static long dropped = 0L;
+
+    static {
+        Thread flusher = new Thread(WriteBehindUtils::flushLoop, "efak-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(WriteBehindUtils::flush, "efak-write-behind-shutdown"));
+    }
+
+    private WriteBehindUtils() {
+
+    }
+
+    /**
+     * Append one row of the table, the writer inserts a batch of rows.
+     */
+    public static <T> void write(String table, T row, Consumer<List<T>> writer) {
+        List<T> rows = new ArrayList<>(1);
+        rows.add(row);
+        writeAll(table, rows, writer);
+    }
+
+    /**
+     * Append the rows of the table, the writer inserts a batch of rows.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void writeAll(String table, List<T> rows, Consumer<List<T>> writer) {
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+        LOCK.lock();
+        try {
+            if (pending >= CAPACITY) {
+                blocked++;
+                long nanos = TimeUnit.MILLISECONDS.toNanos(BLOCK_MS);
+                while (pending >= CAPACITY && nanos > 0) {
+                    nanos = NOT_FULL.awaitNanos(nanos);
+                }
+            }
+            Table<T> target = (Table<T>) TABLES.computeIfAbsent(table, Table::new);
+            target.writer = writer;
+            if (pending >= CAPACITY) {
+                drop(target, rows.size());
+                return;
+            }
+            target.buffer.addAll(rows);
+            pending += rows.size();
+            if (target.buffer.size() >= BATCH_SIZE) {
+                FLUSH.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drop((Table<T>) TABLES.computeIfAbsent(table, Table::new), rows.size());
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static void drop(Table<?> target, int size) {
+        dropped += size;
+        target.dropped += size;
+        LoggerUtils.print(WriteBehindUtils.class).warn("Write behind queue is full, pending " + pending + " rows, drop " + size + " rows of table[" + target.name + "].");
+    }
+
+    /**
+     * Write all pending rows now.
+     */
+    public static synchronized void flush() {
+        List<Table<?>> tables;
+        LOCK.lock();
+        try {
+            tables = new ArrayList<>(TABLES.values());
+        } finally {
+            LOCK.unlock();
+        }
+        for (Table<?> table : tables) {
+            table.flush();
+        }
+    }
+
+    /**
+     * Get the pending rows and the flush latency of each table.
+     */
+    public static Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        LOCK.lock();
+        try {
+            metrics.put("pending", pending);
+            metrics.put("capacity", CAPACITY);
+            metrics.put("blocked", blocked);
+            metrics.put("dropped", dropped);
+            Map<String, Object> tables = new TreeMap<>();
+            for (Table<?> table : TABLES.values()) {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("pending", table.buffer.size());
+                stats.put("rows", table.rows);
+                stats.put("dropped", table.dropped);
+                stats.put("flushes", table.flushes);
+                stats.put("failures", table.failures);
+                stats.put("lastFlushMs", table.lastFlushMs);
+                stats.put("maxFlushMs", table.maxFlushMs);
+                stats.put("avgFlushMs", table.flushes == 0 ? 0L : table.totalFlushMs / table.flushes);
+                tables.put(table.name, stats);
+            }
+            metrics.put("tables", tables);
+        } finally {
+            LOCK.unlock();
+        }
+        return metrics;
+    }
+
+    private static void flushLoop() {
+        while (true) {
+            LOCK.lock();
+            try {
+                if (!hasBatch()) {
+                    FLUSH.await(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                LOCK.unlock();
+            }
+            try {
+                flush();
+            } catch (Throwable t) {
+                LoggerUtils.print(WriteBehindUtils.class).error("Flush write behind queue has error, msg is ", t);
+            }
+        }
+    }
+
+    private static boolean hasBatch() {
+        for (Table<?> table : TABLES.values()) {
+            if (table.buffer.size() >= BATCH_SIZE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Table<T> {
+        private final String name;
+        private final List<T> buffer = new ArrayList<>();
+        private Consumer<List<T>> writer;
+        private long rows = 0L;
+        private long dropped = 0L;
+        private long flushes = 0L;
+        private long failures = 0L;
+        private long lastFlushMs = 0L;
+        private long maxFlushMs = 0L;
+        private long totalFlushMs = 0L;
+
+        private Table(String name) {
+            this.name = name;
+        }
+
+        private void flush() {
+            List<T> drained;
+            Consumer<List<T>> target;
+            LOCK.lock();
+            try {
+                if (buffer.isEmpty()) {
+                    return;
+                }
+                drained = new ArrayList<>(buffer);
+                buffer.clear();
+                target = writer;
+            } finally {
+                LOCK.unlock();
+            }
+            for (int from = 0; from < drained.size(); from += BATCH_SIZE) {
+                List<T> batch = drained.subList(from, Math.min(drained.size(), from + BATCH_SIZE));
+                long start = System.currentTimeMillis();
+                boolean failed = false;
+                try {
+                    target.accept(new ArrayList<>(batch));
+                } catch (Exception e) {
+                    failed = true;
+                    LoggerUtils.print(WriteBehindUtils.class).error("Write behind table[" + name + "] drops " + batch.size() + " rows, msg is ", e);
+                }
+                long latency = System.currentTimeMillis() - start;
+                LOCK.lock();
+                try {
+                    // the rows only leave the queue once written, so a slow database holds the collectors
+                    pending -= batch.size();
+                    flushes++;
+                    lastFlushMs = latency;
+                    maxFlushMs = Math.max(maxFlushMs, latency);
+                    totalFlushMs += latency;
+                    if (failed) {
+                        failures++;
+                    } else {
+                        rows += batch.size();
+                    }
+                    NOT_FULL.signalAll();
+                } finally {
+                    LOCK.unlock();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.util.kraft;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived Kafka client pool keyed by cluster alias.
+ * <p>
+ * {@link AdminClient} is thread safe, so each cluster shares one instance which
+ * is health checked with a cheap describeCluster call at most once per check
+ * interval. The check holds a lock of its cluster only, so an unreachable
+ * cluster does not block the admin clients of the others. {@link KafkaConsumer} is not thread safe, so consumers are borrowed
+ * exclusively and handed back with {@link #release(String, KafkaConsumer)}, or
+ * used through {@link #withConsumer(String, ConsumerCall)}.
+ * Broken clients are evicted with {@link #invalidate(String, KafkaConsumer)} and
+ * closed asynchronously through {@link KafkaStoragePlugin#registerToClose}.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class KafkaClientPool {
+
+    /**
+     * Max idle consumers kept per cluster.
+     */
+    private static final int CONSUMER_POOL_SIZE = SystemConfigUtils.getIntProperty("efak.kafka.client.pool.size", 8);
+
+    /**
+     * Idle consumers older than this are closed instead of being reused.
+     */
+    private static final long IDLE_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.kafka.client.pool.idle.ms", 5 * 60 * 1000L);
+
+    /**
+     * Min interval between two admin client health checks.
+     */
+    private static final long HEALTH_CHECK_MS = SystemConfigUtils.getLongProperty("efak.kafka.client.pool.check.ms", 60 * 1000L);
+
+    private static final long HEALTH_CHECK_TIMEOUT_MS = 5000L;
+
+    private static class KafkaClientPoolHolder {
+        private static final KafkaClientPool INSTANCE = new KafkaClientPool();
+    }
+
+    private final KafkaStoragePlugin plugin = new KafkaStoragePlugin();
+
+    private final Map<String, Deque<PooledConsumer>> consumerPools = new ConcurrentHashMap<>();
+    private final Map<String, PooledAdminClient> adminClients = new ConcurrentHashMap<>();
+    private final Map<String, Object> adminLocks = new ConcurrentHashMap<>();
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createCount = new AtomicLong();
+    private final AtomicLong evictCount = new AtomicLong();
+
+    private KafkaClientPool() {
+    }
+
+    public static KafkaClientPool getInstance() {
+        return KafkaClientPoolHolder.INSTANCE;
+    }
+
+    /**
+     * Borrow an exclusive consumer for the cluster, creating one when the pool is empty.
+     */
+    public KafkaConsumer<?, ?> borrowConsumer(String clusterAlias) {
+        borrowCount.incrementAndGet();
+        Deque<PooledConsumer> pool = consumerPool(clusterAlias);
+        long now = System.currentTimeMillis();
+        synchronized (pool) {
+            PooledConsumer pooled;
+            while ((pooled = pool.pollFirst()) != null) {
+                if (now - pooled.lastUsed <= IDLE_TIMEOUT_MS) {
+                    return pooled.consumer;
+                }
+                evict(pooled.consumer);
+            }
+        }
+        createCount.incrementAndGet();
+        return new KafkaConsumer<>(new KafkaStoragePlugin().getKafkaConsumerProps(clusterAlias));
+    }
+
+    /**
+     * Return a borrowed consumer so later calls can reuse its connections.
+     */
+    public void release(String clusterAlias, KafkaConsumer<?, ?> consumer) {
+        if (consumer == null) {
+            return;
+        }
+        try {
+            consumer.unsubscribe();
+        } catch (Exception e) {
+            invalidate(clusterAlias, consumer);
+            return;
+        }
+        Deque<PooledConsumer> pool = consumerPool(clusterAlias);
+        long now = System.currentTimeMillis();
+        synchronized (pool) {
+            Iterator<PooledConsumer> iterator = pool.iterator();
+            while (iterator.hasNext()) {
+                PooledConsumer pooled = iterator.next();
+                if (now - pooled.lastUsed > IDLE_TIMEOUT_MS) {
+                    iterator.remove();
+                    evict(pooled.consumer);
+                }
+            }
+            if (pool.size() < CONSUMER_POOL_SIZE) {
+                pool.offerFirst(new PooledConsumer(consumer, now));
+                return;
+            }
+        }
+        evict(consumer);
+    }
+
+    /**
+     * Drop a consumer that failed during use instead of returning it to the pool.
+     */
+    public void invalidate(String clusterAlias, KafkaConsumer<?, ?> consumer) {
+        if (consumer != null) {
+            LoggerUtils.print(this.getClass()).warn("Evict kafka consumer of cluster[{}] from pool.", clusterAlias);
+            evict(consumer);
+        }
+    }
+
+    /**
+     * Run the call with a borrowed consumer. The consumer is released after
+     * the call returns, so its results can still be read in the call, and is
+     * invalidated when the call throws.
+     */
+    public <T> T withConsumer(String clusterAlias, ConsumerCall<T> call) throws Exception {
+        KafkaConsumer<?, ?> consumer = borrowConsumer(clusterAlias);
+        boolean ok = false;
+        try {
+            T result = call.call(consumer);
+            ok = true;
+            return result;
+        } finally {
+            if (ok) {
+                release(clusterAlias, consumer);
+            } else {
+                invalidate(clusterAlias, consumer);
+            }
+        }
+    }
+
+    /**
+     * Get the shared admin client of the cluster. Do not close the returned instance.
+     */
+    public AdminClient getAdminClient(String clusterAlias) {
+        borrowCount.incrementAndGet();
+        PooledAdminClient pooled = adminClients.get(clusterAlias);
+        long now = System.currentTimeMillis();
+        if (pooled != null && now - pooled.lastChecked < HEALTH_CHECK_MS) {
+            return pooled.adminClient;
+        }
+        synchronized (adminLock(clusterAlias)) {
+            pooled = adminClients.get(clusterAlias);
+            if (pooled != null && now - pooled.lastChecked >= HEALTH_CHECK_MS) {
+                if (isHealthy(pooled.adminClient)) {
+                    pooled.lastChecked = now;
+                } else {
+                    LoggerUtils.print(this.getClass()).warn("Kafka admin client of cluster[{}] failed health check, recreate it.", clusterAlias);
+                    adminClients.remove(clusterAlias);
+                    evict(pooled.adminClient);
+                    pooled = null;
+                }
+            }
+            if (pooled == null) {
+                createCount.incrementAndGet();
+                pooled = new PooledAdminClient(AdminClient.create(new KafkaStoragePlugin().getKafkaAdminClientProps(clusterAlias)), now);
+                adminClients.put(clusterAlias, pooled);
+            }
+            return pooled.adminClient;
+        }
+    }
+
+    /**
+     * Drop the shared admin client after a failed call, the next caller gets a new one.
+     */
+    public void invalidate(String clusterAlias, AdminClient adminClient) {
+        if (adminClient == null) {
+            return;
+        }
+        synchronized (adminLock(clusterAlias)) {
+            PooledAdminClient pooled = adminClients.get(clusterAlias);
+            if (pooled != null && pooled.adminClient == adminClient) {
+                adminClients.remove(clusterAlias);
+                LoggerUtils.print(this.getClass()).warn("Evict kafka admin client of cluster[{}] from pool.", clusterAlias);
+                evict(adminClient);
+            }
+        }
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getCreateCount() {
+        return createCount.get();
+    }
+
+    public long getEvictCount() {
+        return evictCount.get();
+    }
+
+    /**
+     * Get current idle consumer size of the cluster.
+     */
+    public int getIdleConsumerSize(String clusterAlias) {
+        Deque<PooledConsumer> pool = consumerPools.get(clusterAlias);
+        if (pool == null) {
+            return 0;
+        }
+        synchronized (pool) {
+            return pool.size();
+        }
+    }
+
+    private Deque<PooledConsumer> consumerPool(String clusterAlias) {
+        return consumerPools.computeIfAbsent(clusterAlias, k -> new ArrayDeque<>());
+    }
+
+    private Object adminLock(String clusterAlias) {
+        return adminLocks.computeIfAbsent(clusterAlias, k -> new Object());
+    }
+
+    private boolean isHealthy(AdminClient adminClient) {
+        try {
+            adminClient.describeCluster().clusterId().get(HEALTH_CHECK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void evict(AutoCloseable client) {
+        evictCount.incrementAndGet();
+        plugin.registerToClose(client);
+    }
+
+    /**
+     * A call made with a borrowed consumer, see {@link #withConsumer(String, ConsumerCall)}.
+     */
+    @FunctionalInterface
+    public interface ConsumerCall<T> {
+        T call(KafkaConsumer<?, ?> consumer) throws Exception;
+    }
+
+    private static class PooledConsumer {
+        private final KafkaConsumer<?, ?> consumer;
+        private final long lastUsed;
+
+        private PooledConsumer(KafkaConsumer<?, ?> consumer, long lastUsed) {
+            this.consumer = consumer;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private static class PooledAdminClient {
+        private final AdminClient adminClient;
+        private volatile long lastChecked;
+
+        private PooledAdminClient(AdminClient adminClient, long lastChecked) {
+            this.adminClient = adminClient;
+            this.lastChecked = lastChecked;
+        }
+    }
+}
@@ -19,9 +19,9 @@ package org.smartloli.kafka.eagle.common.util.kraft;
 
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.DescribeTopicsResult;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.Node;
 import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.errors.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
@@ -33,6 +33,7 @@ import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Get the Kafka topic metadata information through the broker address.
@@ -45,6 +46,7 @@ public class KafkaSchemaFactory {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KafkaSchemaFactory.class);
     private final KafkaStoragePlugin plugin;
+    private final KafkaClientPool pool = KafkaClientPool.getInstance();
     private Set<String> tableNames;
 
     public KafkaSchemaFactory(final KafkaStoragePlugin plugin) {
@@ -57,14 +59,10 @@ public class KafkaSchemaFactory {
 
     public Set<String> getTableNames(String clusterAlias) {
         if (tableNames == null) {
-            KafkaConsumer<?, ?> kafkaConsumer = null;
             try {
-                kafkaConsumer = new KafkaConsumer<>(plugin.getKafkaConsumerProps(clusterAlias));
-                tableNames = kafkaConsumer.listTopics().keySet();
+                tableNames = pool.withConsumer(clusterAlias, kafkaConsumer -> kafkaConsumer.listTopics().keySet());
             } catch (Exception e) {
                 LoggerUtils.print(this.getClass()).error("Failure while loading table names for database '{}': {}", clusterAlias, e);
-            } finally {
-                plugin.registerToClose(kafkaConsumer);
             }
         }
         return tableNames;
@@ -74,15 +72,14 @@ public class KafkaSchemaFactory {
         List<String> partitions = new ArrayList<>();
         AdminClient adminClient = null;
         try {
-            adminClient = AdminClient.create(plugin.getKafkaAdminClientProps(clusterAlias));
+            adminClient = pool.getAdminClient(clusterAlias);
             DescribeTopicsResult describeTopicsResult = adminClient.describeTopics(Arrays.asList(topic));
             for (TopicPartitionInfo tp : describeTopicsResult.all().get().get(topic).partitions()) {
                 partitions.add(String.valueOf(tp.partition()));
             }
         } catch (Exception e) {
+            invalidate(clusterAlias, adminClient, e);
             LoggerUtils.print(this.getClass()).error("Failure while loading topic '{}' meta for kafka '{}': {}", topic, clusterAlias, e);
-        } finally {
-            plugin.registerToClose(adminClient);
         }
         return partitions;
     }
@@ -91,15 +88,14 @@ public class KafkaSchemaFactory {
         Set<Integer> partitions = new HashSet<>();
         AdminClient adminClient = null;
         try {
-            adminClient = AdminClient.create(plugin.getKafkaAdminClientProps(clusterAlias));
+            adminClient = pool.getAdminClient(clusterAlias);
             DescribeTopicsResult describeTopicsResult = adminClient.describeTopics(Arrays.asList(topic));
             for (TopicPartitionInfo tp : describeTopicsResult.all().get().get(topic).partitions()) {
                 partitions.add(tp.partition());
             }
         } catch (Exception e) {
+            invalidate(clusterAlias, adminClient, e);
             LoggerUtils.print(this.getClass()).error("Failure while loading topic '{}' meta for kafka '{}': {}", topic, clusterAlias, e);
-        } finally {
-            plugin.registerToClose(adminClient);
         }
         return partitions;
     }
@@ -108,7 +104,7 @@ public class KafkaSchemaFactory {
         List<MetadataInfo> partitions = new ArrayList<>();
         AdminClient adminClient = null;
         try {
-            adminClient = AdminClient.create(plugin.getKafkaAdminClientProps(clusterAlias));
+            adminClient = pool.getAdminClient(clusterAlias);
             DescribeTopicsResult describeTopicsResult = adminClient.describeTopics(Arrays.asList(topic));
             for (TopicPartitionInfo tp : describeTopicsResult.all().get().get(topic).partitions()) {
                 MetadataInfo metadata = new MetadataInfo();
@@ -117,9 +113,8 @@ public class KafkaSchemaFactory {
                 partitions.add(metadata);
             }
         } catch (Exception e) {
+            invalidate(clusterAlias, adminClient, e);
             LoggerUtils.print(this.getClass()).error("Failure while loading topic '{}' meta for kafka '{}': {}", topic, clusterAlias, e);
-        } finally {
-            plugin.registerToClose(adminClient);
         }
         return partitions;
     }
@@ -128,7 +123,7 @@ public class KafkaSchemaFactory {
         List<MetadataInfo> partitions = new ArrayList<>();
         AdminClient adminClient = null;
         try {
-            adminClient = AdminClient.create(plugin.getKafkaAdminClientProps(clusterAlias));
+            adminClient = pool.getAdminClient(clusterAlias);
             DescribeTopicsResult describeTopicsResult = adminClient.describeTopics(Arrays.asList(topic));
             for (TopicPartitionInfo tp : describeTopicsResult.all().get().get(topic).partitions()) {
                 MetadataInfo metadata = new MetadataInfo();
@@ -148,9 +143,8 @@ public class KafkaSchemaFactory {
                 partitions.add(metadata);
             }
         } catch (Exception e) {
+            invalidate(clusterAlias, adminClient, e);
             LoggerUtils.print(this.getClass()).error("Failure while loading topic '{}' meta for kafka '{}': {}", topic, clusterAlias, e);
-        } finally {
-            plugin.registerToClose(adminClient);
         }
         return partitions;
     }
@@ -170,6 +164,17 @@ public class KafkaSchemaFactory {
         return jni;
     }
 
+    /**
+     * Drop the pooled admin client when the call timed out, an error answered
+     * by the cluster, such as an unknown topic, keeps it.
+     */
+    private void invalidate(String clusterAlias, AdminClient adminClient, Exception e) {
+        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+        if (cause instanceof TimeoutException) {
+            pool.invalidate(clusterAlias, adminClient);
+        }
+    }
+
     public static void main(String[] args) {
         KafkaSchemaFactory ksf = new KafkaSchemaFactory(new KafkaStoragePlugin());
         List<MetadataInfo> metadataInfos = ksf.getTopicMetaData("cluster1", "test16");
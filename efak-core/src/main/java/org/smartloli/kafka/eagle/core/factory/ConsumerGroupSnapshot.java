@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.factory;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.ConsumerGroupListing;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartition;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Consumer groups of one cluster read with one listConsumerGroups, one
+ * describeConsumerGroups of all groups and the committed offsets of all
+ * groups requested together.
+ * <p>
+ * The per group accessors of {@link KafkaServiceImpl} read the members and
+ * the committed topics of a group from the snapshot instead of describing
+ * the group again.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class ConsumerGroupSnapshot {
+
+    private final String cluster;
+    private final long timespan;
+    private final List<String> groups;
+    private final Map<String, ConsumerGroupDescription> descriptions;
+    private final Map<String, Map<TopicPartition, OffsetAndMetadata>> offsets;
+
+    private ConsumerGroupSnapshot(String cluster, long timespan, List<String> groups, Map<String, ConsumerGroupDescription> descriptions, Map<String, Map<TopicPartition, OffsetAndMetadata>> offsets) {
+        this.cluster = cluster;
+        this.timespan = timespan;
+        this.groups = groups;
+        this.descriptions = descriptions;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Snapshot without any group, used when the cluster can not be read.
+     */
+    public static ConsumerGroupSnapshot empty(String cluster) {
+        return new ConsumerGroupSnapshot(cluster, System.currentTimeMillis(), Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * Read all consumer groups of the cluster. A group which fails to be
+     * described or whose offsets fail to be read is kept without members or
+     * offsets, as the single group requests did.
+     */
+    public static ConsumerGroupSnapshot load(AdminClient adminClient, String cluster) throws Exception {
+        long timespan = System.currentTimeMillis();
+        List<String> groups = new ArrayList<>();
+        for (ConsumerGroupListing listing : adminClient.listConsumerGroups().all().get()) {
+            groups.add(listing.groupId());
+        }
+        Map<String, ConsumerGroupDescription> descriptions = new HashMap<>();
+        Map<String, Map<TopicPartition, OffsetAndMetadata>> offsets = new HashMap<>();
+        if (groups.isEmpty()) {
+            return new ConsumerGroupSnapshot(cluster, timespan, groups, descriptions, offsets);
+        }
+
+        Map<String, KafkaFuture<ConsumerGroupDescription>> describeFutures = adminClient.describeConsumerGroups(groups).describedGroups();
+        Map<String, KafkaFuture<Map<TopicPartition, OffsetAndMetadata>>> offsetFutures = new HashMap<>();
+        for (String group : groups) {
+            offsetFutures.put(group, adminClient.listConsumerGroupOffsets(group).partitionsToOffsetAndMetadata());
+        }
+        for (String group : groups) {
+            try {
+                descriptions.put(group, describeFutures.get(group).get());
+            } catch (Exception e) {
+                LoggerUtils.print(ConsumerGroupSnapshot.class).error("Describe cluster[" + cluster + "] group[" + group + "] has error, msg is ", e);
+            }
+            try {
+                offsets.put(group, offsetFutures.get(group).get());
+            } catch (Exception e) {
+                LoggerUtils.print(ConsumerGroupSnapshot.class).error("Get cluster[" + cluster + "] group[" + group + "] offsets has error, msg is ", e);
+            }
+        }
+        return new ConsumerGroupSnapshot(cluster, timespan, groups, descriptions, offsets);
+    }
+
+    public String getCluster() {
+        return cluster;
+    }
+
+    public long getTimespan() {
+        return timespan;
+    }
+
+    /**
+     * Get the group ids in the order of listConsumerGroups.
+     */
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Get the committed offsets of the group, or null when they have not been
+     * read.
+     */
+    public Map<TopicPartition, OffsetAndMetadata> getOffsets(String group) {
+        return offsets.get(group);
+    }
+
+    public boolean contains(String group) {
+        return descriptions.containsKey(group) && offsets.containsKey(group);
+    }
+
+    /**
+     * Get the coordinator of the group as host:port, or null.
+     */
+    public String getCoordinator(String group) {
+        ConsumerGroupDescription description = descriptions.get(group);
+        if (description == null || description.coordinator() == null) {
+            return null;
+        }
+        Node node = description.coordinator();
+        return node.host() + ":" + node.port();
+    }
+
+    /**
+     * Get the members of the group with their assigned partitions, then the
+     * committed topics without any owner, in the layout of the old single
+     * group metadata.
+     */
+    public JSONArray getMetadata(String group) {
+        JSONArray consumerGroups = new JSONArray();
+        Set<String> hasOwnerTopics = new HashSet<>();
+        ConsumerGroupDescription description = descriptions.get(group);
+        if (description != null) {
+            for (MemberDescription consumerMetaInfo : description.members()) {
+                JSONObject topicSub = new JSONObject();
+                JSONArray topicSubs = new JSONArray();
+                for (TopicPartition topic : consumerMetaInfo.assignment().topicPartitions()) {
+                    JSONObject object = new JSONObject();
+                    object.put("topic", topic.topic());
+                    object.put("partition", topic.partition());
+                    topicSubs.add(object);
+                    hasOwnerTopics.add(topic.topic());
+                }
+                topicSub.put("owner", consumerMetaInfo.consumerId());
+                topicSub.put("node", consumerMetaInfo.host().replaceAll("/", ""));
+                topicSub.put("topicSub", topicSubs);
+                consumerGroups.add(topicSub);
+            }
+        }
+
+        JSONObject topicSub = new JSONObject();
+        JSONArray topicSubs = new JSONArray();
+        Map<TopicPartition, OffsetAndMetadata> committed = offsets.get(group);
+        if (committed != null) {
+            for (Entry<TopicPartition, OffsetAndMetadata> entry : committed.entrySet()) {
+                if (!hasOwnerTopics.contains(entry.getKey().topic())) {
+                    JSONObject object = new JSONObject();
+                    object.put("topic", entry.getKey().topic());
+                    object.put("partition", entry.getKey().partition());
+                    topicSubs.add(object);
+                }
+            }
+        }
+        topicSub.put("owner", "");
+        topicSub.put("node", "-");
+        topicSub.put("topicSub", topicSubs);
+        consumerGroups.add(topicSub);
+        return consumerGroups;
+    }
+
+}
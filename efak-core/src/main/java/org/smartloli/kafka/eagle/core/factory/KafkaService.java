@@ -20,7 +20,10 @@ package org.smartloli.kafka.eagle.core.factory;
 import com.alibaba.fastjson.JSONObject;
 import org.apache.kafka.common.TopicPartition;
 import org.smartloli.kafka.eagle.common.protocol.*;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerLagsInfo;
+import org.smartloli.kafka.eagle.common.protocol.topic.ClusterOffsetsInfo;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -176,6 +179,18 @@ public interface KafkaService {
      */
     public long getKafkaProducerLogSize(String clusterAlias, String topic, Set<Integer> partitionids);
 
+    /**
+     * Get begin and end offsets of all topic partitions in one snapshot, the
+     * snapshot is not complete when the read failed.
+     */
+    public ClusterOffsetsInfo getClusterOffsets(String clusterAlias);
+
+    /**
+     * Get the earliest offset whose timestamp is greater than or equal to the
+     * given timestamp of each partition, partitions without such offset are absent.
+     */
+    public Map<Integer, Long> getKafkaOffsetsForTimes(String clusterAlias, String topic, List<Integer> partitions, long timestamp);
+
     /**
      * Get kafka sasl topic metadate.
      */
@@ -191,6 +206,19 @@ public interface KafkaService {
      */
     public long getKafkaLag(String clusterAlias, String group, String topic);
 
+    /**
+     * Get committed offsets of the consumer groups and log end offsets of all
+     * partitions of their topics in one snapshot, check isComplete before
+     * the lags are stored.
+     */
+    public ConsumerLagsInfo getKafkaLags(String clusterAlias, Collection<String> groups);
+
+    /**
+     * Get the consumer groups snapshot of the cluster, read again when refresh
+     * is true or it is older than the snapshot ttl.
+     */
+    public ConsumerGroupSnapshot getConsumerGroupSnapshot(String clusterAlias, boolean refresh);
+
     /**
      * Get topic metadata.
      */
@@ -23,17 +23,17 @@ import com.alibaba.fastjson.JSONObject;
 import kafka.zk.KafkaZkClient;
 import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.admin.*;
-import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaFuture;
 import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.config.SaslConfigs;
 import org.apache.kafka.common.config.SslConfigs;
-import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
@@ -43,11 +43,14 @@ import org.smartloli.kafka.eagle.common.constant.JmxConstants.KafkaServer8;
 import org.smartloli.kafka.eagle.common.constant.KSqlParser;
 import org.smartloli.kafka.eagle.common.protocol.*;
 import org.smartloli.kafka.eagle.common.protocol.cache.BrokerCache;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerLagsInfo;
+import org.smartloli.kafka.eagle.common.protocol.topic.ClusterOffsetsInfo;
 import org.smartloli.kafka.eagle.common.protocol.topic.TopicPartitionSchema;
 import org.smartloli.kafka.eagle.common.util.*;
 import org.smartloli.kafka.eagle.common.util.KConstants.BrokerSever;
 import org.smartloli.kafka.eagle.common.util.KConstants.CollectorType;
 import org.smartloli.kafka.eagle.common.util.KConstants.Kafka;
+import org.smartloli.kafka.eagle.common.util.kraft.KafkaClientPool;
 import org.smartloli.kafka.eagle.common.util.kraft.KafkaSchemaFactory;
 import org.smartloli.kafka.eagle.common.util.kraft.KafkaStoragePlugin;
 import org.smartloli.kafka.eagle.core.sql.execute.KafkaConsumerAdapter;
@@ -59,14 +62,12 @@ import scala.collection.Seq;
 
 import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
-import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXServiceURL;
-import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implements KafkaService all method.
@@ -90,6 +91,19 @@ public class KafkaServiceImpl implements KafkaService {
     // private KafkaZKPoolUtils kafkaZKPool = KafkaZKPoolUtils.getInstance();
     private KafkaZKPoolUtils kafkaZKPool = KafkaZKSingletonUtils.create();
 
+    /**
+     * Shared kafka consumer and admin client pool.
+     */
+    private KafkaClientPool kafkaClientPool = KafkaClientPool.getInstance();
+
+    /**
+     * Consumer groups snapshot of each cluster, shared by all service instances.
+     */
+    private static final Map<String, ConsumerGroupSnapshot> CONSUMER_GROUP_SNAPSHOTS = new ConcurrentHashMap<>();
+    private static final Map<String, Object> CONSUMER_GROUP_LOCKS = new ConcurrentHashMap<>();
+    private static final Map<String, Long> CONSUMER_GROUP_FAILURES = new ConcurrentHashMap<>();
+    private static final long CONSUMER_GROUP_SNAPSHOT_TTL_MS = SystemConfigUtils.getLongProperty("efak.consumer.group.snapshot.ttl.ms", 30 * 1000L);
+
     /**
      * Zookeeper service interface.
      */
@@ -646,45 +660,16 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x, 1.x, 2.x consumer metadata.
      */
     public String getKafkaConsumer(String clusterAlias) {
-        Properties prop = new Properties();
         JSONArray consumerGroups = new JSONArray();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
-            ListConsumerGroupsResult cgrs = adminClient.listConsumerGroups();
-            java.util.Iterator<ConsumerGroupListing> itor = cgrs.all().get().iterator();
-            while (itor.hasNext()) {
-                ConsumerGroupListing gs = itor.next();
+        ConsumerGroupSnapshot snapshot = getConsumerGroupSnapshot(clusterAlias, false);
+        for (String groupId : snapshot.getGroups()) {
+            if (!groupId.contains("efak")) {
                 JSONObject consumerGroup = new JSONObject();
-                String groupId = gs.groupId();
-                DescribeConsumerGroupsResult descConsumerGroup = adminClient.describeConsumerGroups(Arrays.asList(groupId));
-                if (!groupId.contains("efak")) {
-                    consumerGroup.put("group", groupId);
-                    try {
-                        Node node = descConsumerGroup.all().get().get(groupId).coordinator();
-                        consumerGroup.put("node", node.host() + ":" + node.port());
-                    } catch (Exception e) {
-                        LOG.error("Get coordinator node has error, msg is " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                    consumerGroup.put("meta", getKafkaMetadata(parseBrokerServer(clusterAlias), groupId, clusterAlias));
-                    consumerGroups.add(consumerGroup);
-                }
+                consumerGroup.put("group", groupId);
+                consumerGroup.put("node", snapshot.getCoordinator(groupId));
+                consumerGroup.put("meta", snapshot.getMetadata(groupId));
+                consumerGroups.add(consumerGroup);
             }
-        } catch (Exception e) {
-            LOG.error("Get kafka consumer has error,msg is " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return consumerGroups.toString();
     }
@@ -694,17 +679,7 @@ public class KafkaServiceImpl implements KafkaService {
      */
     @Override
     public String getDistributeKafkaConsumer(String clusterAlias) {
-        Properties prop = new Properties();
         JSONArray consumerGroups = new JSONArray();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-
         List<String> hosts = WorkUtils.getWorkNodes();
         int port = SystemConfigUtils.getIntProperty("efak.worknode.port");
         List<WorkNodeStrategy> nodes = new ArrayList<>();
@@ -720,61 +695,42 @@ public class KafkaServiceImpl implements KafkaService {
             }
         }
 
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
-            ListConsumerGroupsResult cgrs = adminClient.listConsumerGroups();
-            java.util.Iterator<ConsumerGroupListing> itor = cgrs.all().get().iterator();
-            int nodeIndex = 0;
-            String[] cgroups = SystemConfigUtils.getPropertyArray("efak.worknode.disable.cgroup", ",");
-            while (itor.hasNext()) {
-                ConsumerGroupListing gs = itor.next();
-                JSONObject consumerGroup = new JSONObject();
-                String groupId = gs.groupId();
-                DescribeConsumerGroupsResult descConsumerGroup = adminClient.describeConsumerGroups(Arrays.asList(groupId));
-                boolean status = true;
-                if (cgroups != null) {
-                    for (String cgroup : cgroups) {
-                        if (groupId != null) {
-                            if (groupId.equals(cgroup)) {
-                                status = false;
-                                break;
-                            }
+        ConsumerGroupSnapshot snapshot = getConsumerGroupSnapshot(clusterAlias, false);
+        int nodeIndex = 0;
+        String[] cgroups = SystemConfigUtils.getPropertyArray("efak.worknode.disable.cgroup", ",");
+        for (String groupId : snapshot.getGroups()) {
+            JSONObject consumerGroup = new JSONObject();
+            boolean status = true;
+            if (cgroups != null) {
+                for (String cgroup : cgroups) {
+                    if (groupId != null) {
+                        if (groupId.equals(cgroup)) {
+                            status = false;
+                            break;
                         }
                     }
                 }
-                if (!groupId.contains("efak") && status) {
-                    consumerGroup.put("group", groupId);
-                    try {
-                        Node node = descConsumerGroup.all().get().get(groupId).coordinator();
-                        consumerGroup.put("node", node.host() + ":" + node.port());
-                    } catch (Exception e) {
-                        LOG.error("Get coordinator node has error, msg is " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                    try {
-                        if (nodes.size() > 0) {
-                            consumerGroup.put("host", nodes.get(nodeIndex).getHost());
-                            nodeIndex++;
-                            if (nodeIndex == nodes.size() - 1) {
-                                // reset index
-                                nodeIndex = 0;
-                            }
+            }
+            if (!groupId.contains("efak") && status) {
+                consumerGroup.put("group", groupId);
+                consumerGroup.put("node", snapshot.getCoordinator(groupId));
+                try {
+                    if (nodes.size() > 0) {
+                        consumerGroup.put("host", nodes.get(nodeIndex).getHost());
+                        nodeIndex++;
+                        if (nodeIndex == nodes.size() - 1) {
+                            // reset index
+                            nodeIndex = 0;
                         }
-
-                    } catch (Exception e) {
-                        LOG.error("Get shard node host has error, msg is ", e);
-                        e.printStackTrace();
                     }
-                    consumerGroup.put("meta", getKafkaMetadata(parseBrokerServer(clusterAlias), groupId, clusterAlias));
-                    consumerGroups.add(consumerGroup);
+
+                } catch (Exception e) {
+                    LOG.error("Get shard node host has error, msg is ", e);
+                    e.printStackTrace();
                 }
+                consumerGroup.put("meta", snapshot.getMetadata(groupId));
+                consumerGroups.add(consumerGroup);
             }
-        } catch (Exception e) {
-            LOG.error("Get kafka consumer has error,msg is " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return consumerGroups.toString();
     }
@@ -783,84 +739,23 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x consumer group & topic information used for page.
      */
     public String getKafkaConsumer(String clusterAlias, DisplayInfo page) {
-        Properties prop = new Properties();
         JSONArray consumerGroups = new JSONArray();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
-            ListConsumerGroupsResult cgrs = adminClient.listConsumerGroups();
-            java.util.Iterator<ConsumerGroupListing> itor = cgrs.all().get().iterator();
-            if (page.getSearch().length() > 0) {
-                int offset = 0;
-                boolean flag = itor.hasNext();
-                while (flag) {
-                    ConsumerGroupListing gs = itor.next();
-                    JSONObject consumerGroup = new JSONObject();
-                    String groupId = gs.groupId();
-                    DescribeConsumerGroupsResult descConsumerGroup = adminClient.describeConsumerGroups(Arrays.asList(groupId));
-                    if (!groupId.contains("efak") && groupId.contains(page.getSearch())) {
-                        if (offset < (page.getiDisplayLength() + page.getiDisplayStart()) && offset >= page.getiDisplayStart()) {
-                            consumerGroup.put("group", groupId);
-                            try {
-                                Node node = descConsumerGroup.all().get().get(groupId).coordinator();
-                                consumerGroup.put("node", node.host() + ":" + node.port());
-                            } catch (Exception e) {
-                                LOG.error("Get coordinator node has error, msg is " + e.getMessage());
-                                e.printStackTrace();
-                            }
-                            consumerGroup.put("meta", getKafkaMetadata(parseBrokerServer(clusterAlias), groupId, clusterAlias));
-                            consumerGroups.add(consumerGroup);
-                        }
-                        offset++;
-                    }
-                    flag = itor.hasNext();
-                    if (offset >= page.getiDisplayLength() + page.getiDisplayStart()) {
-                        flag = false;
-                    }
-                }
-            } else {
-                int offset = 0;
-                boolean flag = itor.hasNext();
-                while (flag) {
-                    ConsumerGroupListing gs = itor.next();
+        ConsumerGroupSnapshot snapshot = getConsumerGroupSnapshot(clusterAlias, false);
+        int offset = 0;
+        for (String groupId : snapshot.getGroups()) {
+            if (offset >= page.getiDisplayLength() + page.getiDisplayStart()) {
+                break;
+            }
+            if (!groupId.contains("efak") && (page.getSearch().length() == 0 || groupId.contains(page.getSearch()))) {
+                if (offset >= page.getiDisplayStart()) {
                     JSONObject consumerGroup = new JSONObject();
-                    String groupId = gs.groupId();
-                    DescribeConsumerGroupsResult descConsumerGroup = adminClient.describeConsumerGroups(Arrays.asList(groupId));
-                    if (!groupId.contains("efak")) {
-                        if (offset < (page.getiDisplayLength() + page.getiDisplayStart()) && offset >= page.getiDisplayStart()) {
-                            consumerGroup.put("group", groupId);
-                            try {
-                                Node node = descConsumerGroup.all().get().get(groupId).coordinator();
-                                consumerGroup.put("node", node.host() + ":" + node.port());
-                            } catch (Exception e) {
-                                LOG.error("Get coordinator node has error, msg is " + e.getMessage());
-                                e.printStackTrace();
-                            }
-                            consumerGroup.put("meta", getKafkaMetadata(parseBrokerServer(clusterAlias), groupId, clusterAlias));
-                            consumerGroups.add(consumerGroup);
-                        }
-                        offset++;
-                    }
-                    flag = itor.hasNext();
-                    if (offset >= page.getiDisplayLength() + page.getiDisplayStart()) {
-                        flag = false;
-                    }
+                    consumerGroup.put("group", groupId);
+                    consumerGroup.put("node", snapshot.getCoordinator(groupId));
+                    consumerGroup.put("meta", snapshot.getMetadata(groupId));
+                    consumerGroups.add(consumerGroup);
                 }
+                offset++;
             }
-        } catch (Exception e) {
-            LOG.error("Get kafka consumer has error,msg is " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return consumerGroups.toString();
     }
@@ -869,54 +764,156 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka group consumer all topics lags.
      */
     public long getKafkaLag(String clusterAlias, String group, String ketopic) {
-        long lag = 0L;
+        return getKafkaLags(clusterAlias, Collections.singleton(group)).getLag(group, ketopic);
+    }
 
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
+    /**
+     * Get committed offsets of the consumer groups and log end offsets of all
+     * partitions of their topics in one snapshot. The committed offsets are
+     * taken from the consumer groups snapshot within its ttl, only the groups
+     * missing from it are requested, and the end offsets of the union of their partitions
+     * are fetched after one metadata request with one pooled consumer call. The snapshot is not complete
+     * when the end offsets could not be read, nor for a group whose committed
+     * offsets could not be read.
+     */
+    public ConsumerLagsInfo getKafkaLags(String clusterAlias, Collection<String> groups) {
+        ConsumerLagsInfo lags = new ConsumerLagsInfo();
+        lags.setCluster(clusterAlias);
+        lags.setTimespan(CalendarUtils.getTimeSpan());
+        ConsumerGroupSnapshot snapshot = getConsumerGroupSnapshot(clusterAlias, false);
+        // a previous snapshot kept after a failed read is too old for the lags
+        boolean fresh = System.currentTimeMillis() - snapshot.getTimespan() < CONSUMER_GROUP_SNAPSHOT_TTL_MS;
+        java.util.Map<String, java.util.Map<TopicPartition, OffsetAndMetadata>> committed = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String group : groups) {
+            java.util.Map<TopicPartition, OffsetAndMetadata> offsets = fresh ? snapshot.getOffsets(group) : null;
+            if (offsets != null) {
+                committed.put(group, offsets);
+            } else {
+                missing.add(group);
+            }
+        }
+        java.util.Map<String, KafkaFuture<java.util.Map<TopicPartition, OffsetAndMetadata>>> futures = new HashMap<>();
+        if (!missing.isEmpty()) {
+            try {
+                AdminClient adminClient = kafkaClientPool.getAdminClient(clusterAlias);
+                for (String group : missing) {
+                    futures.put(group, adminClient.listConsumerGroupOffsets(group).partitionsToOffsetAndMetadata());
+                }
+            } catch (Exception e) {
+                LOG.error("Get cluster[" + clusterAlias + "] consumer groups offsets has error, msg is " + e.getMessage());
+                e.printStackTrace();
+                for (String group : missing) {
+                    lags.addFailedGroup(group);
+                }
+            }
+        }
+        for (Entry<String, KafkaFuture<java.util.Map<TopicPartition, OffsetAndMetadata>>> future : futures.entrySet()) {
+            try {
+                committed.put(future.getKey(), future.getValue().get());
+            } catch (Exception e) {
+                lags.addFailedGroup(future.getKey());
+                LOG.error("Get cluster[" + clusterAlias + "] group[" + future.getKey() + "] offsets has error, msg is " + e.getMessage());
+            }
+        }
 
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
+        Set<TopicPartition> tps = new HashSet<>();
+        Set<String> topics = new HashSet<>();
+        for (Entry<String, java.util.Map<TopicPartition, OffsetAndMetadata>> offsets : committed.entrySet()) {
+            for (Entry<TopicPartition, OffsetAndMetadata> entry : offsets.getValue().entrySet()) {
+                if (entry.getValue() != null) {
+                    lags.addOffset(offsets.getKey(), entry.getKey(), entry.getValue().offset());
+                    tps.add(entry.getKey());
+                    topics.add(entry.getKey().topic());
+                }
+            }
         }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
+        if (topics.isEmpty()) {
+            lags.setComplete(true);
+            return lags;
         }
-        AdminClient adminClient = null;
+
         try {
-            adminClient = AdminClient.create(prop);
-            ListConsumerGroupOffsetsResult offsets = adminClient.listConsumerGroupOffsets(group);
-            for (Entry<TopicPartition, OffsetAndMetadata> entry : offsets.partitionsToOffsetAndMetadata().get().entrySet()) {
-                if (ketopic.equals(entry.getKey().topic())) {
-                    long logSize = getKafkaLogSize(clusterAlias, entry.getKey().topic(), entry.getKey().partition());
-                    lag += logSize - entry.getValue().offset();
+            java.util.Map<TopicPartition, Long> endLogSize = kafkaClientPool.withConsumer(clusterAlias, consumer -> {
+                // one metadata request for every topic instead of one per topic
+                java.util.Map<String, List<PartitionInfo>> metadata = consumer.listTopics();
+                for (String topic : topics) {
+                    List<PartitionInfo> partitionInfos = metadata.get(topic);
+                    if (partitionInfos != null) {
+                        for (PartitionInfo partitionInfo : partitionInfos) {
+                            tps.add(new TopicPartition(partitionInfo.topic(), partitionInfo.partition()));
+                        }
+                    }
                 }
+                return consumer.endOffsets(tps);
+            });
+            for (Entry<TopicPartition, Long> entry : endLogSize.entrySet()) {
+                lags.addLogSize(entry.getKey(), entry.getValue());
             }
+            lags.setComplete(true);
         } catch (Exception e) {
-            LOG.error("Get cluster[" + clusterAlias + "] group[" + group + "] topic[" + ketopic + "] consumer lag has error, msg is " + e.getMessage());
+            LOG.error("Get cluster[" + clusterAlias + "] consumer groups logsize has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
-        return lag;
+        return lags;
     }
 
     /**
-     * Get kafka 0.10.x consumer metadata.
+     * Get the consumer groups snapshot of the cluster, it is read again when
+     * refresh is true or it is older than the snapshot ttl. A failed read is
+     * not cached, the previous snapshot is returned until a read succeeds.
      */
-    private JSONArray getKafkaMetadata(String bootstrapServers, String group, String clusterAlias) {
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
+    public ConsumerGroupSnapshot getConsumerGroupSnapshot(String clusterAlias, boolean refresh) {
+        ConsumerGroupSnapshot snapshot = CONSUMER_GROUP_SNAPSHOTS.get(clusterAlias);
+        if (!refresh && snapshot != null && System.currentTimeMillis() - snapshot.getTimespan() < CONSUMER_GROUP_SNAPSHOT_TTL_MS) {
+            return snapshot;
+        }
+        long requested = System.currentTimeMillis();
+        synchronized (CONSUMER_GROUP_LOCKS.computeIfAbsent(clusterAlias, k -> new Object())) {
+            snapshot = CONSUMER_GROUP_SNAPSHOTS.get(clusterAlias);
+            // another thread has read it while this one was waiting
+            if (snapshot != null && snapshot.getTimespan() >= requested) {
+                return snapshot;
+            }
+            // a load which failed while this one was waiting is not retried at once
+            Long failed = CONSUMER_GROUP_FAILURES.get(clusterAlias);
+            if (failed != null && failed >= requested) {
+                return snapshot == null ? ConsumerGroupSnapshot.empty(clusterAlias) : snapshot;
+            }
+            try {
+                ConsumerGroupSnapshot loaded = ConsumerGroupSnapshot.load(kafkaClientPool.getAdminClient(clusterAlias), clusterAlias);
+                CONSUMER_GROUP_SNAPSHOTS.put(clusterAlias, loaded);
+                CONSUMER_GROUP_FAILURES.remove(clusterAlias);
+                return loaded;
+            } catch (Exception e) {
+                LOG.error("Get cluster[" + clusterAlias + "] consumer groups snapshot has error, msg is " + e.getMessage());
+                e.printStackTrace();
+                CONSUMER_GROUP_FAILURES.put(clusterAlias, System.currentTimeMillis());
+                // keep serving the previous snapshot, the next call reads it again
+                return snapshot == null ? ConsumerGroupSnapshot.empty(clusterAlias) : snapshot;
+            }
         }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
+    }
+
+    /**
+     * Get kafka 0.10.x consumer metadata from the consumer groups snapshot.
+     */
+    private JSONArray getKafkaMetadata(String bootstrapServers, String group, String clusterAlias) {
+        ConsumerGroupSnapshot snapshot = getConsumerGroupSnapshot(clusterAlias, false);
+        if (snapshot.contains(group)) {
+            return snapshot.getMetadata(group);
         }
+        return describeKafkaMetadata(group, clusterAlias);
+    }
 
+    /**
+     * Describe one consumer group missing from the snapshot, such as a group
+     * created since it was read, with the pooled admin client.
+     */
+    private JSONArray describeKafkaMetadata(String group, String clusterAlias) {
         JSONArray consumerGroups = new JSONArray();
-        AdminClient adminClient = null;
         try {
-            adminClient = AdminClient.create(prop);
+            AdminClient adminClient = kafkaClientPool.getAdminClient(clusterAlias);
             DescribeConsumerGroupsResult descConsumerGroup = adminClient.describeConsumerGroups(Arrays.asList(group));
             Collection<MemberDescription> consumerMetaInfos = descConsumerGroup.describedGroups().get(group).get().members();
             Set<String> hasOwnerTopics = new HashSet<>();
@@ -956,8 +953,6 @@ public class KafkaServiceImpl implements KafkaService {
         } catch (Exception e) {
             LOG.error("Get kafka consumer metadata has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return consumerGroups;
     }
@@ -1012,33 +1007,11 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x, 1.x, 2.x, 3.x consumer groups.
      */
     public int getKafkaConsumerGroups(String clusterAlias) {
-        Properties prop = new Properties();
         int counter = 0;
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
-            ListConsumerGroupsResult consumerGroups = adminClient.listConsumerGroups();
-            java.util.Iterator<ConsumerGroupListing> groups = consumerGroups.all().get().iterator();
-            while (groups.hasNext()) {
-                String groupId = groups.next().groupId();
-                if (!groupId.contains("efak")) {
-                    counter++;
-                }
+        for (String groupId : getConsumerGroupSnapshot(clusterAlias, false).getGroups()) {
+            if (!groupId.contains("efak")) {
+                counter++;
             }
-        } catch (Exception e) {
-            LOG.info("Get kafka consumer group has error, msg is " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return counter;
     }
@@ -1070,19 +1043,9 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x, 1.x, 2.x offset from topic.
      */
     public String getKafkaOffset(String clusterAlias) {
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
         JSONArray targets = new JSONArray();
-        AdminClient adminClient = null;
         try {
-            adminClient = AdminClient.create(prop);
+            AdminClient adminClient = kafkaClientPool.getAdminClient(clusterAlias);
             ListConsumerGroupsResult consumerGroups = adminClient.listConsumerGroups();
             java.util.Iterator<ConsumerGroupListing> groups = consumerGroups.all().get().iterator();
             while (groups.hasNext()) {
@@ -1103,8 +1066,6 @@ public class KafkaServiceImpl implements KafkaService {
         } catch (Exception e) {
             LOG.error("Get consumer offset has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return targets.toString();
     }
@@ -1114,18 +1075,8 @@ public class KafkaServiceImpl implements KafkaService {
      */
     public Map<Integer, Long> getKafkaOffset(String clusterAlias, String group, String topic, Set<Integer> partitionids) {
         Map<Integer, Long> partitionOffset = new HashMap<>();
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-        AdminClient adminClient = null;
         try {
-            adminClient = AdminClient.create(prop);
+            AdminClient adminClient = kafkaClientPool.getAdminClient(clusterAlias);
             List<TopicPartition> tps = new ArrayList<>();
             for (int partitionid : partitionids) {
                 TopicPartition tp = new TopicPartition(topic, partitionid);
@@ -1144,8 +1095,6 @@ public class KafkaServiceImpl implements KafkaService {
         } catch (Exception e) {
             LOG.error("Get consumer offset has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return partitionOffset;
     }
@@ -1162,30 +1111,13 @@ public class KafkaServiceImpl implements KafkaService {
      */
     public long getKafkaLogSize(String clusterAlias, String topic, int partitionid) {
         long histyLogSize = 0L;
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, getKafkaBrokerServer(clusterAlias));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(props, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(props, clusterAlias);
-        }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
         TopicPartition tp = new TopicPartition(topic, partitionid);
-        consumer.assign(Collections.singleton(tp));
-        java.util.Map<TopicPartition, Long> logsize = consumer.endOffsets(Collections.singleton(tp));
         try {
+            java.util.Map<TopicPartition, Long> logsize = kafkaClientPool.withConsumer(clusterAlias, consumer -> consumer.endOffsets(Collections.singleton(tp)));
             histyLogSize = logsize.get(tp).longValue();
         } catch (Exception e) {
             LOG.error("Get history topic logsize has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (consumer != null) {
-                consumer.close();
-            }
         }
         return histyLogSize;
     }
@@ -1194,28 +1126,18 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x topic history logsize.
      */
     public Map<TopicPartition, Long> getKafkaLogSize(String clusterAlias, String topic, Set<Integer> partitionids) {
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, getKafkaBrokerServer(clusterAlias));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(props, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(props, clusterAlias);
-        }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
         Set<TopicPartition> tps = new HashSet<>();
         for (int partitionid : partitionids) {
             TopicPartition tp = new TopicPartition(topic, partitionid);
             tps.add(tp);
         }
 
-        consumer.assign(tps);
-        java.util.Map<TopicPartition, Long> endLogSize = consumer.endOffsets(tps);
-        if (consumer != null) {
-            consumer.close();
+        java.util.Map<TopicPartition, Long> endLogSize = new HashMap<>();
+        try {
+            endLogSize = kafkaClientPool.withConsumer(clusterAlias, consumer -> consumer.endOffsets(tps));
+        } catch (Exception e) {
+            LOG.error("Get history topic logsize by partition list has error, msg is " + e.getMessage());
+            e.printStackTrace();
         }
         return endLogSize;
     }
@@ -1225,31 +1147,16 @@ public class KafkaServiceImpl implements KafkaService {
      */
     public long getKafkaRealLogSize(String clusterAlias, String topic, int partitionid) {
         long realLogSize = 0L;
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, getKafkaBrokerServer(clusterAlias));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(props, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(props, clusterAlias);
-        }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
         TopicPartition tp = new TopicPartition(topic, partitionid);
-        consumer.assign(Collections.singleton(tp));
-        java.util.Map<TopicPartition, Long> endLogSize = consumer.endOffsets(Collections.singleton(tp));
-        java.util.Map<TopicPartition, Long> startLogSize = consumer.beginningOffsets(Collections.singleton(tp));
         try {
-            realLogSize = endLogSize.get(tp).longValue() - startLogSize.get(tp).longValue();
+            realLogSize = kafkaClientPool.withConsumer(clusterAlias, consumer -> {
+                java.util.Map<TopicPartition, Long> endLogSize = consumer.endOffsets(Collections.singleton(tp));
+                java.util.Map<TopicPartition, Long> startLogSize = consumer.beginningOffsets(Collections.singleton(tp));
+                return endLogSize.get(tp).longValue() - startLogSize.get(tp).longValue();
+            });
         } catch (Exception e) {
             LOG.error("Get real topic logsize by partition list has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (consumer != null) {
-                consumer.close();
-            }
         }
         return realLogSize;
     }
@@ -1259,43 +1166,28 @@ public class KafkaServiceImpl implements KafkaService {
      */
     public long getKafkaRealLogSize(String clusterAlias, String topic, Set<Integer> partitionids) {
         long realLogSize = 0L;
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, getKafkaBrokerServer(clusterAlias));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(props, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(props, clusterAlias);
-        }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
         Set<TopicPartition> tps = new HashSet<>();
         for (int partitionid : partitionids) {
             TopicPartition tp = new TopicPartition(topic, partitionid);
             tps.add(tp);
         }
-        consumer.assign(tps);
-        java.util.Map<TopicPartition, Long> endLogSize = consumer.endOffsets(tps);
-        java.util.Map<TopicPartition, Long> startLogSize = consumer.beginningOffsets(tps);
         try {
-            long endSumLogSize = 0L;
-            long startSumLogSize = 0L;
-            for (Entry<TopicPartition, Long> entry : endLogSize.entrySet()) {
-                endSumLogSize += entry.getValue();
-            }
-            for (Entry<TopicPartition, Long> entry : startLogSize.entrySet()) {
-                startSumLogSize += entry.getValue();
-            }
-            realLogSize = endSumLogSize - startSumLogSize;
+            realLogSize = kafkaClientPool.withConsumer(clusterAlias, consumer -> {
+                java.util.Map<TopicPartition, Long> endLogSize = consumer.endOffsets(tps);
+                java.util.Map<TopicPartition, Long> startLogSize = consumer.beginningOffsets(tps);
+                long endSumLogSize = 0L;
+                long startSumLogSize = 0L;
+                for (Entry<TopicPartition, Long> entry : endLogSize.entrySet()) {
+                    endSumLogSize += entry.getValue();
+                }
+                for (Entry<TopicPartition, Long> entry : startLogSize.entrySet()) {
+                    startSumLogSize += entry.getValue();
+                }
+                return endSumLogSize - startSumLogSize;
+            });
         } catch (Exception e) {
             LOG.error("Get real topic logsize has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (consumer != null) {
-                consumer.close();
-            }
         }
         return realLogSize;
     }
@@ -1305,66 +1197,100 @@ public class KafkaServiceImpl implements KafkaService {
      */
     public long getKafkaProducerLogSize(String clusterAlias, String topic, Set<Integer> partitionids) {
         long producerLogSize = 0L;
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, getKafkaBrokerServer(clusterAlias));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(props, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(props, clusterAlias);
-        }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
         Set<TopicPartition> tps = new HashSet<>();
         for (int partitionid : partitionids) {
             TopicPartition tp = new TopicPartition(topic, partitionid);
             tps.add(tp);
         }
-        consumer.assign(tps);
-        java.util.Map<TopicPartition, Long> endLogSize = consumer.endOffsets(tps);
         try {
+            java.util.Map<TopicPartition, Long> endLogSize = kafkaClientPool.withConsumer(clusterAlias, consumer -> consumer.endOffsets(tps));
             for (Entry<TopicPartition, Long> entry : endLogSize.entrySet()) {
                 producerLogSize += entry.getValue();
             }
         } catch (Exception e) {
             LOG.error("Get producer topic logsize has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (consumer != null) {
-                consumer.close();
-            }
         }
         return producerLogSize;
     }
 
+    /**
+     * Get begin and end offsets of all topic partitions in one snapshot. Topic
+     * metadata comes from one metadata request and the consumer fans the offsets
+     * lookup out as one ListOffsets request per leader broker.
+     */
+    public ClusterOffsetsInfo getClusterOffsets(String clusterAlias) {
+        ClusterOffsetsInfo snapshot = new ClusterOffsetsInfo();
+        snapshot.setCluster(clusterAlias);
+        snapshot.setTimespan(CalendarUtils.getTimeSpan());
+        try {
+            kafkaClientPool.withConsumer(clusterAlias, consumer -> {
+                Set<TopicPartition> tps = new HashSet<>();
+                for (Entry<String, List<PartitionInfo>> entry : consumer.listTopics().entrySet()) {
+                    for (PartitionInfo partitionInfo : entry.getValue()) {
+                        tps.add(new TopicPartition(partitionInfo.topic(), partitionInfo.partition()));
+                    }
+                }
+                java.util.Map<TopicPartition, Long> startLogSize = consumer.beginningOffsets(tps);
+                java.util.Map<TopicPartition, Long> endLogSize = consumer.endOffsets(tps);
+                for (Entry<TopicPartition, Long> entry : endLogSize.entrySet()) {
+                    Long begin = startLogSize.get(entry.getKey());
+                    snapshot.addOffsets(entry.getKey(), begin == null ? 0L : begin, entry.getValue());
+                }
+                return null;
+            });
+            snapshot.setComplete(true);
+        } catch (Exception e) {
+            LOG.error("Get cluster[" + clusterAlias + "] offsets snapshot has error, msg is " + e.getMessage());
+            e.printStackTrace();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Get the earliest offset whose timestamp is greater than or equal to the
+     * given timestamp of each partition, partitions without such offset are absent.
+     */
+    public java.util.Map<Integer, Long> getKafkaOffsetsForTimes(String clusterAlias, String topic, List<Integer> partitions, long timestamp) {
+        java.util.Map<Integer, Long> offsets = new HashMap<>();
+        java.util.Map<TopicPartition, Long> timestamps = new HashMap<>();
+        for (int partition : partitions) {
+            timestamps.put(new TopicPartition(topic, partition), timestamp);
+        }
+        try {
+            java.util.Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes = kafkaClientPool.withConsumer(clusterAlias, consumer -> consumer.offsetsForTimes(timestamps));
+            for (Entry<TopicPartition, OffsetAndTimestamp> entry : offsetsForTimes.entrySet()) {
+                if (entry.getValue() != null) {
+                    offsets.put(entry.getKey().partition(), entry.getValue().offset());
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("Get kafka topic[" + topic + "] offsets for times has error, msg is " + e.getMessage());
+            e.printStackTrace();
+        }
+        return offsets;
+    }
+
     /**
      * Get kafka version.
      */
     public String getKafkaVersion(String host, int port, String ids, String clusterAlias) {
-        JMXConnector connector = null;
+        JMXServiceURL jmxSeriverUrl = null;
         String version = "-";
         String JMX = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri");
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
+            jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
+            MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
             if (CollectorType.KAFKA.equals(SystemConfigUtils.getProperty(clusterAlias + ".efak.offset.storage"))) {
                 version = mbeanConnection.getAttribute(new ObjectName(String.format(BrokerServer.BROKER_VERSION.getValue(), ids)), BrokerServer.BROKER_VERSION_VALUE.getValue()).toString();
             } else {
                 version = mbeanConnection.getAttribute(new ObjectName(KafkaServer8.VERSION.getValue()), KafkaServer8.VALUE.getValue()).toString();
             }
         } catch (Exception ex) {
-            LOG.error("Get kafka version from jmx has error, msg is " + ex.getMessage());
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (IOException e) {
-                    LOG.error("Close jmx connector has error, msg is " + e.getMessage());
-                }
+            if (JMXFactoryUtils.isConnectionError(ex)) {
+                JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
             }
+            LOG.error("Get kafka version from jmx has error, msg is " + ex.getMessage());
         }
         return version;
     }
@@ -1474,13 +1400,12 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka os memory.
      */
     public long getOSMemory(String clusterAlias, String host, int port, String property) {
-        JMXConnector connector = null;
+        JMXServiceURL jmxSeriverUrl = null;
         long memory = 0L;
         String JMX = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri");
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
+            jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
+            MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
             MemoryMXBean memBean = ManagementFactory.newPlatformMXBeanProxy(mbeanConnection, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class);
             long max = memBean.getHeapMemoryUsage().getMax();
             long used = memBean.getHeapMemoryUsage().getUsed();
@@ -1490,15 +1415,10 @@ public class KafkaServiceImpl implements KafkaService {
                 memory = max - used;
             }
         } catch (Exception ex) {
-            LOG.error("Get kafka os memory from jmx has error, msg is " + ex.getMessage());
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (IOException e) {
-                    LOG.error("Close kafka os memory jmx connector has error, msg is " + e.getMessage());
-                }
+            if (JMXFactoryUtils.isConnectionError(ex)) {
+                JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
             }
+            LOG.error("Get kafka os memory from jmx has error, msg is " + ex.getMessage());
         }
         return memory;
     }
@@ -1507,13 +1427,12 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka cpu.
      */
     public String getUsedCpu(String clusterAlias, String host, int port) {
-        JMXConnector connector = null;
+        JMXServiceURL jmxSeriverUrl = null;
         String JMX = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri");
         String cpu = "<span class='badge bg-light-danger text-danger'>NULL</span>";
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
+            jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
+            MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
             String value = mbeanConnection.getAttribute(new ObjectName(BrokerServer.JMX_PERFORMANCE_TYPE.getValue()), BrokerServer.PROCESS_CPU_LOAD.getValue()).toString();
             double cpuValue = Double.parseDouble(value);
             String percent = StrUtils.numberic((cpuValue * 100.0) + "") + "%";
@@ -1525,16 +1444,11 @@ public class KafkaServiceImpl implements KafkaService {
                 cpu = "<span class='badge bg-light-danger text-danger'>" + percent + "</span>";
             }
         } catch (Exception e) {
+            if (JMXFactoryUtils.isConnectionError(e)) {
+                JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
+            }
             e.printStackTrace();
             LOG.error("Get kafka broker used cpu has error, msg is ", e);
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (IOException e) {
-                    LOG.error("Close kafka broker cpu jmx connector has error, msg is " + e.getMessage());
-                }
-            }
         }
         return cpu;
     }
@@ -1543,27 +1457,21 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka cpu value.
      */
     public double getUsedCpuValue(String clusterAlias, String host, int port) {
-        JMXConnector connector = null;
+        JMXServiceURL jmxSeriverUrl = null;
         String JMX = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri");
         double cpu = 0.00;
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
+            jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
+            MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
             String value = mbeanConnection.getAttribute(new ObjectName(BrokerServer.JMX_PERFORMANCE_TYPE.getValue()), BrokerServer.PROCESS_CPU_LOAD.getValue()).toString();
             double cpuValue = Double.parseDouble(value);
             cpu = StrUtils.numberic(String.valueOf(cpuValue * 100.0));
         } catch (Exception e) {
+            if (JMXFactoryUtils.isConnectionError(e)) {
+                JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
+            }
             e.printStackTrace();
             LOG.error("Get kafka broker used cpu value has error, msg is ", e);
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (IOException e) {
-                    LOG.error("Close kafka used cpu value jmx connector has error, msg is " + e.getMessage());
-                }
-            }
         }
         return cpu;
     }
@@ -1572,13 +1480,12 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka used memory.
      */
     public String getUsedMemory(String clusterAlias, String host, int port) {
-        JMXConnector connector = null;
+        JMXServiceURL jmxSeriverUrl = null;
         String JMX = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri");
         String memory = "<span class='badge bg-light-danger text-danger'>NULL</span>";
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
+            jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
+            MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
             MemoryMXBean memBean = ManagementFactory.newPlatformMXBeanProxy(mbeanConnection, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class);
             long used = memBean.getHeapMemoryUsage().getUsed();
             long max = memBean.getHeapMemoryUsage().getMax();
@@ -1591,16 +1498,11 @@ public class KafkaServiceImpl implements KafkaService {
                 memory = "<span class='badge badge-danger text-danger'>" + percent + "</span>";
             }
         } catch (Exception e) {
+            if (JMXFactoryUtils.isConnectionError(e)) {
+                JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
+            }
             e.printStackTrace();
             LOG.error("Get kafka broker used memroy has error, msg is ", e);
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (IOException e) {
-                    LOG.error("Close kafka used memory jmx connector has error, msg is " + e.getMessage());
-                }
-            }
         }
         return memory;
     }
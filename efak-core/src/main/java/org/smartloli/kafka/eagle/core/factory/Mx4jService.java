@@ -20,8 +20,10 @@
  */
 package org.smartloli.kafka.eagle.core.factory;
 
+import org.smartloli.kafka.eagle.common.constant.JmxConstants.BrokerServer;
 import org.smartloli.kafka.eagle.common.protocol.MBeanInfo;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -91,4 +93,22 @@ public interface Mx4jService {
     public MBeanInfo replicationBytesOutPerSec(String clusterAlias, String uri);
 
     public MBeanInfo replicationBytesOutPerSec(String clusterAlias, String uri, String topic);
+
+    /**
+     * Get several broker meter mbeans in one sweep over a single jmx connection.
+     * Topic is null for broker-wide metrics, a wildcard such as '*' sums all
+     * matched topics.
+     */
+    public Map<BrokerServer, MBeanInfo> metrics(String clusterAlias, String uri, List<BrokerServer> mbeans, String topic);
+
+    /** Get one broker meter mbean of every topic matched by the topic pattern. */
+    public Map<String, MBeanInfo> topicMetrics(String clusterAlias, String uri, BrokerServer mbean, String topic);
+
+    /**
+     * Get several broker meter mbeans of every topic over a single jmx
+     * connection. The rates of a topic are kept by mbean and ordered as
+     * fifteen minute, five minute, mean and one minute rate, return null when
+     * the broker can not be read.
+     */
+    public Map<String, Map<BrokerServer, double[]>> topicRates(String clusterAlias, String uri, List<BrokerServer> mbeans);
 }
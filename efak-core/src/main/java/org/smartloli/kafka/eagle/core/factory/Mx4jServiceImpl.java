@@ -28,14 +28,16 @@ import org.smartloli.kafka.eagle.common.util.JMXFactoryUtils;
 import org.smartloli.kafka.eagle.common.util.KConstants.MBean;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
 
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.InstanceNotFoundException;
 import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
-import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXServiceURL;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Implements Mx4jService all method.
@@ -52,6 +54,7 @@ public class Mx4jServiceImpl implements Mx4jService {
     private Logger LOG = LoggerFactory.getLogger(Mx4jServiceImpl.class);
     // private static final String JMX = "service:jmx:rmi:///jndi/rmi://%s/jmxrmi";
     private static final String TOPIC_CONCAT_CHARACTER = ",topic=";
+    private static final String[] METER_ATTRIBUTES = new String[]{MBean.FIFTEEN_MINUTE_RATE, MBean.FIVE_MINUTE_RATE, MBean.MEAN_RATE, MBean.ONE_MINUTE_RATE};
 
     /** Get brokers all topics bytes in per sec. */
     @Override
@@ -122,30 +125,24 @@ public class Mx4jServiceImpl implements Mx4jService {
     @Override
     public Map<Integer, Long> logEndOffset(String clusterAlias, String uri, String topic) {
         String mbean = "kafka.log:type=Log,name=LogEndOffset,topic=" + topic + ",partition=*";
-        JMXConnector connector = null;
+        JMXServiceURL jmxSeriverUrl = null;
         Map<Integer, Long> endOffsets = new HashMap<>();
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), uri));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
+            jmxSeriverUrl = new JMXServiceURL(String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), uri));
+            MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
             Set<ObjectName> objectNames = mbeanConnection.queryNames(new ObjectName(mbean), null);
             for (ObjectName objectName : objectNames) {
                 int partition = Integer.valueOf(objectName.getKeyProperty("partition"));
-                Object value = mbeanConnection.getAttribute(new ObjectName(mbean), MBean.VALUE);
+                Object value = mbeanConnection.getAttribute(objectName, MBean.VALUE);
                 if (value != null) {
                     endOffsets.put(partition, Long.valueOf(value.toString()));
                 }
             }
         } catch (Exception e) {
-            LOG.error("JMX service url[" + uri + "] create has error,msg is ", e);
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (Exception e) {
-                    LOG.error("Close JMXConnector[" + uri + "] has error,msg is ", e);
-                }
+            if (JMXFactoryUtils.isConnectionError(e)) {
+                JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
             }
+            LOG.error("JMX service url[" + uri + "] create has error,msg is ", e);
         }
         return endOffsets;
     }
@@ -218,47 +215,166 @@ public class Mx4jServiceImpl implements Mx4jService {
         return common(clusterAlias, uri, mbean);
     }
 
+    @Override
+    public Map<BrokerServer, MBeanInfo> metrics(String clusterAlias, String uri, List<BrokerServer> mbeans, String topic) {
+        JMXServiceURL jmxSeriverUrl = null;
+        Map<BrokerServer, MBeanInfo> metrics = new HashMap<>();
+        try {
+            jmxSeriverUrl = new JMXServiceURL(String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), uri));
+            MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
+            for (BrokerServer mbean : mbeans) {
+                String name = topic == null ? mbean.getValue() : mbean.getValue() + TOPIC_CONCAT_CHARACTER + topic;
+                try {
+                    ObjectName objectName = new ObjectName(name);
+                    double[] rates = new double[METER_ATTRIBUTES.length];
+                    if (objectName.isPattern()) {
+                        for (ObjectName matched : mbeanConnection.queryNames(objectName, null)) {
+                            sum(rates, meter(mbeanConnection, matched));
+                        }
+                    } else {
+                        sum(rates, meter(mbeanConnection, objectName));
+                    }
+                    metrics.put(mbean, toMBeanInfo(rates));
+                } catch (Exception e) {
+                    // only a broken connection stops the rest of the mbeans
+                    if (JMXFactoryUtils.isConnectionError(e)) {
+                        throw e;
+                    }
+                    LOG.error("JMX service url[" + uri + "] collect mbean[" + name + "] has error,msg is ", e);
+                }
+            }
+        } catch (Exception e) {
+            if (JMXFactoryUtils.isConnectionError(e)) {
+                JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
+            }
+            LOG.error("JMX service url[" + uri + "] bulk collect has error,msg is ", e);
+        }
+        for (BrokerServer mbean : mbeans) {
+            metrics.putIfAbsent(mbean, toMBeanInfo(null));
+        }
+        return metrics;
+    }
+
+    @Override
+    public Map<String, MBeanInfo> topicMetrics(String clusterAlias, String uri, BrokerServer mbean, String topic) {
+        JMXServiceURL jmxSeriverUrl = null;
+        Map<String, MBeanInfo> metrics = new HashMap<>();
+        try {
+            jmxSeriverUrl = new JMXServiceURL(String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), uri));
+            MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
+            Set<ObjectName> objectNames = mbeanConnection.queryNames(new ObjectName(mbean.getValue() + TOPIC_CONCAT_CHARACTER + topic), null);
+            for (ObjectName objectName : objectNames) {
+                String name = objectName.getKeyProperty("topic");
+                if (name != null) {
+                    metrics.put(name, toMBeanInfo(meter(mbeanConnection, objectName)));
+                }
+            }
+        } catch (Exception e) {
+            if (JMXFactoryUtils.isConnectionError(e)) {
+                JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
+            }
+            LOG.error("JMX service url[" + uri + "] bulk collect topic metrics has error,msg is ", e);
+        }
+        return metrics;
+    }
+
+    @Override
+    public Map<String, Map<BrokerServer, double[]>> topicRates(String clusterAlias, String uri, List<BrokerServer> mbeans) {
+        JMXServiceURL jmxSeriverUrl = null;
+        Map<String, Map<BrokerServer, double[]>> rates = new HashMap<>();
+        try {
+            jmxSeriverUrl = new JMXServiceURL(String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), uri));
+            MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
+            // list the topic mbeans of every meter with one query per mbean domain and type
+            Map<String, Map<String, BrokerServer>> patterns = new HashMap<>();
+            for (BrokerServer mbean : mbeans) {
+                ObjectName name = new ObjectName(mbean.getValue());
+                String pattern = name.getDomain() + ":type=" + name.getKeyProperty("type") + TOPIC_CONCAT_CHARACTER + "*,*";
+                patterns.computeIfAbsent(pattern, k -> new HashMap<>()).put(name.getKeyProperty("name"), mbean);
+            }
+            for (Map.Entry<String, Map<String, BrokerServer>> pattern : patterns.entrySet()) {
+                for (ObjectName objectName : mbeanConnection.queryNames(new ObjectName(pattern.getKey()), null)) {
+                    String topic = objectName.getKeyProperty("topic");
+                    BrokerServer mbean = pattern.getValue().get(objectName.getKeyProperty("name"));
+                    if (topic == null || mbean == null) {
+                        continue;
+                    }
+                    double[] meter = meter(mbeanConnection, objectName);
+                    if (meter != null) {
+                        rates.computeIfAbsent(topic, k -> new HashMap<>()).put(mbean, meter);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            if (JMXFactoryUtils.isConnectionError(e)) {
+                JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
+            }
+            LOG.error("JMX service url[" + uri + "] bulk collect topic rates has error,msg is ", e);
+            return null;
+        }
+        return rates;
+    }
+
+    /**
+     * Read all meter rates of one mbean with a single getAttributes round trip,
+     * return null when the mbean is not registered.
+     */
+    private double[] meter(MBeanServerConnection mbeanConnection, ObjectName objectName) throws Exception {
+        AttributeList attributes;
+        try {
+            attributes = mbeanConnection.getAttributes(objectName, METER_ATTRIBUTES);
+        } catch (InstanceNotFoundException e) {
+            return null;
+        }
+        double[] rates = new double[METER_ATTRIBUTES.length];
+        for (Attribute attribute : attributes.asList()) {
+            for (int i = 0; i < METER_ATTRIBUTES.length; i++) {
+                if (METER_ATTRIBUTES[i].equals(attribute.getName()) && attribute.getValue() instanceof Number) {
+                    rates[i] = ((Number) attribute.getValue()).doubleValue();
+                }
+            }
+        }
+        return rates;
+    }
+
+    private void sum(double[] total, double[] rates) {
+        if (rates == null) {
+            return;
+        }
+        for (int i = 0; i < total.length; i++) {
+            total[i] += rates[i];
+        }
+    }
+
+    private MBeanInfo toMBeanInfo(double[] rates) {
+        MBeanInfo mbeanInfo = new MBeanInfo();
+        if (rates == null) {
+            rates = new double[METER_ATTRIBUTES.length];
+        }
+        mbeanInfo.setFifteenMinute(String.valueOf(rates[0]));
+        mbeanInfo.setFiveMinute(String.valueOf(rates[1]));
+        mbeanInfo.setMeanRate(String.valueOf(rates[2]));
+        mbeanInfo.setOneMinute(String.valueOf(rates[3]));
+        return mbeanInfo;
+    }
+
     /**
      * Before Kafka 0.11.x, some exceptions are thrown, such as
      * <p>ReplicationBytesOutPerSec</p> Exception.
      * @param uri ip:jmx_port
      */
     private MBeanInfo common(String clusterAlias, String uri, String mbean) {
-        JMXConnector connector = null;
-        MBeanInfo mbeanInfo = new MBeanInfo();
+        JMXServiceURL jmxSeriverUrl = null;
+        MBeanInfo mbeanInfo = toMBeanInfo(null);
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), uri));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
-            if (mbeanConnection.isRegistered(new ObjectName(mbean))) {
-                Object fifteenMinuteRate = mbeanConnection.getAttribute(new ObjectName(mbean), MBean.FIFTEEN_MINUTE_RATE);
-                Object fiveMinuteRate = mbeanConnection.getAttribute(new ObjectName(mbean), MBean.FIVE_MINUTE_RATE);
-                Object meanRate = mbeanConnection.getAttribute(new ObjectName(mbean), MBean.MEAN_RATE);
-                Object oneMinuteRate = mbeanConnection.getAttribute(new ObjectName(mbean), MBean.ONE_MINUTE_RATE);
-                mbeanInfo.setFifteenMinute(fifteenMinuteRate.toString());
-                mbeanInfo.setFiveMinute(fiveMinuteRate.toString());
-                mbeanInfo.setMeanRate(meanRate.toString());
-                mbeanInfo.setOneMinute(oneMinuteRate.toString());
-            } else {
-                mbeanInfo.setFifteenMinute("0.0");
-                mbeanInfo.setFiveMinute("0.0");
-                mbeanInfo.setMeanRate("0.0");
-                mbeanInfo.setOneMinute("0.0");
-            }
+            jmxSeriverUrl = new JMXServiceURL(String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), uri));
+            MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
+            mbeanInfo = toMBeanInfo(meter(mbeanConnection, new ObjectName(mbean)));
         } catch (Exception e) {
-            LOG.error("JMX service url[" + uri + "] create has error,msg is ", e);
-            mbeanInfo.setFifteenMinute("0.0");
-            mbeanInfo.setFiveMinute("0.0");
-            mbeanInfo.setMeanRate("0.0");
-            mbeanInfo.setOneMinute("0.0");
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (Exception e) {
-                    LOG.error("Close JMXConnector[" + uri + "] has error,msg is ", e);
-                }
+            if (JMXFactoryUtils.isConnectionError(e)) {
+                JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
             }
+            LOG.error("JMX service url[" + uri + "] create has error,msg is ", e);
         }
         return mbeanInfo;
     }
@@ -57,6 +57,9 @@ public interface BrokerService {
 	/** Scan topic page display. */
 	public List<PartitionsInfo> topicRecords(String clusterAlias, Map<String, Object> params);
 
+	/** Read partitions, created and modified time of all topics in topic list order. */
+	public List<PartitionsInfo> topicCatalog(String clusterAlias);
+
 	/** Scan topic meta page display. */
 	public List<MetadataInfo> topicMetadataRecords(String clusterAlias, String topic, Map<String, Object> params);
 
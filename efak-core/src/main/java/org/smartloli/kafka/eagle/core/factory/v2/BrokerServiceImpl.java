@@ -218,6 +218,42 @@ public class BrokerServiceImpl implements BrokerService {
         return targets;
     }
 
+    /**
+     * Read partitions, created and modified time of all topics with one
+     * zookeeper client, the id of each record is not set.
+     */
+    public List<PartitionsInfo> topicCatalog(String clusterAlias) {
+        List<PartitionsInfo> targets = new ArrayList<>();
+        List<String> topics = topicList(clusterAlias);
+        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
+        try {
+            for (String topic : topics) {
+                try {
+                    if (zkc.pathExists(BROKER_TOPICS_PATH + "/" + topic)) {
+                        Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(BROKER_TOPICS_PATH + "/" + topic);
+                        PartitionsInfo partition = new PartitionsInfo();
+                        partition.setCreated(CalendarUtils.convertUnixTime2Date(tuple._2.getCtime()));
+                        partition.setModify(CalendarUtils.convertUnixTime2Date(tuple._2.getMtime()));
+                        partition.setTopic(topic);
+                        String tupleString = new String(tuple._1.get());
+                        JSONObject partitionObject = JSON.parseObject(tupleString).getJSONObject("partitions");
+                        partition.setPartitionNumbers(partitionObject.size());
+                        partition.setPartitions(partitionObject.keySet());
+                        targets.add(partition);
+                    }
+                } catch (Exception ex) {
+                    LOG.error("Scan topic[" + topic + "] catalog from zookeeper has error, msg is " + ex.getMessage());
+                }
+            }
+        } finally {
+            if (zkc != null) {
+                kafkaZKPool.release(clusterAlias, zkc);
+                zkc = null;
+            }
+        }
+        return targets;
+    }
+
     /**
      * Get broker spread by topic.
      */
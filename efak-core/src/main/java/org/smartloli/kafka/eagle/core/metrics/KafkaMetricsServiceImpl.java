@@ -44,11 +44,8 @@ import scala.Tuple2;
 
 import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
-import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXServiceURL;
-import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Implements KafkaMetricsService all methods.
@@ -132,30 +129,24 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
      */
     public JSONObject topicSize(String clusterAlias, String topic) {
         String jmx = "";
-        JMXConnector connector = null;
+        JMXServiceURL jmxSeriverUrl = null;
         List<MetadataInfo> leaders = kafkaService.findKafkaLeader(clusterAlias, topic);
         long tpSize = 0L;
         for (MetadataInfo leader : leaders) {
             String jni = kafkaService.getBrokerJMXFromIds(clusterAlias, leader.getLeader());
             jmx = String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), jni);
             try {
-                JMXServiceURL jmxSeriverUrl = new JMXServiceURL(jmx);
-                connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-                MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
+                jmxSeriverUrl = new JMXServiceURL(jmx);
+                MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
                 String objectName = String.format(KafkaLog.SIZE.getValue(), topic, leader.getPartitionId());
                 Object size = mbeanConnection.getAttribute(new ObjectName(objectName), KafkaLog.VALUE.getValue());
                 tpSize += Long.parseLong(size.toString());
             } catch (Exception ex) {
+                if (JMXFactoryUtils.isConnectionError(ex)) {
+                    JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
+                }
                 LOG.error("Get topic size from jmx has error, msg is " + ex.getMessage());
                 ex.printStackTrace();
-            } finally {
-                if (connector != null) {
-                    try {
-                        connector.close();
-                    } catch (IOException e) {
-                        LOG.error("Close jmx connector has error, msg is " + e.getMessage());
-                    }
-                }
             }
         }
 
@@ -297,30 +288,24 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
      */
     public long topicCapacity(String clusterAlias, String topic) throws Exception {
         String jmx = "";
-        JMXConnector connector = null;
+        JMXServiceURL jmxSeriverUrl = null;
         List<MetadataInfo> leaders = kafkaService.findKafkaLeader(clusterAlias, topic);
         long tpSize = 0L;
         for (MetadataInfo leader : leaders) {
             String jni = kafkaService.getBrokerJMXFromIds(clusterAlias, leader.getLeader());
             jmx = String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), jni);
             try {
-                JMXServiceURL jmxSeriverUrl = new JMXServiceURL(jmx);
-                connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-                MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
+                jmxSeriverUrl = new JMXServiceURL(jmx);
+                MBeanServerConnection mbeanConnection = JMXFactoryUtils.getConnection(clusterAlias, jmxSeriverUrl);
                 String objectName = String.format(KafkaLog.SIZE.getValue(), topic, leader.getPartitionId());
                 Object size = mbeanConnection.getAttribute(new ObjectName(objectName), KafkaLog.VALUE.getValue());
                 tpSize += Long.parseLong(size.toString());
             } catch (Exception ex) {
+                if (JMXFactoryUtils.isConnectionError(ex)) {
+                    JMXFactoryUtils.invalidate(clusterAlias, jmxSeriverUrl);
+                }
                 LOG.error("Get topic size from jmx has error, msg is " + ex.getMessage());
                 ex.printStackTrace();
-            } finally {
-                if (connector != null) {
-                    try {
-                        connector.close();
-                    } catch (IOException e) {
-                        LOG.error("Close jmx connector has error, msg is " + e.getMessage());
-                    }
-                }
             }
         }
 
@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.metrics.storage;
+
+import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
+import org.smartloli.kafka.eagle.common.protocol.TopicCapacityInfo;
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenBarInfo;
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.common.protocol.topic.TopicLogSize;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage of the time series read and written by the metrics, dashboard,
+ * topic, bscreen and alert services: the broker and zookeeper kpis
+ * (ke_metrics), the topic logsize (ke_logsize) and the bscreen consumer
+ * samples (ke_consumer_bscreen_press). The params are the same as the
+ * statements of MBeanDao and TopicDao.
+ * <p>
+ * ke_topic_rank is not a series, it keeps the current value of every topic
+ * and key and is replaced each collect, so it stays in the database through
+ * TopicDao whatever the storage is.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public interface MetricsStorage {
+
+    /**
+     * Get the storage name, such as jdbc or tsdb.
+     */
+    public String getName();
+
+    /**
+     * Collection statistics data from kafka jmx & insert into storage.
+     */
+    public int insert(List<KpiInfo> kpis);
+
+    /**
+     * Query collector data by cluster, type, modules and [stime, etime] days.
+     */
+    public List<KpiInfo> query(Map<String, Object> params);
+
+    /**
+     * Get dashboard panel data to kafka broker chart.
+     */
+    public List<KpiInfo> getDashboradPanelBrokerChart(Map<String, Object> params);
+
+    /**
+     * Get broker kpi, such bytein or byteout etc.
+     */
+    public KpiInfo getBrokersKpi(Map<String, Object> params);
+
+    /**
+     * Query os memory data.
+     */
+    public List<KpiInfo> getOsMem(Map<String, Object> params);
+
+    /**
+     * Query used cpu data.
+     */
+    public List<KpiInfo> getUsedCPU(Map<String, Object> params);
+
+    /**
+     * Crontab clean data before or equal to the tm day.
+     */
+    public void remove(int tm);
+
+    /**
+     * Write statistics topic logsize data into storage.
+     */
+    public int writeTopicLogSize(List<TopicLogSize> topicLogSize);
+
+    /**
+     * Read topic lastest logsize diffval data.
+     */
+    public TopicLogSize readLastTopicLogSize(Map<String, Object> params);
+
+    /**
+     * Get topic producer logsize chart datasets.
+     */
+    public List<TopicLogSize> queryTopicProducerChart(Map<String, Object> params);
+
+    /**
+     * Get topic producer logsize by alarm.
+     */
+    public List<TopicLogSize> queryTopicProducerByAlarm(Map<String, Object> params);
+
+    /**
+     * Get producer history bar data by day.
+     */
+    public List<BScreenBarInfo> queryProducerHistoryBar(Map<String, Object> params);
+
+    /**
+     * Get bscreen topic total records.
+     */
+    public long getBScreenTotalRecords(Map<String, Object> params);
+
+    /**
+     * Get the number of topics which have produced records.
+     */
+    public long getActiveTopicNumbers(Map<String, Object> params);
+
+    /**
+     * Get the capacity scatter of the topics which have produced records.
+     */
+    public TopicCapacityInfo getTopicCapacityScatter(Map<String, Object> params);
+
+    /**
+     * Crontab clean topic logsize data before or equal to the tm day.
+     */
+    public void cleanTopicLogSize(int tm);
+
+    /**
+     * Write consumer bscreen data into storage.
+     */
+    public int writeBSreenConsumerTopic(List<BScreenConsumerInfo> bscreenConsumers);
+
+    /**
+     * Read the lastest consumer bscreen data of one group and topic.
+     */
+    public BScreenConsumerInfo readBScreenLastTopic(Map<String, Object> params);
+
+    /**
+     * Get consumer history bar data by day.
+     */
+    public List<BScreenBarInfo> queryConsumerHistoryBar(Map<String, Object> params);
+
+    /**
+     * Get today consumer bscreen data.
+     */
+    public List<BScreenConsumerInfo> queryTodayBScreenConsumer(Map<String, Object> params);
+
+    /**
+     * Get the lastest lag of one group and topic.
+     */
+    public long queryLastestLag(Map<String, Object> params);
+
+    /**
+     * Crontab clean consumer bscreen data before or equal to the tm day.
+     */
+    public void cleanBScreenConsumerTopic(int tm);
+
+}
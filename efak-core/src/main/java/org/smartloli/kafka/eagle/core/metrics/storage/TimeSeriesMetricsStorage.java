@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.metrics.storage;
+
+import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
+import org.smartloli.kafka.eagle.common.protocol.TopicCapacityInfo;
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenBarInfo;
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.common.protocol.topic.TopicLogSize;
+import org.smartloli.kafka.eagle.core.metrics.tsdb.MBeanTimeSeries;
+import org.smartloli.kafka.eagle.core.metrics.tsdb.TopicTimeSeries;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Kpi, topic logsize and bscreen consumer storage on the embedded time series
+ * store of the node, see {@link MBeanTimeSeries} and {@link TopicTimeSeries}.
+ * <p>
+ * The topic capacities stay in ke_topic_rank, they are read through the given
+ * function to draw the capacity scatter of the active topics.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TimeSeriesMetricsStorage implements MetricsStorage {
+
+    public static final String NAME = "tsdb";
+
+    private static final long MB = 104857600L;
+
+    private static final long GB = 10737418240L;
+
+    /**
+     * Capacity of every topic of a cluster, keyed by topic.
+     */
+    private final Function<String, Map<String, Long>> capacities;
+
+    public TimeSeriesMetricsStorage(Function<String, Map<String, Long>> capacities) {
+        this.capacities = capacities;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int insert(List<KpiInfo> kpis) {
+        return MBeanTimeSeries.insert(kpis);
+    }
+
+    @Override
+    public List<KpiInfo> query(Map<String, Object> params) {
+        return MBeanTimeSeries.query(params);
+    }
+
+    @Override
+    public List<KpiInfo> getDashboradPanelBrokerChart(Map<String, Object> params) {
+        return MBeanTimeSeries.getDashboradPanelBrokerChart(params);
+    }
+
+    @Override
+    public KpiInfo getBrokersKpi(Map<String, Object> params) {
+        return MBeanTimeSeries.getBrokersKpi(params);
+    }
+
+    @Override
+    public List<KpiInfo> getOsMem(Map<String, Object> params) {
+        return MBeanTimeSeries.getOsMem(params);
+    }
+
+    @Override
+    public List<KpiInfo> getUsedCPU(Map<String, Object> params) {
+        return MBeanTimeSeries.getUsedCPU(params);
+    }
+
+    @Override
+    public void remove(int tm) {
+        MBeanTimeSeries.remove(tm);
+    }
+
+    @Override
+    public int writeTopicLogSize(List<TopicLogSize> topicLogSize) {
+        return TopicTimeSeries.writeTopicLogSize(topicLogSize);
+    }
+
+    @Override
+    public TopicLogSize readLastTopicLogSize(Map<String, Object> params) {
+        return TopicTimeSeries.readLastTopicLogSize(params);
+    }
+
+    @Override
+    public List<TopicLogSize> queryTopicProducerChart(Map<String, Object> params) {
+        return TopicTimeSeries.queryTopicProducerChart(params);
+    }
+
+    @Override
+    public List<TopicLogSize> queryTopicProducerByAlarm(Map<String, Object> params) {
+        return TopicTimeSeries.queryTopicProducerByAlarm(params);
+    }
+
+    @Override
+    public List<BScreenBarInfo> queryProducerHistoryBar(Map<String, Object> params) {
+        return TopicTimeSeries.queryProducerHistoryBar(params);
+    }
+
+    @Override
+    public long getBScreenTotalRecords(Map<String, Object> params) {
+        return TopicTimeSeries.getBScreenTotalRecords(params);
+    }
+
+    @Override
+    public long getActiveTopicNumbers(Map<String, Object> params) {
+        return TopicTimeSeries.getActiveTopics(params).size();
+    }
+
+    @Override
+    public TopicCapacityInfo getTopicCapacityScatter(Map<String, Object> params) {
+        Set<String> topics = TopicTimeSeries.getActiveTopics(params);
+        TopicCapacityInfo topicCapacityInfo = new TopicCapacityInfo();
+        if (topics.isEmpty()) {
+            return topicCapacityInfo;
+        }
+        // same bounds as the getTopicCapacityScatter statement of TopicDao
+        for (Map.Entry<String, Long> capacity : capacities.apply(String.valueOf(params.get("cluster"))).entrySet()) {
+            long value = capacity.getValue();
+            if (!topics.contains(capacity.getKey()) || value < 0) {
+                continue;
+            }
+            if (value <= MB) {
+                topicCapacityInfo.setMb(topicCapacityInfo.getMb() + 1);
+            }
+            if (value >= MB && value <= GB) {
+                topicCapacityInfo.setGb(topicCapacityInfo.getGb() + 1);
+            }
+            if (value > GB) {
+                topicCapacityInfo.setTb(topicCapacityInfo.getTb() + 1);
+            }
+        }
+        return topicCapacityInfo;
+    }
+
+    /**
+     * The topic logsize days are dropped with the kpis by {@link #remove(int)}.
+     */
+    @Override
+    public void cleanTopicLogSize(int tm) {
+
+    }
+
+    @Override
+    public int writeBSreenConsumerTopic(List<BScreenConsumerInfo> bscreenConsumers) {
+        return TopicTimeSeries.writeBSreenConsumerTopic(bscreenConsumers);
+    }
+
+    @Override
+    public BScreenConsumerInfo readBScreenLastTopic(Map<String, Object> params) {
+        return TopicTimeSeries.readBScreenLastTopic(params);
+    }
+
+    @Override
+    public List<BScreenBarInfo> queryConsumerHistoryBar(Map<String, Object> params) {
+        return TopicTimeSeries.queryConsumerHistoryBar(params);
+    }
+
+    @Override
+    public List<BScreenConsumerInfo> queryTodayBScreenConsumer(Map<String, Object> params) {
+        return TopicTimeSeries.queryTodayBScreenConsumer(params);
+    }
+
+    @Override
+    public long queryLastestLag(Map<String, Object> params) {
+        return TopicTimeSeries.queryLastestLag(params);
+    }
+
+    /**
+     * The bscreen consumer days are dropped with the kpis by {@link #remove(int)}.
+     */
+    @Override
+    public void cleanBScreenConsumerTopic(int tm) {
+
+    }
+
+}
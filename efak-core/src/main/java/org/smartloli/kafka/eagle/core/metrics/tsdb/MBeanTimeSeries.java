@@ -0,0 +1,355 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.metrics.tsdb;
+
+import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
+import org.smartloli.kafka.eagle.common.util.CalendarUtils;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.core.metrics.tsdb.TimeSeriesRollup.Aggregate;
+import org.smartloli.kafka.eagle.core.metrics.tsdb.TimeSeriesStore.Sample;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Kafka and zookeeper kpi samples kept in the embedded time series store, it
+ * answers the same queries as the ke_metrics statements of MBeanDao.
+ * <p>
+ * The store is local to the node, so it is only used in standalone mode. In
+ * distributed mode the kpis are collected by the work nodes and still go to
+ * the shared database. It is enabled by efak.metrics.storage=tsdb, the
+ * default is still jdbc as the history in ke_metrics is not imported.
+ * <p>
+ * The raw one minute samples are rolled up into 10 minutes and 1 hour tiers
+ * every rollup interval, and a range query reads the coarsest tier which still
+ * gives one point per pixel of the chart. The segments of the closed days are
+ * compacted every compact interval. Both run on threads of their own, so the
+ * write behind flusher never waits for a rollup or a compaction.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class MBeanTimeSeries {
+
+    private static final boolean ENABLED = !SystemConfigUtils.getBooleanProperty("efak.distributed.enable")
+            && "tsdb".equals(SystemConfigUtils.getProperty("efak.metrics.storage", "jdbc"));
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Points drawn when the chart does not send its width.
+     */
+    private static final int CHART_POINTS = SystemConfigUtils.getIntProperty("efak.metrics.chart.points", 720);
+
+    private static final long ROLLUP_INTERVAL_MS = SystemConfigUtils.getLongProperty("efak.metrics.tsdb.rollup.interval.ms", 60 * 1000L);
+
+    private static final long COMPACT_INTERVAL_MS = SystemConfigUtils.getLongProperty("efak.metrics.tsdb.compact.interval.ms", 60 * 60 * 1000L);
+
+    /**
+     * Samples of one series in a chunk of a compacted day, a day of one
+     * minute samples by default.
+     */
+    private static final int COMPACT_SAMPLES = SystemConfigUtils.getIntProperty("efak.metrics.tsdb.compact.chunk.samples", 1440);
+
+    private static volatile TimeSeriesStore store;
+
+    /**
+     * Rollup tiers from the finest to the coarsest.
+     */
+    private static volatile List<TimeSeriesRollup> rollups = Collections.emptyList();
+
+    private MBeanTimeSeries() {
+
+    }
+
+    /**
+     * Return true when the kpis are read and written through the time series
+     * store instead of the ke_metrics table.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static TimeSeriesStore getStore() {
+        if (store == null) {
+            synchronized (MBeanTimeSeries.class) {
+                if (store == null) {
+                    String dir = SystemConfigUtils.getProperty("efak.metrics.tsdb.dir", System.getProperty("user.dir") + "/db/tsdb");
+                    int chunkSamples = SystemConfigUtils.getIntProperty("efak.metrics.tsdb.chunk.samples", 120);
+                    long checkpointMs = SystemConfigUtils.getLongProperty("efak.metrics.tsdb.checkpoint.ms", 10 * 60 * 1000L);
+                    long walMaxBytes = SystemConfigUtils.getLongProperty("efak.metrics.tsdb.wal.max.mb", 64L) * 1024 * 1024;
+                    try {
+                        List<TimeSeriesRollup> tiers = new ArrayList<>();
+                        tiers.add(new TimeSeriesRollup("10m", 10 * 60 * 1000L, SystemConfigUtils.getIntProperty("efak.metrics.rollup.10m.retain", 90), new File(dir, "10m"), chunkSamples));
+                        tiers.add(new TimeSeriesRollup("1h", 60 * 60 * 1000L, SystemConfigUtils.getIntProperty("efak.metrics.rollup.1h.retain", 365), new File(dir, "1h"), chunkSamples));
+                        rollups = Collections.unmodifiableList(tiers);
+                        store = new TimeSeriesStore(new File(dir), chunkSamples, checkpointMs, walMaxBytes);
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Open time series store[" + dir + "] has error", e);
+                    }
+                    daemon("efak-tsdb-rollup").scheduleWithFixedDelay(MBeanTimeSeries::rollup, ROLLUP_INTERVAL_MS, ROLLUP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    daemon("efak-tsdb-compact").scheduleWithFixedDelay(MBeanTimeSeries::compact, COMPACT_INTERVAL_MS, COMPACT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Collection statistics data from kafka jmx & insert into store.
+     */
+    public static int insert(List<KpiInfo> kpis) {
+        int size = 0;
+        try {
+            for (KpiInfo kpi : kpis) {
+                getStore().append(series(kpi), Integer.parseInt(kpi.getTm()), kpi.getTimespan(), parse(kpi.getValue()));
+                size++;
+            }
+            getStore().commit();
+        } catch (Exception e) {
+            LoggerUtils.print(MBeanTimeSeries.class).error("Write kpi into time series store has error, msg is ", e);
+        }
+        return size;
+    }
+
+    /**
+     * Compact the raw segments of the days before today.
+     */
+    public static void compact() {
+        try {
+            int segments = getStore().compact(Integer.parseInt(CalendarUtils.getCustomDate("yyyyMMdd")), COMPACT_SAMPLES);
+            if (segments > 0) {
+                LoggerUtils.print(MBeanTimeSeries.class).info("Compact " + segments + " time series segments.");
+            }
+        } catch (Exception e) {
+            LoggerUtils.print(MBeanTimeSeries.class).error("Compact time series store has error, msg is ", e);
+        }
+    }
+
+    /**
+     * Roll the closed raw buckets up into every tier, one call at a time so
+     * the tiers are rolled in the same order as the time they are given.
+     */
+    public static synchronized void rollup() {
+        long now = System.currentTimeMillis();
+        for (TimeSeriesRollup rollup : getRollups()) {
+            try {
+                int buckets = rollup.rollup(getStore(), now);
+                if (buckets > 0 && LoggerUtils.print(MBeanTimeSeries.class).isDebugEnabled()) {
+                    LoggerUtils.print(MBeanTimeSeries.class).debug("Rollup tier[" + rollup.getName() + "] writes " + buckets + " buckets.");
+                }
+            } catch (Exception e) {
+                LoggerUtils.print(MBeanTimeSeries.class).error("Rollup tier[" + rollup.getName() + "] has error, msg is ", e);
+            }
+        }
+    }
+
+    public static List<TimeSeriesRollup> getRollups() {
+        getStore();
+        return rollups;
+    }
+
+    /**
+     * Query collector data by cluster, type, modules and [stime, etime] days.
+     * The optional width is the pixel width of the chart and aggregate is one
+     * of min, max, avg, last or sum, avg by default.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<KpiInfo> query(Map<String, Object> params) {
+        String cluster = String.valueOf(params.get("cluster"));
+        String type = String.valueOf(params.get("type"));
+        Collection<String> modules = (Collection<String>) params.get("modules");
+        Predicate<SeriesKey> filter = series -> series.getCluster().equals(cluster) && series.getType().equals(type)
+                && (modules == null || modules.isEmpty() || modules.contains(series.getKey()));
+        try {
+            int stime = day(params.get("stime"));
+            int etime = day(params.get("etime"));
+            TimeSeriesRollup rollup = tier(stime, etime, params.get("width"));
+            if (rollup != null) {
+                return kpis(rollup.scan(filter, stime, etime, Aggregate.of(params.get("aggregate"))));
+            }
+            return kpis(getStore().scan(filter, stime, etime));
+        } catch (Exception e) {
+            LoggerUtils.print(MBeanTimeSeries.class).error("Query kpi from time series store has error, msg is ", e);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Get the latest size samples of one key on the tm day.
+     */
+    public static List<KpiInfo> getDashboradPanelBrokerChart(Map<String, Object> params) {
+        int day = day(params.get("tm"));
+        return latest(params, day, day, Integer.parseInt(params.get("size").toString()));
+    }
+
+    /**
+     * Get the latest sample of one key on the tday day.
+     */
+    public static KpiInfo getBrokersKpi(Map<String, Object> params) {
+        int day = day(params.get("tday"));
+        List<KpiInfo> kpis = latest(params, day, day, 1);
+        return kpis.isEmpty() ? null : kpis.get(0);
+    }
+
+    /**
+     * Get the latest two samples of the os memory keys.
+     */
+    public static List<KpiInfo> getOsMem(Map<String, Object> params) {
+        return latest(params, Integer.MIN_VALUE, Integer.MAX_VALUE, 2);
+    }
+
+    /**
+     * Get the latest sample of used cpu.
+     */
+    public static List<KpiInfo> getUsedCPU(Map<String, Object> params) {
+        return latest(params, Integer.MIN_VALUE, Integer.MAX_VALUE, 1);
+    }
+
+    /**
+     * Crontab clean data before or equal to the tm day.
+     */
+    public static void remove(int tm) {
+        try {
+            getStore().remove(tm);
+        } catch (Exception e) {
+            LoggerUtils.print(MBeanTimeSeries.class).error("Clean time series store has error, msg is ", e);
+        }
+        for (TimeSeriesRollup rollup : getRollups()) {
+            try {
+                rollup.clean();
+            } catch (Exception e) {
+                LoggerUtils.print(MBeanTimeSeries.class).error("Clean rollup tier[" + rollup.getName() + "] has error, msg is ", e);
+            }
+        }
+    }
+
+    /**
+     * Pick the coarsest tier whose resolution still gives one point per pixel
+     * and which keeps the start day, null means the raw samples.
+     */
+    private static ScheduledExecutorService daemon(String name) {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static TimeSeriesRollup tier(int stime, int etime, Object width) throws Exception {
+        int points = CHART_POINTS;
+        if (width != null && !width.toString().trim().isEmpty()) {
+            points = Math.max(1, Integer.parseInt(width.toString().trim()));
+        }
+        long range = (CalendarUtils.getDiffDay(String.valueOf(stime), String.valueOf(etime)) + 1L) * DAY_MS;
+        long step = range / points;
+        int age = CalendarUtils.getDiffDay(String.valueOf(stime), CalendarUtils.getCustomDate("yyyyMMdd"));
+        int rawRetain = SystemConfigUtils.getIntProperty("efak.metrics.retain", 30);
+        rawRetain = rawRetain == 0 ? 30 : rawRetain;
+        List<TimeSeriesRollup> tiers = getRollups();
+        for (int i = tiers.size() - 1; i >= 0; i--) {
+            TimeSeriesRollup rollup = tiers.get(i);
+            if (rollup.getResolution() <= step && age < rollup.getRetainDays()) {
+                return rollup;
+            }
+        }
+        if (age < rawRetain) {
+            return null;
+        }
+        // the raw samples are cleaned, use the finest tier which keeps the start day
+        for (TimeSeriesRollup rollup : tiers) {
+            if (age < rollup.getRetainDays()) {
+                return rollup;
+            }
+        }
+        return tiers.isEmpty() ? null : tiers.get(tiers.size() - 1);
+    }
+
+    private static List<KpiInfo> latest(Map<String, Object> params, int fromDay, int toDay, int limit) {
+        String cluster = String.valueOf(params.get("cluster"));
+        Object type = params.get("type");
+        String key = String.valueOf(params.get("key"));
+        // the sql statements match the key with like, only the trailing % is used
+        boolean prefix = key.endsWith("%");
+        String pattern = prefix ? key.substring(0, key.length() - 1) : key;
+        Predicate<SeriesKey> filter = series -> series.getCluster().equals(cluster) && (type == null || series.getType().equals(type))
+                && (prefix ? series.getKey().startsWith(pattern) : series.getKey().equals(pattern));
+        try {
+            return kpis(getStore().latest(filter, fromDay, toDay, limit));
+        } catch (Exception e) {
+            LoggerUtils.print(MBeanTimeSeries.class).error("Query latest kpi from time series store has error, msg is ", e);
+        }
+        return new ArrayList<>();
+    }
+
+    private static SeriesKey series(KpiInfo kpi) {
+        return new SeriesKey(kpi.getCluster(), kpi.getType(), kpi.getBroker(), kpi.getKey());
+    }
+
+    private static int day(Object day) {
+        return Integer.parseInt(String.valueOf(day).trim());
+    }
+
+    private static List<KpiInfo> kpis(List<Sample> samples) {
+        List<KpiInfo> kpis = new ArrayList<>(samples.size());
+        for (Sample sample : samples) {
+            KpiInfo kpi = new KpiInfo();
+            kpi.setCluster(sample.getSeries().getCluster());
+            kpi.setType(sample.getSeries().getType());
+            kpi.setBroker(sample.getSeries().getBroker());
+            kpi.setKey(sample.getSeries().getKey());
+            kpi.setValue(value(sample.getValue()));
+            kpi.setTimespan(sample.getTimestamp());
+            kpis.add(kpi);
+        }
+        return kpis;
+    }
+
+    private static double parse(String value) {
+        try {
+            return value == null ? Double.NaN : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Format as the value was written, memory is written as long and read
+     * back with Long.parseLong.
+     */
+    private static String value(double value) {
+        if (Double.isNaN(value)) {
+            return null;
+        }
+        if (value == Math.rint(value) && Math.abs(value) < (1L << 53)) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+
+}
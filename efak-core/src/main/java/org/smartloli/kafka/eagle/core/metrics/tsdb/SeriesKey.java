@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.metrics.tsdb;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Identity of one metrics series, such as cluster1/kafka/cluster1/message_in.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class SeriesKey {
+
+    private final String cluster;
+    private final String type;
+    private final String broker;
+    private final String key;
+    private final int hash;
+
+    public SeriesKey(String cluster, String type, String broker, String key) {
+        this.cluster = cluster == null ? "" : cluster;
+        this.type = type == null ? "" : type;
+        this.broker = broker == null ? "" : broker;
+        this.key = key == null ? "" : key;
+        this.hash = Objects.hash(this.cluster, this.type, this.broker, this.key);
+    }
+
+    public String getCluster() {
+        return cluster;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getBroker() {
+        return broker;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    void write(DataOutput out) throws IOException {
+        writeString(out, cluster);
+        writeString(out, type);
+        writeString(out, broker);
+        writeString(out, key);
+    }
+
+    static SeriesKey read(ByteBuffer in) {
+        return new SeriesKey(readString(in), readString(in), readString(in), readString(in));
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeriesKey)) {
+            return false;
+        }
+        SeriesKey that = (SeriesKey) o;
+        return cluster.equals(that.cluster) && type.equals(that.type) && broker.equals(that.broker) && key.equals(that.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return cluster + "/" + type + "/" + broker + "/" + key;
+    }
+
+}
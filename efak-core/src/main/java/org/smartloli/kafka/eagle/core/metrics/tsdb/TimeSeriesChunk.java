@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.metrics.tsdb;
+
+import java.util.Arrays;
+
+/**
+ * Compressed chunk of (timestamp, value) samples of one series.
+ * <p>
+ * Timestamps are stored as delta-of-delta and values as the xor of the
+ * previous value, so a regular series of slowly changing metrics takes a
+ * couple of bytes per sample instead of a full row.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class TimeSeriesChunk {
+
+    private TimeSeriesChunk() {
+
+    }
+
+    /**
+     * Append only encoder of one chunk, not thread safe.
+     */
+    public static final class Encoder {
+        private final BitWriter out = new BitWriter();
+        private int count = 0;
+        private long minTime;
+        private long maxTime;
+        private long prevTime;
+        private long prevDelta;
+        private long prevValue;
+        private int prevLeading = Integer.MAX_VALUE;
+        private int prevTrailing = 0;
+
+        public void append(long timestamp, double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            if (count == 0) {
+                out.writeBits(timestamp, 64);
+                out.writeBits(bits, 64);
+                minTime = timestamp;
+            } else {
+                writeTimestamp(timestamp);
+                writeValue(bits);
+            }
+            prevTime = timestamp;
+            prevValue = bits;
+            maxTime = Math.max(maxTime, timestamp);
+            count++;
+        }
+
+        private void writeTimestamp(long timestamp) {
+            long delta = timestamp - prevTime;
+            long dod = delta - prevDelta;
+            if (dod == 0) {
+                out.writeBit(false);
+            } else if (dod >= -63 && dod <= 64) {
+                out.writeBits(0b10, 2);
+                out.writeBits(dod, 7);
+            } else if (dod >= -255 && dod <= 256) {
+                out.writeBits(0b110, 3);
+                out.writeBits(dod, 9);
+            } else if (dod >= -2047 && dod <= 2048) {
+                out.writeBits(0b1110, 4);
+                out.writeBits(dod, 12);
+            } else {
+                out.writeBits(0b1111, 4);
+                out.writeBits(dod, 64);
+            }
+            prevDelta = delta;
+        }
+
+        private void writeValue(long bits) {
+            long xor = bits ^ prevValue;
+            if (xor == 0) {
+                out.writeBit(false);
+                return;
+            }
+            out.writeBit(true);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= prevLeading && trailing >= prevTrailing) {
+                // reuse the previous meaningful window
+                out.writeBit(false);
+                out.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.writeBit(true);
+                out.writeBits(leading, 5);
+                out.writeBits(meaningful == 64 ? 0 : meaningful, 6);
+                out.writeBits(xor >>> trailing, meaningful);
+                prevLeading = leading;
+                prevTrailing = trailing;
+            }
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public long minTime() {
+            return minTime;
+        }
+
+        public long maxTime() {
+            return maxTime;
+        }
+
+        /**
+         * Copy of the encoded bytes so far.
+         */
+        public byte[] toBytes() {
+            return out.toBytes();
+        }
+    }
+
+    /**
+     * Decode all samples of an encoded chunk into the given arrays, which must
+     * hold at least count samples.
+     */
+    public static void decode(byte[] data, int count, long[] timestamps, double[] values) {
+        BitReader in = new BitReader(data);
+        long time = 0L;
+        long delta = 0L;
+        long bits = 0L;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                time = in.readBits(64);
+                bits = in.readBits(64);
+            } else {
+                long dod;
+                if (!in.readBit()) {
+                    dod = 0;
+                } else if (!in.readBit()) {
+                    dod = in.readSigned(7);
+                } else if (!in.readBit()) {
+                    dod = in.readSigned(9);
+                } else if (!in.readBit()) {
+                    dod = in.readSigned(12);
+                } else {
+                    dod = in.readBits(64);
+                }
+                delta += dod;
+                time += delta;
+
+                if (in.readBit()) {
+                    if (in.readBit()) {
+                        leading = (int) in.readBits(5);
+                        int meaningful = (int) in.readBits(6);
+                        if (meaningful == 0) {
+                            meaningful = 64;
+                        }
+                        trailing = 64 - leading - meaningful;
+                    }
+                    bits ^= in.readBits(64 - leading - trailing) << trailing;
+                }
+            }
+            timestamps[i] = time;
+            values[i] = Double.longBitsToDouble(bits);
+        }
+    }
+
+    private static final class BitWriter {
+        private byte[] buffer = new byte[64];
+        private long position = 0L;
+
+        private void writeBit(boolean bit) {
+            int index = (int) (position >>> 3);
+            if (index >= buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            if (bit) {
+                buffer[index] |= (byte) (0x80 >>> (position & 7));
+            }
+            position++;
+        }
+
+        private void writeBits(long value, int bits) {
+            for (int i = bits - 1; i >= 0; i--) {
+                writeBit(((value >>> i) & 1L) == 1L);
+            }
+        }
+
+        private byte[] toBytes() {
+            return Arrays.copyOf(buffer, (int) ((position + 7) >>> 3));
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] buffer;
+        private long position = 0L;
+
+        private BitReader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private boolean readBit() {
+            int index = (int) (position >>> 3);
+            boolean bit = (buffer[index] & (0x80 >>> (position & 7))) != 0;
+            position++;
+            return bit;
+        }
+
+        private long readBits(int bits) {
+            long value = 0L;
+            for (int i = 0; i < bits; i++) {
+                value = (value << 1) | (readBit() ? 1L : 0L);
+            }
+            return value;
+        }
+
+        private long readSigned(int bits) {
+            long value = readBits(bits);
+            // the buckets hold [-(2^(n-1)-1), 2^(n-1)], the top value wraps to negative
+            if (value > (1L << (bits - 1))) {
+                value -= (1L << bits);
+            }
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.metrics.tsdb;
+
+import org.smartloli.kafka.eagle.common.util.CalendarUtils;
+import org.smartloli.kafka.eagle.core.metrics.tsdb.TimeSeriesStore.Sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Downsampled tier of the raw one minute samples, such as 10 minutes or 1
+ * hour buckets.
+ * <p>
+ * Every closed bucket of a raw series becomes five samples in the tier store,
+ * one for each {@link Aggregate}, stamped with the bucket start. The tier keeps
+ * its own retention, so long range charts can still be drawn after the raw
+ * samples are cleaned.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TimeSeriesRollup {
+
+    /**
+     * A bucket is only closed after this delay, samples are stamped when the
+     * collect starts and written a few seconds later. A sample written more
+     * than this delay after the end of its bucket, such as one held in the
+     * write behind queue during a database stall, stays in the raw store but
+     * is never added to the tier, as the bucket has already been written.
+     */
+    private static final long GRACE_MS = 2 * 60 * 1000L;
+
+    private static final String SEPARATOR = "#";
+
+    public enum Aggregate {
+        MIN, MAX, AVG, LAST, SUM;
+
+        public static Aggregate of(Object name) {
+            return name == null ? AVG : valueOf(name.toString().trim().toUpperCase());
+        }
+
+        private String suffix() {
+            return SEPARATOR + name().toLowerCase();
+        }
+    }
+
+    private final String name;
+    private final long resolution;
+    private final int retainDays;
+    private final TimeSeriesStore store;
+
+    public TimeSeriesRollup(String name, long resolution, int retainDays, File dir, int chunkSamples) throws IOException {
+        this.name = name;
+        this.resolution = resolution;
+        this.retainDays = retainDays;
+        this.store = new TimeSeriesStore(dir, chunkSamples);
+    }
+
+    /**
+     * Aggregate the raw buckets closed since the last rollup, return the number
+     * of buckets written. Calls are serialized, two concurrent rollups would
+     * read the same last bucket and append it twice.
+     */
+    public synchronized int rollup(TimeSeriesStore raw, long now) throws IOException {
+        long to = Math.floorDiv(now - GRACE_MS, resolution) * resolution;
+        int buckets = 0;
+        for (SeriesKey key : raw.keys()) {
+            long last = store.lastTimestamp(aggregate(key, Aggregate.LAST));
+            long from = last == Long.MIN_VALUE ? Long.MIN_VALUE : last + resolution;
+            if (from >= to) {
+                continue;
+            }
+            List<Sample> samples = raw.range(key, from, to);
+            int i = 0;
+            while (i < samples.size()) {
+                long bucket = Math.floorDiv(samples.get(i).getTimestamp(), resolution) * resolution;
+                Accumulator accumulator = new Accumulator();
+                while (i < samples.size() && samples.get(i).getTimestamp() < bucket + resolution) {
+                    accumulator.add(samples.get(i).getValue());
+                    i++;
+                }
+                int day = day(bucket);
+                store.append(aggregate(key, Aggregate.MIN), day, bucket, accumulator.min);
+                store.append(aggregate(key, Aggregate.MAX), day, bucket, accumulator.max);
+                store.append(aggregate(key, Aggregate.AVG), day, bucket, accumulator.avg());
+                store.append(aggregate(key, Aggregate.SUM), day, bucket, accumulator.sum);
+                store.append(aggregate(key, Aggregate.LAST), day, bucket, accumulator.last);
+                buckets++;
+            }
+        }
+        if (buckets > 0) {
+            store.commit();
+        }
+        return buckets;
+    }
+
+    /**
+     * Get one aggregate of the matched series between the two days, keyed by
+     * the raw series, in time order.
+     */
+    public List<Sample> scan(Predicate<SeriesKey> filter, int fromDay, int toDay, Aggregate aggregate) throws IOException {
+        String suffix = aggregate.suffix();
+        Map<SeriesKey, SeriesKey> raws = new HashMap<>();
+        Predicate<SeriesKey> tierFilter = key -> {
+            if (!key.getKey().endsWith(suffix)) {
+                return false;
+            }
+            SeriesKey raw = new SeriesKey(key.getCluster(), key.getType(), key.getBroker(), key.getKey().substring(0, key.getKey().length() - suffix.length()));
+            if (filter.test(raw)) {
+                raws.put(key, raw);
+                return true;
+            }
+            return false;
+        };
+        List<Sample> samples = new ArrayList<>();
+        for (Sample sample : store.scan(tierFilter, fromDay, toDay)) {
+            samples.add(new Sample(raws.get(sample.getSeries()), sample.getTimestamp(), sample.getValue()));
+        }
+        return samples;
+    }
+
+    /**
+     * Drop the buckets out of the tier retention.
+     */
+    public void clean() throws IOException {
+        store.remove(Integer.parseInt(CalendarUtils.getCustomLastDay(retainDays)));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getResolution() {
+        return resolution;
+    }
+
+    public int getRetainDays() {
+        return retainDays;
+    }
+
+    public Map<String, Long> stats() throws IOException {
+        return store.stats();
+    }
+
+    public void close() {
+        store.close();
+    }
+
+    private static SeriesKey aggregate(SeriesKey key, Aggregate aggregate) {
+        return new SeriesKey(key.getCluster(), key.getType(), key.getBroker(), key.getKey() + aggregate.suffix());
+    }
+
+    private static int day(long timestamp) {
+        return Integer.parseInt(CalendarUtils.convertUnixTime(timestamp, "yyyyMMdd"));
+    }
+
+    private static class Accumulator {
+        private double min = Double.NaN;
+        private double max = Double.NaN;
+        private double sum = 0D;
+        private double last = Double.NaN;
+        private long count = 0L;
+
+        private void add(double value) {
+            if (Double.isNaN(value)) {
+                return;
+            }
+            min = count == 0 ? value : Math.min(min, value);
+            max = count == 0 ? value : Math.max(max, value);
+            sum += value;
+            last = value;
+            count++;
+        }
+
+        private double avg() {
+            return count == 0 ? Double.NaN : sum / count;
+        }
+    }
+
+}
@@ -0,0 +1,261 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.metrics.tsdb;
+
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append only file of sealed chunks of one day.
+ * <p>
+ * Each record is [length][crc][series][day][min time][max time][count][data].
+ * Sealed chunks are only appended, the file is memory mapped for reads and
+ * mapped again when it grows. A torn record at the end of the file, left by a
+ * crash, is cut off when the segment is opened.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TimeSeriesSegment {
+
+    public static final String SUFFIX = ".seg";
+
+    private final int day;
+    private File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private volatile MappedByteBuffer mapped;
+
+    private TimeSeriesSegment(int day, File file) throws IOException {
+        this.day = day;
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+    }
+
+    /**
+     * Open or create the segment of the day, and hand every valid chunk in the
+     * file to the loader.
+     */
+    public static TimeSeriesSegment open(File dir, int day, Consumer<ChunkRef> loader) throws IOException {
+        TimeSeriesSegment segment = new TimeSeriesSegment(day, new File(dir, day + SUFFIX));
+        segment.recover(loader);
+        return segment;
+    }
+
+    /**
+     * Create an empty segment of the day in the given file, used by compaction
+     * to rewrite a segment before it replaces the old one.
+     */
+    static TimeSeriesSegment create(File file, int day) throws IOException {
+        TimeSeriesSegment segment = new TimeSeriesSegment(day, file);
+        segment.channel.truncate(0L);
+        return segment;
+    }
+
+    private void recover(Consumer<ChunkRef> loader) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return;
+        }
+        ByteBuffer buffer = map(size);
+        long position = 0L;
+        while (position + 8 <= size) {
+            buffer.position((int) position);
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length <= 0 || position + 8 + length > size) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32 checksum = new CRC32();
+            checksum.update(payload, 0, length);
+            if ((int) checksum.getValue() != crc) {
+                break;
+            }
+            loader.accept(ChunkRef.read(this, ByteBuffer.wrap(payload), position + 8));
+            position += 8 + length;
+        }
+        if (position < size) {
+            LoggerUtils.print(this.getClass()).warn("Segment[" + file + "] has a broken tail at " + position + ", truncate " + (size - position) + " bytes.");
+            mapped = null;
+            channel.truncate(position);
+        }
+    }
+
+    /**
+     * Append a sealed chunk and return its reference.
+     */
+    public synchronized ChunkRef append(SeriesKey series, long minTime, long maxTime, int count, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + data.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        series.write(out);
+        out.writeInt(day);
+        out.writeLong(minTime);
+        out.writeLong(maxTime);
+        out.writeInt(count);
+        out.writeInt(data.length);
+        out.write(data);
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(payload, 0, payload.length);
+
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length);
+        record.putInt((int) checksum.getValue());
+        record.put(payload);
+        record.flip();
+        long position = channel.size();
+        while (record.hasRemaining()) {
+            channel.write(record, position + record.position());
+        }
+        return ChunkRef.read(this, ByteBuffer.wrap(payload), position + 8);
+    }
+
+    /**
+     * Read the encoded data of a chunk through the mapped file.
+     */
+    byte[] read(long position, int length) throws IOException {
+        MappedByteBuffer buffer = mapped;
+        if (buffer == null || position + length > buffer.capacity()) {
+            buffer = map(channel.size());
+        }
+        byte[] data = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) position);
+        view.get(data);
+        return data;
+    }
+
+    private synchronized MappedByteBuffer map(long size) throws IOException {
+        if (mapped == null || mapped.capacity() < size) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return mapped;
+    }
+
+    public void flush() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Force the segment to disk and move it over the target file, the open
+     * channel and the chunk references stay valid.
+     */
+    synchronized void replace(File target) throws IOException {
+        channel.force(false);
+        Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        file = target;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    public void close() {
+        mapped = null;
+        try {
+            channel.close();
+            raf.close();
+        } catch (IOException e) {
+            LoggerUtils.print(this.getClass()).error("Close segment[" + file + "] has error, msg is ", e);
+        }
+    }
+
+    public boolean delete() {
+        close();
+        return file.delete();
+    }
+
+    /**
+     * Location of a sealed chunk in a segment.
+     */
+    public static final class ChunkRef {
+        private final TimeSeriesSegment segment;
+        private final SeriesKey series;
+        private final long minTime;
+        private final long maxTime;
+        private final int count;
+        private final long position;
+        private final int length;
+
+        private ChunkRef(TimeSeriesSegment segment, SeriesKey series, long minTime, long maxTime, int count, long position, int length) {
+            this.segment = segment;
+            this.series = series;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.count = count;
+            this.position = position;
+            this.length = length;
+        }
+
+        private static ChunkRef read(TimeSeriesSegment segment, ByteBuffer payload, long payloadPosition) {
+            SeriesKey series = SeriesKey.read(payload);
+            payload.getInt(); // day
+            long minTime = payload.getLong();
+            long maxTime = payload.getLong();
+            int count = payload.getInt();
+            int length = payload.getInt();
+            return new ChunkRef(segment, series, minTime, maxTime, count, payloadPosition + payload.position(), length);
+        }
+
+        public SeriesKey getSeries() {
+            return series;
+        }
+
+        public int getDay() {
+            return segment.getDay();
+        }
+
+        public long getMinTime() {
+            return minTime;
+        }
+
+        public long getMaxTime() {
+            return maxTime;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public byte[] data() throws IOException {
+            return segment.read(position, length);
+        }
+    }
+
+}
@@ -0,0 +1,778 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.metrics.tsdb;
+
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.core.metrics.tsdb.TimeSeriesSegment.ChunkRef;
+import org.smartloli.kafka.eagle.core.metrics.tsdb.TimeSeriesWal.Entry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Embedded time series store of the collected metrics.
+ * <p>
+ * Every series keeps an open head chunk in memory. A head is sealed into the
+ * segment file of its day once it holds enough samples or the day changes, so
+ * a chunk never spans two days and retention only deletes whole segments.
+ * Every batch of samples is appended to the write ahead log, and the heads are
+ * written to a snapshot only when the log grows large or old, which keeps them
+ * across restarts without rewriting every head each batch. The segments
+ * sealed into since the last snapshot are forced to disk before the log is
+ * emptied. The segments of closed days are compacted, so the samples of a
+ * series for one day are read from a few large chunks, and a marker file
+ * keeps a compacted day from being read again after a restart. Range queries
+ * only decode the chunks of the days they ask for.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TimeSeriesStore {
+
+    private static final String HEAD_FILE = "head.snapshot";
+
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    /**
+     * Marker of a compacted day, deleted when a late chunk is sealed into it.
+     */
+    private static final String COMPACTED_SUFFIX = ".compacted";
+
+    private final File dir;
+    private final int chunkSamples;
+    private final long checkpointMs;
+    private final long walMaxBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<SeriesKey, Series> series = new HashMap<>();
+    private final TreeMap<Integer, TimeSeriesSegment> segments = new TreeMap<>();
+    private final TimeSeriesWal wal;
+    /**
+     * Days whose segment is compacted, each one has a marker file.
+     */
+    private final Set<Integer> compacted = ConcurrentHashMap.newKeySet();
+    /**
+     * Segments sealed into since the last snapshot, guarded by the lock.
+     */
+    private final Set<TimeSeriesSegment> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+    /**
+     * Serializes compaction and retention, which both replace segments.
+     */
+    private final Object compactLock = new Object();
+    private List<Entry> pending = new ArrayList<>();
+    private long lastCheckpoint = System.currentTimeMillis();
+
+    public TimeSeriesStore(File dir, int chunkSamples) throws IOException {
+        this(dir, chunkSamples, 10 * 60 * 1000L, 64 * 1024 * 1024L);
+    }
+
+    /**
+     * Open the store in the dir, a head snapshot is written when the write
+     * ahead log is older than checkpointMs or larger than walMaxBytes.
+     */
+    public TimeSeriesStore(File dir, int chunkSamples, long checkpointMs, long walMaxBytes) throws IOException {
+        this.dir = dir;
+        this.chunkSamples = chunkSamples;
+        this.checkpointMs = checkpointMs;
+        this.walMaxBytes = walMaxBytes;
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Create time series dir[" + dir + "] failed.");
+        }
+        // a rewrite left by a crash during compaction, the old segment is still complete
+        File[] leftovers = dir.listFiles((d, name) -> name.endsWith(TimeSeriesSegment.SUFFIX + COMPACT_SUFFIX));
+        if (leftovers != null) {
+            for (File leftover : leftovers) {
+                if (!leftover.delete()) {
+                    LoggerUtils.print(this.getClass()).warn("Delete compaction leftover[" + leftover + "] failed.");
+                }
+            }
+        }
+        File[] files = dir.listFiles((d, name) -> name.endsWith(TimeSeriesSegment.SUFFIX));
+        TreeMap<Integer, File> days = new TreeMap<>();
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    days.put(Integer.parseInt(file.getName().substring(0, file.getName().length() - TimeSeriesSegment.SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    LoggerUtils.print(this.getClass()).warn("Skip unknown file[" + file + "] in time series dir.");
+                }
+            }
+        }
+        for (Integer day : days.keySet()) {
+            segments.put(day, TimeSeriesSegment.open(dir, day, ref -> series(ref.getSeries()).chunks.add(ref)));
+        }
+        File[] markers = dir.listFiles((d, name) -> name.endsWith(TimeSeriesSegment.SUFFIX + COMPACTED_SUFFIX));
+        if (markers != null) {
+            for (File marker : markers) {
+                String name = marker.getName();
+                Integer day = null;
+                try {
+                    day = Integer.parseInt(name.substring(0, name.length() - TimeSeriesSegment.SUFFIX.length() - COMPACTED_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    LoggerUtils.print(this.getClass()).warn("Skip unknown file[" + marker + "] in time series dir.");
+                }
+                if (day != null && segments.containsKey(day)) {
+                    compacted.add(day);
+                } else if (day != null && !marker.delete()) {
+                    LoggerUtils.print(this.getClass()).warn("Delete compacted marker[" + marker + "] failed.");
+                }
+            }
+        }
+        loadHeads();
+
+        this.wal = new TimeSeriesWal(dir);
+        int[] replayed = new int[1];
+        // the samples already sealed or in the snapshot are older than the series
+        wal.replay((key, day, timestamp, value) -> {
+            if (timestamp > lastTimestamp(key)) {
+                write(key, day, timestamp, value);
+                replayed[0]++;
+            }
+        });
+        if (wal.size() > 0) {
+            LoggerUtils.print(this.getClass()).info("Replay " + replayed[0] + " samples from the wal of time series dir[" + dir + "].");
+            checkpoint();
+        }
+    }
+
+    /**
+     * Append one sample, the day is in yyyyMMdd. The sample is logged by the
+     * next commit.
+     */
+    public void append(SeriesKey key, int day, long timestamp, double value) throws IOException {
+        lock.writeLock().lock();
+        try {
+            write(key, day, timestamp, value);
+            pending.add(new Entry(key, day, timestamp, value));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Log the samples appended since the last commit, call it after a batch
+     * of samples. Once the log is older or larger than its limits the heads
+     * are written to a snapshot instead and the log starts over.
+     */
+    public synchronized void commit() throws IOException {
+        if (System.currentTimeMillis() - lastCheckpoint >= checkpointMs || wal.size() >= walMaxBytes) {
+            checkpoint();
+            return;
+        }
+        List<Entry> entries;
+        lock.writeLock().lock();
+        try {
+            entries = pending;
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        wal.append(entries);
+    }
+
+    /**
+     * Write the open heads to disk and empty the write ahead log.
+     */
+    public synchronized void checkpoint() throws IOException {
+        lock.readLock().lock();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            List<Series> heads = new ArrayList<>();
+            for (Series target : series.values()) {
+                if (target.head != null) {
+                    heads.add(target);
+                }
+            }
+            out.writeInt(heads.size());
+            for (Series target : heads) {
+                byte[] data = target.head.encoder.toBytes();
+                target.key.write(out);
+                out.writeInt(target.head.day);
+                out.writeInt(target.head.encoder.count());
+                out.writeInt(data.length);
+                out.write(data);
+            }
+            out.flush();
+            // the chunks sealed since the last snapshot are only in the wal until their segments are forced
+            for (TimeSeriesSegment segment : dirty) {
+                segment.flush();
+            }
+            dirty.clear();
+            File tmp = new File(dir, HEAD_FILE + ".tmp");
+            // the snapshot and its rename must be on disk before the wal is truncated
+            writeSynced(tmp, bytes.toByteArray());
+            Files.move(tmp.toPath(), new File(dir, HEAD_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDir(dir);
+            // appends wait for the write lock, so every pending sample is in the snapshot
+            pending = new ArrayList<>();
+            wal.reset();
+            lastCheckpoint = System.currentTimeMillis();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compact the segments of the days before the given day, return the
+     * number of segments rewritten.
+     * <p>
+     * The open heads of those days are sealed first. A segment is rewritten
+     * with the samples of each series merged into chunks of up to
+     * compactSamples, stored together, then moved over the old file. The
+     * rewrite runs without the lock and without the commit monitor, so
+     * appends, commits and queries go on meanwhile.
+     */
+    public int compact(int beforeDay, int compactSamples) throws IOException {
+        synchronized (compactLock) {
+            return compactDays(beforeDay, compactSamples);
+        }
+    }
+
+    private int compactDays(int beforeDay, int compactSamples) throws IOException {
+        int maxSamples = Math.max(chunkSamples, compactSamples);
+        List<Integer> days;
+        lock.writeLock().lock();
+        try {
+            for (Series target : series.values()) {
+                if (target.head != null && target.head.day < beforeDay) {
+                    seal(target);
+                }
+            }
+            days = new ArrayList<>(segments.headMap(beforeDay, false).keySet());
+            days.removeAll(compacted);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        int rewrites = 0;
+        for (Integer day : days) {
+            TimeSeriesSegment segment;
+            Map<Series, List<ChunkRef>> chunks = new LinkedHashMap<>();
+            lock.readLock().lock();
+            try {
+                segment = segments.get(day);
+                for (Series target : series.values()) {
+                    for (ChunkRef chunk : target.chunks) {
+                        if (chunk.getDay() == day) {
+                            chunks.computeIfAbsent(target, k -> new ArrayList<>()).add(chunk);
+                        }
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (segment == null) {
+                continue;
+            }
+            if (!fragmented(chunks, maxSamples)) {
+                lock.writeLock().lock();
+                try {
+                    if (segments.get(day) == segment && !sealedSince(day, chunks)) {
+                        markCompacted(day);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                continue;
+            }
+
+            File tmp = new File(dir, day + TimeSeriesSegment.SUFFIX + COMPACT_SUFFIX);
+            TimeSeriesSegment rewritten = TimeSeriesSegment.create(tmp, day);
+            Map<Series, List<ChunkRef>> merged = new HashMap<>();
+            try {
+                for (Map.Entry<Series, List<ChunkRef>> entry : chunks.entrySet()) {
+                    List<Sample> samples = new ArrayList<>();
+                    for (ChunkRef chunk : entry.getValue()) {
+                        decode(entry.getKey().key, chunk.data(), chunk.getCount(), samples);
+                    }
+                    samples.sort(Comparator.comparingLong(Sample::getTimestamp));
+                    List<ChunkRef> refs = new ArrayList<>();
+                    for (int i = 0; i < samples.size(); i += maxSamples) {
+                        TimeSeriesChunk.Encoder encoder = new TimeSeriesChunk.Encoder();
+                        for (Sample sample : samples.subList(i, Math.min(samples.size(), i + maxSamples))) {
+                            encoder.append(sample.getTimestamp(), sample.getValue());
+                        }
+                        refs.add(rewritten.append(entry.getKey().key, encoder.minTime(), encoder.maxTime(), encoder.count(), encoder.toBytes()));
+                    }
+                    merged.put(entry.getKey(), refs);
+                }
+            } catch (IOException e) {
+                rewritten.delete();
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (segments.get(day) != segment || sealedSince(day, chunks)) {
+                    // a late sample of the day was sealed meanwhile, retry on the next compaction
+                    rewritten.delete();
+                    continue;
+                }
+                rewritten.replace(new File(dir, day + TimeSeriesSegment.SUFFIX));
+                for (Map.Entry<Series, List<ChunkRef>> entry : merged.entrySet()) {
+                    List<ChunkRef> targetChunks = entry.getKey().chunks;
+                    int position = 0;
+                    while (position < targetChunks.size() && targetChunks.get(position).getDay() < day) {
+                        position++;
+                    }
+                    targetChunks.removeIf(chunk -> chunk.getDay() == day);
+                    targetChunks.addAll(position, entry.getValue());
+                }
+                segments.put(day, rewritten);
+                dirty.remove(segment);
+                segment.close();
+                markCompacted(day);
+                rewrites++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return rewrites;
+    }
+
+    /**
+     * Get the samples of one series in [fromTime, toTime), in time order.
+     * Chunks outside the time range are skipped without decoding.
+     */
+    public List<Sample> range(SeriesKey key, long fromTime, long toTime) throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Series target = series.get(key);
+            if (target == null) {
+                return samples;
+            }
+            for (ChunkRef chunk : target.chunks) {
+                if (chunk.getMaxTime() >= fromTime && chunk.getMinTime() < toTime) {
+                    decode(target.key, chunk.data(), chunk.getCount(), samples);
+                }
+            }
+            Head head = target.head;
+            if (head != null && head.encoder.maxTime() >= fromTime && head.encoder.minTime() < toTime) {
+                decode(target.key, head.encoder.toBytes(), head.encoder.count(), samples);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        samples.removeIf(sample -> sample.getTimestamp() < fromTime || sample.getTimestamp() >= toTime);
+        samples.sort(Comparator.comparingLong(Sample::getTimestamp));
+        return samples;
+    }
+
+    /**
+     * Get the keys of all series in the store.
+     */
+    public List<SeriesKey> keys() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(series.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the newest timestamp of one series, Long.MIN_VALUE when it is empty.
+     */
+    public long lastTimestamp(SeriesKey key) {
+        lock.readLock().lock();
+        try {
+            Series target = series.get(key);
+            if (target == null) {
+                return Long.MIN_VALUE;
+            }
+            if (target.head != null) {
+                return target.head.encoder.maxTime();
+            }
+            return target.chunks.isEmpty() ? Long.MIN_VALUE : target.chunks.get(target.chunks.size() - 1).getMaxTime();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get all samples of the matched series between the two days, inclusive,
+     * in time order.
+     */
+    public List<Sample> scan(Predicate<SeriesKey> filter, int fromDay, int toDay) throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Series target : series.values()) {
+                if (!filter.test(target.key)) {
+                    continue;
+                }
+                for (ChunkRef chunk : target.chunks) {
+                    if (chunk.getDay() >= fromDay && chunk.getDay() <= toDay) {
+                        decode(target.key, chunk.data(), chunk.getCount(), samples);
+                    }
+                }
+                Head head = target.head;
+                if (head != null && head.day >= fromDay && head.day <= toDay) {
+                    decode(target.key, head.encoder.toBytes(), head.encoder.count(), samples);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        samples.sort(Comparator.comparingLong(Sample::getTimestamp));
+        return samples;
+    }
+
+    /**
+     * Get the newest samples of the matched series between the two days,
+     * newest first. Only the chunks holding the newest samples are decoded.
+     */
+    public List<Sample> latest(Predicate<SeriesKey> filter, int fromDay, int toDay, int limit) throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Series target : series.values()) {
+                if (!filter.test(target.key)) {
+                    continue;
+                }
+                List<Sample> newest = new ArrayList<>();
+                Head head = target.head;
+                if (head != null && head.day >= fromDay && head.day <= toDay) {
+                    decode(target.key, head.encoder.toBytes(), head.encoder.count(), newest);
+                }
+                for (int i = target.chunks.size() - 1; i >= 0 && newest.size() < limit; i--) {
+                    ChunkRef chunk = target.chunks.get(i);
+                    if (chunk.getDay() >= fromDay && chunk.getDay() <= toDay) {
+                        decode(target.key, chunk.data(), chunk.getCount(), newest);
+                    }
+                }
+                samples.addAll(newest);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        samples.sort(Comparator.comparingLong(Sample::getTimestamp).reversed());
+        return samples.size() > limit ? new ArrayList<>(samples.subList(0, limit)) : samples;
+    }
+
+    /**
+     * Drop all samples of the days before or equal to the given day, by
+     * deleting their whole segments.
+     */
+    public void remove(int day) throws IOException {
+        synchronized (compactLock) {
+            removeDays(day);
+        }
+        checkpoint();
+    }
+
+    private void removeDays(int day) {
+        lock.writeLock().lock();
+        try {
+            Iterator<Series> iterator = series.values().iterator();
+            while (iterator.hasNext()) {
+                Series target = iterator.next();
+                target.chunks.removeIf(chunk -> chunk.getDay() <= day);
+                if (target.head != null && target.head.day <= day) {
+                    target.head = null;
+                }
+                if (target.chunks.isEmpty() && target.head == null) {
+                    iterator.remove();
+                }
+            }
+            Iterator<Map.Entry<Integer, TimeSeriesSegment>> segmentIterator = segments.headMap(day, true).entrySet().iterator();
+            while (segmentIterator.hasNext()) {
+                TimeSeriesSegment segment = segmentIterator.next().getValue();
+                dirty.remove(segment);
+                if (!segment.delete()) {
+                    LoggerUtils.print(this.getClass()).warn("Delete time series segment of day[" + segment.getDay() + "] failed.");
+                }
+                marker(segment.getDay()).delete();
+                segmentIterator.remove();
+            }
+            compacted.removeIf(compactedDay -> compactedDay <= day);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of series and the bytes used on disk.
+     */
+    public Map<String, Long> stats() throws IOException {
+        Map<String, Long> stats = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            long chunks = 0L;
+            long samples = 0L;
+            long bytes = 0L;
+            for (Series target : series.values()) {
+                chunks += target.chunks.size();
+                for (ChunkRef chunk : target.chunks) {
+                    samples += chunk.getCount();
+                }
+                if (target.head != null) {
+                    samples += target.head.encoder.count();
+                }
+            }
+            for (TimeSeriesSegment segment : segments.values()) {
+                bytes += segment.size();
+            }
+            stats.put("series", (long) series.size());
+            stats.put("chunks", chunks);
+            stats.put("samples", samples);
+            stats.put("bytes", bytes);
+            stats.put("wal", wal.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return stats;
+    }
+
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (TimeSeriesSegment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            series.clear();
+            wal.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Series series(SeriesKey key) {
+        return series.computeIfAbsent(key, Series::new);
+    }
+
+    private void write(SeriesKey key, int day, long timestamp, double value) throws IOException {
+        Series target = series(key);
+        if (target.head != null && (target.head.day != day || target.head.encoder.count() >= chunkSamples)) {
+            seal(target);
+        }
+        if (target.head == null) {
+            target.head = new Head(day);
+        }
+        target.head.encoder.append(timestamp, value);
+    }
+
+    /**
+     * Return true when a chunk of the day was sealed after the chunks to
+     * compact were taken.
+     */
+    private boolean sealedSince(int day, Map<Series, List<ChunkRef>> chunks) {
+        Set<ChunkRef> taken = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<ChunkRef> refs : chunks.values()) {
+            taken.addAll(refs);
+        }
+        for (Series target : series.values()) {
+            for (ChunkRef chunk : target.chunks) {
+                if (chunk.getDay() == day && !taken.contains(chunk)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return true when a series has a chunk short of maxSamples followed by
+     * another chunk of the day, which a compaction would merge.
+     */
+    private static boolean fragmented(Map<Series, List<ChunkRef>> chunks, int maxSamples) {
+        for (List<ChunkRef> refs : chunks.values()) {
+            for (int i = 0; i < refs.size() - 1; i++) {
+                if (refs.get(i).getCount() < maxSamples) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void seal(Series target) throws IOException {
+        Head head = target.head;
+        TimeSeriesSegment segment = segments.get(head.day);
+        if (segment == null) {
+            segment = TimeSeriesSegment.open(dir, head.day, ref -> {
+            });
+            segments.put(head.day, segment);
+        }
+        // drop the marker first, a crash in between only compacts the day again
+        if (compacted.remove(head.day) && !marker(head.day).delete()) {
+            LoggerUtils.print(this.getClass()).warn("Delete compacted marker of day[" + head.day + "] failed.");
+        }
+        target.chunks.add(segment.append(target.key, head.encoder.minTime(), head.encoder.maxTime(), head.encoder.count(), head.encoder.toBytes()));
+        target.head = null;
+        dirty.add(segment);
+    }
+
+    private static void writeSynced(File file, byte[] data) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Force the entries of the directory, such as a renamed file, to disk.
+     * Some platforms cannot open a directory, the rename is then left to the
+     * file system.
+     */
+    private static void syncDir(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LoggerUtils.print(TimeSeriesStore.class).debug("Sync directory[" + dir + "] has error, msg is " + e.getMessage());
+        }
+    }
+
+    private File marker(int day) {
+        return new File(dir, day + TimeSeriesSegment.SUFFIX + COMPACTED_SUFFIX);
+    }
+
+    private void markCompacted(int day) throws IOException {
+        File marker = marker(day);
+        if (!marker.exists() && !marker.createNewFile()) {
+            throw new IOException("Create compacted marker[" + marker + "] failed.");
+        }
+        compacted.add(day);
+    }
+
+    private void loadHeads() throws IOException {
+        File file = new File(dir, HEAD_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            int size = in.getInt();
+            for (int i = 0; i < size; i++) {
+                SeriesKey key = SeriesKey.read(in);
+                int day = in.getInt();
+                int count = in.getInt();
+                byte[] data = new byte[in.getInt()];
+                in.get(data);
+                long[] timestamps = new long[count];
+                double[] values = new double[count];
+                TimeSeriesChunk.decode(data, count, timestamps, values);
+
+                Series target = series(key);
+                // the head may be sealed after the last snapshot, skip the sealed samples
+                long sealed = Long.MIN_VALUE;
+                for (ChunkRef chunk : target.chunks) {
+                    if (chunk.getDay() == day) {
+                        sealed = Math.max(sealed, chunk.getMaxTime());
+                    }
+                }
+                for (int j = 0; j < count; j++) {
+                    if (timestamps[j] > sealed) {
+                        if (target.head == null) {
+                            target.head = new Head(day);
+                        }
+                        target.head.encoder.append(timestamps[j], values[j]);
+                    }
+                }
+                if (target.chunks.isEmpty() && target.head == null) {
+                    series.remove(key);
+                }
+            }
+        } catch (Exception e) {
+            LoggerUtils.print(this.getClass()).error("Load time series heads has error, msg is ", e);
+        }
+    }
+
+    private static void decode(SeriesKey key, byte[] data, int count, List<Sample> samples) {
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        TimeSeriesChunk.decode(data, count, timestamps, values);
+        for (int i = 0; i < count; i++) {
+            samples.add(new Sample(key, timestamps[i], values[i]));
+        }
+    }
+
+    private static class Series {
+        private final SeriesKey key;
+        private final List<ChunkRef> chunks = new ArrayList<>();
+        private Head head;
+
+        private Series(SeriesKey key) {
+            this.key = key;
+        }
+    }
+
+    private static class Head {
+        private final int day;
+        private final TimeSeriesChunk.Encoder encoder = new TimeSeriesChunk.Encoder();
+
+        private Head(int day) {
+            this.day = day;
+        }
+    }
+
+    /**
+     * One decoded sample.
+     */
+    public static final class Sample {
+        private final SeriesKey series;
+        private final long timestamp;
+        private final double value;
+
+        public Sample(SeriesKey series, long timestamp, double value) {
+            this.series = series;
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+
+        public SeriesKey getSeries() {
+            return series;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public double getValue() {
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.metrics.tsdb;
+
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Write ahead log of the samples appended to the open heads since the last
+ * head snapshot.
+ * <p>
+ * Each record is one batch of samples, [length][crc][keys][samples], the
+ * series keys of a batch are written once and the samples refer to them by
+ * position. A torn record at the end of the log, left by a crash, is cut off
+ * when the log is replayed.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TimeSeriesWal {
+
+    public static final String FILE = "wal.log";
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    public TimeSeriesWal(File dir) throws IOException {
+        this.file = new File(dir, FILE);
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+    }
+
+    /**
+     * Hand every sample of the valid records to the loader, in write order.
+     */
+    public void replay(Loader loader) throws IOException {
+        long size = channel.size();
+        long position = 0L;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (position + 8 <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length <= 0 || position + 8 + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            while (payload.hasRemaining()) {
+                channel.read(payload, position + 8 + payload.position());
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(payload.array(), 0, length);
+            if ((int) checksum.getValue() != crc) {
+                break;
+            }
+            payload.flip();
+            SeriesKey[] keys = new SeriesKey[payload.getInt()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = SeriesKey.read(payload);
+            }
+            int samples = payload.getInt();
+            for (int i = 0; i < samples; i++) {
+                loader.accept(keys[payload.getInt()], payload.getInt(), payload.getLong(), payload.getDouble());
+            }
+            position += 8 + length;
+        }
+        if (position < size) {
+            LoggerUtils.print(this.getClass()).warn("Wal[" + file + "] has a broken tail at " + position + ", truncate " + (size - position) + " bytes.");
+            channel.truncate(position);
+        }
+    }
+
+    /**
+     * Append one batch of samples as a single record and force it to disk.
+     */
+    public void append(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Map<SeriesKey, Integer> positions = new HashMap<>();
+        List<SeriesKey> keys = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (!positions.containsKey(entry.key)) {
+                positions.put(entry.key, keys.size());
+                keys.add(entry.key);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(keys.size() * 48 + entries.size() * 24 + 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(keys.size());
+        for (SeriesKey key : keys) {
+            key.write(out);
+        }
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeInt(positions.get(entry.key));
+            out.writeInt(entry.day);
+            out.writeLong(entry.timestamp);
+            out.writeDouble(entry.value);
+        }
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(payload, 0, payload.length);
+
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length);
+        record.putInt((int) checksum.getValue());
+        record.put(payload);
+        record.flip();
+        long position = channel.size();
+        while (record.hasRemaining()) {
+            channel.write(record, position + record.position());
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Drop all records, call it once the heads are in a snapshot.
+     */
+    public void reset() throws IOException {
+        channel.truncate(0L);
+        channel.force(false);
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    public void close() {
+        try {
+            channel.close();
+            raf.close();
+        } catch (IOException e) {
+            LoggerUtils.print(this.getClass()).error("Close wal[" + file + "] has error, msg is ", e);
+        }
+    }
+
+    /**
+     * Receiver of the replayed samples.
+     */
+    public interface Loader {
+        void accept(SeriesKey key, int day, long timestamp, double value) throws IOException;
+    }
+
+    /**
+     * One sample waiting to be logged.
+     */
+    public static final class Entry {
+        private final SeriesKey key;
+        private final int day;
+        private final long timestamp;
+        private final double value;
+
+        public Entry(SeriesKey key, int day, long timestamp, double value) {
+            this.key = key;
+            this.day = day;
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+    }
+
+}
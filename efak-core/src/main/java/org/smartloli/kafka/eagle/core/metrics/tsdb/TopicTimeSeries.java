@@ -0,0 +1,446 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.metrics.tsdb;
+
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenBarInfo;
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.common.protocol.topic.TopicLogSize;
+import org.smartloli.kafka.eagle.common.util.CalendarUtils;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.core.metrics.tsdb.TimeSeriesRollup.Aggregate;
+import org.smartloli.kafka.eagle.core.metrics.tsdb.TimeSeriesStore.Sample;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Topic logsize and bscreen consumer samples kept in the time series store of
+ * {@link MBeanTimeSeries}, it answers the same queries as the ke_logsize and
+ * ke_consumer_bscreen_press statements of TopicDao.
+ * <p>
+ * A ke_logsize row is one series per column, keyed by cluster/ke_logsize/
+ * topic/column. A ke_consumer_bscreen_press row is keyed by
+ * cluster/ke_consumer_bscreen/group/topic:column, a topic name never holds a
+ * colon. The samples share the days and the retention of the kpis, so they
+ * are cleaned by {@link MBeanTimeSeries#remove(int)}.
+ * <p>
+ * The daily bars sum the coarsest rollup tier and only read the raw samples
+ * newer than the last rolled bucket of each series.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class TopicTimeSeries {
+
+    public static final String LOGSIZE = "ke_logsize";
+
+    public static final String BSCREEN = "ke_consumer_bscreen";
+
+    private static final String SEPARATOR = ":";
+
+    private TopicTimeSeries() {
+
+    }
+
+    /**
+     * Write statistics topic logsize data into store.
+     */
+    public static int writeTopicLogSize(List<TopicLogSize> topicLogSizes) {
+        int size = 0;
+        try {
+            for (TopicLogSize topicLogSize : topicLogSizes) {
+                int day = day(topicLogSize.getTm());
+                long timespan = topicLogSize.getTimespan();
+                store().append(logsize(topicLogSize.getCluster(), topicLogSize.getTopic(), "logsize"), day, timespan, topicLogSize.getLogsize());
+                store().append(logsize(topicLogSize.getCluster(), topicLogSize.getTopic(), "diffval"), day, timespan, topicLogSize.getDiffval());
+                size++;
+            }
+            store().commit();
+        } catch (Exception e) {
+            LoggerUtils.print(TopicTimeSeries.class).error("Write topic logsize into time series store has error, msg is ", e);
+        }
+        return size;
+    }
+
+    /**
+     * Read topic lastest logsize diffval data.
+     */
+    public static TopicLogSize readLastTopicLogSize(Map<String, Object> params) {
+        String cluster = String.valueOf(params.get("cluster"));
+        String topic = String.valueOf(params.get("topic"));
+        try {
+            Sample logsize = last(logsize(cluster, topic, "logsize"));
+            if (logsize == null) {
+                return null;
+            }
+            Sample diffval = last(logsize(cluster, topic, "diffval"));
+            TopicLogSize topicLogSize = new TopicLogSize();
+            topicLogSize.setCluster(cluster);
+            topicLogSize.setTopic(topic);
+            topicLogSize.setLogsize((long) logsize.getValue());
+            topicLogSize.setDiffval(diffval == null ? 0L : (long) diffval.getValue());
+            return topicLogSize;
+        } catch (Exception e) {
+            LoggerUtils.print(TopicTimeSeries.class).error("Read last topic logsize from time series store has error, msg is ", e);
+        }
+        return null;
+    }
+
+    /**
+     * Get the logsize samples of one topic between the stime and etime days.
+     */
+    public static List<TopicLogSize> queryTopicProducerChart(Map<String, Object> params) {
+        String cluster = String.valueOf(params.get("cluster"));
+        String topic = String.valueOf(params.get("topic"));
+        Predicate<SeriesKey> filter = series -> series.getCluster().equals(cluster) && series.getType().equals(LOGSIZE) && series.getBroker().equals(topic);
+        try {
+            return topicLogSizes(cluster, store().scan(filter, day(params.get("stime")), day(params.get("etime"))));
+        } catch (Exception e) {
+            LoggerUtils.print(TopicTimeSeries.class).error("Query topic producer chart from time series store has error, msg is ", e);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Get the newest logsize sample of one topic on the stime day.
+     */
+    public static List<TopicLogSize> queryTopicProducerByAlarm(Map<String, Object> params) {
+        String cluster = String.valueOf(params.get("cluster"));
+        String topic = String.valueOf(params.get("topic"));
+        int day = day(params.get("stime"));
+        List<Sample> samples = new ArrayList<>();
+        try {
+            for (String column : new String[]{"logsize", "diffval"}) {
+                SeriesKey key = logsize(cluster, topic, column);
+                samples.addAll(store().latest(key::equals, day, day, 1));
+            }
+        } catch (Exception e) {
+            LoggerUtils.print(TopicTimeSeries.class).error("Query topic producer by alarm from time series store has error, msg is ", e);
+        }
+        List<TopicLogSize> topicLogSizes = topicLogSizes(cluster, samples);
+        return topicLogSizes.isEmpty() ? topicLogSizes : topicLogSizes.subList(topicLogSizes.size() - 1, topicLogSizes.size());
+    }
+
+    /**
+     * Sum the produced records of the topics by day, all topics when the
+     * topics param is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<BScreenBarInfo> queryProducerHistoryBar(Map<String, Object> params) {
+        String cluster = String.valueOf(params.get("cluster"));
+        Collection<String> topics = (Collection<String>) params.get("topics");
+        Set<String> selected = topics == null || topics.isEmpty() ? null : new HashSet<>(topics);
+        Predicate<SeriesKey> filter = series -> series.getCluster().equals(cluster) && series.getType().equals(LOGSIZE)
+                && series.getKey().equals("diffval") && (selected == null || selected.contains(series.getBroker()));
+        return bars(sums(filter, day(params.get("stime")), day(params.get("etime")), false));
+    }
+
+    /**
+     * Sum the newest logsize of every topic on the tday day.
+     */
+    @SuppressWarnings("unchecked")
+    public static long getBScreenTotalRecords(Map<String, Object> params) {
+        String cluster = String.valueOf(params.get("cluster"));
+        Collection<String> topics = (Collection<String>) params.get("topics");
+        Set<String> selected = topics == null || topics.isEmpty() ? null : new HashSet<>(topics);
+        int day = day(params.get("tday"));
+        long total = 0L;
+        try {
+            for (SeriesKey key : store().keys()) {
+                if (key.getCluster().equals(cluster) && key.getType().equals(LOGSIZE) && key.getKey().equals("logsize")
+                        && (selected == null || selected.contains(key.getBroker()))) {
+                    Sample sample = last(key);
+                    if (sample != null && day(sample.getTimestamp()) == day) {
+                        total += (long) sample.getValue();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LoggerUtils.print(TopicTimeSeries.class).error("Get bscreen total records from time series store has error, msg is ", e);
+        }
+        return total;
+    }
+
+    /**
+     * Get the topics which have produced records between the stime and etime
+     * days.
+     */
+    public static Set<String> getActiveTopics(Map<String, Object> params) {
+        String cluster = String.valueOf(params.get("cluster"));
+        Predicate<SeriesKey> filter = series -> series.getCluster().equals(cluster) && series.getType().equals(LOGSIZE) && series.getKey().equals("diffval");
+        Set<String> topics = new HashSet<>();
+        for (Sample sample : sums(filter, day(params.get("stime")), day(params.get("etime")), false)) {
+            if (sample.getValue() > 0) {
+                topics.add(sample.getSeries().getBroker());
+            }
+        }
+        return topics;
+    }
+
+    /**
+     * Write consumer bscreen data into store.
+     */
+    public static int writeBSreenConsumerTopic(List<BScreenConsumerInfo> bscreenConsumers) {
+        int size = 0;
+        try {
+            for (BScreenConsumerInfo consumer : bscreenConsumers) {
+                int day = day(consumer.getTm());
+                long timespan = consumer.getTimespan();
+                String cluster = consumer.getCluster();
+                store().append(bscreen(cluster, consumer.getGroup(), consumer.getTopic(), "logsize"), day, timespan, consumer.getLogsize());
+                store().append(bscreen(cluster, consumer.getGroup(), consumer.getTopic(), "difflogsize"), day, timespan, consumer.getDifflogsize());
+                store().append(bscreen(cluster, consumer.getGroup(), consumer.getTopic(), "offsets"), day, timespan, consumer.getOffsets());
+                store().append(bscreen(cluster, consumer.getGroup(), consumer.getTopic(), "diffoffsets"), day, timespan, consumer.getDiffoffsets());
+                store().append(bscreen(cluster, consumer.getGroup(), consumer.getTopic(), "lag"), day, timespan, consumer.getLag());
+                size++;
+            }
+            store().commit();
+        } catch (Exception e) {
+            LoggerUtils.print(TopicTimeSeries.class).error("Write consumer bscreen into time series store has error, msg is ", e);
+        }
+        return size;
+    }
+
+    /**
+     * Read the newest bscreen sample of one group and topic.
+     */
+    public static BScreenConsumerInfo readBScreenLastTopic(Map<String, Object> params) {
+        String cluster = String.valueOf(params.get("cluster"));
+        String group = String.valueOf(params.get("group"));
+        String topic = String.valueOf(params.get("topic"));
+        try {
+            Sample logsize = last(bscreen(cluster, group, topic, "logsize"));
+            if (logsize == null) {
+                return null;
+            }
+            BScreenConsumerInfo consumer = new BScreenConsumerInfo();
+            consumer.setCluster(cluster);
+            consumer.setGroup(group);
+            consumer.setTopic(topic);
+            consumer.setLogsize((long) logsize.getValue());
+            consumer.setDifflogsize(value(last(bscreen(cluster, group, topic, "difflogsize"))));
+            consumer.setOffsets(value(last(bscreen(cluster, group, topic, "offsets"))));
+            consumer.setDiffoffsets(value(last(bscreen(cluster, group, topic, "diffoffsets"))));
+            consumer.setLag(value(last(bscreen(cluster, group, topic, "lag"))));
+            return consumer;
+        } catch (Exception e) {
+            LoggerUtils.print(TopicTimeSeries.class).error("Read last consumer bscreen from time series store has error, msg is ", e);
+        }
+        return null;
+    }
+
+    /**
+     * Sum the consumed records of the cluster by day.
+     */
+    public static List<BScreenBarInfo> queryConsumerHistoryBar(Map<String, Object> params) {
+        String cluster = String.valueOf(params.get("cluster"));
+        Predicate<SeriesKey> filter = series -> series.getCluster().equals(cluster) && series.getType().equals(BSCREEN) && column(series).equals("diffoffsets");
+        return bars(sums(filter, day(params.get("stime")), day(params.get("etime")), false));
+    }
+
+    /**
+     * Get the difflogsize, diffoffsets and lag of the tday day, summed by the
+     * finest rollup bucket, which the bscreen sums again by hour.
+     */
+    public static List<BScreenConsumerInfo> queryTodayBScreenConsumer(Map<String, Object> params) {
+        String cluster = String.valueOf(params.get("cluster"));
+        Predicate<SeriesKey> filter = series -> series.getCluster().equals(cluster) && series.getType().equals(BSCREEN)
+                && (column(series).equals("difflogsize") || column(series).equals("diffoffsets") || column(series).equals("lag"));
+        int day = day(params.get("tday"));
+        Map<String, BScreenConsumerInfo> consumers = new LinkedHashMap<>();
+        for (Sample sample : sums(filter, day, day, true)) {
+            SeriesKey series = sample.getSeries();
+            String topic = series.getKey().substring(0, series.getKey().lastIndexOf(SEPARATOR));
+            BScreenConsumerInfo consumer = consumers.computeIfAbsent(series.getBroker() + SEPARATOR + topic + SEPARATOR + sample.getTimestamp(), k -> {
+                BScreenConsumerInfo info = new BScreenConsumerInfo();
+                info.setCluster(cluster);
+                info.setGroup(series.getBroker());
+                info.setTopic(topic);
+                info.setTimespan(sample.getTimestamp());
+                return info;
+            });
+            long value = (long) sample.getValue();
+            switch (column(series)) {
+                case "difflogsize":
+                    consumer.setDifflogsize(value);
+                    break;
+                case "diffoffsets":
+                    consumer.setDiffoffsets(value);
+                    break;
+                default:
+                    consumer.setLag(value);
+                    break;
+            }
+        }
+        return new ArrayList<>(consumers.values());
+    }
+
+    /**
+     * Get the newest lag of one group and topic on the tday day, 0 if none.
+     */
+    public static long queryLastestLag(Map<String, Object> params) {
+        try {
+            Sample lag = last(bscreen(String.valueOf(params.get("cluster")), String.valueOf(params.get("group")), String.valueOf(params.get("topic")), "lag"));
+            if (lag != null && day(lag.getTimestamp()) == day(params.get("tday"))) {
+                return (long) lag.getValue();
+            }
+        } catch (Exception e) {
+            LoggerUtils.print(TopicTimeSeries.class).error("Query lastest lag from time series store has error, msg is ", e);
+        }
+        return 0L;
+    }
+
+    /**
+     * Sum the matched series between the two days, one sample per rollup
+     * bucket and one per raw sample newer than the last rolled bucket. The
+     * finest tier is used for the hourly bscreen, the coarsest one for the
+     * daily bars.
+     */
+    private static List<Sample> sums(Predicate<SeriesKey> filter, int fromDay, int toDay, boolean finest) {
+        List<Sample> samples = new ArrayList<>();
+        try {
+            TimeSeriesRollup rollup = tier(fromDay, finest);
+            Map<SeriesKey, Long> rolled = new HashMap<>();
+            if (rollup != null) {
+                for (Sample sample : rollup.scan(filter, fromDay, toDay, Aggregate.SUM)) {
+                    samples.add(sample);
+                    rolled.merge(sample.getSeries(), sample.getTimestamp() + rollup.getResolution(), Math::max);
+                }
+            }
+            int rawFrom = fromDay;
+            if (!rolled.isEmpty()) {
+                long oldest = Long.MAX_VALUE;
+                for (long end : rolled.values()) {
+                    oldest = Math.min(oldest, end);
+                }
+                rawFrom = Math.max(fromDay, day(oldest));
+            }
+            for (Sample sample : store().scan(filter, rawFrom, toDay)) {
+                if (sample.getTimestamp() >= rolled.getOrDefault(sample.getSeries(), Long.MIN_VALUE)) {
+                    samples.add(sample);
+                }
+            }
+        } catch (Exception e) {
+            LoggerUtils.print(TopicTimeSeries.class).error("Sum topic series from time series store has error, msg is ", e);
+        }
+        return samples;
+    }
+
+    /**
+     * Pick the finest or the coarsest tier which keeps the start day, null
+     * means the raw samples.
+     */
+    private static TimeSeriesRollup tier(int fromDay, boolean finest) throws Exception {
+        int age = CalendarUtils.getDiffDay(String.valueOf(fromDay), CalendarUtils.getCustomDate("yyyyMMdd"));
+        List<TimeSeriesRollup> tiers = MBeanTimeSeries.getRollups();
+        TimeSeriesRollup picked = null;
+        for (TimeSeriesRollup rollup : tiers) {
+            if (age < rollup.getRetainDays()) {
+                picked = rollup;
+                if (finest) {
+                    break;
+                }
+            }
+        }
+        return picked;
+    }
+
+    private static List<BScreenBarInfo> bars(List<Sample> samples) {
+        Map<String, Long> totals = new TreeMap<>();
+        for (Sample sample : samples) {
+            totals.merge(String.valueOf(day(sample.getTimestamp())), (long) sample.getValue(), Long::sum);
+        }
+        List<BScreenBarInfo> bars = new ArrayList<>(totals.size());
+        for (Map.Entry<String, Long> total : totals.entrySet()) {
+            BScreenBarInfo bar = new BScreenBarInfo();
+            bar.setTm(total.getKey());
+            bar.setValue(total.getValue());
+            bars.add(bar);
+        }
+        return bars;
+    }
+
+    private static List<TopicLogSize> topicLogSizes(String cluster, List<Sample> samples) {
+        Map<Long, TopicLogSize> rows = new TreeMap<>();
+        for (Sample sample : samples) {
+            TopicLogSize row = rows.computeIfAbsent(sample.getTimestamp(), timespan -> {
+                TopicLogSize topicLogSize = new TopicLogSize();
+                topicLogSize.setCluster(cluster);
+                topicLogSize.setTopic(sample.getSeries().getBroker());
+                topicLogSize.setTimespan(timespan);
+                return topicLogSize;
+            });
+            if ("logsize".equals(sample.getSeries().getKey())) {
+                row.setLogsize((long) sample.getValue());
+            } else {
+                row.setDiffval((long) sample.getValue());
+            }
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    /**
+     * Get the newest sample of one series, only its newest chunk is decoded.
+     */
+    private static Sample last(SeriesKey key) throws Exception {
+        long timestamp = store().lastTimestamp(key);
+        if (timestamp == Long.MIN_VALUE) {
+            return null;
+        }
+        List<Sample> samples = store().range(key, timestamp, timestamp + 1);
+        return samples.isEmpty() ? null : samples.get(samples.size() - 1);
+    }
+
+    private static long value(Sample sample) {
+        return sample == null ? 0L : (long) sample.getValue();
+    }
+
+    private static SeriesKey logsize(String cluster, String topic, String column) {
+        return new SeriesKey(cluster, LOGSIZE, topic, column);
+    }
+
+    private static SeriesKey bscreen(String cluster, String group, String topic, String column) {
+        return new SeriesKey(cluster, BSCREEN, group, topic + SEPARATOR + column);
+    }
+
+    private static String column(SeriesKey series) {
+        return series.getKey().substring(series.getKey().lastIndexOf(SEPARATOR) + 1);
+    }
+
+    private static TimeSeriesStore store() {
+        return MBeanTimeSeries.getStore();
+    }
+
+    private static int day(Object day) {
+        return Integer.parseInt(String.valueOf(day).trim());
+    }
+
+    private static int day(long timestamp) {
+        return Integer.parseInt(CalendarUtils.convertUnixTime(timestamp, "yyyyMMdd"));
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.common;
+
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Typed columnar rows of an in memory table.
+ * <p>
+ * Integer and bigint columns are kept in primitive arrays, the other columns
+ * keep their converted objects, such as the message strings. Every cell is
+ * converted to its column type once when the row is added, the scan only
+ * reads the arrays.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class JSqlBatch {
+
+    private static final int INTEGER = 1;
+    private static final int BIGINT = 2;
+    private static final int OBJECT = 3;
+
+    /**
+     * Batch of a table without rows bound.
+     */
+    public static final JSqlBatch EMPTY = new JSqlBatch(Collections.<String>emptyList(), 0);
+
+    private final List<String> types;
+    private final int[] kinds;
+    private final Object[] columns;
+    private final BitSet[] nulls;
+    private int size = 0;
+    private int capacity;
+
+    public JSqlBatch(List<String> types, int capacity) {
+        this.types = types;
+        this.capacity = Math.max(16, capacity);
+        this.kinds = new int[types.size()];
+        this.columns = new Object[types.size()];
+        this.nulls = new BitSet[types.size()];
+        for (int i = 0; i < types.size(); i++) {
+            String type = types.get(i);
+            if ("integer".equals(type)) {
+                kinds[i] = INTEGER;
+                columns[i] = new int[this.capacity];
+            } else if ("bigint".equals(type) || "long".equals(type)) {
+                kinds[i] = BIGINT;
+                columns[i] = new long[this.capacity];
+            } else {
+                kinds[i] = OBJECT;
+                columns[i] = new Object[this.capacity];
+            }
+            nulls[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Create an empty batch of the table columns, such as {"id":"integer","name":"varchar"}.
+     */
+    public static JSqlBatch of(JSONObject tabSchema, int capacity) {
+        List<String> types = new ArrayList<>(tabSchema.size());
+        for (String key : tabSchema.keySet()) {
+            types.add(tabSchema.getString(key));
+        }
+        return new JSqlBatch(types, capacity);
+    }
+
+    /**
+     * Append one row of cell values in column order.
+     */
+    public void add(List<String> row) {
+        if (size == capacity) {
+            grow();
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            Object value = JSqlEnumerator.convertOptiqCellValue(i < row.size() ? row.get(i) : null, types.get(i));
+            if (value == null) {
+                nulls[i].set(size);
+            } else if (kinds[i] == INTEGER) {
+                ((int[]) columns[i])[size] = ((Number) value).intValue();
+            } else if (kinds[i] == BIGINT) {
+                ((long[]) columns[i])[size] = ((Number) value).longValue();
+            } else {
+                ((Object[]) columns[i])[size] = value;
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Get the value of a cell, null cells are null.
+     */
+    public Object get(int row, int column) {
+        if (nulls[column].get(row)) {
+            return null;
+        }
+        switch (kinds[column]) {
+            case INTEGER:
+                return ((int[]) columns[column])[row];
+            case BIGINT:
+                return ((long[]) columns[column])[row];
+            default:
+                return ((Object[]) columns[column])[row];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        capacity = capacity + (capacity >> 1);
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == INTEGER) {
+                columns[i] = Arrays.copyOf((int[]) columns[i], capacity);
+            } else if (kinds[i] == BIGINT) {
+                columns[i] = Arrays.copyOf((long[]) columns[i], capacity);
+            } else {
+                columns[i] = Arrays.copyOf((Object[]) columns[i], capacity);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.common;
+
+import com.alibaba.fastjson.JSONObject;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.Driver;
+import org.apache.calcite.schema.SchemaPlus;
+import org.smartloli.kafka.eagle.common.constant.JConstants;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.core.sql.schema.JSqlSchema;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A reusable calcite connection with its own in memory tables and prepared
+ * plans.
+ * <p>
+ * The connection is used by one query at a time. The rows of a query are
+ * bound to the table before the plan is executed and released after, so
+ * concurrent queries on different connections never see each other's rows.
+ * Prepared plans are cached by table schema and normalized sql, a repeated
+ * query skips the parse, validate and optimize steps of calcite.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class JSqlConnection implements AutoCloseable {
+
+    private static final String DB = "db";
+
+    private final Connection connection;
+    private final SchemaPlus db;
+    private final Map<String, JSqlMapData.Table> tables = new HashMap<>();
+    private final Map<String, String> signatures = new HashMap<>();
+    private final Map<String, PreparedStatement> plans;
+
+    public JSqlConnection(final int planCacheSize) throws Exception {
+        Class.forName(JConstants.KAFKA_DRIVER);
+        Properties info = new Properties();
+        info.setProperty("lex", Lex.JAVA.toString());
+        this.connection = DriverManager.getConnection(Driver.CONNECT_STRING_PREFIX, info);
+        CalciteConnection calciteConnection = connection.unwrap(CalciteConnection.class);
+        this.db = calciteConnection.getRootSchema().add(DB, new JSqlSchema(DB));
+        calciteConnection.setSchema(DB);
+        this.plans = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > planCacheSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Bind the rows to the table and get the prepared plan of the sql. The
+     * rows stay bound until {@link #unbind(String)}.
+     */
+    public PreparedStatement prepare(JSONObject tabSchema, String tableName, JSqlBatch rows, String sql) throws SQLException {
+        String signature = signature(tabSchema);
+        if (!signature.equals(signatures.get(tableName))) {
+            // the table is new or has changed columns, plans on it are stale
+            JSqlMapData.Table table = JSqlMapData.createTable(tabSchema, tableName);
+            db.add(tableName, new JSqlTable(table));
+            tables.put(tableName, table);
+            signatures.put(tableName, signature);
+            for (PreparedStatement plan : plans.values()) {
+                closeQuietly(plan);
+            }
+            plans.clear();
+        }
+        tables.get(tableName).data = rows;
+
+        String key = tableName + signature + "\n" + sql;
+        PreparedStatement plan = plans.get(key);
+        if (plan == null) {
+            plan = connection.prepareStatement(sql);
+            plans.put(key, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Release the rows of the table after the query.
+     */
+    public void unbind(String tableName) {
+        JSqlMapData.Table table = tables.get(tableName);
+        if (table != null) {
+            table.data = JSqlBatch.EMPTY;
+        }
+    }
+
+    private static String signature(JSONObject tabSchema) {
+        StringBuilder signature = new StringBuilder();
+        for (String key : tabSchema.keySet()) {
+            signature.append('[').append(key).append(':').append(tabSchema.getString(key)).append(']');
+        }
+        return signature.toString();
+    }
+
+    private static void closeQuietly(PreparedStatement plan) {
+        try {
+            plan.close();
+        } catch (Exception e) {
+            LoggerUtils.print(JSqlConnection.class).error("Close calcite prepared statement has error, msg is ", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (PreparedStatement plan : plans.values()) {
+            closeQuietly(plan);
+        }
+        plans.clear();
+        try {
+            connection.close();
+        } catch (Exception e) {
+            LoggerUtils.print(JSqlConnection.class).error("Close calcite connection has error, msg is ", e);
+        }
+    }
+
+}
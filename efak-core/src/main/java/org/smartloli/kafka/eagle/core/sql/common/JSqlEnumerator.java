@@ -21,7 +21,6 @@ import org.apache.calcite.linq4j.Enumerator;
 import org.smartloli.kafka.eagle.core.sql.tool.JSqlDateUtils;
 
 import java.math.BigDecimal;
-import java.util.List;
 
 /**
  * Convert query sql data format to standard format.
@@ -32,19 +31,17 @@ import java.util.List;
  */
 public class JSqlEnumerator<E> implements Enumerator<E> {
     private int currentIndex = -1;
-    private List<String> columnTypes;
-    private List<List<String>> data = null;
+    private JSqlBatch data;
     private RowConverter<E> rowConvert;
 
     @SuppressWarnings("unchecked")
-    public JSqlEnumerator(int[] fields, List<String> types, List<List<String>> data) {
+    public JSqlEnumerator(int[] fields, JSqlBatch data) {
         this.data = data;
-        this.columnTypes = types;
         rowConvert = (RowConverter<E>) new ArrayRowConverter(fields);
     }
 
     abstract static class RowConverter<E> {
-        abstract E convertRow(List<String> rows, List<String> columnTypes);
+        abstract E convertRow(JSqlBatch data, int row);
     }
 
     static class ArrayRowConverter extends RowConverter<Object[]> {
@@ -55,11 +52,11 @@ public class JSqlEnumerator<E> implements Enumerator<E> {
         }
 
         @Override
-        Object[] convertRow(List<String> rows, List<String> columnTypes) {
+        Object[] convertRow(JSqlBatch data, int row) {
             Object[] objects = new Object[fields.length];
             int i = 0;
             for (int field : this.fields) {
-                objects[i++] = convertOptiqCellValue(rows.get(field), columnTypes.get(field));
+                objects[i++] = data.get(row, field);
             }
             return objects;
         }
@@ -107,8 +104,7 @@ public class JSqlEnumerator<E> implements Enumerator<E> {
 
     @Override
     public E current() {
-        List<String> line = data.get(currentIndex);
-        return rowConvert.convertRow(line, this.columnTypes);
+        return rowConvert.convertRow(data, currentIndex);
     }
 
     @Override
@@ -35,7 +35,6 @@ import java.util.Map;
  */
 public class JSqlMapData {
 
-    public static final Map<String, Database> MAP = new HashMap<String, Database>();
     public static Map<String, SqlTypeName> SQLTYPE_MAPPING = new HashMap<String, SqlTypeName>();
     @SuppressWarnings("rawtypes")
     public static Map<String, Class> JAVATYPE_MAPPING = new HashMap<String, Class>();
@@ -68,8 +67,10 @@ public class JSqlMapData {
         SQLTYPE_MAPPING.put("any", SqlTypeName.ANY);
     }
 
-    public static void loadSchema(JSONObject cols, String tableName, List<List<String>> datas) {
-        Database db = new Database();
+    /**
+     * Create an empty table of the columns, such as {"id":"integer","name":"varchar"}.
+     */
+    public static Table createTable(JSONObject cols, String tableName) {
         Table table = new Table();
         table.tableName = tableName;
         for (String key : cols.keySet()) {
@@ -78,19 +79,14 @@ public class JSqlMapData {
             _col.type = cols.getString(key);
             table.columns.add(_col);
         }
-        table.data = datas;
-        db.tables.add(table);
-        MAP.put("db", db);
-    }
-
-    public static class Database {
-        public List<Table> tables = new LinkedList<Table>();
+        table.data = JSqlBatch.EMPTY;
+        return table;
     }
 
     public static class Table {
         public String tableName;
         public List<Column> columns = new LinkedList<Column>();
-        public List<List<String>> data = new LinkedList<List<String>>();
+        public volatile JSqlBatch data;
     }
 
     public static class Column {
@@ -27,8 +27,6 @@ import org.apache.calcite.schema.ScannableTable;
 import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.sql.type.SqlTypeUtil;
 
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Define memory table.
@@ -69,16 +67,12 @@ public class JSqlTable extends AbstractTable implements ScannableTable {
 
     @Override
     public Enumerable<Object[]> scan(DataContext dataContext) {
-        final List<String> types = new ArrayList<String>(sourceTable.columns.size());
-        for (JSqlMapData.Column column : sourceTable.columns) {
-            types.add(column.type);
-        }
-
-        final int[] fields = identityList(types.size());
+        final int[] fields = identityList(sourceTable.columns.size());
+        final JSqlBatch data = sourceTable.data;
         return new AbstractEnumerable<Object[]>() {
             @Override
             public Enumerator<Object[]> enumerator() {
-                return new JSqlEnumerator<Object[]>(fields, types, sourceTable.data);
+                return new JSqlEnumerator<Object[]>(fields, data);
             }
         };
     }
@@ -24,12 +24,8 @@ import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.schema.*;
 import org.apache.calcite.schema.impl.AbstractSchema;
 import org.apache.calcite.schema.impl.ScalarFunctionImpl;
-import org.smartloli.kafka.eagle.core.sql.common.JSqlMapData;
-import org.smartloli.kafka.eagle.core.sql.common.JSqlMapData.Database;
-import org.smartloli.kafka.eagle.core.sql.common.JSqlTable;
 import org.smartloli.kafka.eagle.core.sql.function.JSONFunction;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -79,19 +75,4 @@ public class JSqlSchema extends AbstractSchema {
         return super.getSubSchemaMap();
     }
 
-    @Override
-    protected Map<String, Table> getTableMap() {
-        Map<String, Table> tables = new HashMap<String, Table>();
-        Database database = JSqlMapData.MAP.get(this.dbName);
-        if (database == null) {
-            return tables;
-        }
-        for (JSqlMapData.Table table : database.tables) {
-            tables.put(table.tableName, new JSqlTable(table));
-        }
-
-        return tables;
-    }
-
-
 }
@@ -20,15 +20,18 @@ package org.smartloli.kafka.eagle.core.sql.tool;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.gson.Gson;
-import org.apache.calcite.config.Lex;
-import org.apache.calcite.jdbc.Driver;
-import org.smartloli.kafka.eagle.common.constant.JConstants;
-import org.smartloli.kafka.eagle.common.util.UnicodeUtils;
-import org.smartloli.kafka.eagle.core.sql.common.JSqlMapData;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.core.sql.common.JSqlBatch;
+import org.smartloli.kafka.eagle.core.sql.common.JSqlConnection;
 
-import java.io.IOException;
-import java.sql.*;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 
 /**
  * Define the data structure, query by condition.
@@ -39,6 +42,20 @@ import java.util.*;
  */
 public class KSqlUtils {
 
+    private static final int POOL_SIZE = SystemConfigUtils.getIntProperty("efak.sql.calcite.pool.size", Runtime.getRuntime().availableProcessors());
+    private static final int PLAN_CACHE_SIZE = SystemConfigUtils.getIntProperty("efak.sql.calcite.plan.cache.size", 128);
+
+    /**
+     * Idle calcite connections, each one is used by a single query at a time.
+     */
+    private static final BlockingQueue<JSqlConnection> IDLE = new LinkedBlockingQueue<>();
+
+    /**
+     * One permit per query in flight, a permit is held from borrow to release
+     * whether the connection is reused, newly opened or closed as broken.
+     */
+    private static final Semaphore PERMITS = new Semaphore(POOL_SIZE, true);
+
     /**
      * @param tabSchema : Table column,such as {"id":"integer","name":"varchar"}
      * @param tableName : Defining table names for query datasets, such as "user"
@@ -49,45 +66,145 @@ public class KSqlUtils {
      * @throws Exception : Throws an exception
      */
     public static JSONObject query(JSONObject tabSchema, String tableName, List<JSONArray> dataSets, String sql) throws Exception {
-        JSONObject queryResults = new JSONObject();
-        String model = createTempJson();
-        List<List<String>> list = new LinkedList<>();
+        int size = 0;
+        for (JSONArray dataSet : dataSets) {
+            size += dataSet.size();
+        }
+        JSqlBatch batch = JSqlBatch.of(tabSchema, size);
         for (JSONArray dataSet : dataSets) {
             for (Object obj : dataSet) {
                 JSONObject object = (JSONObject) obj;
-                List<String> tmp = new LinkedList<>();
+                List<String> tmp = new ArrayList<>(object.size());
                 for (String key : object.keySet()) {
-                    tmp.add(UnicodeUtils.encodeForUnicode(object.getString(key)));
+                    tmp.add(object.getString(key));
                 }
-                list.add(tmp);
+                batch.add(tmp);
             }
         }
-        JSqlMapData.loadSchema(tabSchema, tableName, list);
+        return query(tabSchema, tableName, batch, sql);
+    }
 
-        Class.forName(JConstants.KAFKA_DRIVER);
-        Properties info = new Properties();
-        info.setProperty("lex", Lex.JAVA.toString());
+    /**
+     * @param tabSchema : Table column,such as {"id":"integer","name":"varchar"}
+     * @param tableName : Defining table names for query datasets, such as "user"
+     * @param rows      : Column values of each row in table column order, such as
+     *                  [["1","aaa"],["2","bbb"],[]...]
+     * @param sql       : such as "SELECT * FROM TBL"
+     * @return String
+     * @throws Exception : Throws an exception
+     */
+    public static JSONObject queryRows(JSONObject tabSchema, String tableName, List<List<String>> rows, String sql) throws Exception {
+        JSqlBatch batch = JSqlBatch.of(tabSchema, rows.size());
+        for (List<String> row : rows) {
+            batch.add(row);
+        }
+        return query(tabSchema, tableName, batch, sql);
+    }
 
-        Connection connection = DriverManager.getConnection(Driver.CONNECT_STRING_PREFIX + "model=inline:" + model, info);
-        Statement st = connection.createStatement();
-        ResultSet result = st.executeQuery(UnicodeUtils.encodeForUnicode(sql));
-        ResultSetMetaData rsmd = result.getMetaData();
+    /**
+     * @param tabSchema : Table column,such as {"id":"integer","name":"varchar"}
+     * @param tableName : Defining table names for query datasets, such as "user"
+     * @param batch     : Typed columnar rows of the table
+     * @param sql       : such as "SELECT * FROM TBL"
+     * @return String
+     * @throws Exception : Throws an exception
+     */
+    public static JSONObject query(JSONObject tabSchema, String tableName, JSqlBatch batch, String sql) throws Exception {
+        JSONObject queryResults = new JSONObject();
         List<Map<String, Object>> ret = new ArrayList<>();
-        while (result.next()) {
-            Map<String, Object> map = new LinkedHashMap<>();
-            for (int i = 1; i <= rsmd.getColumnCount(); i++) {
-                map.put(rsmd.getColumnName(i), UnicodeUtils.decodeForUnicode(result.getString(rsmd.getColumnName(i))));
+        JSqlConnection connection = borrow();
+        boolean broken = true;
+        try {
+            PreparedStatement st = connection.prepare(tabSchema, tableName, batch, normalize(sql));
+            try (ResultSet result = st.executeQuery()) {
+                ResultSetMetaData rsmd = result.getMetaData();
+                int columns = rsmd.getColumnCount();
+                while (result.next()) {
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    for (int i = 1; i <= columns; i++) {
+                        map.put(rsmd.getColumnName(i), result.getString(i));
+                    }
+                    ret.add(map);
+                }
             }
-            ret.add(map);
+            broken = false;
+        } catch (SQLException e) {
+            broken = false; // invalid sql, the connection is still usable
+            throw e;
+        } finally {
+            connection.unbind(tableName);
+            release(connection, broken);
         }
-        result.close();
-        st.close();
-        connection.close();
         queryResults.put("result", new Gson().toJson(ret));
         queryResults.put("size", ret.size());
         return queryResults;
     }
 
+    /**
+     * Get an idle calcite connection, wait while POOL_SIZE queries are in
+     * flight, and open a new one when no idle connection is left, such as
+     * after a broken connection was closed.
+     */
+    private static JSqlConnection borrow() throws Exception {
+        PERMITS.acquire();
+        JSqlConnection connection = IDLE.poll();
+        if (connection != null) {
+            return connection;
+        }
+        try {
+            return new JSqlConnection(PLAN_CACHE_SIZE);
+        } catch (Exception e) {
+            PERMITS.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return the connection to the pool, a connection which failed in the
+     * middle of a query is closed instead and replaced on the next borrow.
+     */
+    private static void release(JSqlConnection connection, boolean broken) {
+        try {
+            if (broken) {
+                connection.close();
+            } else {
+                IDLE.offer(connection);
+            }
+        } finally {
+            PERMITS.release();
+        }
+    }
+
+    /**
+     * Collapse whitespace outside of quotes, so the same query typed
+     * differently reuses the prepared plan.
+     */
+    private static String normalize(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean space = false;
+        for (char c : sql.trim().toCharArray()) {
+            if (quote != 0) {
+                normalized.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                space = true;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
     /**
      * Parse datasets to datatable.
      */
@@ -106,20 +223,4 @@ public class KSqlUtils {
         return new Gson().toJson(results);
     }
 
-    private static String createTempJson() throws IOException {
-        JSONObject object = new JSONObject();
-        object.put("version", JConstants.KAFKA_DRIVER_VERSION);
-        object.put("defaultSchema", "db");
-        JSONArray array = new JSONArray();
-        JSONObject tmp = new JSONObject();
-        tmp.put("name", "db");
-        tmp.put("type", "custom");
-        tmp.put("factory", "org.smartloli.kafka.eagle.core.sql.schema.JSqlSchemaFactory");
-        JSONObject tmp2 = new JSONObject();
-        tmp.put("operand", tmp2.put("database", "efak_memory_db"));
-        array.add(tmp);
-        object.put("schemas", array);
-        return object.toJSONString();
-    }
-
 }
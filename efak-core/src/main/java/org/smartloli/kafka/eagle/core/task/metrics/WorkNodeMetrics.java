@@ -29,12 +29,17 @@ import org.smartloli.kafka.eagle.common.protocol.BaseProtocol;
 public class WorkNodeMetrics extends BaseProtocol {
     private int id;
     private String host;
+    private String hostname;
     private int port;
     private String memory;
     private String cpu;
     private boolean isAlive = false;
     private String startTime;
     private String zkCli;
+    private double processCpu;
+    private long memoryUsed;
+    private long memoryMax;
+    private long heartbeat;
 
     public String getZkCli() {
         return zkCli;
@@ -60,6 +65,14 @@ public class WorkNodeMetrics extends BaseProtocol {
         this.host = host;
     }
 
+    public String getHostname() {
+        return hostname;
+    }
+
+    public void setHostname(String hostname) {
+        this.hostname = hostname;
+    }
+
     public int getPort() {
         return port;
     }
@@ -99,4 +112,36 @@ public class WorkNodeMetrics extends BaseProtocol {
     public void setCpu(String cpu) {
         this.cpu = cpu;
     }
+
+    public double getProcessCpu() {
+        return processCpu;
+    }
+
+    public void setProcessCpu(double processCpu) {
+        this.processCpu = processCpu;
+    }
+
+    public long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    public void setMemoryUsed(long memoryUsed) {
+        this.memoryUsed = memoryUsed;
+    }
+
+    public long getMemoryMax() {
+        return memoryMax;
+    }
+
+    public void setMemoryMax(long memoryMax) {
+        this.memoryMax = memoryMax;
+    }
+
+    public long getHeartbeat() {
+        return heartbeat;
+    }
+
+    public void setHeartbeat(long heartbeat) {
+        this.heartbeat = heartbeat;
+    }
 }
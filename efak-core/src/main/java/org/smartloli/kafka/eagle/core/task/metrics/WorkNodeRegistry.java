@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.task.metrics;
+
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live registry of worknodes, filled by the heartbeats which every
+ * WorkNodeServer pushes to the master.
+ * <p>
+ * A worknode is alive while its last heartbeat is younger than the heartbeat
+ * timeout, so the liveness of a node can be read without connecting to it.
+ * The reported cpu and memory are used to weight the shard assignment.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class WorkNodeRegistry {
+
+    /**
+     * Interval between two heartbeats of a worknode.
+     */
+    public static final long HEARTBEAT_INTERVAL_MS = SystemConfigUtils.getLongProperty("efak.worknode.heartbeat.interval.ms", 5 * 1000L);
+
+    /**
+     * A worknode without heartbeat for longer than this is dead.
+     */
+    public static final long HEARTBEAT_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.worknode.heartbeat.timeout.ms", 3 * HEARTBEAT_INTERVAL_MS);
+
+    /**
+     * Busy worknodes still get a small share of the shards.
+     */
+    private static final double MIN_WEIGHT = 0.1;
+
+    private static final Map<String, WorkNodeMetrics> NODES = new ConcurrentHashMap<>();
+
+    private WorkNodeRegistry() {
+
+    }
+
+    /**
+     * Register the heartbeat of a worknode, the receive time is used as the
+     * heartbeat time so the clocks of the nodes need not be in sync.
+     */
+    public static void heartbeat(WorkNodeMetrics metrics) {
+        if (metrics == null || metrics.getHost() == null) {
+            return;
+        }
+        metrics.setAlive(true);
+        metrics.setHeartbeat(System.currentTimeMillis());
+        NODES.put(metrics.getHost(), metrics);
+    }
+
+    /**
+     * Get the alive worknode by ip or hostname, null means dead or unknown.
+     */
+    public static WorkNodeMetrics get(String host) {
+        WorkNodeMetrics metrics = NODES.get(host);
+        if (metrics == null) {
+            for (WorkNodeMetrics node : NODES.values()) {
+                if (host.equals(node.getHostname())) {
+                    metrics = node;
+                    break;
+                }
+            }
+        }
+        return metrics != null && isAlive(metrics) ? metrics : null;
+    }
+
+    /**
+     * Get all alive worknodes and evict the expired ones.
+     */
+    public static List<WorkNodeMetrics> getAliveNodes() {
+        List<WorkNodeMetrics> nodes = new ArrayList<>();
+        Iterator<WorkNodeMetrics> iterator = NODES.values().iterator();
+        while (iterator.hasNext()) {
+            WorkNodeMetrics metrics = iterator.next();
+            if (isAlive(metrics)) {
+                nodes.add(metrics);
+            } else {
+                iterator.remove();
+            }
+        }
+        return nodes;
+    }
+
+    private static boolean isAlive(WorkNodeMetrics metrics) {
+        return System.currentTimeMillis() - metrics.getHeartbeat() <= HEARTBEAT_TIMEOUT_MS;
+    }
+
+    /**
+     * Get the share of work a worknode can take, it is the idle cpu multiplied
+     * by the free heap of the last heartbeat.
+     */
+    public static double weight(WorkNodeMetrics metrics) {
+        double cpuIdle = 1.0 - Math.min(100.0, Math.max(0.0, metrics.getProcessCpu())) / 100.0;
+        double memIdle = metrics.getMemoryMax() > 0 ? 1.0 - (double) metrics.getMemoryUsed() / metrics.getMemoryMax() : 1.0;
+        return Math.max(MIN_WEIGHT, Math.max(MIN_WEIGHT, cpuIdle) * Math.max(MIN_WEIGHT, memIdle));
+    }
+
+}
@@ -116,7 +116,7 @@ public class KSqlParser {
                         String key = condition.split(compareObject.getString("type"))[0];
                         String value = condition.split(compareObject.getString("type"))[1];
                         FieldSchemaStrategy field = new FieldSchemaStrategy();
-                        field.setKey(key.trim());
+                        field.setKey(unquote(key));
                         field.setType(compareObject.getString("type"));
                         field.setValue(value.trim().replaceAll("'", ""));
                         ksql.getFieldSchema().add(field);
@@ -137,7 +137,7 @@ public class KSqlParser {
                                     value = conditionChilds[i].split(KConstants.KSQL.LIKE)[1];
                                 }
                                 FieldSchemaStrategy field = new FieldSchemaStrategy();
-                                field.setKey(key.trim());
+                                field.setKey(unquote(key));
                                 field.setType(KConstants.KSQL.LIKE);
                                 field.setValue(value.trim().replaceAll("%", "").replaceAll("'", ""));
                                 ksql.getFieldSchema().add(field);
@@ -146,7 +146,7 @@ public class KSqlParser {
                             String key = condition.split(KConstants.KSQL.LIKE)[0];
                             String value = condition.split(KConstants.KSQL.LIKE)[1];
                             FieldSchemaStrategy field = new FieldSchemaStrategy();
-                            field.setKey(key.trim());
+                            field.setKey(unquote(key));
                             field.setType(KConstants.KSQL.LIKE);
                             field.setValue(value.trim().replaceAll("'", "").replaceAll("%", ""));
                             ksql.getFieldSchema().add(field);
@@ -257,4 +257,11 @@ public class KSqlParser {
         }
     }
 
+    /**
+     * Calcite quotes column names with backticks, such as `timespan`.
+     */
+    private static String unquote(String key) {
+        return key.trim().replaceAll("`", "");
+    }
+
 }
@@ -23,6 +23,8 @@ import com.alibaba.fastjson.JSONObject;
 import org.apache.thrift.TException;
 import org.smartloli.kafka.eagle.common.util.*;
 import org.smartloli.kafka.eagle.core.task.cache.LogCacheFactory;
+import org.smartloli.kafka.eagle.core.task.metrics.WorkNodeMetrics;
+import org.smartloli.kafka.eagle.core.task.metrics.WorkNodeRegistry;
 import org.smartloli.kafka.eagle.core.task.rpc.WorkNodeService;
 import org.smartloli.kafka.eagle.core.task.shard.ScheduleShardStrategy;
 import org.smartloli.kafka.eagle.core.task.shard.ShardSubScan;
@@ -51,6 +53,13 @@ public class WorkNodeServiceHandler implements WorkNodeService.Iface {
     public String getResult(String jsonObject) throws TException {
         if (JSONUtils.isJsonObject(jsonObject)) {
             JSONObject object = JSON.parseObject(jsonObject);
+            // registry requests are answered in place, they come at every heartbeat
+            if (object.getString(KConstants.Protocol.KEY).equals(KConstants.Protocol.HEART_BEAT_REPORT)) {
+                WorkNodeRegistry.heartbeat(object.getObject(KConstants.Protocol.VALUE, WorkNodeMetrics.class));
+                return "";
+            } else if (object.getString(KConstants.Protocol.KEY).equals(KConstants.Protocol.WORK_NODE_ALIVE)) {
+                return JSON.toJSONString(WorkNodeRegistry.getAliveNodes());
+            }
             if (object.getString(KConstants.Protocol.KEY).equals(KConstants.Protocol.HEART_BEAT)) {
                 this.type = KConstants.Protocol.HEART_BEAT;
                 this.cluster = object.getString(KConstants.Protocol.CLUSTER_NAME);
@@ -115,7 +124,8 @@ public class WorkNodeServiceHandler implements WorkNodeService.Iface {
             result = results.toString();
         } else if (KConstants.Protocol.KSQL_QUERY.equals(this.type)) {
             if (this.ksql != null) {
-                result = ShardSubScan.query(ksql).toString();
+                // matched rows are sent back in bounded batches of column values
+                result = JSON.toJSONString(ShardSubScan.query(ksql).getBatches());
             }
         } else if (KConstants.Protocol.KSQL_QUERY_LOG.equals(this.type)) {
             if (!StrUtils.isNull(this.jobId)) {
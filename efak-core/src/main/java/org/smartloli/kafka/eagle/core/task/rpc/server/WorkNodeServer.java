@@ -17,6 +17,7 @@
  */
 package org.smartloli.kafka.eagle.core.task.rpc.server;
 
+import com.alibaba.fastjson.JSONObject;
 import org.apache.thrift.TProcessorFactory;
 import org.apache.thrift.protocol.TCompactProtocol;
 import org.apache.thrift.server.THsHaServer;
@@ -24,11 +25,21 @@ import org.apache.thrift.server.TServer;
 import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TTransportException;
 import org.apache.thrift.transport.layered.TFramedTransport;
+import org.smartloli.kafka.eagle.common.util.AppUtils;
+import org.smartloli.kafka.eagle.common.util.KConstants;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.NetUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.core.task.metrics.WorkNodeMetrics;
+import org.smartloli.kafka.eagle.core.task.metrics.WorkNodeRegistry;
+import org.smartloli.kafka.eagle.core.task.rpc.MasterNodeClient;
 import org.smartloli.kafka.eagle.core.task.rpc.WorkNodeService;
 import org.smartloli.kafka.eagle.core.task.rpc.handler.WorkNodeServiceHandler;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
  * It is the object of true calculation and returns the calculation
  * result to a container of master.
@@ -54,10 +65,42 @@ public class WorkNodeServer {
         server.serve();
     }
 
+    /**
+     * Push the heartbeat with the load of this worknode to the master, the
+     * master keeps the alive worknodes in {@link WorkNodeRegistry}.
+     */
+    private static void heartbeat(int port) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "efak-worknode-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        String masterHost = SystemConfigUtils.getProperty("efak.worknode.master.host");
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                WorkNodeMetrics metrics = new WorkNodeMetrics();
+                metrics.setHost(NetUtils.ip());
+                metrics.setHostname(NetUtils.hostname());
+                metrics.setPort(port);
+                metrics.setProcessCpu(AppUtils.getInstance().getProcessCpu());
+                metrics.setMemoryUsed(AppUtils.getInstance().getProcessMemUsed());
+                metrics.setMemoryMax(AppUtils.getInstance().getProcessMemMax());
+                metrics.setStartTime(AppUtils.getInstance().getStartTime());
+                JSONObject object = new JSONObject();
+                object.put(KConstants.Protocol.KEY, KConstants.Protocol.HEART_BEAT_REPORT);
+                object.put(KConstants.Protocol.VALUE, metrics);
+                MasterNodeClient.getResult(masterHost, port, object);
+            } catch (Exception e) {
+                LoggerUtils.print(WorkNodeServer.class).error("Send heartbeat to master[" + masterHost + ":" + port + "] has error, msg is ", e);
+            }
+        }, 0L, WorkNodeRegistry.HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
     public static void main(String[] args) {
         try {
             int port = SystemConfigUtils.getIntProperty("efak.worknode.port");
             LoggerUtils.print(WorkNodeServer.class).info(WorkNodeServer.class.getSimpleName() + " started and listening from efak cluster, port is [" + port + "].");
+            heartbeat(port);
             WorkNodeServer rpc = new WorkNodeServer();
             rpc.start(port);
         } catch (Exception e) {
@@ -27,15 +27,28 @@ import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
+import org.smartloli.kafka.eagle.core.sql.schema.TopicSchema;
 import org.smartloli.kafka.eagle.core.sql.tool.KSqlUtils;
 import org.smartloli.kafka.eagle.core.task.metrics.WorkNodeMetrics;
+import org.smartloli.kafka.eagle.core.task.metrics.WorkNodeRegistry;
 import org.smartloli.kafka.eagle.core.task.parser.KSqlParser;
 import org.smartloli.kafka.eagle.core.task.rpc.MasterNodeClient;
+import org.smartloli.kafka.eagle.core.task.shard.ShardScanBuffer;
+import org.smartloli.kafka.eagle.core.task.strategy.FieldSchemaStrategy;
 import org.smartloli.kafka.eagle.core.task.strategy.KSqlStrategy;
 import org.smartloli.kafka.eagle.core.task.strategy.WorkNodeStrategy;
 
 import java.util.*;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The client generate the query strategy, initializes the master query task,
@@ -54,6 +67,34 @@ public class JobClient {
     private static KafkaService kafkaService = new KafkaFactory().create();
     private static BrokerService brokerService = new BrokerFactory().create();
     private static LRUCacheUtils cache = new LRUCacheUtils(1024);
+    private static volatile Map<String, WorkNodeMetrics> workNodeRegistry = new HashMap<>();
+    private static volatile long workNodeRegistryTime = 0L;
+
+    /**
+     * Shared and bounded executor used to dispatch shard tasks to worknodes.
+     */
+    private static final ExecutorService JOB_EXECUTOR = new ThreadPoolExecutor(
+            SystemConfigUtils.getIntProperty("efak.sql.job.threads", 32),
+            SystemConfigUtils.getIntProperty("efak.sql.job.threads", 32),
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1024), r -> {
+        Thread thread = new Thread(r, "efak-ksql-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Overall deadline of one distributed query.
+     */
+    private static final long JOB_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.sql.job.timeout.ms", 120 * 1000L);
+
+    /**
+     * Max time one shard task can spend on a worknode, counted from when the
+     * task starts running. Queued shards are only bounded by the query
+     * deadline.
+     */
+    private static final long WORKNODE_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.sql.worknode.timeout.ms", 60 * 1000L);
+
+    private static final long QUEUED_RECHECK_MS = 1000L;
 
     public JobClient(ConcurrentHashMap<String, Object> taskLogs) {
         this.taskLogs = taskLogs;
@@ -130,12 +171,13 @@ public class JobClient {
     public static List<WorkNodeMetrics> getWorkNodeMetrics(String clusterAlias) {
         List<WorkNodeMetrics> metrics = new ArrayList<>();
         int id = 1;
+        Map<String, WorkNodeMetrics> registry = getWorkNodeRegistry();
         for (WorkNodeStrategy workNode : getWorkNodes()) {
             WorkNodeMetrics workNodeMetrics = new WorkNodeMetrics();
             workNodeMetrics.setId(id);
             workNodeMetrics.setHost(workNode.getHost());
             workNodeMetrics.setPort(workNode.getPort());
-            if (NetUtils.telnet(workNode.getHost(), workNode.getPort())) {
+            if (registry.containsKey(workNode.getHost())) {
                 JSONObject object = new JSONObject();
                 object.put(KConstants.Protocol.KEY, KConstants.Protocol.HEART_BEAT);
                 object.put(KConstants.Protocol.CLUSTER_NAME, clusterAlias);
@@ -170,24 +212,22 @@ public class JobClient {
     public static String getWorkNodeTaskLogs(String jobId) {
         String logs = "";
         for (WorkNodeStrategy workNode : getWorkNodesAlive()) {
-            if (NetUtils.telnet(workNode.getHost(), workNode.getPort())) {
-                JSONObject object = new JSONObject();
-                object.put(KConstants.Protocol.KEY, KConstants.Protocol.KSQL_QUERY_LOG);
-                object.put(KConstants.Protocol.JOB_ID, jobId);
-                List<JSONArray> results = new ArrayList<>();
-                String resultStr = MasterNodeClient.getResult(workNode.getHost(), workNode.getPort(), object);
-                try {
-                    if (!StrUtils.isNull(resultStr)) {
-                        results = JSON.parseArray(resultStr, JSONArray.class);
-                    }
-                } catch (Exception e) {
-                    LoggerUtils.print(JobClient.class).error("Deserialize result by [" + workNode.getHost() + ":" + workNode.getPort() + "] has error, msg is ", e);
+            JSONObject object = new JSONObject();
+            object.put(KConstants.Protocol.KEY, KConstants.Protocol.KSQL_QUERY_LOG);
+            object.put(KConstants.Protocol.JOB_ID, jobId);
+            List<JSONArray> results = new ArrayList<>();
+            String resultStr = MasterNodeClient.getResult(workNode.getHost(), workNode.getPort(), object);
+            try {
+                if (!StrUtils.isNull(resultStr)) {
+                    results = JSON.parseArray(resultStr, JSONArray.class);
                 }
-                if (results.size() > 0) {
-                    if (results.get(0).size() > 0) {
-                        JSONObject result = (JSONObject) results.get(0).get(0);
-                        logs = result.getString("log") + "\n" + cache.get(jobId) + "\n";
-                    }
+            } catch (Exception e) {
+                LoggerUtils.print(JobClient.class).error("Deserialize result by [" + workNode.getHost() + ":" + workNode.getPort() + "] has error, msg is ", e);
+            }
+            if (results.size() > 0) {
+                if (results.get(0).size() > 0) {
+                    JSONObject result = (JSONObject) results.get(0).get(0);
+                    logs = result.getString("log") + "\n" + cache.get(jobId) + "\n";
                 }
             }
         }
@@ -195,11 +235,11 @@ public class JobClient {
     }
 
     private static JSONObject query(String jobId, String sql, String cluster) {
-        List<JSONArray> result = submit(jobId, sql, cluster);
+        List<List<String>> result = submit(jobId, sql, cluster);
         KSqlStrategy ksql = KSqlParser.parseQueryKSql(sql, cluster);
         JSONObject resultObject = new JSONObject();
         try {
-            resultObject = KSqlUtils.query(getTableSchema(), ksql.getTopic(), result, sql);
+            resultObject = KSqlUtils.queryRows(getTableSchema(), ksql.getTopic(), result, sql);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -211,25 +251,91 @@ public class JobClient {
         schema.put("partition", "integer");
         schema.put("offset", "bigint");
         schema.put("msg", "varchar");
-        schema.put("timespan", "varchar");
+        schema.put("timespan", "bigint");
         schema.put("date", "varchar");
         return schema;
     }
 
-    public static List<JSONArray> submit(String jobId, String sql, String cluster) {
+    /**
+     * Dispatch the shard tasks to all worknodes concurrently and merge their
+     * row batches as they complete. Shards exceeding the worknode timeout
+     * since they started are dropped, and all outstanding shards are cancelled
+     * once the limit is reached or the query deadline expires. Cancelling only
+     * interrupts the local dispatch thread, a worknode keeps scanning until
+     * its own request ends.
+     */
+    public static List<List<String>> submit(String jobId, String sql, String cluster) {
         Map<WorkNodeStrategy, List<KSqlStrategy>> tasks = getTaskStrategy(sql, cluster);
         LoggerUtils.print(JobClient.class).info("KSqlStrategy: " + new Gson().toJson(tasks));
-        List<JSONArray> parentResult = new ArrayList<>();
+        ShardScanBuffer buffer = ShardScanBuffer.of(KSqlParser.parseQueryKSql(sql, cluster));
+        long start = System.currentTimeMillis();
+        long queryDeadline = start + JOB_TIMEOUT_MS;
+        CompletionService<Boolean> completion = new ExecutorCompletionService<>(JOB_EXECUTOR);
+        Map<Future<Boolean>, Shard> pending = new HashMap<>();
         for (Map.Entry<WorkNodeStrategy, List<KSqlStrategy>> task : tasks.entrySet()) {
             for (KSqlStrategy ksql : task.getValue()) {
                 ksql.setJobId(jobId);
-                List<JSONArray> daughterResult = WorkerScheduleTask.evaluate(ksql, task.getKey());
-                if (daughterResult != null && daughterResult.size() > 0) {
-                    parentResult.addAll(daughterResult);
+                Shard shard = new Shard(task.getKey(), ksql);
+                try {
+                    Future<Boolean> future = completion.submit(() -> {
+                        shard.started = System.currentTimeMillis();
+                        return WorkerScheduleTask.evaluate(ksql, task.getKey(), buffer);
+                    });
+                    pending.put(future, shard);
+                } catch (RejectedExecutionException e) {
+                    LoggerUtils.print(JobClient.class).warn("JobId[" + jobId + "] shard task to worknode[" + task.getKey().getHost() + "] is rejected, executor is busy.");
                 }
             }
         }
-        return parentResult;
+
+        try {
+            while (!pending.isEmpty() && !buffer.isFull()) {
+                long now = System.currentTimeMillis();
+                if (now >= queryDeadline) {
+                    LoggerUtils.print(JobClient.class).warn("JobId[" + jobId + "] exceeds " + JOB_TIMEOUT_MS + "ms, return partial result.");
+                    break;
+                }
+                long nextDeadline = queryDeadline;
+                for (Shard shard : pending.values()) {
+                    // a queued shard gets its deadline once it starts, look again soon
+                    nextDeadline = Math.min(nextDeadline, shard.started == 0L ? now + QUEUED_RECHECK_MS : shard.deadline());
+                }
+                Future<Boolean> done = completion.poll(Math.max(0L, nextDeadline - now), TimeUnit.MILLISECONDS);
+                if (done != null) {
+                    Shard shard = pending.remove(done);
+                    if (shard == null) {
+                        continue; // already dropped by worknode timeout
+                    }
+                    try {
+                        done.get();
+                    } catch (ExecutionException e) {
+                        LoggerUtils.print(JobClient.class).error("JobId[" + jobId + "] shard task by worknode[" + shard.worknode.getHost() + "] has error, msg is ", e.getCause());
+                    }
+                    continue;
+                }
+                now = System.currentTimeMillis();
+                Iterator<Map.Entry<Future<Boolean>, Shard>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Future<Boolean>, Shard> entry = iterator.next();
+                    if (now >= entry.getValue().deadline()) {
+                        entry.getKey().cancel(true);
+                        iterator.remove();
+                        LoggerUtils.print(JobClient.class).warn("JobId[" + jobId + "] shard task by worknode[" + entry.getValue().worknode.getHost() + "], partition[" + entry.getValue().ksql.getPartition() + "] exceeds " + WORKNODE_TIMEOUT_MS + "ms, drop it.");
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!pending.isEmpty()) {
+                LoggerUtils.print(JobClient.class).info("JobId[" + jobId + "] has [" + buffer.size() + "] rows, cancel [" + pending.size() + "] outstanding shard tasks.");
+                for (Future<Boolean> future : pending.keySet()) {
+                    future.cancel(true);
+                }
+            }
+        }
+        LoggerUtils.print(JobClient.class).info("JobId[" + jobId + "] merged [" + buffer.size() + "] rows in [" + (System.currentTimeMillis() - start) + "]ms.");
+        return buffer.getRows();
     }
 
     private static Map<WorkNodeStrategy, List<KSqlStrategy>> getTaskStrategy(String sql, String cluster) {
@@ -240,25 +346,48 @@ public class JobClient {
         if (workNodes.size() == 0) {
             return workNodeTasks;
         }
+        double[] weights = getWorkNodeWeights(workNodes);
+        // push timespan predicates down into offset ranges
+        long[] window = timeWindow(ksql);
+        Map<Integer, Long> fromOffsets = null;
+        Map<Integer, Long> toOffsets = null;
+        if (window[0] != Long.MIN_VALUE) {
+            fromOffsets = kafkaService.getKafkaOffsetsForTimes(cluster, ksql.getTopic(), ksql.getPartitions(), window[0]);
+        }
+        if (window[1] != Long.MAX_VALUE) {
+            toOffsets = kafkaService.getKafkaOffsetsForTimes(cluster, ksql.getTopic(), ksql.getPartitions(), window[1] + 1);
+        }
         for (int partitionId : ksql.getPartitions()) {
             long endLogSize = kafkaService.getKafkaLogSize(cluster, ksql.getTopic(), partitionId);
             long endRealLogSize = kafkaService.getKafkaRealLogSize(cluster, ksql.getTopic(), partitionId);
 
             long startLogSize = endLogSize - endRealLogSize;
-            long numberPer = endRealLogSize / workNodes.size();
+            if (fromOffsets != null) {
+                if (!fromOffsets.containsKey(partitionId)) {
+                    continue; // no record at or after the window start
+                }
+                startLogSize = Math.max(startLogSize, fromOffsets.get(partitionId));
+            }
+            if (toOffsets != null && toOffsets.containsKey(partitionId)) {
+                endLogSize = Math.min(endLogSize, toOffsets.get(partitionId));
+            }
+            if (startLogSize >= endLogSize) {
+                continue;
+            }
+            endRealLogSize = endLogSize - startLogSize;
+            long shardEnd = startLogSize - 1;
+            double weight = 0.0;
             for (int workNodeIndex = 0; workNodeIndex < workNodes.size(); workNodeIndex++) {
-                KSqlStrategy kSqlStrategy = new KSqlStrategy();
-                if (workNodeIndex == (workNodes.size() - 1)) {
-                    kSqlStrategy.setStart(workNodeIndex * numberPer + startLogSize + 1);
-                    kSqlStrategy.setEnd(endLogSize);
-                } else {
-                    if (workNodeIndex == 0) {
-                        kSqlStrategy.setStart(numberPer * workNodeIndex + startLogSize);
-                    } else {
-                        kSqlStrategy.setStart(numberPer * workNodeIndex + startLogSize + 1);
-                    }
-                    kSqlStrategy.setEnd(numberPer * (workNodeIndex + 1) + startLogSize);
+                // the offsets are split by the load weight of each worknode
+                weight += weights[workNodeIndex];
+                long shardStart = workNodeIndex == 0 ? startLogSize : shardEnd + 1;
+                shardEnd = workNodeIndex == (workNodes.size() - 1) ? endLogSize : startLogSize + Math.round(endRealLogSize * weight);
+                if (shardStart > shardEnd) {
+                    continue;
                 }
+                KSqlStrategy kSqlStrategy = new KSqlStrategy();
+                kSqlStrategy.setStart(shardStart);
+                kSqlStrategy.setEnd(shardEnd);
                 kSqlStrategy.setPartition(partitionId);
                 kSqlStrategy.setCluster(cluster);
                 kSqlStrategy.setTopic(ksql.getTopic());
@@ -277,6 +406,39 @@ public class JobClient {
         return workNodeTasks;
     }
 
+    /**
+     * Get the inclusive timestamp window [from, to] of the timespan predicates,
+     * unbounded sides are Long.MIN_VALUE and Long.MAX_VALUE.
+     */
+    private static long[] timeWindow(KSqlStrategy ksql) {
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        for (FieldSchemaStrategy filter : ksql.getFieldSchema()) {
+            if (!TopicSchema.TIMESPAN.equals(filter.getKey()) || filter.isJsonUdf() || filter.isJsonsUdf()) {
+                continue;
+            }
+            long value;
+            try {
+                value = Long.parseLong(filter.getValue());
+            } catch (Exception e) {
+                continue;
+            }
+            if (KConstants.KSQL.GT.equals(filter.getType())) {
+                from = Math.max(from, value + 1);
+            } else if (KConstants.KSQL.GE.equals(filter.getType())) {
+                from = Math.max(from, value);
+            } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
+                from = Math.max(from, value);
+                to = Math.min(to, value);
+            } else if (KConstants.KSQL.LT.equals(filter.getType())) {
+                to = Math.min(to, value - 1);
+            } else if (KConstants.KSQL.LE.equals(filter.getType())) {
+                to = Math.min(to, value);
+            }
+        }
+        return new long[]{from, to};
+    }
+
     private static List<WorkNodeStrategy> getWorkNodes() {
         List<WorkNodeStrategy> nodes = new ArrayList<>();
         List<String> hosts = WorkUtils.getWorkNodes();
@@ -296,19 +458,98 @@ public class JobClient {
         return nodes;
     }
 
+    private static class Shard {
+        private final WorkNodeStrategy worknode;
+        private final KSqlStrategy ksql;
+        private volatile long started = 0L;
+
+        private Shard(WorkNodeStrategy worknode, KSqlStrategy ksql) {
+            this.worknode = worknode;
+            this.ksql = ksql;
+        }
+
+        /**
+         * Get the worknode deadline of the shard, none while it is queued.
+         */
+        private long deadline() {
+            long startedAt = started;
+            return startedAt == 0L ? Long.MAX_VALUE : startedAt + WORKNODE_TIMEOUT_MS;
+        }
+    }
+
+    /**
+     * Get the configured worknodes which are alive in the registry of master.
+     */
     private static List<WorkNodeStrategy> getWorkNodesAlive() {
         List<WorkNodeStrategy> nodes = new ArrayList<>();
         List<String> hosts = WorkUtils.getWorkNodes();
         int port = SystemConfigUtils.getIntProperty("efak.worknode.port");
+        Map<String, WorkNodeMetrics> registry = getWorkNodeRegistry();
         for (String host : hosts) {
-            WorkNodeStrategy wns = new WorkNodeStrategy();
-            wns.setHost(host);
-            wns.setPort(port);
-            if (NetUtils.telnet(host, port)) {
+            if (registry.containsKey(host)) {
+                WorkNodeStrategy wns = new WorkNodeStrategy();
+                wns.setHost(host);
+                wns.setPort(port);
                 nodes.add(wns); // alive node
             }
         }
         return nodes;
     }
 
+    /**
+     * Get the alive worknodes by ip and hostname. The registry lives in the
+     * master WorkNodeServer, a snapshot of it is pulled at most once per
+     * heartbeat interval.
+     */
+    private static Map<String, WorkNodeMetrics> getWorkNodeRegistry() {
+        if (System.currentTimeMillis() - workNodeRegistryTime < WorkNodeRegistry.HEARTBEAT_INTERVAL_MS) {
+            return workNodeRegistry;
+        }
+        synchronized (JobClient.class) {
+            if (System.currentTimeMillis() - workNodeRegistryTime < WorkNodeRegistry.HEARTBEAT_INTERVAL_MS) {
+                return workNodeRegistry;
+            }
+            String masterHost = SystemConfigUtils.getProperty("efak.worknode.master.host");
+            int port = SystemConfigUtils.getIntProperty("efak.worknode.port");
+            JSONObject object = new JSONObject();
+            object.put(KConstants.Protocol.KEY, KConstants.Protocol.WORK_NODE_ALIVE);
+            Map<String, WorkNodeMetrics> registry = new HashMap<>();
+            try {
+                String resultStr = MasterNodeClient.getResult(masterHost, port, object);
+                if (!StrUtils.isNull(resultStr)) {
+                    for (WorkNodeMetrics metrics : JSON.parseArray(resultStr, WorkNodeMetrics.class)) {
+                        registry.put(metrics.getHost(), metrics);
+                        if (!StrUtils.isNull(metrics.getHostname())) {
+                            registry.put(metrics.getHostname(), metrics);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                LoggerUtils.print(JobClient.class).error("Get worknode registry from master[" + masterHost + ":" + port + "] has error, msg is ", e);
+            }
+            workNodeRegistry = registry;
+            workNodeRegistryTime = System.currentTimeMillis();
+            return registry;
+        }
+    }
+
+    /**
+     * Get the share of the scanned offsets of each worknode, the weights add
+     * up to one.
+     */
+    private static double[] getWorkNodeWeights(List<WorkNodeStrategy> workNodes) {
+        Map<String, WorkNodeMetrics> registry = getWorkNodeRegistry();
+        double[] weights = new double[workNodes.size()];
+        double total = 0.0;
+        for (int i = 0; i < workNodes.size(); i++) {
+            WorkNodeMetrics metrics = registry.get(workNodes.get(i).getHost());
+            weights[i] = metrics == null ? 1.0 : WorkNodeRegistry.weight(metrics);
+            total += weights[i];
+        }
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = weights[i] / total;
+        }
+        return weights;
+    }
+
 }
@@ -18,12 +18,13 @@
 package org.smartloli.kafka.eagle.core.task.schedule;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
 import org.smartloli.kafka.eagle.common.util.KConstants;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.StrUtils;
 import org.smartloli.kafka.eagle.core.task.rpc.MasterNodeClient;
+import org.smartloli.kafka.eagle.core.task.shard.ShardScanBuffer;
 import org.smartloli.kafka.eagle.core.task.strategy.KSqlStrategy;
 import org.smartloli.kafka.eagle.core.task.strategy.WorkNodeStrategy;
 
@@ -39,21 +40,32 @@ import java.util.List;
 public class WorkerScheduleTask {
 
     /**
-     * Get worknode evaluate result.
+     * Get worknode evaluate result and merge its row batches into the buffer,
+     * return false when the buffer is full.
      */
-    public static List<JSONArray> evaluate(KSqlStrategy input, WorkNodeStrategy worknode) {
+    public static boolean evaluate(KSqlStrategy input, WorkNodeStrategy worknode, ShardScanBuffer buffer) {
         JSONObject object = new JSONObject();
         object.put(KConstants.Protocol.KEY, KConstants.Protocol.KSQL_QUERY);
         object.put(KConstants.Protocol.VALUE, input);
         String result = MasterNodeClient.getResult(worknode.getHost(), worknode.getPort(), object);
+        if (Thread.currentThread().isInterrupted()) {
+            // the query is cancelled or timed out, drop the late result
+            return false;
+        }
         try {
             if (!StrUtils.isNull(result)) {
-                return JSON.parseArray(result, JSONArray.class);
+                List<List<List<String>>> batches = JSON.parseObject(result, new TypeReference<List<List<List<String>>>>() {
+                });
+                for (List<List<String>> batch : batches) {
+                    if (!buffer.addAll(batch)) {
+                        return false;
+                    }
+                }
             }
         } catch (Exception e) {
             LoggerUtils.print(WorkerScheduleTask.class).error("Deserialize result by [" + worknode.toString() + "] has error, msg is ", e);
         }
-        return null;
+        return !buffer.isFull();
     }
 
 }
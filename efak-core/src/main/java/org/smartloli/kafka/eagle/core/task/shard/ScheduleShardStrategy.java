@@ -18,9 +18,9 @@
 package org.smartloli.kafka.eagle.core.task.shard;
 
 import org.smartloli.kafka.eagle.common.constant.ThreadConstants;
-import org.smartloli.kafka.eagle.common.util.NetUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
 import org.smartloli.kafka.eagle.common.util.WorkUtils;
+import org.smartloli.kafka.eagle.core.task.metrics.WorkNodeRegistry;
 import org.smartloli.kafka.eagle.core.task.strategy.WorkNodeStrategy;
 
 import java.util.ArrayList;
@@ -42,7 +42,7 @@ public class ScheduleShardStrategy {
         int port = SystemConfigUtils.getIntProperty("efak.worknode.port");
         List<WorkNodeStrategy> nodes = new ArrayList<>();
         for (String host : hosts) {
-            if (NetUtils.telnet(host, port)) {
+            if (WorkNodeRegistry.get(host) != null) { // alive by heartbeat
                 WorkNodeStrategy wns = new WorkNodeStrategy();
                 wns.setPort(port);
                 wns.setHost(host);
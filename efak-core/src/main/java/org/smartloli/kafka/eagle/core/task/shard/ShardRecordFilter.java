@@ -0,0 +1,269 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.task.shard;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.util.KConstants;
+import org.smartloli.kafka.eagle.core.sql.schema.TopicSchema;
+import org.smartloli.kafka.eagle.core.task.strategy.FieldSchemaStrategy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * KSQL filters compiled once per query.
+ * <p>
+ * Every {@link FieldSchemaStrategy} becomes a typed predicate with its
+ * constant parsed up front. The predicates are and-ed together, cheapest
+ * first, and evaluation stops at the first one that fails. The message is
+ * parsed as json at most once per record, no matter how many json filters
+ * the query has.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class ShardRecordFilter {
+
+    private static final int COST_NONE = 0;
+    private static final int COST_TIMESTAMP = 1;
+    private static final int COST_TEXT = 2;
+    private static final int COST_JSON = 3;
+
+    private final Predicate[] predicates;
+
+    private ShardRecordFilter(Predicate[] predicates) {
+        this.predicates = predicates;
+    }
+
+    /**
+     * Compile the field schema of a query. The compiled filter is immutable
+     * and can be shared by all scan tasks of the query.
+     */
+    public static ShardRecordFilter compile(List<FieldSchemaStrategy> filters) {
+        List<Predicate> predicates = new ArrayList<>();
+        for (FieldSchemaStrategy filter : filters) {
+            Predicate predicate = compile(filter);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+        predicates.sort(Comparator.comparingInt(Predicate::cost));
+        return new ShardRecordFilter(predicates.toArray(new Predicate[0]));
+    }
+
+    /**
+     * Create a matcher which holds the per record state, use one matcher per
+     * scan thread.
+     */
+    public Matcher matcher() {
+        return new Matcher(predicates);
+    }
+
+    public static final class Matcher {
+        private final Predicate[] predicates;
+        private final Record record = new Record();
+
+        private Matcher(Predicate[] predicates) {
+            this.predicates = predicates;
+        }
+
+        /**
+         * Return true when the record matches all filters.
+         */
+        public boolean test(String msg, long timestamp) {
+            record.reset(msg, timestamp);
+            for (Predicate predicate : predicates) {
+                if (!predicate.test(record)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Compile one filter, null means it always matches.
+     */
+    private static Predicate compile(FieldSchemaStrategy filter) {
+        String type = filter.getType();
+        String key = filter.getKey();
+        String value = filter.getValue();
+        if (KConstants.KSQL.ORDER_BY.equals(type)) {
+            return null; // order by default match one record
+        }
+        if (TopicSchema.TIMESPAN.equals(key)) {
+            Predicate predicate = compileTimeSpan(type, value);
+            if (predicate != null) {
+                return predicate;
+            }
+        }
+        boolean like = KConstants.KSQL.LIKE.equals(type);
+        boolean eq = KConstants.KSQL.EQ.equals(type);
+        if (!like && !eq) {
+            return new Predicate(COST_NONE) {
+                @Override
+                boolean test(Record record) {
+                    return false;
+                }
+            };
+        }
+        if (filter.isJsonUdf()) {// sql include json object
+            return new Predicate(COST_JSON) {
+                @Override
+                boolean test(Record record) {
+                    JSONObject object = record.object();
+                    return object != null && matches(object.getString(key), value, like);
+                }
+            };
+        } else if (filter.isJsonsUdf()) {// sql include json array
+            return new Predicate(COST_JSON) {
+                @Override
+                boolean test(Record record) {
+                    JSONArray array = record.array();
+                    if (array == null) {
+                        return false;
+                    }
+                    for (Object obj : array) {
+                        if (obj instanceof JSONObject && matches(((JSONObject) obj).getString(key), value, like)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+        // sql include text
+        return new Predicate(COST_TEXT) {
+            @Override
+            boolean test(Record record) {
+                return matches(record.msg, value, like);
+            }
+        };
+    }
+
+    private static Predicate compileTimeSpan(String type, String value) {
+        final long constant;
+        try {
+            constant = Long.parseLong(value);
+        } catch (Exception e) {
+            return null;
+        }
+        if (KConstants.KSQL.GT.equals(type)) {
+            return new Predicate(COST_TIMESTAMP) {
+                @Override
+                boolean test(Record record) {
+                    return record.timestamp > constant;
+                }
+            };
+        } else if (KConstants.KSQL.GE.equals(type)) {
+            return new Predicate(COST_TIMESTAMP) {
+                @Override
+                boolean test(Record record) {
+                    return record.timestamp >= constant;
+                }
+            };
+        } else if (KConstants.KSQL.EQ.equals(type)) {
+            return new Predicate(COST_TIMESTAMP) {
+                @Override
+                boolean test(Record record) {
+                    return record.timestamp == constant;
+                }
+            };
+        } else if (KConstants.KSQL.LT.equals(type)) {
+            return new Predicate(COST_TIMESTAMP) {
+                @Override
+                boolean test(Record record) {
+                    return record.timestamp < constant;
+                }
+            };
+        } else if (KConstants.KSQL.LE.equals(type)) {
+            return new Predicate(COST_TIMESTAMP) {
+                @Override
+                boolean test(Record record) {
+                    return record.timestamp <= constant;
+                }
+            };
+        }
+        return null;
+    }
+
+    private static boolean matches(String actual, String value, boolean like) {
+        if (actual == null) {
+            return false;
+        }
+        return like ? actual.contains(value) : actual.equals(value);
+    }
+
+    private abstract static class Predicate {
+        private final int cost;
+
+        Predicate(int cost) {
+            this.cost = cost;
+        }
+
+        int cost() {
+            return cost;
+        }
+
+        abstract boolean test(Record record);
+    }
+
+    /**
+     * Current record with its json form parsed lazily.
+     */
+    private static class Record {
+        private String msg;
+        private long timestamp;
+        private boolean parsed;
+        private Object json;
+
+        private void reset(String msg, long timestamp) {
+            this.msg = msg;
+            this.timestamp = timestamp;
+            this.parsed = false;
+            this.json = null;
+        }
+
+        private Object json() {
+            if (!parsed) {
+                parsed = true;
+                try {
+                    json = msg == null ? null : JSON.parse(msg);
+                } catch (Exception e) {
+                    json = null;
+                }
+            }
+            return json;
+        }
+
+        private JSONObject object() {
+            Object value = json();
+            return value instanceof JSONObject ? (JSONObject) value : null;
+        }
+
+        private JSONArray array() {
+            Object value = json();
+            return value instanceof JSONArray ? (JSONArray) value : null;
+        }
+    }
+
+}
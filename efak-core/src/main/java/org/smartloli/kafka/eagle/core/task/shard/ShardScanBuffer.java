@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.task.shard;
+
+import org.smartloli.kafka.eagle.common.util.KConstants;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.core.task.strategy.FieldSchemaStrategy;
+import org.smartloli.kafka.eagle.core.task.strategy.KSqlStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded buffer of ksql scan rows, kept in batches.
+ * <p>
+ * Each row is the list of column values in table schema order, such as
+ * [partition, offset, msg, timespan, date]. The worker scan tasks append
+ * matched rows, the master merges worker batches. Once the limit is reached
+ * the buffer is full, rejects more rows and the producers stop scanning.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class ShardScanBuffer {
+
+    public static final int BATCH_SIZE = SystemConfigUtils.getIntProperty("efak.sql.worknode.batch.size", 500);
+
+    private final long limit;
+    private final List<List<List<String>>> batches = new ArrayList<>();
+    private List<List<String>> current;
+    private long size = 0L;
+    private volatile boolean full = false;
+
+    /**
+     * @param limit max rows kept, zero or negative is unbounded.
+     */
+    public ShardScanBuffer(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Create a buffer for the ksql, the limit can only be pushed down when no
+     * order by is used, otherwise calcite needs all rows to sort.
+     */
+    public static ShardScanBuffer of(KSqlStrategy ksql) {
+        return new ShardScanBuffer(isOrderBy(ksql) ? 0L : getLimit(ksql));
+    }
+
+    public static long getLimit(KSqlStrategy ksql) {
+        return ksql.getLimit() == 0 ? KConstants.KSQL.LIMIT : ksql.getLimit();
+    }
+
+    public static boolean isOrderBy(KSqlStrategy ksql) {
+        for (FieldSchemaStrategy filter : ksql.getFieldSchema()) {
+            if (KConstants.KSQL.ORDER_BY.equals(filter.getType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Append one row, return false when the buffer is full.
+     */
+    public synchronized boolean add(List<String> row) {
+        if (full) {
+            return false;
+        }
+        if (current == null || current.size() >= BATCH_SIZE) {
+            current = new ArrayList<>();
+            batches.add(current);
+        }
+        current.add(row);
+        size++;
+        if (limit > 0 && size >= limit) {
+            full = true;
+        }
+        return true;
+    }
+
+    /**
+     * Merge a batch of rows, return false when the buffer is full.
+     */
+    public boolean addAll(List<List<String>> rows) {
+        for (List<String> row : rows) {
+            if (!add(row)) {
+                return false;
+            }
+        }
+        return !full;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized List<List<List<String>>> getBatches() {
+        return new ArrayList<>(batches);
+    }
+
+    /**
+     * Get all rows in insertion order.
+     */
+    public synchronized List<List<String>> getRows() {
+        List<List<String>> rows = new ArrayList<>((int) size);
+        for (List<List<String>> batch : batches) {
+            rows.addAll(batch);
+        }
+        return rows;
+    }
+
+}
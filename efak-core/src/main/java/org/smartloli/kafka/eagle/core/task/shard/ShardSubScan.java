@@ -17,9 +17,6 @@
  */
 package org.smartloli.kafka.eagle.core.task.shard;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
 import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
@@ -34,18 +31,15 @@ import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
-import org.smartloli.kafka.eagle.core.sql.schema.TopicSchema;
 import org.smartloli.kafka.eagle.core.task.cache.LogCacheFactory;
 import org.smartloli.kafka.eagle.core.task.strategy.FieldSchemaStrategy;
 import org.smartloli.kafka.eagle.core.task.strategy.KSqlStrategy;
 
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveTask;
 
 /**
@@ -63,50 +57,57 @@ public class ShardSubScan {
     private static KafkaService kafkaService = new KafkaFactory().create();
     private static BrokerService brokerService = new BrokerFactory().create();
 
-    private class SubScanTask extends RecursiveTask<List<JSONArray>> {
+    private class SubScanTask extends RecursiveTask<Long> {
 
         private final Logger LOG = LoggerFactory.getLogger(SubScanTask.class);
         private final int THRESHOLD = SystemConfigUtils.getIntProperty("efak.sql.worknode.fetch.threshold");
         private final long TIMEOUT = SystemConfigUtils.getIntProperty("efak.sql.worknode.fetch.timeout");
 
         private KSqlStrategy ksql;
+        private ShardRecordFilter filter;
+        private ShardScanBuffer buffer;
         private String topic;
         private int partition;
         private long start;
         private long end;
 
-        public SubScanTask(KSqlStrategy ksql, long start, long end) {
+        public SubScanTask(KSqlStrategy ksql, ShardRecordFilter filter, ShardScanBuffer buffer, long start, long end) {
             this.ksql = ksql;
+            this.filter = filter;
+            this.buffer = buffer;
             this.start = start;
             this.end = end;
             this.topic = ksql.getTopic();
             this.partition = ksql.getPartition();
         }
 
-        private List<JSONArray> submit() {
+        private long submit() {
             LOG.info("WorkNodeServer[" + NetUtils.hostname() + "], Cluster[" + ksql.getCluster() + "], Topic[" + this.topic + "], Partition[" + this.partition + "], Sharding = ∑(" + start + "~" + end + ")");
             return executor(ksql, start, end);
         }
 
         @Override
-        protected List<JSONArray> compute() {
-            List<JSONArray> msg = new ArrayList<>();
+        protected Long compute() {
+            if (buffer.isFull()) {
+                return 0L;
+            }
             if ((end - start) <= THRESHOLD) {
                 return submit();
             } else {
                 long middle = (start + end) / 2;
                 LoggerUtils.print(this.getClass()).info("Split: [" + start + "," + end + "]");
-                SubScanTask left = new SubScanTask(ksql, start, middle);
-                SubScanTask right = new SubScanTask(ksql, middle, end);
+                SubScanTask left = new SubScanTask(ksql, filter, buffer, start, middle);
+                SubScanTask right = new SubScanTask(ksql, filter, buffer, middle + 1, end);
                 invokeAll(left, right);
-                msg.addAll(left.join());
-                msg.addAll(right.join());
-                return msg;
+                return left.join() + right.join();
             }
         }
 
-        private List<JSONArray> executor(KSqlStrategy ksql, long start, long end) {
-            List<JSONArray> messages = new ArrayList<>();
+        /**
+         * Scan the shard range [start, end] and append matched rows to the
+         * shared buffer, stop as soon as the range or the limit is reached.
+         */
+        private long executor(KSqlStrategy ksql, long start, long end) {
             Properties props = new Properties();
             props.put(ConsumerConfig.GROUP_ID_CONFIG, KConstants.Kafka.EFAK_SYSTEM_GROUP);
             props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, kafkaService.getKafkaBrokerServer(ksql.getCluster()));
@@ -124,7 +125,7 @@ public class ShardSubScan {
             TopicPartition tp = new TopicPartition(ksql.getTopic(), ksql.getPartition());
             topics.add(tp);
             consumer.assign(topics);
-            long limit = ksql.getLimit() == 0 ? KConstants.KSQL.LIMIT : ksql.getLimit();
+            long limit = ShardScanBuffer.getLimit(ksql);
             boolean desc = false;
             for (FieldSchemaStrategy filter : ksql.getFieldSchema()) {
                 if (KConstants.KSQL.ORDER_BY.equals(filter.getType())) {
@@ -135,59 +136,53 @@ public class ShardSubScan {
                 }
             }
             if (desc) {
-                consumer.seek(tp, end - limit);
+                consumer.seek(tp, Math.max(start, end - limit));
             } else {
                 consumer.seek(tp, start);
             }
 
-            JSONArray datasets = new JSONArray();
             boolean flag = true;
-            long counter = 0;
+            long matched = 0;
             long batchOffset = 0L;
-            while (flag) {
-                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(TIMEOUT));
-                for (ConsumerRecord<String, String> record : records) {
-                    counter++;
-                    String msg = record.value();
-                    JSONObject object = new JSONObject(new LinkedHashMap<>());
-                    object.put(org.smartloli.kafka.eagle.core.sql.schema.TopicSchema.PARTITION, record.partition());
-                    object.put(org.smartloli.kafka.eagle.core.sql.schema.TopicSchema.OFFSET, record.offset());
-                    object.put(org.smartloli.kafka.eagle.core.sql.schema.TopicSchema.MSG, record.value());
-                    object.put(org.smartloli.kafka.eagle.core.sql.schema.TopicSchema.TIMESPAN, record.timestamp());
-                    object.put(org.smartloli.kafka.eagle.core.sql.schema.TopicSchema.DATE, CalendarUtils.convertUnixTime(record.timestamp()));
-                    // record offset
-                    batchOffset = record.offset();
-                    // filter
-                    List<FieldSchemaStrategy> filters = ksql.getFieldSchema();
-                    List<Boolean> matchs = new ArrayList<>();
-                    for (FieldSchemaStrategy filter : filters) {
-                        String key = filter.getKey();
-                        String value = filter.getValue();
-                        if (filter.isJsonUdf()) {// sql include json object
-                            filterJSONObject(msg, filter, matchs);
-                        } else if (filter.isJsonsUdf()) {// sql include json array
-                            filterJSONArray(msg, filter, matchs);
-                        } else {// sql include text
-                            filterText(msg, filter, matchs);
+            ShardRecordFilter.Matcher matcher = filter.matcher();
+            try {
+                while (flag && !buffer.isFull()) {
+                    ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(TIMEOUT));
+                    for (ConsumerRecord<String, String> record : records) {
+                        if (record.offset() > end) {
+                            flag = false;
+                            break;
+                        }
+                        String msg = record.value();
+                        // record offset
+                        batchOffset = record.offset();
+                        if (matcher.test(msg, record.timestamp())) {
+                            // columns in table schema order: partition, offset, msg, timespan, date
+                            List<String> row = new ArrayList<>(5);
+                            row.add(String.valueOf(record.partition()));
+                            row.add(String.valueOf(record.offset()));
+                            row.add(msg);
+                            row.add(String.valueOf(record.timestamp()));
+                            row.add(CalendarUtils.convertUnixTime(record.timestamp()));
+                            if (!buffer.add(row)) {
+                                flag = false;
+                                break;
+                            }
+                            matched++;
+                            if (matched == limit) {
+                                flag = false;
+                                break;
+                            }
                         }
-                        filterTimeSpan(msg, filter, matchs, record.timestamp());
-                    }
-                    if (matchs.size() == filters.size()) {
-                        datasets.add(object);
                     }
-                    if (counter == limit) {
+                    if (records.isEmpty()) {
                         flag = false;
-                        break;
                     }
                 }
-                if (records.isEmpty()) {
-                    flag = false;
-                }
+            } finally {
+                consumer.close();
             }
-            consumer.close();
-            messages.add(datasets);
-            LOG.info("ShardSubScan: " + messages.toString());
-            LOG.info(this.ksql.getJobId() + ", [BatchOffset: " + batchOffset + "], [Progress:" + MathUtils.percent(batchOffset, this.ksql.getEnd()) + "%]");
+            LOG.info(this.ksql.getJobId() + ", [BatchOffset: " + batchOffset + "], [Matched: " + matched + "], [Progress:" + MathUtils.percent(batchOffset, this.ksql.getEnd()) + "%]");
             try {
                 String lastestLog = CalendarUtils.getDate() + " INFO [WorkNodeServer-" + NetUtils.hostname() + "], Cluster[" + ksql.getCluster() + "], Topic[" + ksql.getTopic() + "], Partition[" + ksql.getPartition() + "], Sharding = ∑(" + start + "~" + end + ") finished.";
                 if (LogCacheFactory.LOG_RECORDS.containsKey(ksql.getJobId())) {
@@ -199,88 +194,24 @@ public class ShardSubScan {
             } catch (Exception e) {
                 LoggerUtils.print(this.getClass()).error("Store shard sub scan task log has error, msg is ", e);
             }
-            return messages;
-        }
-
-        private void filterTimeSpan(String msg, FieldSchemaStrategy filter, List<Boolean> matchs, long timestamp) {
-            if (KConstants.KSQL.ORDER_BY.equals(filter.getType())) {
-                matchs.add(true);// order by default match one record
-            }
-            if (TopicSchema.TIMESPAN.equals(filter.getKey()) && !KConstants.KSQL.ORDER_BY.equals(filter.getType())) {
-                if (KConstants.KSQL.GT.equals(filter.getType())) {
-                    if (timestamp > Long.parseLong(filter.getValue())) {
-                        matchs.add(true);
-                    }
-                } else if (KConstants.KSQL.GE.equals(filter.getType())) {
-                    if (timestamp >= Long.parseLong(filter.getValue())) {
-                        matchs.add(true);
-                    }
-                } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
-                    if (timestamp == Long.parseLong(filter.getValue())) {
-                        matchs.add(true);
-                    }
-                } else if (KConstants.KSQL.LT.equals(filter.getType())) {
-                    if (timestamp < Long.parseLong(filter.getValue())) {
-                        matchs.add(true);
-                    }
-                } else if (KConstants.KSQL.LE.equals(filter.getType())) {
-                    if (timestamp <= Long.parseLong(filter.getValue())) {
-                        matchs.add(true);
-                    }
-                }
-            }
-        }
-
-        private void filterJSONObject(String msg, FieldSchemaStrategy filter, List<Boolean> matchs) {
-            if (KConstants.KSQL.LIKE.equals(filter.getType())) {
-                if (JSON.parseObject(msg).getString(filter.getKey()).contains(filter.getValue())) {
-                    matchs.add(true);
-                }
-            } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
-                if (JSON.parseObject(msg).getString(filter.getKey()).equals(filter.getValue())) {
-                    matchs.add(true);
-                }
-            }
-        }
-
-        private void filterText(String msg, FieldSchemaStrategy filter, List<Boolean> matchs) {
-            if (KConstants.KSQL.LIKE.equals(filter.getType())) {
-                if (msg.contains(filter.getValue())) {
-                    matchs.add(true);
-                }
-            } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
-                if (msg.equals(filter.getValue())) {
-                    matchs.add(true);
-                }
-            }
-        }
-
-        private void filterJSONArray(String msg, FieldSchemaStrategy filter, List<Boolean> matchs) {
-            if (KConstants.KSQL.LIKE.equals(filter.getType())) {
-                for (Object obj : JSON.parseArray(msg)) {
-                    JSONObject json = (JSONObject) obj;
-                    if (json.getString(filter.getKey()).contains(filter.getValue())) {
-                        matchs.add(true);
-                        break;
-                    }
-                }
-            } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
-                for (Object obj : JSON.parseArray(msg)) {
-                    JSONObject json = (JSONObject) obj;
-                    if (json.getString(filter.getKey()).equals(filter.getValue())) {
-                        matchs.add(true);
-                        break;
-                    }
-                }
-            }
+            return matched;
         }
 
     }
 
-    public static List<JSONArray> query(KSqlStrategy ksql) {
+    /**
+     * Scan the shard of the ksql, matched rows are kept in bounded batches.
+     */
+    public static ShardScanBuffer query(KSqlStrategy ksql) {
+        ShardScanBuffer buffer = ShardScanBuffer.of(ksql);
+        // filters are compiled once and shared by all sub scan tasks
+        ShardRecordFilter filter = ShardRecordFilter.compile(ksql.getFieldSchema());
         ForkJoinPool pool = new ForkJoinPool();
-        ForkJoinTask<List<JSONArray>> result = pool.submit(new ShardSubScan().new SubScanTask(ksql, ksql.getStart(), ksql.getEnd()));
-        pool.shutdown();
-        return result.invoke();
+        try {
+            pool.invoke(new ShardSubScan().new SubScanTask(ksql, filter, buffer, ksql.getStart(), ksql.getEnd()));
+        } finally {
+            pool.shutdown();
+        }
+        return buffer;
     }
 }
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.ipc;
+
+import com.alibaba.fastjson.JSON;
+import org.smartloli.kafka.eagle.common.util.KConstants;
+import org.smartloli.kafka.eagle.core.sql.schema.TopicSchema;
+import org.smartloli.kafka.eagle.core.task.shard.ShardRecordFilter;
+import org.smartloli.kafka.eagle.core.task.strategy.FieldSchemaStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compare records/sec of the per record filter loop and the compiled ksql
+ * filter on the same json messages.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TestShardRecordFilter {
+
+    private static final int RECORDS = 200000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        List<FieldSchemaStrategy> filters = new ArrayList<>();
+        filters.add(field("name", KConstants.KSQL.LIKE, "efak", true));
+        filters.add(field("status", KConstants.KSQL.EQ, "ok", true));
+        filters.add(field(TopicSchema.TIMESPAN, KConstants.KSQL.GT, "1599754181586", false));
+
+        List<String> msgs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            msgs.add("{\"id\":" + i + ",\"name\":\"efak_" + i + "\",\"status\":\"" + (i % 2 == 0 ? "ok" : "failed") + "\"}");
+        }
+        long timestamp = 1599754181587L;
+
+        ShardRecordFilter.Matcher matcher = ShardRecordFilter.compile(filters).matcher();
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long legacyMatched = 0;
+            for (int i = 0; i < RECORDS; i++) {
+                if (legacy(msgs.get(i % msgs.size()), timestamp, filters)) {
+                    legacyMatched++;
+                }
+            }
+            long legacyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long compiledMatched = 0;
+            for (int i = 0; i < RECORDS; i++) {
+                if (matcher.test(msgs.get(i % msgs.size()), timestamp)) {
+                    compiledMatched++;
+                }
+            }
+            long compiledNanos = System.nanoTime() - start;
+
+            System.out.println("Round[" + round + "] legacy: " + (RECORDS * 1000000000L / legacyNanos) + " records/sec, matched " + legacyMatched
+                    + " | compiled: " + (RECORDS * 1000000000L / compiledNanos) + " records/sec, matched " + compiledMatched);
+        }
+    }
+
+    private static FieldSchemaStrategy field(String key, String type, String value, boolean json) {
+        FieldSchemaStrategy field = new FieldSchemaStrategy();
+        field.setKey(key);
+        field.setType(type);
+        field.setValue(value);
+        field.setJsonUdf(json);
+        return field;
+    }
+
+    /**
+     * The filter loop used by shard sub scan before filters were compiled.
+     */
+    private static boolean legacy(String msg, long timestamp, List<FieldSchemaStrategy> filters) {
+        List<Boolean> matchs = new ArrayList<>();
+        for (FieldSchemaStrategy filter : filters) {
+            if (filter.isJsonUdf()) {
+                if (KConstants.KSQL.LIKE.equals(filter.getType())) {
+                    if (JSON.parseObject(msg).getString(filter.getKey()).contains(filter.getValue())) {
+                        matchs.add(true);
+                    }
+                } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
+                    if (JSON.parseObject(msg).getString(filter.getKey()).equals(filter.getValue())) {
+                        matchs.add(true);
+                    }
+                }
+            }
+            if (TopicSchema.TIMESPAN.equals(filter.getKey()) && KConstants.KSQL.GT.equals(filter.getType())) {
+                if (timestamp > Long.parseLong(filter.getValue())) {
+                    matchs.add(true);
+                }
+            }
+        }
+        return matchs.size() == filters.size();
+    }
+
+}
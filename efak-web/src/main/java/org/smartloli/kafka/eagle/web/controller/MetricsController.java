@@ -17,8 +17,12 @@
  */
 package org.smartloli.kafka.eagle.web.controller;
 
+import com.alibaba.fastjson.JSONObject;
 import org.apache.commons.lang.StringUtils;
+import org.smartloli.kafka.eagle.api.im.queue.IMDispatcher;
 import org.smartloli.kafka.eagle.common.util.KConstants;
+import org.smartloli.kafka.eagle.common.util.WriteBehindUtils;
+import org.smartloli.kafka.eagle.web.quartz.shard.task.schedule.SubTaskScheduler;
 import org.smartloli.kafka.eagle.web.service.MetricsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -105,6 +109,7 @@ public class MetricsController {
             param.put("stime", request.getParameter("stime"));
             param.put("etime", request.getParameter("etime"));
             param.put("type", request.getParameter("type"));
+            param.put("width", request.getParameter("width"));
             String modules = request.getParameter("modules");
             if (StringUtils.isNotBlank(modules)) {
                 param.put("modules", Arrays.asList(modules.split(",")));
@@ -119,4 +124,20 @@ public class MetricsController {
             ex.printStackTrace();
         }
     }
+
+    /**
+     * Get runtime of the scheduled sub tasks by ajax.
+     */
+    @RequestMapping(value = "/metrics/tasks/ajax", method = RequestMethod.GET)
+    public void subTasksAjax(HttpServletResponse response, HttpServletRequest request) {
+        try {
+            JSONObject metrics = SubTaskScheduler.getMetrics();
+            metrics.put("writeBehind", WriteBehindUtils.getMetrics());
+            metrics.put("alertDispatch", IMDispatcher.getMetrics());
+            byte[] output = metrics.toJSONString().getBytes();
+            BaseController.response(output, response);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
 }
@@ -21,7 +21,6 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.base.Strings;
-import com.sun.istack.internal.logging.Logger;
 import org.apache.commons.lang.StringUtils;
 import org.apache.kafka.clients.admin.ConfigEntry;
 import org.apache.shiro.SecurityUtils;
@@ -699,13 +698,8 @@ public class TopicController {
             }
             object.put("created", partition.getCreated());
             object.put("modify", partition.getModify());
-            Map<String, Object> topicStateParams = new HashMap<>();
-            topicStateParams.put("cluster", clusterAlias);
-            topicStateParams.put("topic", partition.getTopic());
-            topicStateParams.put("tkey", Topic.TRUNCATE);
-            List<TopicRank> topicStates = topicService.getCleanTopicState(topicStateParams);
-            if (topicStates != null && topicStates.size() > 0) {
-                if (topicStates.get(0).getTvalue() == 0) {
+            if (partition.getTruncate() >= 0) {
+                if (partition.getTruncate() == 0) {
                     if (Role.ADMIN.equals(signiner.getUsername())) {
                         object.put("operate", "<div class='table-actions d-flex align-items-center gap-3 fs-6'>" +
                                 "<a href='#" + partition.getTopic() + "' name='efak_topic_modify'  class='text-primary' data-bs-toggle='tooltip' data-bs-placement='bottom' title='Edit'><i class='bi bi-pencil-fill'></i></a>" +
@@ -818,6 +812,7 @@ public class TopicController {
             tr.setTkey(Topic.TRUNCATE);
             tr.setTvalue(0);
             if (topicService.addCleanTopicData(Arrays.asList(tr)) > 0) {
+                topicService.refreshTopicCatalog(clusterAlias);
                 mav.setViewName("redirect:/topic/list");
             } else {
                 mav.setViewName("redirect:/errors/500");
@@ -841,6 +836,7 @@ public class TopicController {
         String clusterAlias = session.getAttribute(KConstants.SessionAlias.CLUSTER_ALIAS).toString();
         Map<String, Object> respons = kafkaService.create(clusterAlias, keTopicName, keTopicPartition, keTopicRepli);
         if ("success".equals(respons.get("status"))) {
+            topicService.refreshTopicCatalog(clusterAlias);
             session.removeAttribute("Submit_Status");
             session.setAttribute("Submit_Status", respons.get("info"));
             mav.setViewName("redirect:/topic/create/success");
@@ -862,6 +858,7 @@ public class TopicController {
             String clusterAlias = session.getAttribute(KConstants.SessionAlias.CLUSTER_ALIAS).toString();
             Map<String, Object> respons = kafkaService.delete(clusterAlias, topicName);
             if ("success".equals(respons.get("status"))) {
+                topicService.refreshTopicCatalog(clusterAlias);
                 mav.setViewName("redirect:/topic/list");
             } else {
                 mav.setViewName("redirect:/errors/500");
@@ -881,6 +878,7 @@ public class TopicController {
         String clusterAlias = session.getAttribute(KConstants.SessionAlias.CLUSTER_ALIAS).toString();
         Map<String, Object> respons = brokerService.createTopicPartitions(clusterAlias, topicName, token);
         if ("success".equals(respons.get("status"))) {
+            topicService.refreshTopicCatalog(clusterAlias);
             mav.setViewName("redirect:/topic/list");
         } else {
             mav.setViewName("redirect:/errors/500");
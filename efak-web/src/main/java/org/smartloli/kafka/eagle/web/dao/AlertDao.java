@@ -79,6 +79,11 @@ public interface AlertDao {
      */
     public int modifyConsumerStatusAlertById(AlarmConsumerInfo alarmConsumer);
 
+    /**
+     * Modify alert consumer(alarmtimes,isnormal) info of several ids in batch.
+     */
+    public int modifyConsumerStatusAlertByIds(List<AlarmConsumerInfo> alarmConsumers);
+
     /**
      * Get all alarm consumer tasks.
      */
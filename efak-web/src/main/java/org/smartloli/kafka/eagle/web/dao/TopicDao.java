@@ -65,6 +65,11 @@ public interface TopicDao {
      */
     public void removeTopicRank(Map<String, Object> params);
 
+    /**
+     * Clean the topic ranks of the topics by logsize or capacity.
+     */
+    public void removeTopicRanks(Map<String, Object> params);
+
     /**
      * Get clean topic state.
      */
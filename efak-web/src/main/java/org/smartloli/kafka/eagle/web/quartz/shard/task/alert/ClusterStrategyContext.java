@@ -22,6 +22,7 @@ import com.alibaba.fastjson.JSONObject;
 import org.smartloli.kafka.eagle.api.im.IMFactory;
 import org.smartloli.kafka.eagle.api.im.IMService;
 import org.smartloli.kafka.eagle.api.im.IMServiceImpl;
+import org.smartloli.kafka.eagle.api.im.queue.IMDispatcher;
 import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmClusterInfo;
 import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmConfigInfo;
 import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmMessageInfo;
@@ -89,6 +90,7 @@ public class ClusterStrategyContext {
     }
 
     public static void sendAlarmClusterError(AlarmConfigInfo alarmConfing, AlarmClusterInfo cluster, String server) {
+        String coalesceKey = IMDispatcher.coalesceKey("cluster", alarmConfing.getCluster(), cluster.getId(), "PROBLEM");
         if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.EMAIL)) {
             AlarmMessageInfo alarmMsg = new AlarmMessageInfo();
             alarmMsg.setAlarmId(cluster.getId());
@@ -123,7 +125,7 @@ public class ClusterStrategyContext {
                 object.put("msg", alarmMsg.toMail());
             }
             object.put("title", alarmMsg.getTitle());
-            im.sendPostMsgByMail(object.toJSONString(), alarmConfing.getAlarmUrl());
+            im.sendPostMsgByMail(object.toJSONString(), alarmConfing.getAlarmUrl(), coalesceKey);
         } else if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.DingDing)) {
             AlarmMessageInfo alarmMsg = new AlarmMessageInfo();
             alarmMsg.setAlarmId(cluster.getId());
@@ -150,7 +152,7 @@ public class ClusterStrategyContext {
             alarmMsg.setAlarmStatus("PROBLEM");
             alarmMsg.setAlarmTimes("current(" + cluster.getAlarmTimes() + "), max(" + cluster.getAlarmMaxTimes() + ")");
             IMService im = new IMFactory().create();
-            im.sendPostMsgByDingDing(alarmMsg.toDingDingMarkDown(), alarmConfing.getAlarmUrl());
+            im.sendPostMsgByDingDing(alarmMsg.toDingDingMarkDown(), alarmConfing.getAlarmUrl(), coalesceKey);
         } else if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.WeChat)) {
             AlarmMessageInfo alarmMsg = new AlarmMessageInfo();
             alarmMsg.setAlarmId(cluster.getId());
@@ -177,11 +179,12 @@ public class ClusterStrategyContext {
             alarmMsg.setAlarmStatus("<font color=\"warning\">PROBLEM</font>");
             alarmMsg.setAlarmTimes("current(" + cluster.getAlarmTimes() + "), max(" + cluster.getAlarmMaxTimes() + ")");
             IMServiceImpl im = new IMServiceImpl();
-            im.sendPostMsgByWeChat(alarmMsg.toWeChatMarkDown(), alarmConfing.getAlarmUrl());
+            im.sendPostMsgByWeChat(alarmMsg.toWeChatMarkDown(), alarmConfing.getAlarmUrl(), coalesceKey);
         }
     }
 
     public static void sendAlarmClusterNormal(AlarmConfigInfo alarmConfing, AlarmClusterInfo cluster, String server) {
+        String coalesceKey = IMDispatcher.coalesceKey("cluster", alarmConfing.getCluster(), cluster.getId(), "NORMAL");
         if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.EMAIL)) {
             AlarmMessageInfo alarmMsg = new AlarmMessageInfo();
             alarmMsg.setAlarmId(cluster.getId());
@@ -216,7 +219,7 @@ public class ClusterStrategyContext {
             } else {
                 object.put("msg", alarmMsg.toMail());
             }
-            im.sendPostMsgByMail(object.toJSONString(), alarmConfing.getAlarmUrl());
+            im.sendPostMsgByMail(object.toJSONString(), alarmConfing.getAlarmUrl(), coalesceKey);
         } else if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.DingDing)) {
             AlarmMessageInfo alarmMsg = new AlarmMessageInfo();
             alarmMsg.setAlarmId(cluster.getId());
@@ -243,7 +246,7 @@ public class ClusterStrategyContext {
             alarmMsg.setAlarmStatus("NORMAL");
             alarmMsg.setAlarmTimes("current(" + cluster.getAlarmTimes() + "), max(" + cluster.getAlarmMaxTimes() + ")");
             IMService im = new IMFactory().create();
-            im.sendPostMsgByDingDing(alarmMsg.toDingDingMarkDown(), alarmConfing.getAlarmUrl());
+            im.sendPostMsgByDingDing(alarmMsg.toDingDingMarkDown(), alarmConfing.getAlarmUrl(), coalesceKey);
         } else if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.WeChat)) {
             AlarmMessageInfo alarmMsg = new AlarmMessageInfo();
             alarmMsg.setAlarmId(cluster.getId());
@@ -270,7 +273,7 @@ public class ClusterStrategyContext {
             alarmMsg.setAlarmStatus("<font color=\"#008000\">NORMAL</font>");
             alarmMsg.setAlarmTimes("current(" + cluster.getAlarmTimes() + "), max(" + cluster.getAlarmMaxTimes() + ")");
             IMServiceImpl im = new IMServiceImpl();
-            im.sendPostMsgByWeChat(alarmMsg.toWeChatMarkDown(), alarmConfing.getAlarmUrl());
+            im.sendPostMsgByWeChat(alarmMsg.toWeChatMarkDown(), alarmConfing.getAlarmUrl(), coalesceKey);
         }
     }
 }
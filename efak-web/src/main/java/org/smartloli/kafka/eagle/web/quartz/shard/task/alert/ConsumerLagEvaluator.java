@@ -0,0 +1,308 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.quartz.shard.task.alert;
+
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.api.im.IMFactory;
+import org.smartloli.kafka.eagle.api.im.IMService;
+import org.smartloli.kafka.eagle.api.im.IMServiceImpl;
+import org.smartloli.kafka.eagle.api.im.queue.IMDispatcher;
+import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmConfigInfo;
+import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmConsumerInfo;
+import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmMessageInfo;
+import org.smartloli.kafka.eagle.common.util.CalendarUtils;
+import org.smartloli.kafka.eagle.common.util.JSONUtils;
+import org.smartloli.kafka.eagle.common.util.KConstants;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.common.util.WriteBehindUtils;
+import org.smartloli.kafka.eagle.web.service.impl.AlertServiceImpl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluate the consumer lag alert rules.
+ * <p>
+ * The enabled rules are indexed in memory by cluster, group and topic, and the
+ * alarm config of each alarm group is read once. In standalone mode the lag
+ * collector offers every lag sample as it is produced, so a rule is evaluated
+ * as soon as its lag is known. The alert task only sweeps the rules which got
+ * no sample within the stale time, with the lastest lag stored in the
+ * database. In distributed mode the collector runs on several nodes, so the
+ * sweep evaluates every rule on the node which owns the alert task.
+ * <p>
+ * The status changes are written in batches through the write behind queue.
+ * The rules are read again after an alert rule or config is changed, or
+ * after the resync interval for changes made on another node.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class ConsumerLagEvaluator {
+
+    private static final long RESYNC_MS = SystemConfigUtils.getLongProperty("efak.alert.consumer.rule.resync.ms", 5 * 60 * 1000L);
+
+    private static final long STALE_MS = SystemConfigUtils.getLongProperty("efak.alert.consumer.sample.stale.ms", 3 * 60 * 1000L);
+
+    private static final boolean EVENT_DRIVEN = !SystemConfigUtils.getBooleanProperty("efak.distributed.enable");
+
+    private static volatile boolean dirty = true;
+    private static long loaded = 0L;
+
+    /**
+     * Enabled rules by cluster, group and topic, guarded by the class lock.
+     */
+    private static Map<String, List<AlarmConsumerInfo>> rules = new HashMap<>();
+
+    /**
+     * Alarm config by cluster and alarm group, null when it does not exist.
+     */
+    private static final Map<String, AlarmConfigInfo> CONFIGS = new HashMap<>();
+
+    /**
+     * Last sample time of each rule id.
+     */
+    private static final Map<Integer, Long> SAMPLED = new HashMap<>();
+
+    private ConsumerLagEvaluator() {
+
+    }
+
+    /**
+     * Read the rules and configs again on the next evaluation.
+     */
+    public static void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Evaluate one lag sample of the collector against the rules of the group
+     * and topic.
+     */
+    public static synchronized void offer(String clusterAlias, String group, String topic, long lag, AlertServiceImpl alertService) {
+        if (!EVENT_DRIVEN) {
+            return;
+        }
+        List<AlarmConsumerInfo> matched = load(alertService).get(key(clusterAlias, group, topic));
+        if (matched == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (AlarmConsumerInfo alarmConsumer : matched) {
+            SAMPLED.put(alarmConsumer.getId(), now);
+            evaluate(alarmConsumer, lag, alertService);
+        }
+    }
+
+    /**
+     * Evaluate the rules which got no sample within the stale time, or every
+     * rule in distributed mode, with the lastest lag of today.
+     */
+    public static synchronized void sweep(AlertServiceImpl alertService) {
+        long now = System.currentTimeMillis();
+        for (List<AlarmConsumerInfo> matched : load(alertService).values()) {
+            for (AlarmConsumerInfo alarmConsumer : matched) {
+                Long sampled = SAMPLED.get(alarmConsumer.getId());
+                if (EVENT_DRIVEN && sampled != null && now - sampled <= STALE_MS) {
+                    continue;
+                }
+                try {
+                    Map<String, Object> params = new HashMap<>();
+                    params.put("cluster", alarmConsumer.getCluster());
+                    params.put("tday", CalendarUtils.getCustomDate("yyyyMMdd"));
+                    params.put("group", alarmConsumer.getGroup());
+                    params.put("topic", alarmConsumer.getTopic());
+                    evaluate(alarmConsumer, alertService.queryLastestLag(params), alertService);
+                } catch (Exception e) {
+                    LoggerUtils.print(ConsumerLagEvaluator.class).error("Alarm consumer[" + alarmConsumer.getId() + "] lag has error, msg is ", e);
+                }
+            }
+        }
+    }
+
+    private static Map<String, List<AlarmConsumerInfo>> load(AlertServiceImpl alertService) {
+        long now = System.currentTimeMillis();
+        if (!dirty && now - loaded <= RESYNC_MS) {
+            return rules;
+        }
+        dirty = false;
+        try {
+            Map<Integer, AlarmConsumerInfo> last = new HashMap<>();
+            for (List<AlarmConsumerInfo> matched : rules.values()) {
+                for (AlarmConsumerInfo alarmConsumer : matched) {
+                    last.put(alarmConsumer.getId(), alarmConsumer);
+                }
+            }
+            Map<String, List<AlarmConsumerInfo>> targets = new HashMap<>();
+            Set<Integer> ids = new HashSet<>();
+            for (AlarmConsumerInfo alarmConsumer : alertService.getAllAlarmConsumerTasks()) {
+                if (KConstants.AlarmType.DISABLE.equals(alarmConsumer.getIsEnable())) {
+                    continue;
+                }
+                // the status written behind may not be in the database yet
+                AlarmConsumerInfo previous = last.get(alarmConsumer.getId());
+                if (previous != null) {
+                    alarmConsumer.setAlarmTimes(previous.getAlarmTimes());
+                    alarmConsumer.setIsNormal(previous.getIsNormal());
+                }
+                targets.computeIfAbsent(key(alarmConsumer.getCluster(), alarmConsumer.getGroup(), alarmConsumer.getTopic()), k -> new ArrayList<>()).add(alarmConsumer);
+                ids.add(alarmConsumer.getId());
+            }
+            rules = targets;
+            CONFIGS.clear();
+            SAMPLED.keySet().retainAll(ids);
+            loaded = now;
+        } catch (Exception e) {
+            dirty = true;
+            LoggerUtils.print(ConsumerLagEvaluator.class).error("Load alarm consumer rules has error, msg is ", e);
+        }
+        return rules;
+    }
+
+    private static AlarmConfigInfo config(AlarmConsumerInfo alarmConsumer, AlertServiceImpl alertService) {
+        String name = alarmConsumer.getCluster() + "\u0001" + alarmConsumer.getAlarmGroup();
+        if (!CONFIGS.containsKey(name)) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("cluster", alarmConsumer.getCluster());
+            map.put("alarmGroup", alarmConsumer.getAlarmGroup());
+            CONFIGS.put(name, alertService.getAlarmConfigByGroupName(map));
+        }
+        return CONFIGS.get(name);
+    }
+
+    private static void evaluate(AlarmConsumerInfo alarmConsumer, long lag, AlertServiceImpl alertService) {
+        AlarmConfigInfo alarmConfing = config(alarmConsumer, alertService);
+        // alert common info
+        AlarmMessageInfo alarmMsg = new AlarmMessageInfo();
+        try {
+            alarmMsg.setAlarmId(alarmConsumer.getId());
+            alarmMsg.setAlarmCluster(alarmConfing.getCluster());
+            alarmMsg.setAlarmDate(CalendarUtils.getDate());
+            alarmMsg.setAlarmLevel(alarmConsumer.getAlarmLevel());
+            alarmMsg.setAlarmProject("Consumer");
+            alarmMsg.setAlarmTimes("current(" + alarmConsumer.getAlarmTimes() + "), max(" + alarmConsumer.getAlarmMaxTimes() + ")");
+        } catch (Exception e) {
+            LoggerUtils.print(ConsumerLagEvaluator.class).error("Alert message load common information has error, msg is ", e);
+        }
+        if (lag > alarmConsumer.getLag() && (alarmConsumer.getAlarmTimes() < alarmConsumer.getAlarmMaxTimes() || alarmConsumer.getAlarmMaxTimes() == -1)) {
+            // alarm consumer
+            alarmConsumer.setAlarmTimes(alarmConsumer.getAlarmTimes() + 1);
+            alarmConsumer.setIsNormal("N");
+            writeStatus(alarmConsumer, alertService);
+            try {
+                sendAlarmConsumerError(alarmConfing, alarmConsumer, lag, alarmMsg);
+            } catch (Exception e) {
+                LoggerUtils.print(ConsumerLagEvaluator.class).error("Send alarm consumer exception has error, msg is ", e);
+            }
+        } else if (lag <= alarmConsumer.getLag()) {
+            if ("N".equals(alarmConsumer.getIsNormal())) {
+                alarmConsumer.setIsNormal("Y");
+                // clear error alarm and reset
+                alarmConsumer.setAlarmTimes(0);
+                // notify the cancel of the alarm
+                writeStatus(alarmConsumer, alertService);
+                try {
+                    sendAlarmConsumerNormal(alarmConfing, alarmConsumer, lag, alarmMsg);
+                } catch (Exception e) {
+                    LoggerUtils.print(ConsumerLagEvaluator.class).error("Send alarm consumer normal has error, msg is ", e);
+                }
+            }
+        }
+    }
+
+    private static void writeStatus(AlarmConsumerInfo alarmConsumer, AlertServiceImpl alertService) {
+        AlarmConsumerInfo status = new AlarmConsumerInfo();
+        status.setId(alarmConsumer.getId());
+        status.setAlarmTimes(alarmConsumer.getAlarmTimes());
+        status.setIsNormal(alarmConsumer.getIsNormal());
+        status.setModify(alarmConsumer.getModify());
+        WriteBehindUtils.write("ke_alarm_consumer", status, alertService::modifyConsumerStatusAlertByIds);
+    }
+
+    private static String key(String clusterAlias, String group, String topic) {
+        return clusterAlias + "\u0001" + group + "\u0001" + topic;
+    }
+
+    private static void sendAlarmConsumerError(AlarmConfigInfo alarmConfing, AlarmConsumerInfo alarmConsumer, long lag, AlarmMessageInfo alarmMsg) {
+        String coalesceKey = IMDispatcher.coalesceKey("consumer", alarmConsumer.getId(), key(alarmConsumer.getCluster(), alarmConsumer.getGroup(), alarmConsumer.getTopic()), "PROBLEM");
+        if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.EMAIL)) {
+            alarmMsg.setTitle("EFAK - Alert Consumer Notice");
+            alarmMsg.setAlarmStatus("PROBLEM");
+            alarmMsg.setAlarmContent("lag.overflow [ cluster(" + alarmConsumer.getCluster() + "), group(" + alarmConsumer.getGroup() + "), topic(" + alarmConsumer.getTopic() + "), current(" + lag + "), max(" + alarmConsumer.getLag() + ") ]");
+            IMService im = new IMFactory().create();
+            JSONObject object = new JSONObject();
+            object.put("address", alarmConfing.getAlarmAddress());
+            if (JSONUtils.isJsonObject(alarmConfing.getAlarmUrl())) {
+                object.put("msg", alarmMsg.toMailJSON());
+            } else {
+                object.put("msg", alarmMsg.toMail());
+            }
+            object.put("title", alarmMsg.getTitle());
+            im.sendPostMsgByMail(object.toJSONString(), alarmConfing.getAlarmUrl(), coalesceKey);
+        } else if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.DingDing)) {
+            alarmMsg.setTitle("EFAK - Alert Consumer Notice");
+            alarmMsg.setAlarmContent("lag.overflow [ cluster(" + alarmConsumer.getCluster() + "), group(" + alarmConsumer.getGroup() + "), topic(" + alarmConsumer.getTopic() + "), current(" + lag + "), max(" + alarmConsumer.getLag() + ") ]");
+            alarmMsg.setAlarmStatus("PROBLEM");
+            IMService im = new IMFactory().create();
+            im.sendPostMsgByDingDing(alarmMsg.toDingDingMarkDown(), alarmConfing.getAlarmUrl(), coalesceKey);
+        } else if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.WeChat)) {
+            alarmMsg.setTitle("`EFAK - Alert Consumer Notice`\n");
+            alarmMsg.setAlarmContent("<font color=\"warning\">lag.overflow [ cluster(" + alarmConsumer.getCluster() + "), group(" + alarmConsumer.getGroup() + "), topic(" + alarmConsumer.getTopic() + "), current(" + lag + "), max(" + alarmConsumer.getLag() + ") ]</font>");
+            alarmMsg.setAlarmStatus("<font color=\"warning\">PROBLEM</font>");
+            IMServiceImpl im = new IMServiceImpl();
+            im.sendPostMsgByWeChat(alarmMsg.toWeChatMarkDown(), alarmConfing.getAlarmUrl(), coalesceKey);
+        }
+    }
+
+    private static void sendAlarmConsumerNormal(AlarmConfigInfo alarmConfing, AlarmConsumerInfo alarmConsumer, long lag, AlarmMessageInfo alarmMsg) {
+        String coalesceKey = IMDispatcher.coalesceKey("consumer", alarmConsumer.getId(), key(alarmConsumer.getCluster(), alarmConsumer.getGroup(), alarmConsumer.getTopic()), "NORMAL");
+        if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.EMAIL)) {
+            alarmMsg.setTitle("EFAK - Alert Consumer Cancel");
+            alarmMsg.setAlarmContent("lag.normal [ cluster(" + alarmConsumer.getCluster() + "), group(" + alarmConsumer.getGroup() + "), topic(" + alarmConsumer.getTopic() + "), current(" + lag + "), max(" + alarmConsumer.getLag() + ") ]");
+            alarmMsg.setAlarmStatus("NORMAL");
+            IMService im = new IMFactory().create();
+            JSONObject object = new JSONObject();
+            object.put("address", alarmConfing.getAlarmAddress());
+            if (JSONUtils.isJsonObject(alarmConfing.getAlarmUrl())) {
+                object.put("msg", alarmMsg.toMailJSON());
+            } else {
+                object.put("msg", alarmMsg.toMail());
+            }
+            object.put("title", alarmMsg.getTitle());
+            im.sendPostMsgByMail(object.toJSONString(), alarmConfing.getAlarmUrl(), coalesceKey);
+        } else if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.DingDing)) {
+            alarmMsg.setTitle("EFAK - Alert Consumer Notice");
+            alarmMsg.setAlarmContent("lag.normal [ cluster(" + alarmConsumer.getCluster() + "), group(" + alarmConsumer.getGroup() + "), topic(" + alarmConsumer.getTopic() + "), current(" + lag + "), max(" + alarmConsumer.getLag() + ") ]");
+            alarmMsg.setAlarmStatus("NORMAL");
+            IMService im = new IMFactory().create();
+            im.sendPostMsgByDingDing(alarmMsg.toDingDingMarkDown(), alarmConfing.getAlarmUrl(), coalesceKey);
+        } else if (alarmConfing.getAlarmType().equals(KConstants.AlarmType.WeChat)) {
+            alarmMsg.setTitle("`EFAK - Alert Consumer Notice`\n");
+            alarmMsg.setAlarmContent("<font color=\"#008000\">lag.normal [ cluster(" + alarmConsumer.getCluster() + "), group(" + alarmConsumer.getGroup() + "), topic(" + alarmConsumer.getTopic() + "), current(" + lag + "), max(" + alarmConsumer.getLag() + ") ]</font>");
+            alarmMsg.setAlarmStatus("<font color=\"#008000\">NORMAL</font>");
+            IMServiceImpl im = new IMServiceImpl();
+            im.sendPostMsgByWeChat(alarmMsg.toWeChatMarkDown(), alarmConfing.getAlarmUrl(), coalesceKey);
+        }
+    }
+}
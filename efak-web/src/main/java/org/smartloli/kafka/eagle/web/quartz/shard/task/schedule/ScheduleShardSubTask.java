@@ -43,10 +43,10 @@ public class ScheduleShardSubTask {
         try {
             if (SystemConfigUtils.getBooleanProperty("efak.distributed.enable")) {
                 if (KConstants.EFAK.MODE_MASTER.equals(SystemConfigUtils.getProperty("efak.cluster.mode.status"))) {
-                    new CleanChartSubTask().start();
+                    SubTaskScheduler.submit(CleanChartSubTask.class.getName());
                 }
             } else {
-                new CleanChartSubTask().start();
+                SubTaskScheduler.submit(CleanChartSubTask.class.getName());
             }
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).info("Master node starts cleaning up expired data.");
@@ -76,23 +76,11 @@ public class ScheduleShardSubTask {
             if (shardTasks != null) {
                 for (String shardTask : shardTasks) {
                     LoggerUtils.print(this.getClass()).info("Task thread [" + shardTask + "]");
-                    try {
-                        Class subThreadClass = Class.forName(shardTask);
-                        Thread thread = (Thread) subThreadClass.newInstance();
-                        thread.start();
-                    } catch (Exception e) {
-                        LoggerUtils.print(this.getClass()).info("Distributed node start thread sub task has error, msg is ", e);
-                    }
+                    SubTaskScheduler.submit(shardTask);
                 }
             }
 
-            try {
-                Class subThreadClass = Class.forName(ThreadConstants.SUPER_VIP_SUB_TASK);
-                Thread thread = (Thread) subThreadClass.newInstance();
-                thread.start();
-            } catch (Exception e) {
-                LoggerUtils.print(this.getClass()).info("Distributed node start super vip thread sub task has error, msg is ", e);
-            }
+            SubTaskScheduler.submit(ThreadConstants.SUPER_VIP_SUB_TASK);
         }
 
     }
@@ -102,13 +90,7 @@ public class ScheduleShardSubTask {
     private void jobForStandaloneAllTasks() {
         LoggerUtils.print(this.getClass()).info("Standalone mode start thread on one node.");
         for (Map.Entry<String, Integer> entry : ThreadConstants.SUB_TASK_MAP.entrySet()) {
-            try {
-                Class subThreadClass = Class.forName(entry.getKey());
-                Thread thread = (Thread) subThreadClass.newInstance();
-                thread.start();
-            } catch (Exception e) {
-                LoggerUtils.print(this.getClass()).info("Standalone mode start thread sub task has error, msg is ", e);
-            }
+            SubTaskScheduler.submit(entry.getKey());
         }
     }
 
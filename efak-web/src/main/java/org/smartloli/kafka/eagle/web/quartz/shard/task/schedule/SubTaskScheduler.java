@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.quartz.shard.task.schedule;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.util.CalendarUtils;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Run the quartz sub tasks on a shared and bounded worker pool.
+ * <p>
+ * Each sub task type runs at most once at a time. When the previous cycle of
+ * a type is still running, the new cycle is skipped and counted as an overrun,
+ * so slow cycles on a big cluster never stack up against kafka and the
+ * database. The runtime of each type is tracked and exposed by
+ * {@link #getMetrics()}.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class SubTaskScheduler {
+
+    private static final AtomicInteger THREAD_ID = new AtomicInteger(0);
+
+    private static final ThreadPoolExecutor SUB_TASK_EXECUTOR = new ThreadPoolExecutor(
+            SystemConfigUtils.getIntProperty("efak.task.sub.threads", 16),
+            SystemConfigUtils.getIntProperty("efak.task.sub.threads", 16),
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(SystemConfigUtils.getIntProperty("efak.task.sub.queue.size", 64)), r -> {
+        Thread thread = new Thread(r, "efak-sub-task-" + THREAD_ID.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Map<String, TaskState> STATES = new ConcurrentHashMap<>();
+
+    private SubTaskScheduler() {
+
+    }
+
+    /**
+     * Submit one cycle of the sub task class, return false when the cycle is
+     * skipped because the previous one is still running or the pool is full.
+     */
+    public static boolean submit(String className) {
+        TaskState state = STATES.computeIfAbsent(className, k -> new TaskState());
+        if (!state.running.compareAndSet(false, true)) {
+            state.overruns.incrementAndGet();
+            long submitted = state.lastSubmit;
+            // the previous cycle has not started yet when it is still in the queue
+            String phase = state.lastStart >= submitted ? "running" : "queued";
+            LoggerUtils.print(SubTaskScheduler.class).warn("Sub task[" + className + "] is still " + phase + " since submitted at " + CalendarUtils.convertUnixTime2Date(submitted) + ", skip this cycle.");
+            return false;
+        }
+        state.lastSubmit = System.currentTimeMillis();
+        final Runnable task;
+        try {
+            task = (Runnable) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            state.running.set(false);
+            state.failures.incrementAndGet();
+            LoggerUtils.print(SubTaskScheduler.class).error("Create sub task[" + className + "] has error, msg is ", e);
+            return false;
+        }
+        try {
+            SUB_TASK_EXECUTOR.execute(() -> {
+                long start = System.currentTimeMillis();
+                state.lastStart = start;
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    state.failures.incrementAndGet();
+                    LoggerUtils.print(SubTaskScheduler.class).error("Sub task[" + className + "] has error, msg is ", t);
+                } finally {
+                    long duration = System.currentTimeMillis() - start;
+                    state.lastDuration = duration;
+                    state.maxDuration = Math.max(state.maxDuration, duration);
+                    state.totalDuration.addAndGet(duration);
+                    state.runs.incrementAndGet();
+                    state.running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            state.running.set(false);
+            state.rejected.incrementAndGet();
+            LoggerUtils.print(SubTaskScheduler.class).warn("Sub task[" + className + "] is rejected, queue depth is " + SUB_TASK_EXECUTOR.getQueue().size() + ".");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the pool usage and the runtime of each sub task type.
+     */
+    public static JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("poolSize", SUB_TASK_EXECUTOR.getPoolSize());
+        metrics.put("activeThreads", SUB_TASK_EXECUTOR.getActiveCount());
+        metrics.put("queueDepth", SUB_TASK_EXECUTOR.getQueue().size());
+        JSONArray tasks = new JSONArray();
+        for (Map.Entry<String, TaskState> entry : new TreeMap<>(STATES).entrySet()) {
+            TaskState state = entry.getValue();
+            JSONObject task = new JSONObject();
+            task.put("task", entry.getKey().substring(entry.getKey().lastIndexOf('.') + 1));
+            task.put("running", state.running.get());
+            task.put("runs", state.runs.get());
+            task.put("lastStart", state.lastStart == 0L ? "" : CalendarUtils.convertUnixTime2Date(state.lastStart));
+            task.put("lastDuration", state.lastDuration);
+            task.put("maxDuration", state.maxDuration);
+            task.put("avgDuration", state.runs.get() == 0L ? 0L : state.totalDuration.get() / state.runs.get());
+            task.put("overruns", state.overruns.get());
+            task.put("rejected", state.rejected.get());
+            task.put("failures", state.failures.get());
+            tasks.add(task);
+        }
+        metrics.put("tasks", tasks);
+        return metrics;
+    }
+
+    private static class TaskState {
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private final AtomicLong runs = new AtomicLong(0L);
+        private final AtomicLong overruns = new AtomicLong(0L);
+        private final AtomicLong rejected = new AtomicLong(0L);
+        private final AtomicLong failures = new AtomicLong(0L);
+        private final AtomicLong totalDuration = new AtomicLong(0L);
+        private volatile long lastSubmit = 0L;
+        private volatile long lastStart = 0L;
+        private volatile long lastDuration = 0L;
+        private volatile long maxDuration = 0L;
+    }
+
+}
@@ -20,10 +20,11 @@ package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
-import org.apache.kafka.common.TopicPartition;
 import org.smartloli.kafka.eagle.common.protocol.OwnerInfo;
 import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.common.protocol.cache.LastSampleCache;
 import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupsInfo;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerLagsInfo;
 import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerSummaryInfo;
 import org.smartloli.kafka.eagle.common.util.*;
 import org.smartloli.kafka.eagle.common.util.KConstants.Topic;
@@ -32,11 +33,12 @@ import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
 import org.smartloli.kafka.eagle.web.controller.StartupListener;
+import org.smartloli.kafka.eagle.web.quartz.shard.task.alert.ConsumerLagEvaluator;
+import org.smartloli.kafka.eagle.web.service.impl.AlertServiceImpl;
 import org.smartloli.kafka.eagle.web.service.impl.ConsumerServiceImpl;
 import org.smartloli.kafka.eagle.web.service.impl.MetricsServiceImpl;
 
 import java.util.*;
-import java.util.Map.Entry;
 
 /**
  * Collector kafka consumer topic lag trend, metrics broker topic.
@@ -89,21 +91,27 @@ public class BScreenConsumerSubTask extends Thread {
             return;
         }
 
-        List<BScreenConsumerInfo> bscreenConsumers = new ArrayList<>();
-        List<ConsumerSummaryInfo> consumerSummarys = new ArrayList<>();
-        List<ConsumerGroupsInfo> consumerGroupTopics = new ArrayList<>();
+        AlertServiceImpl alertServiceImpl = null;
+        try {
+            alertServiceImpl = StartupListener.getBean("alertServiceImpl", AlertServiceImpl.class);
+        } catch (Exception e) {
+            LoggerUtils.print(this.getClass()).error("Get alertServiceImpl bean has error, msg is ", e);
+        }
+
+        MetricsServiceImpl metrics = metricsServiceImpl;
         String[] clusterAliass = SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",");
         for (String clusterAlias : clusterAliass) {
+            // read all groups once per cycle, the per group calls below are served from it
+            kafkaService.getConsumerGroupSnapshot(clusterAlias, true);
             JSONArray consumerGroups = new JSONArray();
             if (SystemConfigUtils.getBooleanProperty("efak.distributed.enable")) {
                 consumerGroups = JSON.parseArray(kafkaService.getDistributeKafkaConsumer(clusterAlias));
             } else {
                 consumerGroups = JSON.parseArray(kafkaService.getKafkaConsumer(clusterAlias));
             }
+            List<JSONObject> localGroups = new ArrayList<>();
             for (Object object : consumerGroups) {
                 JSONObject consumerGroup = (JSONObject) object;
-                String group = consumerGroup.getString("group");
-
                 String ip = NetUtils.ip();
                 if (!StrUtils.isNull(ip)) {
                     String host = consumerGroup.getString("host");
@@ -111,6 +119,21 @@ public class BScreenConsumerSubTask extends Thread {
                         continue;
                     }
                 }
+                localGroups.add(consumerGroup);
+            }
+
+            // committed offsets and logsize of all groups in one snapshot
+            List<String> groups = new ArrayList<>();
+            for (JSONObject consumerGroup : localGroups) {
+                groups.add(consumerGroup.getString("group"));
+            }
+            ConsumerLagsInfo lags = kafkaService.getKafkaLags(clusterAlias, groups);
+            if (!lags.isComplete()) {
+                LoggerUtils.print(this.getClass()).warn("Cluster[" + clusterAlias + "] consumer lags snapshot is not complete, skip the bscreen datasets of this cycle.");
+            }
+
+            for (JSONObject consumerGroup : localGroups) {
+                String group = consumerGroup.getString("group");
 
                 // storage offline consumer summary
                 OwnerInfo ownerInfo = kafkaService.getKafkaActiverNotOwners(clusterAlias, group);
@@ -121,15 +144,7 @@ public class BScreenConsumerSubTask extends Thread {
                 csi.setCoordinator(consumerGroup.getString("node"));
                 csi.setActiveTopic(getKafkaActiveTopicNumbers(clusterAlias, group, consumerServiceImpl));
                 csi.setActiveThread(ownerInfo.getActiveSize());
-                consumerSummarys.add(csi);
-                if (consumerSummarys.size() > Topic.BATCH_SIZE) {
-                    try {
-                        metricsServiceImpl.writeConsumerSummaryTopics(consumerSummarys);
-                        consumerSummarys.clear();
-                    } catch (Exception e) {
-                        LoggerUtils.print(this.getClass()).error("Storage kafka topic consumer summary has error, msg is ", e);
-                    }
-                }
+                WriteBehindUtils.write("ke_consumer_group_summary", csi, metricsServiceImpl::writeConsumerSummaryTopics);
 
                 for (String topic : kafkaService.getKafkaConsumerTopics(clusterAlias, group)) {
                     // storage offline consumer group
@@ -139,14 +154,11 @@ public class BScreenConsumerSubTask extends Thread {
                     consumerGroupTopic.setTopic(topic);
                     consumerGroupTopic.setStatus(getKafkaConsumerTopicStatus(clusterAlias, group, topic, consumerServiceImpl));
 
-                    consumerGroupTopics.add(consumerGroupTopic);
-                    if (consumerGroupTopics.size() > Topic.BATCH_SIZE) {
-                        try {
-                            metricsServiceImpl.writeConsumerGroupTopics(consumerGroupTopics);
-                            consumerGroupTopics.clear();
-                        } catch (Exception e) {
-                            LoggerUtils.print(this.getClass()).error("Storage kafka consumer group topic has error, msg is ", e);
-                        }
+                    WriteBehindUtils.write("ke_consumer_group", consumerGroupTopic, metricsServiceImpl::writeConsumerGroupTopics);
+
+                    // zero logsize and lag of a failed read must not be stored, cached or alerted on
+                    if (!lags.isComplete(group)) {
+                        continue;
                     }
 
                     // kafka eagle bscreen datasets
@@ -155,36 +167,17 @@ public class BScreenConsumerSubTask extends Thread {
                     bscreenConsumer.setGroup(group);
                     bscreenConsumer.setTopic(topic);
 
-                    List<String> partitions = kafkaService.findTopicPartition(clusterAlias, topic);
-                    Set<Integer> partitionsInts = new HashSet<>();
-                    for (String partition : partitions) {
-                        try {
-                            partitionsInts.add(Integer.parseInt(partition));
-                        } catch (Exception e) {
-                            LoggerUtils.print(this.getClass()).error("Parse partitionid string to integer has error, msg is ", e);
-                        }
-                    }
-
-                    Map<Integer, Long> partitionOffset = kafkaService.getKafkaOffset(bscreenConsumer.getCluster(), bscreenConsumer.getGroup(), bscreenConsumer.getTopic(), partitionsInts);
-                    Map<TopicPartition, Long> tps = kafkaService.getKafkaLogSize(bscreenConsumer.getCluster(), bscreenConsumer.getTopic(), partitionsInts);
-                    long logsize = 0L;
-                    long offsets = 0L;
-                    if (tps != null && partitionOffset != null) {
-                        for (Entry<TopicPartition, Long> entrySet : tps.entrySet()) {
-                            try {
-                                logsize += entrySet.getValue();
-                                offsets += partitionOffset.get(entrySet.getKey().partition());
-                            } catch (Exception e) {
-                                LoggerUtils.print(this.getClass()).error("Get logsize and offsets has error, msg is ", e);
-                            }
-                        }
-                    }
-
-                    Map<String, Object> params = new HashMap<String, Object>();
-                    params.put("cluster", clusterAlias);
-                    params.put("group", group);
-                    params.put("topic", topic);
-                    BScreenConsumerInfo lastBScreenConsumerTopic = metricsServiceImpl.readBScreenLastTopic(params);
+                    long logsize = lags.getLogSize(topic);
+                    long offsets = lags.getOffsets(group, topic);
+
+                    String series = LastSampleCache.series(clusterAlias, group, topic);
+                    BScreenConsumerInfo lastBScreenConsumerTopic = LastSampleCache.BSCREEN_CONSUMER.get(series, () -> {
+                        Map<String, Object> params = new HashMap<String, Object>();
+                        params.put("cluster", clusterAlias);
+                        params.put("group", group);
+                        params.put("topic", topic);
+                        return metrics.readBScreenLastTopic(params);
+                    });
                     if (lastBScreenConsumerTopic == null || lastBScreenConsumerTopic.getLogsize() == 0) {
                         bscreenConsumer.setDifflogsize(0);
                     } else {
@@ -199,49 +192,17 @@ public class BScreenConsumerSubTask extends Thread {
                     }
                     bscreenConsumer.setLogsize(logsize);
                     bscreenConsumer.setOffsets(offsets);
-                    bscreenConsumer.setLag(Math.abs(logsize - offsets));
+                    bscreenConsumer.setLag(lags.getLag(group, topic));
                     bscreenConsumer.setTimespan(CalendarUtils.getTimeSpan());
                     bscreenConsumer.setTm(CalendarUtils.getCustomDate("yyyyMMdd"));
-                    bscreenConsumers.add(bscreenConsumer);
-                    if (bscreenConsumers.size() > Topic.BATCH_SIZE) {
-                        try {
-                            metricsServiceImpl.writeBSreenConsumerTopic(bscreenConsumers);
-                            bscreenConsumers.clear();
-                        } catch (Exception e) {
-                            LoggerUtils.print(this.getClass()).error("Storage bsreen kafka topic consumer has error, msg is ", e);
-                        }
+                    LastSampleCache.BSCREEN_CONSUMER.put(series, bscreenConsumer);
+                    WriteBehindUtils.write("ke_consumer_bscreen_press", bscreenConsumer, metricsServiceImpl::writeBSreenConsumerTopic);
+                    if (alertServiceImpl != null) {
+                        ConsumerLagEvaluator.offer(clusterAlias, group, topic, bscreenConsumer.getLag(), alertServiceImpl);
                     }
                 }
             }
         }
-        try {
-            if (bscreenConsumers.size() > 0) {
-                try {
-                    metricsServiceImpl.writeBSreenConsumerTopic(bscreenConsumers);
-                    bscreenConsumers.clear();
-                } catch (Exception e) {
-                    LoggerUtils.print(this.getClass()).error("Storage bscreen final topic consumer has error, msg is ", e);
-                }
-            }
-            if (consumerSummarys.size() > 0) {
-                try {
-                    metricsServiceImpl.writeConsumerSummaryTopics(consumerSummarys);
-                    consumerSummarys.clear();
-                } catch (Exception e) {
-                    LoggerUtils.print(this.getClass()).error("Storage kafka final topic consumer summary has error, msg is ", e);
-                }
-            }
-            if (consumerGroupTopics.size() > 0) {
-                try {
-                    metricsServiceImpl.writeConsumerGroupTopics(consumerGroupTopics);
-                    consumerGroupTopics.clear();
-                } catch (Exception e) {
-                    LoggerUtils.print(this.getClass()).error("Storage kafka final consumer group topic has error, msg is ", e);
-                }
-            }
-        } catch (Exception e) {
-            LoggerUtils.print(this.getClass()).error("Collector consumer lag data has error, msg is ", e);
-        }
     }
 
     private int getKafkaConsumerTopicStatus(String clusterAlias, String group, String topicSearch, ConsumerServiceImpl consumerServiceImpl) {
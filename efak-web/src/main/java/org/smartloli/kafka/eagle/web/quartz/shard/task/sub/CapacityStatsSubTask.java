@@ -17,7 +17,6 @@
  */
 package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
 
-import org.smartloli.kafka.eagle.common.protocol.topic.TopicRank;
 import org.smartloli.kafka.eagle.common.util.KConstants;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
@@ -28,7 +27,6 @@ import org.smartloli.kafka.eagle.core.metrics.KafkaMetricsService;
 import org.smartloli.kafka.eagle.web.controller.StartupListener;
 import org.smartloli.kafka.eagle.web.service.impl.DashboardServiceImpl;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -69,30 +67,11 @@ public class CapacityStatsSubTask extends Thread {
             LoggerUtils.print(this.getClass()).error("Get dashboardServiceImpl bean be used for topic rank capacity has error, msg is ", e);
         }
 
-        List<TopicRank> topicRanks = new ArrayList<>();
         String[] clusterAliass = SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",");
         for (String clusterAlias : clusterAliass) {
             List<String> topics = brokerService.topicList(clusterAlias);
 
-            // clean up nonexistent topic
-            Map<String, Object> params = new HashMap<>();
-            params.put("cluster", clusterAlias);
-            params.put("tkey", KConstants.Topic.CAPACITY);
-            List<TopicRank> trs = dashboardServiceImpl.getAllTopicRank(params);
-            for (TopicRank tr : trs) {
-                try {
-                    if (!topics.contains(tr.getTopic())) {
-                        Map<String, Object> clean = new HashMap<>();
-                        clean.put("cluster", clusterAlias);
-                        clean.put("topic", tr.getTopic());
-                        clean.put("tkey", KConstants.Topic.CAPACITY);
-                        dashboardServiceImpl.removeTopicRank(clean);
-                    }
-                } catch (Exception e) {
-                    LoggerUtils.print(this.getClass()).error("Failed to clean up nonexistent topic, msg is ", e);
-                }
-            }
-
+            Map<String, Long> ranks = new HashMap<>();
             for (String topic : topics) {
                 long capacity = 0L;
                 try {
@@ -100,29 +79,9 @@ public class CapacityStatsSubTask extends Thread {
                 } catch (Exception e) {
                     LoggerUtils.print(this.getClass()).error("Get topic capacity has error, msg is ", e);
                 }
-                TopicRank topicRank = new TopicRank();
-                topicRank.setCluster(clusterAlias);
-                topicRank.setTopic(topic);
-                topicRank.setTkey(KConstants.Topic.CAPACITY);
-                topicRank.setTvalue(capacity);
-                topicRanks.add(topicRank);
-                if (topicRanks.size() > KConstants.Topic.BATCH_SIZE) {
-                    try {
-                        dashboardServiceImpl.writeTopicRank(topicRanks);
-                        topicRanks.clear();
-                    } catch (Exception e) {
-                        LoggerUtils.print(this.getClass()).error("Storage topic rank capacity has error, msg is ", e);
-                    }
-                }
+                ranks.put(topic, capacity);
             }
-        }
-        try {
-            if (topicRanks.size() > 0) {
-                dashboardServiceImpl.writeTopicRank(topicRanks);
-                topicRanks.clear();
-            }
-        } catch (Exception e) {
-            LoggerUtils.print(this.getClass()).error("Storage topic rank capacity end data has error,msg is ", e);
+            TopicRankMaintainer.update(clusterAlias, KConstants.Topic.CAPACITY, ranks, dashboardServiceImpl);
         }
 
     }
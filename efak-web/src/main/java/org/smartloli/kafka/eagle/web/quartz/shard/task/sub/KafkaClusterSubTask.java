@@ -17,7 +17,7 @@
  */
 package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
 
-import org.smartloli.kafka.eagle.common.constant.JmxConstants;
+import org.smartloli.kafka.eagle.common.constant.JmxConstants.BrokerServer;
 import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
 import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
 import org.smartloli.kafka.eagle.common.protocol.MBeanInfo;
@@ -32,7 +32,10 @@ import org.smartloli.kafka.eagle.web.controller.StartupListener;
 import org.smartloli.kafka.eagle.web.service.impl.MetricsServiceImpl;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Collect kafka cluster dataset.
@@ -47,6 +50,25 @@ public class KafkaClusterSubTask extends Thread {
     private static final String[] BROKER_KPIS = new String[]{MBean.MESSAGEIN, MBean.BYTEIN, MBean.BYTEOUT, MBean.BYTESREJECTED, MBean.FAILEDFETCHREQUEST, MBean.FAILEDPRODUCEREQUEST, MBean.TOTALFETCHREQUESTSPERSEC, MBean.TOTALPRODUCEREQUESTSPERSEC, MBean.REPLICATIONBYTESINPERSEC, MBean.REPLICATIONBYTESOUTPERSEC, MBean.PRODUCEMESSAGECONVERSIONS,
             KConstants.MBean.OSTOTALMEMORY, MBean.OSFREEMEMORY, MBean.CPUUSED};
 
+    /**
+     * Broker kpis read from meter mbeans, collected in one bulk jmx sweep.
+     */
+    private static final Map<String, BrokerServer> BROKER_METERS = new LinkedHashMap<>();
+
+    static {
+        BROKER_METERS.put(MBean.MESSAGEIN, BrokerServer.MESSAGES_IN_PER_SEC);
+        BROKER_METERS.put(MBean.BYTEIN, BrokerServer.BYTES_IN_PER_SEC);
+        BROKER_METERS.put(MBean.BYTEOUT, BrokerServer.BYTES_OUT_PER_SEC);
+        BROKER_METERS.put(MBean.BYTESREJECTED, BrokerServer.BYTES_REJECTED_PER_SEC);
+        BROKER_METERS.put(MBean.FAILEDFETCHREQUEST, BrokerServer.FAILED_FETCH_REQUESTS_PER_SEC);
+        BROKER_METERS.put(MBean.FAILEDPRODUCEREQUEST, BrokerServer.FAILED_PRODUCE_REQUESTS_PER_SEC);
+        BROKER_METERS.put(MBean.TOTALFETCHREQUESTSPERSEC, BrokerServer.TOTAL_FETCH_REQUESTS_PER_SEC);
+        BROKER_METERS.put(MBean.TOTALPRODUCEREQUESTSPERSEC, BrokerServer.TOTAL_PRODUCE_REQUESTS_PER_SEC);
+        BROKER_METERS.put(MBean.REPLICATIONBYTESINPERSEC, BrokerServer.REPLICATION_BYTES_IN_PER_SEC);
+        BROKER_METERS.put(MBean.REPLICATIONBYTESOUTPERSEC, BrokerServer.REPLICATION_BYTES_OUT_PER_SEC);
+        BROKER_METERS.put(MBean.PRODUCEMESSAGECONVERSIONS, BrokerServer.PRODUCE_MESSAGE_CONVERSIONS_PER_SEC);
+    }
+
     /**
      * Kafka service interface.
      */
@@ -63,8 +85,15 @@ public class KafkaClusterSubTask extends Thread {
         try {
             if (SystemConfigUtils.getBooleanProperty("efak.metrics.charts")) {
                 String[] clusterAliass = SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",");
+                Map<String, List<BrokersInfo>> clusterBrokers = new LinkedHashMap<>();
                 for (String clusterAlias : clusterAliass) {
-                    this.kafkaCluster(clusterAlias);
+                    // List<BrokersInfo> brokers = kafkaService.getAllBrokersInfo(clusterAlias);
+                    clusterBrokers.put(clusterAlias, BrokerCache.META_CACHE.get(clusterAlias));
+                }
+                // fan out all brokers of all clusters, a slow broker only drops its own samples
+                Map<String, Map<BrokersInfo, BrokerSample>> samples = BrokerCollectorUtils.collect(clusterBrokers, this::kafkaAssembly);
+                for (Map.Entry<String, Map<BrokersInfo, BrokerSample>> entry : samples.entrySet()) {
+                    this.kafkaCluster(entry.getKey(), entry.getValue().values());
                 }
             }
         } catch (Exception e) {
@@ -72,116 +101,64 @@ public class KafkaClusterSubTask extends Thread {
         }
     }
 
-    private void kafkaCluster(String clusterAlias) {
-        // List<BrokersInfo> brokers = kafkaService.getAllBrokersInfo(clusterAlias);
-        List<BrokersInfo> brokers = BrokerCache.META_CACHE.get(clusterAlias);
-        List<KpiInfo> list = new ArrayList<>();
-
+    private void kafkaCluster(String clusterAlias, Collection<BrokerSample> samples) {
+        Map<String, KpiInfo> kpis = new LinkedHashMap<>();
         for (String kpi : BROKER_KPIS) {
             KpiInfo kpiInfo = new KpiInfo();
             kpiInfo.setCluster(clusterAlias);
             kpiInfo.setTm(CalendarUtils.getCustomDate("yyyyMMdd"));
             kpiInfo.setTimespan(CalendarUtils.getTimeSpan());
             kpiInfo.setKey(kpi);
-            for (BrokersInfo kafka : brokers) {
-                this.kafkaAssembly(clusterAlias, mx4jService, kpi, kpiInfo, kafka);
-            }
             kpiInfo.setBroker(clusterAlias);
             kpiInfo.setType(KConstants.CollectorType.KAFKA);
-            list.add(kpiInfo);
+            kpis.put(kpi, kpiInfo);
+        }
+
+        for (BrokerSample sample : samples) {
+            for (Map.Entry<String, BrokerServer> entry : BROKER_METERS.entrySet()) {
+                MBeanInfo mbeanInfo = sample.meters.get(entry.getValue());
+                KpiInfo kpiInfo = kpis.get(entry.getKey());
+                if (mbeanInfo != null) {
+                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(mbeanInfo.getOneMinute()) + "");
+                }
+            }
+
+            KpiInfo totalMemoryKpi = kpis.get(MBean.OSTOTALMEMORY);
+            totalMemoryKpi.setValue(Long.parseLong(totalMemoryKpi.getValue() == null ? "0" : totalMemoryKpi.getValue()) + sample.totalMemory + "");
+
+            KpiInfo freeMemoryKpi = kpis.get(MBean.OSFREEMEMORY);
+            freeMemoryKpi.setValue(Long.parseLong(freeMemoryKpi.getValue() == null ? "0" : freeMemoryKpi.getValue()) + sample.freeMemory + "");
+
+            KpiInfo cpuKpi = kpis.get(MBean.CPUUSED);
+            cpuKpi.setValue(StrUtils.numberic(cpuKpi.getValue() == null ? "0.00" : cpuKpi.getValue()) + sample.cpu + "");
         }
 
         MetricsServiceImpl metrics = StartupListener.getBean("metricsServiceImpl", MetricsServiceImpl.class);
         try {
-            metrics.insert(list);
+            WriteBehindUtils.writeAll("ke_metrics", new ArrayList<>(kpis.values()), metrics::insert);
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Collector mbean data has error, msg is ", e);
         }
     }
 
-    private void kafkaAssembly(String clusterAlias, Mx4jService mx4jService, String type, KpiInfo kpiInfo, BrokersInfo kafka) {
+    /**
+     * Read all meter kpis of one broker in a single jmx sweep, then the os
+     * memory and cpu kpis. Runs on the broker collector executor.
+     */
+    private BrokerSample kafkaAssembly(String clusterAlias, BrokersInfo kafka) {
         String uri = kafka.getHost() + ":" + kafka.getJmxPort();
-        switch (type) {
-            case MBean.MESSAGEIN:
-                MBeanInfo msg = mx4jService.messagesInPerSec(clusterAlias, uri);
-                if (msg != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(msg.getOneMinute()) + "");
-                }
-                break;
-            case MBean.BYTEIN:
-                MBeanInfo bin = mx4jService.bytesInPerSec(clusterAlias, uri);
-                if (bin != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(bin.getOneMinute()) + "");
-                }
-                break;
-            case MBean.BYTEOUT:
-                MBeanInfo bout = mx4jService.bytesOutPerSec(clusterAlias, uri);
-                if (bout != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(bout.getOneMinute()) + "");
-                }
-                break;
-            case MBean.BYTESREJECTED:
-                MBeanInfo bytesRejectedPerSec = mx4jService.bytesRejectedPerSec(clusterAlias, uri);
-                if (bytesRejectedPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(bytesRejectedPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.FAILEDFETCHREQUEST:
-                MBeanInfo failedFetchRequestsPerSec = mx4jService.failedFetchRequestsPerSec(clusterAlias, uri);
-                if (failedFetchRequestsPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(failedFetchRequestsPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.FAILEDPRODUCEREQUEST:
-                MBeanInfo failedProduceRequestsPerSec = mx4jService.failedProduceRequestsPerSec(clusterAlias, uri);
-                if (failedProduceRequestsPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(failedProduceRequestsPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.TOTALFETCHREQUESTSPERSEC:
-                MBeanInfo totalFetchRequests = mx4jService.totalFetchRequestsPerSec(clusterAlias, uri);
-                if (totalFetchRequests != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(totalFetchRequests.getOneMinute()) + "");
-                }
-                break;
-            case MBean.TOTALPRODUCEREQUESTSPERSEC:
-                MBeanInfo totalProduceRequestsPerSec = mx4jService.totalProduceRequestsPerSec(clusterAlias, uri);
-                if (totalProduceRequestsPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(totalProduceRequestsPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.REPLICATIONBYTESINPERSEC:
-                MBeanInfo replicationBytesInPerSec = mx4jService.replicationBytesInPerSec(clusterAlias, uri);
-                if (replicationBytesInPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(replicationBytesInPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.REPLICATIONBYTESOUTPERSEC:
-                MBeanInfo replicationBytesOutPerSec = mx4jService.replicationBytesOutPerSec(clusterAlias, uri);
-                if (replicationBytesOutPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(replicationBytesOutPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.PRODUCEMESSAGECONVERSIONS:
-                MBeanInfo produceMessageConv = mx4jService.produceMessageConversionsPerSec(clusterAlias, uri);
-                if (produceMessageConv != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(produceMessageConv.getOneMinute()) + "");
-                }
-                break;
-            case MBean.OSTOTALMEMORY:
-                long totalMemory = kafkaService.getOSMemory(clusterAlias, kafka.getHost(), kafka.getJmxPort(), JmxConstants.BrokerServer.TOTAL_PHYSICAL_MEMORY_SIZE.getValue());
-                kpiInfo.setValue(Long.parseLong(kpiInfo.getValue() == null ? "0" : kpiInfo.getValue()) + totalMemory + "");
-                break;
-            case MBean.OSFREEMEMORY:
-                long freeMemory = kafkaService.getOSMemory(clusterAlias, kafka.getHost(), kafka.getJmxPort(), JmxConstants.BrokerServer.FREE_PHYSICAL_MEMORY_SIZE.getValue());
-                kpiInfo.setValue(Long.parseLong(kpiInfo.getValue() == null ? "0" : kpiInfo.getValue()) + freeMemory + "");
-                break;
-            case MBean.CPUUSED:
-                double cpu = kafkaService.getUsedCpuValue(clusterAlias, kafka.getHost(), kafka.getJmxPort());
-                kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.00" : kpiInfo.getValue()) + cpu + "");
-                break;
-            default:
-                break;
-        }
+        BrokerSample sample = new BrokerSample();
+        sample.meters = mx4jService.metrics(clusterAlias, uri, new ArrayList<>(BROKER_METERS.values()), null);
+        sample.totalMemory = kafkaService.getOSMemory(clusterAlias, kafka.getHost(), kafka.getJmxPort(), BrokerServer.TOTAL_PHYSICAL_MEMORY_SIZE.getValue());
+        sample.freeMemory = kafkaService.getOSMemory(clusterAlias, kafka.getHost(), kafka.getJmxPort(), BrokerServer.FREE_PHYSICAL_MEMORY_SIZE.getValue());
+        sample.cpu = kafkaService.getUsedCpuValue(clusterAlias, kafka.getHost(), kafka.getJmxPort());
+        return sample;
+    }
+
+    private static class BrokerSample {
+        private Map<BrokerServer, MBeanInfo> meters;
+        private long totalMemory;
+        private long freeMemory;
+        private double cpu;
     }
 }
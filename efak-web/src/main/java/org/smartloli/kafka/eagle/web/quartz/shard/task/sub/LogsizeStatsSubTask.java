@@ -17,16 +17,17 @@
  */
 package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
 
-import org.smartloli.kafka.eagle.common.protocol.topic.TopicRank;
+import org.smartloli.kafka.eagle.common.protocol.topic.ClusterOffsetsInfo;
 import org.smartloli.kafka.eagle.common.util.KConstants;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
+import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
 import org.smartloli.kafka.eagle.web.controller.StartupListener;
 import org.smartloli.kafka.eagle.web.service.impl.DashboardServiceImpl;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +41,11 @@ import java.util.Map;
  */
 public class LogsizeStatsSubTask extends Thread {
 
+    /**
+     * Kafka service interface.
+     */
+    private KafkaService kafkaService = new KafkaFactory().create();
+
     /**
      * Broker service interface.
      */
@@ -64,55 +70,21 @@ public class LogsizeStatsSubTask extends Thread {
             LoggerUtils.print(this.getClass()).error("Get dashboardServiceImpl bean be used for topic rank logsize has error,msg is ", e);
         }
 
-        List<TopicRank> topicRanks = new ArrayList<>();
         String[] clusterAliass = SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",");
         for (String clusterAlias : clusterAliass) {
             List<String> topics = brokerService.topicList(clusterAlias);
 
-            // clean up nonexistent topic
-            Map<String, Object> params = new HashMap<>();
-            params.put("cluster", clusterAlias);
-            params.put("tkey", KConstants.Topic.LOGSIZE);
-            List<TopicRank> trs = dashboardServiceImpl.getAllTopicRank(params);
-            for (TopicRank tr : trs) {
-                try {
-                    if (!topics.contains(tr.getTopic())) {
-                        Map<String, Object> clean = new HashMap<>();
-                        clean.put("cluster", clusterAlias);
-                        clean.put("topic", tr.getTopic());
-                        clean.put("tkey", KConstants.Topic.LOGSIZE);
-                        dashboardServiceImpl.removeTopicRank(clean);
-                    }
-                } catch (Exception e) {
-                    LoggerUtils.print(this.getClass()).error("Failed to clean up nonexistent topic, msg is ", e);
-                }
+            ClusterOffsetsInfo offsets = kafkaService.getClusterOffsets(clusterAlias);
+            if (!offsets.isComplete()) {
+                LoggerUtils.print(this.getClass()).warn("Skip topic logsize rank of cluster[" + clusterAlias + "], read offsets failed.");
+                continue;
             }
-
+            Map<String, Long> ranks = new HashMap<>();
             for (String topic : topics) {
-                long logsize = brokerService.getTopicRealLogSize(clusterAlias, topic);
-                TopicRank topicRank = new TopicRank();
-                topicRank.setCluster(clusterAlias);
-                topicRank.setTopic(topic);
-                topicRank.setTkey(KConstants.Topic.LOGSIZE);
-                topicRank.setTvalue(logsize);
-                topicRanks.add(topicRank);
-                if (topicRanks.size() > KConstants.Topic.BATCH_SIZE) {
-                    try {
-                        dashboardServiceImpl.writeTopicRank(topicRanks);
-                        topicRanks.clear();
-                    } catch (Exception e) {
-                        LoggerUtils.print(this.getClass()).error("Storage topic rank logsize has error, msg is ", e);
-                    }
-                }
+                long logsize = offsets.getRealLogSize(topic);
+                ranks.put(topic, logsize);
             }
-        }
-        try {
-            if (topicRanks.size() > 0) {
-                dashboardServiceImpl.writeTopicRank(topicRanks);
-                topicRanks.clear();
-            }
-        } catch (Exception e) {
-            LoggerUtils.print(this.getClass()).error("Storage topic rank logsize end data has error,msg is ", e);
+            TopicRankMaintainer.update(clusterAlias, KConstants.Topic.LOGSIZE, ranks, dashboardServiceImpl);
         }
     }
 }
@@ -17,7 +17,6 @@
  */
 package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
 
-import org.smartloli.kafka.eagle.common.protocol.topic.TopicRank;
 import org.smartloli.kafka.eagle.common.util.KConstants;
 import org.smartloli.kafka.eagle.common.util.KConstants.Topic;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
@@ -27,7 +26,6 @@ import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
 import org.smartloli.kafka.eagle.web.controller.StartupListener;
 import org.smartloli.kafka.eagle.web.service.impl.DashboardServiceImpl;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -65,14 +63,11 @@ public class PerformanceByTopicStatsSubTask extends Thread {
             LoggerUtils.print(this.getClass()).error("Get dashboardServiceImpl bean be used for (spread, skewed, leader skewed) has error, msg is ", e);
         }
 
-        List<TopicRank> topicRanks = new ArrayList<>();
         String[] clusterAliass = SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",");
         for (String clusterAlias : clusterAliass) {
             List<String> topics = brokerService.topicList(clusterAlias);
 
-            // clean performance topics
-            this.cleanPerformanceByTopics(clusterAlias, bType, dashboardServiceImpl, topics);
-
+            Map<String, Long> ranks = new HashMap<>();
             for (String topic : topics) {
                 int tValue = 0;
                 if (bType.equals(Topic.BROKER_SPREAD)) {
@@ -82,50 +77,9 @@ public class PerformanceByTopicStatsSubTask extends Thread {
                 } else if (bType.equals(Topic.BROKER_LEADER_SKEWED)) {
                     tValue = brokerService.getBrokerLeaderSkewedByTopic(clusterAlias, topic);
                 }
-                TopicRank topicRank = new TopicRank();
-                topicRank.setCluster(clusterAlias);
-                topicRank.setTopic(topic);
-                topicRank.setTkey(bType);
-                topicRank.setTvalue(tValue);
-                topicRanks.add(topicRank);
-                if (topicRanks.size() > Topic.BATCH_SIZE) {
-                    try {
-                        dashboardServiceImpl.writeTopicRank(topicRanks);
-                        topicRanks.clear();
-                    } catch (Exception e) {
-                        LoggerUtils.print(this.getClass()).error("Storage topic [" + bType + "] has error, msg is ", e);
-                    }
-                }
-            }
-        }
-        try {
-            if (topicRanks.size() > 0) {
-                dashboardServiceImpl.writeTopicRank(topicRanks);
-                topicRanks.clear();
-            }
-        } catch (Exception e) {
-            LoggerUtils.print(this.getClass()).error("Storage topic [" + bType + "] end data has error, msg is ", e);
-        }
-    }
-
-    private void cleanPerformanceByTopics(String clusterAlias, String type, DashboardServiceImpl dashboardServiceImpl, List<String> topics) {
-        // clean up nonexistent topic
-        Map<String, Object> params = new HashMap<>();
-        params.put("cluster", clusterAlias);
-        params.put("tkey", type);
-        List<TopicRank> trs = dashboardServiceImpl.getAllTopicRank(params);
-        for (TopicRank tr : trs) {
-            try {
-                if (!topics.contains(tr.getTopic())) {
-                    Map<String, Object> clean = new HashMap<>();
-                    clean.put("cluster", clusterAlias);
-                    clean.put("topic", tr.getTopic());
-                    clean.put("tkey", type);
-                    dashboardServiceImpl.removeTopicRank(clean);
-                }
-            } catch (Exception e) {
-                LoggerUtils.print(this.getClass()).error("Failed to clean up nonexistent performance topic, msg is ", e);
+                ranks.put(topic, (long) tValue);
             }
+            TopicRankMaintainer.update(clusterAlias, bType, ranks, dashboardServiceImpl);
         }
     }
 }
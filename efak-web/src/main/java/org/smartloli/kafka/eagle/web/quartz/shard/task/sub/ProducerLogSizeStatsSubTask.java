@@ -17,18 +17,22 @@
  */
 package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
 
+import org.smartloli.kafka.eagle.common.protocol.cache.LastSampleCache;
+import org.smartloli.kafka.eagle.common.protocol.topic.ClusterOffsetsInfo;
 import org.smartloli.kafka.eagle.common.protocol.topic.TopicLogSize;
 import org.smartloli.kafka.eagle.common.protocol.topic.TopicRank;
 import org.smartloli.kafka.eagle.common.util.CalendarUtils;
 import org.smartloli.kafka.eagle.common.util.KConstants;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.common.util.WriteBehindUtils;
+import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
+import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
 import org.smartloli.kafka.eagle.web.controller.StartupListener;
 import org.smartloli.kafka.eagle.web.service.impl.DashboardServiceImpl;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +46,11 @@ import java.util.Map;
  */
 public class ProducerLogSizeStatsSubTask extends Thread {
 
+    /**
+     * Kafka service interface.
+     */
+    private KafkaService kafkaService = new KafkaFactory().create();
+
     /**
      * Broker service interface.
      */
@@ -64,18 +73,25 @@ public class ProducerLogSizeStatsSubTask extends Thread {
             LoggerUtils.print(this.getClass()).error("Get dashboardServiceImpl bean be used for topic producer logsize has error,msg is ", e);
         }
 
-        List<TopicRank> topicRanks = new ArrayList<>();
-        List<TopicLogSize> topicLogSizes = new ArrayList<>();
+        DashboardServiceImpl dashboard = dashboardServiceImpl;
         String[] clusterAliass = SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",");
         for (String clusterAlias : clusterAliass) {
             long producerThreads = 0L;
             List<String> topics = brokerService.topicList(clusterAlias);
+            ClusterOffsetsInfo offsets = kafkaService.getClusterOffsets(clusterAlias);
+            if (!offsets.isComplete()) {
+                LoggerUtils.print(this.getClass()).warn("Skip topic producer logsize of cluster[" + clusterAlias + "], read offsets failed.");
+                continue;
+            }
             for (String topic : topics) {
-                long logsize = brokerService.getTopicProducerLogSize(clusterAlias, topic);
-                Map<String, Object> params = new HashMap<String, Object>();
-                params.put("cluster", clusterAlias);
-                params.put("topic", topic);
-                TopicLogSize lastTopicLogSize = dashboardServiceImpl.readLastTopicLogSize(params);
+                long logsize = offsets.getProducerLogSize(topic);
+                String series = LastSampleCache.series(clusterAlias, topic);
+                TopicLogSize lastTopicLogSize = LastSampleCache.TOPIC_LOGSIZE.get(series, () -> {
+                    Map<String, Object> params = new HashMap<String, Object>();
+                    params.put("cluster", clusterAlias);
+                    params.put("topic", topic);
+                    return dashboard.readLastTopicLogSize(params);
+                });
                 TopicLogSize topicLogSize = new TopicLogSize();
                 if (lastTopicLogSize == null || lastTopicLogSize.getLogsize() == 0) {
                     topicLogSize.setDiffval(0);
@@ -92,15 +108,8 @@ public class ProducerLogSizeStatsSubTask extends Thread {
                 topicLogSize.setLogsize(logsize);
                 topicLogSize.setTimespan(CalendarUtils.getTimeSpan());
                 topicLogSize.setTm(CalendarUtils.getCustomDate("yyyyMMdd"));
-                topicLogSizes.add(topicLogSize);
-                if (topicLogSizes.size() > KConstants.Topic.BATCH_SIZE) {
-                    try {
-                        dashboardServiceImpl.writeTopicLogSize(topicLogSizes);
-                        topicLogSizes.clear();
-                    } catch (Exception e) {
-                        LoggerUtils.print(this.getClass()).error("Storage topic producer logsize has error, msg is ", e);
-                    }
-                }
+                LastSampleCache.TOPIC_LOGSIZE.put(series, topicLogSize);
+                WriteBehindUtils.write("ke_logsize", topicLogSize, dashboardServiceImpl::writeTopicLogSize);
             }
             // stats producers thread
             try {
@@ -109,34 +118,10 @@ public class ProducerLogSizeStatsSubTask extends Thread {
                 topicRank.setTopic(KConstants.Topic.PRODUCER_THREADS_KEY);
                 topicRank.setTkey(KConstants.Topic.PRODUCER_THREADS);
                 topicRank.setTvalue(producerThreads);
-                topicRanks.add(topicRank);
-                if (topicRanks.size() > KConstants.Topic.BATCH_SIZE) {
-                    try {
-                        dashboardServiceImpl.writeTopicRank(topicRanks);
-                        topicRanks.clear();
-                    } catch (Exception e) {
-                        LoggerUtils.print(this.getClass()).error("Storage topic producers has error, msg is ", e);
-                    }
-                }
+                WriteBehindUtils.write("ke_topic_rank", topicRank, dashboardServiceImpl::writeTopicRank);
             } catch (Exception e) {
                 LoggerUtils.print(this.getClass()).error("Stats producers thread has error, msg is ", e);
             }
         }
-        try {
-            if (topicLogSizes.size() > 0) {
-                dashboardServiceImpl.writeTopicLogSize(topicLogSizes);
-                topicLogSizes.clear();
-            }
-        } catch (Exception e) {
-            LoggerUtils.print(this.getClass()).error("Storage topic producer logsize end data has error, msg is ", e);
-        }
-        try {
-            if (topicRanks.size() > 0) {
-                dashboardServiceImpl.writeTopicRank(topicRanks);
-                topicRanks.clear();
-            }
-        } catch (Exception e) {
-            LoggerUtils.print(this.getClass()).error("Storage topic producer threads end data has error,msg is ", e);
-        }
     }
 }
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
+
+import org.smartloli.kafka.eagle.common.constant.JmxConstants.BrokerServer;
+import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
+import org.smartloli.kafka.eagle.common.protocol.cache.BrokerCache;
+import org.smartloli.kafka.eagle.common.protocol.cache.TopicMBeanCache;
+import org.smartloli.kafka.eagle.common.util.BrokerCollectorUtils;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.core.factory.Mx4jFactory;
+import org.smartloli.kafka.eagle.core.factory.Mx4jService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Collect the meter rates of every topic from every broker into the topic
+ * mbean cache, read by the topic detail page.
+ * <p>
+ * A broker needs one jmx round trip per topic and meter, so the collect has
+ * its own timeout and executor instead of the ones of the broker kpis, which
+ * are collected on the same minute.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TopicMBeanSubTask extends Thread {
+
+    /**
+     * Mx4j service interface.
+     */
+    private static Mx4jService mx4jService = new Mx4jFactory().create();
+
+    private static final long TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.metrics.collect.topic.timeout.ms", 50 * 1000L);
+
+    private static final ExecutorService COLLECT_EXECUTOR = BrokerCollectorUtils.newExecutor(SystemConfigUtils.getIntProperty("efak.metrics.collect.topic.threads", 4));
+
+    @Override
+    public synchronized void run() {
+        try {
+            this.collect();
+        } catch (Exception e) {
+            LoggerUtils.print(this.getClass()).error("Collect topic mbean has error, msg is ", e);
+        }
+    }
+
+    private void collect() {
+        String[] clusterAliass = SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",");
+        for (String clusterAlias : clusterAliass) {
+            List<BrokersInfo> brokers = BrokerCache.META_CACHE.get(clusterAlias);
+            if (brokers == null || brokers.isEmpty()) {
+                continue;
+            }
+            Map<BrokersInfo, Map<String, Map<BrokerServer, double[]>>> results = BrokerCollectorUtils.collect(clusterAlias, brokers, TIMEOUT_MS, COLLECT_EXECUTOR, (cluster, kafka) -> mx4jService.topicRates(cluster, kafka.getHost() + ":" + kafka.getJmxPort(), TopicMBeanCache.METERS));
+            Map<String, Map<String, Map<BrokerServer, double[]>>> brokerRates = new HashMap<>();
+            for (BrokersInfo broker : brokers) {
+                brokerRates.put(broker.getHost() + ":" + broker.getJmxPort(), results.get(broker));
+            }
+            TopicMBeanCache.update(clusterAlias, brokerRates);
+        }
+    }
+
+}
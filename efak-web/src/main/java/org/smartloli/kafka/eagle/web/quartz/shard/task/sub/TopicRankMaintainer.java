@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
+
+import org.smartloli.kafka.eagle.common.protocol.topic.TopicRank;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.common.util.WriteBehindUtils;
+import org.smartloli.kafka.eagle.web.service.impl.DashboardServiceImpl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keep the ke_topic_rank rows of one cluster and tkey in step with the topics
+ * of the cluster.
+ * <p>
+ * The rows written last time are kept as a snapshot of topic and value. Each
+ * run diffs the new values against the snapshot, removes the topics which are
+ * gone in one delete and only writes the values which changed. The snapshot is
+ * read again from the database after the resync interval, so a row changed by
+ * another node or a dropped write is repaired.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class TopicRankMaintainer {
+
+    private static final long RESYNC_MS = SystemConfigUtils.getLongProperty("efak.topic.rank.resync.ms", 60 * 60 * 1000L);
+
+    private static final Map<String, Snapshot> SNAPSHOTS = new ConcurrentHashMap<>();
+
+    private TopicRankMaintainer() {
+
+    }
+
+    /**
+     * Update the ranks of the tkey to the values of the current topics.
+     */
+    public static void update(String clusterAlias, String tkey, Map<String, Long> values, DashboardServiceImpl dashboardServiceImpl) {
+        String name = clusterAlias + "\u0001" + tkey;
+        Snapshot snapshot = SNAPSHOTS.get(name);
+        long now = System.currentTimeMillis();
+        if (snapshot == null || now - snapshot.loaded > RESYNC_MS) {
+            snapshot = load(clusterAlias, tkey, dashboardServiceImpl, now);
+            SNAPSHOTS.put(name, snapshot);
+        }
+
+        // clean up nonexistent topic
+        List<String> stale = new ArrayList<>();
+        for (String topic : snapshot.values.keySet()) {
+            if (!values.containsKey(topic)) {
+                stale.add(topic);
+            }
+        }
+        if (stale.size() > 0) {
+            try {
+                Map<String, Object> clean = new HashMap<>();
+                clean.put("cluster", clusterAlias);
+                clean.put("tkey", tkey);
+                clean.put("topics", stale);
+                dashboardServiceImpl.removeTopicRanks(clean);
+                for (String topic : stale) {
+                    snapshot.values.remove(topic);
+                }
+            } catch (Exception e) {
+                LoggerUtils.print(TopicRankMaintainer.class).error("Failed to clean up nonexistent topic of tkey[" + tkey + "], msg is ", e);
+            }
+        }
+
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            Long last = snapshot.values.put(entry.getKey(), entry.getValue());
+            if (last != null && last.longValue() == entry.getValue().longValue()) {
+                continue;
+            }
+            TopicRank topicRank = new TopicRank();
+            topicRank.setCluster(clusterAlias);
+            topicRank.setTopic(entry.getKey());
+            topicRank.setTkey(tkey);
+            topicRank.setTvalue(entry.getValue());
+            WriteBehindUtils.write("ke_topic_rank", topicRank, dashboardServiceImpl::writeTopicRank);
+        }
+    }
+
+    private static Snapshot load(String clusterAlias, String tkey, DashboardServiceImpl dashboardServiceImpl, long now) {
+        Snapshot snapshot = new Snapshot(now);
+        try {
+            Map<String, Object> params = new HashMap<>();
+            params.put("cluster", clusterAlias);
+            params.put("tkey", tkey);
+            for (TopicRank tr : dashboardServiceImpl.getAllTopicRank(params)) {
+                snapshot.values.put(tr.getTopic(), tr.getTvalue());
+            }
+        } catch (Exception e) {
+            LoggerUtils.print(TopicRankMaintainer.class).error("Load topic rank of tkey[" + tkey + "] has error, msg is ", e);
+        }
+        return snapshot;
+    }
+
+    private static class Snapshot {
+        private final Map<String, Long> values = new HashMap<>();
+        private final long loaded;
+
+        private Snapshot(long loaded) {
+            this.loaded = loaded;
+        }
+    }
+
+}
@@ -17,10 +17,11 @@
  */
 package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
 
+import org.smartloli.kafka.eagle.common.constant.JmxConstants.BrokerServer;
 import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
+import org.smartloli.kafka.eagle.common.protocol.MBeanInfo;
 import org.smartloli.kafka.eagle.common.protocol.cache.BrokerCache;
-import org.smartloli.kafka.eagle.common.protocol.topic.TopicRank;
-import org.smartloli.kafka.eagle.common.util.KConstants;
+import org.smartloli.kafka.eagle.common.util.BrokerCollectorUtils;
 import org.smartloli.kafka.eagle.common.util.KConstants.Topic;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
@@ -33,7 +34,6 @@ import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
 import org.smartloli.kafka.eagle.web.controller.StartupListener;
 import org.smartloli.kafka.eagle.web.service.impl.DashboardServiceImpl;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -80,65 +80,31 @@ public class TopicThroughputByteInTask extends Thread {
             LoggerUtils.print(this.getClass()).error("Get dashboardServiceImpl bean be used for topic rank byte in has error,msg is ", e);
         }
 
-        List<TopicRank> topicRanks = new ArrayList<>();
         String[] clusterAliass = SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",");
         for (String clusterAlias : clusterAliass) {
             List<String> topics = brokerService.topicList(clusterAlias);
             // List<BrokersInfo> brokers = kafkaService.getAllBrokersInfo(clusterAlias);
             List<BrokersInfo> brokers = BrokerCache.META_CACHE.get(clusterAlias);
 
-            // clean up nonexistent topic
-            Map<String, Object> params = new HashMap<>();
-            params.put("cluster", clusterAlias);
-            params.put("tkey", KConstants.Topic.BYTE_IN);
-            List<TopicRank> trs = dashboardServiceImpl.getAllTopicRank(params);
-            for (TopicRank tr : trs) {
-                try {
-                    if (!topics.contains(tr.getTopic())) {
-                        Map<String, Object> clean = new HashMap<>();
-                        clean.put("cluster", clusterAlias);
-                        clean.put("topic", tr.getTopic());
-                        clean.put("tkey", Topic.BYTE_IN);
-                        dashboardServiceImpl.removeTopicRank(clean);
-                    }
-                } catch (Exception e) {
-                    LoggerUtils.print(this.getClass()).error("Byte in failed to clean up nonexistent topic, msg is ", e);
-                }
-            }
-
-            for (String topic : topics) {
-                long byteIn = 0L;
-                for (BrokersInfo kafka : brokers) {
-                    String meanRate = mx4jService.bytesInPerSec(clusterAlias, kafka.getHost() + ":" + kafka.getJmxPort(), topic).getMeanRate();
+            // one wildcard sweep per broker instead of one jmx call per topic and broker
+            Map<String, Long> byteIns = new HashMap<>();
+            Map<BrokersInfo, Map<String, MBeanInfo>> brokerMeters = BrokerCollectorUtils.collect(clusterAlias, brokers, (cluster, kafka) -> mx4jService.topicMetrics(cluster, kafka.getHost() + ":" + kafka.getJmxPort(), BrokerServer.BYTES_IN_PER_SEC, "*"));
+            for (Map<String, MBeanInfo> meters : brokerMeters.values()) {
+                for (Map.Entry<String, MBeanInfo> entry : meters.entrySet()) {
                     try {
-                        byteIn += new Double(Double.parseDouble(meanRate)).longValue();
+                        byteIns.merge(entry.getKey(), new Double(Double.parseDouble(entry.getValue().getMeanRate())).longValue(), Long::sum);
                     } catch (Exception e) {
                         LoggerUtils.print(this.getClass()).error("Byte in parse string to long has error, msg is ", e);
                     }
                 }
-                TopicRank topicRank = new TopicRank();
-                topicRank.setCluster(clusterAlias);
-                topicRank.setTopic(topic);
-                topicRank.setTkey(Topic.BYTE_IN);
-                topicRank.setTvalue(byteIn);
-                topicRanks.add(topicRank);
-                if (topicRanks.size() > Topic.BATCH_SIZE) {
-                    try {
-                        dashboardServiceImpl.writeTopicRank(topicRanks);
-                        topicRanks.clear();
-                    } catch (Exception e) {
-                        LoggerUtils.print(this.getClass()).error("Storage topic rank byte in has error, msg is ", e);
-                    }
-                }
             }
-        }
-        try {
-            if (topicRanks.size() > 0) {
-                dashboardServiceImpl.writeTopicRank(topicRanks);
-                topicRanks.clear();
+
+            Map<String, Long> ranks = new HashMap<>();
+            for (String topic : topics) {
+                long byteIn = byteIns.getOrDefault(topic, 0L);
+                ranks.put(topic, byteIn);
             }
-        } catch (Exception e) {
-            LoggerUtils.print(this.getClass()).error("Storage topic rank byte in end data has error,msg is ", e);
+            TopicRankMaintainer.update(clusterAlias, Topic.BYTE_IN, ranks, dashboardServiceImpl);
         }
     }
 
@@ -101,7 +101,7 @@ public class ZookeeperClusterSubTask extends Thread {
 
         MetricsServiceImpl metrics = StartupListener.getBean("metricsServiceImpl", MetricsServiceImpl.class);
         try {
-            metrics.insert(list);
+            WriteBehindUtils.writeAll("ke_metrics", list, metrics::insert);
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Collector zookeeper data has error, msg is ", e);
         }
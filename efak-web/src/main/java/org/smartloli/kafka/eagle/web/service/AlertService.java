@@ -97,6 +97,11 @@ public interface AlertService {
      */
     public int modifyConsumerStatusAlertById(AlarmConsumerInfo alarmConsumer);
 
+    /**
+     * Modify alert consumer(alarmtimes,isnormal) info of several ids in batch.
+     */
+    public int modifyConsumerStatusAlertByIds(List<AlarmConsumerInfo> alarmConsumers);
+
     /**
      * Storage or update alarm cluster,such as kafka or zookeeper.
      */
@@ -55,6 +55,11 @@ public interface DashboardService {
      */
     public void removeTopicRank(Map<String, Object> params);
 
+    /**
+     * Clean the topic ranks of the topics in one statement.
+     */
+    public void removeTopicRanks(Map<String, Object> params);
+
     /**
      * Get and clean all topic tasks.
      */
@@ -70,6 +70,11 @@ public interface TopicService {
      */
     public List<PartitionsInfo> list(String clusterAlias, Map<String, Object> params);
 
+    /**
+     * Refresh the topic list of the cluster after a topic is changed.
+     */
+    public void refreshTopicCatalog(String clusterAlias);
+
     /**
      * Get topic name.
      */
@@ -29,11 +29,14 @@ import org.smartloli.kafka.eagle.common.util.KConstants.AlarmType;
 import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.web.dao.AlertDao;
-import org.smartloli.kafka.eagle.web.dao.TopicDao;
+import org.smartloli.kafka.eagle.core.metrics.storage.MetricsStorage;
+import org.smartloli.kafka.eagle.web.quartz.shard.task.alert.ConsumerLagEvaluator;
 import org.smartloli.kafka.eagle.web.service.AlertService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -59,11 +62,13 @@ public class AlertServiceImpl implements AlertService {
     private AlertDao alertDao;
 
     @Autowired
-    private TopicDao topicDao;
+    private MetricsStorage metricsStorage;
 
     @Override
     public int insertAlarmConsumer(AlarmConsumerInfo alarmConsumer) {
-        return alertDao.insertAlarmConsumer(alarmConsumer);
+        int code = alertDao.insertAlarmConsumer(alarmConsumer);
+        ConsumerLagEvaluator.invalidate();
+        return code;
     }
 
     public int insertAlarmCrontab(AlarmCrontabInfo alarmCrontab) {
@@ -210,12 +215,16 @@ public class AlertServiceImpl implements AlertService {
 
     @Override
     public int deleteAlarmConsumerById(int id) {
-        return alertDao.deleteAlarmConsumerById(id);
+        int code = alertDao.deleteAlarmConsumerById(id);
+        ConsumerLagEvaluator.invalidate();
+        return code;
     }
 
     @Override
     public int modifyAlarmConsumerById(AlarmConsumerInfo alarmConsumer) {
-        return alertDao.modifyAlarmConsumerById(alarmConsumer);
+        int code = alertDao.modifyAlarmConsumerById(alarmConsumer);
+        ConsumerLagEvaluator.invalidate();
+        return code;
     }
 
     @Override
@@ -271,7 +280,9 @@ public class AlertServiceImpl implements AlertService {
 
     @Override
     public int insertOrUpdateAlarmConfig(AlarmConfigInfo alarmConfig) {
-        return alertDao.insertOrUpdateAlarmConfig(alarmConfig);
+        int code = alertDao.insertOrUpdateAlarmConfig(alarmConfig);
+        ConsumerLagEvaluator.invalidate();
+        return code;
     }
 
     @Override
@@ -291,7 +302,9 @@ public class AlertServiceImpl implements AlertService {
 
     @Override
     public int deleteAlertByGroupName(Map<String, Object> params) {
-        return alertDao.deleteAlertByGroupName(params);
+        int code = alertDao.deleteAlertByGroupName(params);
+        ConsumerLagEvaluator.invalidate();
+        return code;
     }
 
     @Override
@@ -387,7 +400,9 @@ public class AlertServiceImpl implements AlertService {
 
     @Override
     public int modifyConsumerAlertSwitchById(AlarmConsumerInfo alarmConsumer) {
-        return alertDao.modifyConsumerAlertSwitchById(alarmConsumer);
+        int code = alertDao.modifyConsumerAlertSwitchById(alarmConsumer);
+        ConsumerLagEvaluator.invalidate();
+        return code;
     }
 
     @Override
@@ -407,7 +422,7 @@ public class AlertServiceImpl implements AlertService {
 
     @Override
     public long queryLastestLag(Map<String, Object> params) {
-        return topicDao.queryLastestLag(params);
+        return metricsStorage.queryLastestLag(params);
     }
 
     @Override
@@ -415,9 +430,23 @@ public class AlertServiceImpl implements AlertService {
         return alertDao.modifyConsumerStatusAlertById(alarmConsumer);
     }
 
+    @Override
+    public int modifyConsumerStatusAlertByIds(List<AlarmConsumerInfo> alarmConsumers) {
+        // keep the last status of each id, a batch may hold several of them
+        Map<Integer, AlarmConsumerInfo> lastest = new LinkedHashMap<>();
+        for (AlarmConsumerInfo alarmConsumer : alarmConsumers) {
+            lastest.remove(alarmConsumer.getId());
+            lastest.put(alarmConsumer.getId(), alarmConsumer);
+        }
+        if (lastest.isEmpty()) {
+            return 0;
+        }
+        return alertDao.modifyConsumerStatusAlertByIds(new ArrayList<>(lastest.values()));
+    }
+
     @Override
     public List<TopicLogSize> queryTopicProducerByAlarm(Map<String, Object> params) {
-        return topicDao.queryTopicProducerByAlarm(params);
+        return metricsStorage.queryTopicProducerByAlarm(params);
     }
 
 }
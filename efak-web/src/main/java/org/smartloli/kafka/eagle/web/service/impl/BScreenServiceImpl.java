@@ -29,7 +29,7 @@ import org.smartloli.kafka.eagle.common.util.KConstants.Topic;
 import org.smartloli.kafka.eagle.common.util.StrUtils;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
-import org.smartloli.kafka.eagle.web.dao.MBeanDao;
+import org.smartloli.kafka.eagle.core.metrics.storage.MetricsStorage;
 import org.smartloli.kafka.eagle.web.dao.TopicDao;
 import org.smartloli.kafka.eagle.web.service.BScreenService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -54,7 +54,7 @@ public class BScreenServiceImpl implements BScreenService {
     private TopicDao topicDao;
 
     @Autowired
-    private MBeanDao mbeanDao;
+    private MetricsStorage metricsStorage;
 
     /** Broker service interface. */
     private static BrokerService brokerService = new BrokerFactory().create();
@@ -76,7 +76,7 @@ public class BScreenServiceImpl implements BScreenService {
         param.put("tday", CalendarUtils.getCustomDate("yyyyMMdd"));
         param.put("type", CollectorType.KAFKA);
         param.put("key", key);
-        return mbeanDao.getBrokersKpi(param);
+        return metricsStorage.getBrokersKpi(param);
     }
 
     /** Get topic total logsize data . */
@@ -86,7 +86,7 @@ public class BScreenServiceImpl implements BScreenService {
         params.put("topics", brokerService.topicList(clusterAlias));
         params.put("size", brokerService.topicList(clusterAlias).size());
         params.put("tday", CalendarUtils.getCustomDate("yyyyMMdd"));
-        long totalRecords = topicDao.getBScreenTotalRecords(params);
+        long totalRecords = metricsStorage.getBScreenTotalRecords(params);
         JSONObject object = new JSONObject();
         object.put("total", totalRecords);
         return object.toString();
@@ -100,7 +100,7 @@ public class BScreenServiceImpl implements BScreenService {
         params.put("stime", CalendarUtils.getCustomLastDay(7));
         params.put("etime", CalendarUtils.getCustomDate("yyyyMMdd"));
         if ("producer".equals(type)) {
-            List<BScreenBarInfo> bsProducers = topicDao.queryProducerHistoryBar(params);
+            List<BScreenBarInfo> bsProducers = metricsStorage.queryProducerHistoryBar(params);
             Map<String, Object> bsMaps = new HashMap<>();
             for (BScreenBarInfo bsProducer : bsProducers) {
                 if (bsProducer != null) {
@@ -122,7 +122,7 @@ public class BScreenServiceImpl implements BScreenService {
                 }
             }
         } else {
-            List<BScreenBarInfo> bsConsumers = topicDao.queryConsumerHistoryBar(params);
+            List<BScreenBarInfo> bsConsumers = metricsStorage.queryConsumerHistoryBar(params);
             Map<String, Object> bsMaps = new HashMap<>();
             for (BScreenBarInfo bsConsumer : bsConsumers) {
                 if (bsConsumer != null) {
@@ -154,7 +154,7 @@ public class BScreenServiceImpl implements BScreenService {
         Map<String, Object> params = new HashMap<>();
         params.put("cluster", clusterAlias);
         params.put("tday", CalendarUtils.getCustomDate("yyyyMMdd"));
-        List<BScreenConsumerInfo> bscreenConsumers = topicDao.queryTodayBScreenConsumer(params);
+        List<BScreenConsumerInfo> bscreenConsumers = metricsStorage.queryTodayBScreenConsumer(params);
         Map<Integer, Long> map = new HashMap<>();
         if (bscreenConsumers != null) {
             if (Topic.PRODUCERS.equals(type)) {
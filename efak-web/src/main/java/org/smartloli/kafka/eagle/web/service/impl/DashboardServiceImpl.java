@@ -35,7 +35,7 @@ import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
-import org.smartloli.kafka.eagle.web.dao.MBeanDao;
+import org.smartloli.kafka.eagle.core.metrics.storage.MetricsStorage;
 import org.smartloli.kafka.eagle.web.dao.TopicDao;
 import org.smartloli.kafka.eagle.web.service.DashboardService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -69,7 +69,7 @@ public class DashboardServiceImpl implements DashboardService {
     private TopicDao topicDao;
 
     @Autowired
-    private MBeanDao mbeanDao;
+    private MetricsStorage metricsStorage;
 
     /**
      * Get kafka & dashboard dataset.
@@ -91,7 +91,7 @@ public class DashboardServiceImpl implements DashboardService {
 
         if ("broker_chart".equals(flag)) {
             params.put("size", 6);// display broker lastest 6 minutes
-            List<KpiInfo> kpis = mbeanDao.getDashboradPanelBrokerChart(params);
+            List<KpiInfo> kpis = metricsStorage.getDashboradPanelBrokerChart(params);
             for (KpiInfo kpi : kpis) {
 
             }
@@ -232,14 +232,14 @@ public class DashboardServiceImpl implements DashboardService {
      * Write statistics topic logsize data from kafka jmx & insert into table.
      */
     public int writeTopicLogSize(List<TopicLogSize> topicLogSize) {
-        return topicDao.writeTopicLogSize(topicLogSize);
+        return metricsStorage.writeTopicLogSize(topicLogSize);
     }
 
     /**
      * Get os memory data.
      */
     public String getOSMem(Map<String, Object> params) {
-        List<KpiInfo> kpis = mbeanDao.getOsMem(params);
+        List<KpiInfo> kpis = metricsStorage.getOsMem(params);
         JSONObject object = new JSONObject();
         if (kpis.size() == 2) {
             long valueFirst = Long.parseLong(kpis.get(0).getValue());
@@ -259,7 +259,7 @@ public class DashboardServiceImpl implements DashboardService {
      * Get used cpu data.
      */
     public String getUsedCPU(Map<String, Object> params) {
-        List<KpiInfo> kpis = mbeanDao.getUsedCPU(params);
+        List<KpiInfo> kpis = metricsStorage.getUsedCPU(params);
         JSONObject object = new JSONObject();
         if (kpis.size() > 0) {
             object.put("cpu", StrUtils.numberic(kpis.get(0).getValue()) / brokerService.brokerNumbers(params.get("cluster").toString()));
@@ -271,8 +271,8 @@ public class DashboardServiceImpl implements DashboardService {
 
     @Override
     public String getActiveTopicNumbers(String clusterAlias, Map<String, Object> params) {
-        long activeNums = topicDao.getActiveTopicNumbers(params);
-        TopicCapacityInfo topicCapacityInfo = topicDao.getTopicCapacityScatter(params);
+        long activeNums = metricsStorage.getActiveTopicNumbers(params);
+        TopicCapacityInfo topicCapacityInfo = metricsStorage.getTopicCapacityScatter(params);
         JSONObject object = new JSONObject();
         object.put("active", activeNums);
         object.put("standby", brokerService.topicList(clusterAlias).size() - activeNums);
@@ -293,7 +293,7 @@ public class DashboardServiceImpl implements DashboardService {
      * Read topic lastest logsize diffval data.
      */
     public TopicLogSize readLastTopicLogSize(Map<String, Object> params) {
-        return topicDao.readLastTopicLogSize(params);
+        return metricsStorage.readLastTopicLogSize(params);
     }
 
     /**
@@ -313,4 +313,9 @@ public class DashboardServiceImpl implements DashboardService {
         topicDao.removeTopicRank(params);
     }
 
+    @Override
+    public void removeTopicRanks(Map<String, Object> params) {
+        topicDao.removeTopicRanks(params);
+    }
+
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ package org.smartloli.kafka.eagle.web.service.impl;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.gson.Gson;
+import org.smartloli.kafka.eagle.common.constant.JmxConstants.BrokerServer;
 import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
 import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
 import org.smartloli.kafka.eagle.common.protocol.MBeanInfo;
@@ -39,6 +40,7 @@ import org.smartloli.kafka.eagle.core.factory.Mx4jFactory;
 import org.smartloli.kafka.eagle.core.factory.Mx4jService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
+import org.smartloli.kafka.eagle.core.metrics.storage.MetricsStorage;
 import org.smartloli.kafka.eagle.web.dao.BrokerDao;
 import org.smartloli.kafka.eagle.web.dao.MBeanDao;
 import org.smartloli.kafka.eagle.web.dao.TopicDao;
@@ -47,6 +49,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -65,6 +68,9 @@ public class MetricsServiceImpl implements MetricsService {
     @Autowired
     private MBeanDao mbeanDao;
 
+    @Autowired
+    private MetricsStorage metricsStorage;
+
     @Autowired
     private TopicDao topicDao;
 
@@ -86,6 +92,14 @@ public class MetricsServiceImpl implements MetricsService {
      */
     private Mx4jService mx4jService = new Mx4jFactory().create();
 
+    /**
+     * Meter mbeans read per broker in one bulk jmx sweep.
+     */
+    private static final List<BrokerServer> ONLINE_METERS = Arrays.asList(BrokerServer.MESSAGES_IN_PER_SEC, BrokerServer.BYTES_IN_PER_SEC, BrokerServer.BYTES_OUT_PER_SEC, BrokerServer.BYTES_REJECTED_PER_SEC,
+            BrokerServer.FAILED_FETCH_REQUESTS_PER_SEC, BrokerServer.FAILED_PRODUCE_REQUESTS_PER_SEC, BrokerServer.PRODUCE_MESSAGE_CONVERSIONS_PER_SEC,
+            BrokerServer.TOTAL_FETCH_REQUESTS_PER_SEC, BrokerServer.TOTAL_PRODUCE_REQUESTS_PER_SEC,
+            BrokerServer.REPLICATION_BYTES_IN_PER_SEC, BrokerServer.REPLICATION_BYTES_OUT_PER_SEC);
+
     /**
      * Gets summary monitoring data for all broker.
      */
@@ -164,39 +178,29 @@ public class MetricsServiceImpl implements MetricsService {
         Map<String, MBeanInfo> mbeans = new HashMap<>();
         for (BrokersInfo broker : brokers) {
             String uri = broker.getHost() + ":" + broker.getJmxPort();
-            MBeanInfo bytesIn = mx4jService.bytesInPerSec(clusterAlias, uri);
-            MBeanInfo bytesOut = mx4jService.bytesOutPerSec(clusterAlias, uri);
-            MBeanInfo bytesRejected = mx4jService.bytesRejectedPerSec(clusterAlias, uri);
-            MBeanInfo failedFetchRequest = mx4jService.failedFetchRequestsPerSec(clusterAlias, uri);
-            MBeanInfo failedProduceRequest = mx4jService.failedProduceRequestsPerSec(clusterAlias, uri);
-            MBeanInfo messageIn = mx4jService.messagesInPerSec(clusterAlias, uri);
-            MBeanInfo produceMessageConversions = mx4jService.produceMessageConversionsPerSec(clusterAlias, uri);
-            MBeanInfo totalFetchRequests = mx4jService.totalFetchRequestsPerSec(clusterAlias, uri);
-            MBeanInfo totalProduceRequests = mx4jService.totalProduceRequestsPerSec(clusterAlias, uri);
-            MBeanInfo replicationBytesInPerSec = mx4jService.replicationBytesInPerSec(clusterAlias, uri);
-            MBeanInfo replicationBytesOutPerSec = mx4jService.replicationBytesOutPerSec(clusterAlias, uri);
+            Map<BrokerServer, MBeanInfo> meters = mx4jService.metrics(clusterAlias, uri, ONLINE_METERS, null);
 
-            assembleMBeanInfo(mbeans, MBean.MESSAGES_IN, messageIn);
+            assembleMBeanInfo(mbeans, MBean.MESSAGES_IN, meters.get(BrokerServer.MESSAGES_IN_PER_SEC));
 
-            assembleMBeanInfo(mbeans, MBean.BYTES_IN, bytesIn);
+            assembleMBeanInfo(mbeans, MBean.BYTES_IN, meters.get(BrokerServer.BYTES_IN_PER_SEC));
 
-            assembleMBeanInfo(mbeans, MBean.BYTES_OUT, bytesOut);
+            assembleMBeanInfo(mbeans, MBean.BYTES_OUT, meters.get(BrokerServer.BYTES_OUT_PER_SEC));
 
-            assembleMBeanInfo(mbeans, MBean.BYTES_REJECTED, bytesRejected);
+            assembleMBeanInfo(mbeans, MBean.BYTES_REJECTED, meters.get(BrokerServer.BYTES_REJECTED_PER_SEC));
 
-            assembleMBeanInfo(mbeans, MBean.FAILED_FETCH_REQUEST, failedFetchRequest);
+            assembleMBeanInfo(mbeans, MBean.FAILED_FETCH_REQUEST, meters.get(BrokerServer.FAILED_FETCH_REQUESTS_PER_SEC));
 
-            assembleMBeanInfo(mbeans, MBean.FAILED_PRODUCE_REQUEST, failedProduceRequest);
+            assembleMBeanInfo(mbeans, MBean.FAILED_PRODUCE_REQUEST, meters.get(BrokerServer.FAILED_PRODUCE_REQUESTS_PER_SEC));
 
-            assembleMBeanInfo(mbeans, MBean.PRODUCEMESSAGECONVERSIONS, produceMessageConversions);
+            assembleMBeanInfo(mbeans, MBean.PRODUCEMESSAGECONVERSIONS, meters.get(BrokerServer.PRODUCE_MESSAGE_CONVERSIONS_PER_SEC));
 
-            assembleMBeanInfo(mbeans, MBean.TOTALFETCHREQUESTSPERSEC, totalFetchRequests);
+            assembleMBeanInfo(mbeans, MBean.TOTALFETCHREQUESTSPERSEC, meters.get(BrokerServer.TOTAL_FETCH_REQUESTS_PER_SEC));
 
-            assembleMBeanInfo(mbeans, MBean.TOTALPRODUCEREQUESTSPERSEC, totalProduceRequests);
+            assembleMBeanInfo(mbeans, MBean.TOTALPRODUCEREQUESTSPERSEC, meters.get(BrokerServer.TOTAL_PRODUCE_REQUESTS_PER_SEC));
 
-            assembleMBeanInfo(mbeans, MBean.REPLICATIONBYTESINPERSEC, replicationBytesInPerSec);
+            assembleMBeanInfo(mbeans, MBean.REPLICATIONBYTESINPERSEC, meters.get(BrokerServer.REPLICATION_BYTES_IN_PER_SEC));
 
-            assembleMBeanInfo(mbeans, MBean.REPLICATIONBYTESOUTPERSEC, replicationBytesOutPerSec);
+            assembleMBeanInfo(mbeans, MBean.REPLICATIONBYTESOUTPERSEC, meters.get(BrokerServer.REPLICATION_BYTES_OUT_PER_SEC));
 
         }
         for (Entry<String, MBeanInfo> entry : mbeans.entrySet()) {
@@ -239,7 +243,7 @@ public class MetricsServiceImpl implements MetricsService {
      * Collection statistics data from kafka jmx & insert into table.
      */
     public int insert(List<KpiInfo> kpi) {
-        return mbeanDao.insert(kpi);
+        return metricsStorage.insert(kpi);
     }
 
     /**
@@ -247,7 +251,7 @@ public class MetricsServiceImpl implements MetricsService {
      */
     public String query(Map<String, Object> params) throws ParseException {
 
-        List<KpiInfo> kpis = mbeanDao.query(params);
+        List<KpiInfo> kpis = metricsStorage.query(params);
         long brokerSize = brokerService.brokerNumbers(params.get("cluster").toString());
 
         JSONArray messageIns = new JSONArray();
@@ -374,12 +378,12 @@ public class MetricsServiceImpl implements MetricsService {
      * Crontab clean data.
      */
     public void remove(int tm) {
-        mbeanDao.remove(tm);
+        metricsStorage.remove(tm);
     }
 
     @Override
     public void cleanTopicLogSize(int tm) {
-        topicDao.cleanTopicLogSize(tm);
+        metricsStorage.cleanTopicLogSize(tm);
     }
 
     @Override
@@ -389,17 +393,17 @@ public class MetricsServiceImpl implements MetricsService {
 
     @Override
     public void cleanBScreenConsumerTopic(int tm) {
-        topicDao.cleanBScreenConsumerTopic(tm);
+        metricsStorage.cleanBScreenConsumerTopic(tm);
     }
 
     @Override
     public int writeBSreenConsumerTopic(List<BScreenConsumerInfo> bscreenConsumers) {
-        return topicDao.writeBSreenConsumerTopic(bscreenConsumers);
+        return metricsStorage.writeBSreenConsumerTopic(bscreenConsumers);
     }
 
     @Override
     public BScreenConsumerInfo readBScreenLastTopic(Map<String, Object> params) {
-        return topicDao.readBScreenLastTopic(params);
+        return metricsStorage.readBScreenLastTopic(params);
     }
 
     @Override
@@ -25,6 +25,7 @@ import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
 import org.smartloli.kafka.eagle.core.task.schedule.JobClient;
+import org.smartloli.kafka.eagle.core.metrics.storage.MetricsStorage;
 import org.smartloli.kafka.eagle.web.dao.TopicDao;
 import org.smartloli.kafka.eagle.web.service.TVBScreenService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,6 +47,9 @@ public class TVBScreenServiceImpl implements TVBScreenService {
     @Autowired
     private TopicDao topicDao;
 
+    @Autowired
+    private MetricsStorage metricsStorage;
+
     /**
      * Kafka service interface.
      */
@@ -64,7 +68,7 @@ public class TVBScreenServiceImpl implements TVBScreenService {
         params.put("topics", brokerService.topicList(clusterAlias));
         params.put("size", brokerService.topicList(clusterAlias).size());
         params.put("tday", CalendarUtils.getCustomDate("yyyyMMdd"));
-        long totalRecords = topicDao.getBScreenTotalRecords(params);
+        long totalRecords = metricsStorage.getBScreenTotalRecords(params);
 
         if (SystemConfigUtils.getBooleanProperty("efak.distributed.enable")) {
             object.put("mode", "Distribute");
@@ -0,0 +1,262 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.service.impl;
+
+import org.smartloli.kafka.eagle.common.protocol.PartitionsInfo;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * In memory catalog of the topics of each cluster, used by the topic list
+ * page.
+ * <p>
+ * A cluster is read the first time it is asked for, then refreshed in the
+ * background, so a page request only reads memory. The loads of a cluster
+ * are serialized, so an older scheduled load never overwrites a newer
+ * refresh, and a failed or suspiciously empty read keeps the previous
+ * snapshot. The topic names are
+ * indexed by their trigrams, a search reads the smallest posting list of the
+ * search trigrams and checks each candidate, which answers prefix and
+ * substring searches without scanning every topic.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TopicCatalog {
+
+    private static final long REFRESH_MS = SystemConfigUtils.getLongProperty("efak.topic.catalog.refresh.ms", 60 * 1000L);
+
+    private static final int GRAM = 3;
+
+    private final Function<String, List<PartitionsInfo>> reader;
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Clusters whose last read was empty while the snapshot still had topics.
+     */
+    private final Map<String, Boolean> emptyReads = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "efak-topic-catalog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The reader returns all topics of a cluster in display order.
+     */
+    public TopicCatalog(Function<String, List<PartitionsInfo>> reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Get the number of topics whose name contains the search, or all topics
+     * when the search is empty.
+     */
+    public long count(String clusterAlias, String search) {
+        Snapshot snapshot = get(clusterAlias);
+        return isEmpty(search) ? snapshot.topics.size() : snapshot.search(search).length;
+    }
+
+    /**
+     * Get one page of the topics whose name contains the search, the id of a
+     * record is its position in the result starting at 1.
+     */
+    public List<PartitionsInfo> page(String clusterAlias, String search, int start, int length) {
+        Snapshot snapshot = get(clusterAlias);
+        List<PartitionsInfo> targets = new ArrayList<>();
+        if (isEmpty(search)) {
+            for (int i = Math.max(0, start); i < Math.min(snapshot.topics.size(), start + length); i++) {
+                targets.add(copy(snapshot.topics.get(i), i + 1));
+            }
+        } else {
+            int[] matches = snapshot.search(search);
+            for (int i = Math.max(0, start); i < Math.min(matches.length, start + length); i++) {
+                targets.add(copy(snapshot.topics.get(matches[i]), i + 1));
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Get the names of the first limit topics whose name contains the search.
+     */
+    public List<String> names(String clusterAlias, String search, int limit) {
+        Snapshot snapshot = get(clusterAlias);
+        List<String> names = new ArrayList<>();
+        if (isEmpty(search)) {
+            for (int i = 0; i < Math.min(limit, snapshot.names.length); i++) {
+                names.add(snapshot.names[i]);
+            }
+        } else {
+            int[] matches = snapshot.search(search);
+            for (int i = 0; i < Math.min(limit, matches.length); i++) {
+                names.add(snapshot.names[matches[i]]);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Read the cluster again now, such as after a topic is created, deleted or
+     * truncated, so the redirected list page shows the change.
+     */
+    public void refresh(String clusterAlias) {
+        if (snapshots.containsKey(clusterAlias)) {
+            load(clusterAlias);
+        }
+    }
+
+    private Snapshot get(String clusterAlias) {
+        Snapshot snapshot = snapshots.get(clusterAlias);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            snapshot = snapshots.get(clusterAlias);
+            if (snapshot == null) {
+                snapshot = load(clusterAlias);
+                refresher.scheduleWithFixedDelay(() -> load(clusterAlias), REFRESH_MS, REFRESH_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        return snapshot;
+    }
+
+    private Snapshot load(String clusterAlias) {
+        synchronized (locks.computeIfAbsent(clusterAlias, k -> new Object())) {
+            Snapshot previous = snapshots.get(clusterAlias);
+            List<PartitionsInfo> topics;
+            try {
+                topics = reader.apply(clusterAlias);
+            } catch (Exception e) {
+                LoggerUtils.print(this.getClass()).error("Read topic catalog of cluster[" + clusterAlias + "] has error, msg is ", e);
+                topics = null;
+            }
+            // an empty read is only trusted when the next read is empty again
+            if (topics != null && topics.isEmpty() && previous != null && !previous.topics.isEmpty() && emptyReads.put(clusterAlias, Boolean.TRUE) == null) {
+                LoggerUtils.print(this.getClass()).warn("Read no topic of cluster[" + clusterAlias + "], keep the previous " + previous.topics.size() + " topics until the next read.");
+                topics = null;
+            } else if (topics != null) {
+                emptyReads.remove(clusterAlias);
+            }
+            if (topics == null) {
+                if (previous != null) {
+                    return previous;
+                }
+                topics = new ArrayList<>();
+            }
+            Snapshot snapshot = new Snapshot(topics);
+            snapshots.put(clusterAlias, snapshot);
+            return snapshot;
+        }
+    }
+
+    private static boolean isEmpty(String search) {
+        return search == null || search.length() == 0;
+    }
+
+    private static PartitionsInfo copy(PartitionsInfo source, int id) {
+        PartitionsInfo partition = new PartitionsInfo();
+        partition.setId(id);
+        partition.setTopic(source.getTopic());
+        partition.setPartitions(source.getPartitions());
+        partition.setPartitionNumbers(source.getPartitionNumbers());
+        partition.setBrokersSpread(source.getBrokersSpread());
+        partition.setBrokersSkewed(source.getBrokersSkewed());
+        partition.setBrokersLeaderSkewed(source.getBrokersLeaderSkewed());
+        partition.setCreated(source.getCreated());
+        partition.setModify(source.getModify());
+        partition.setTruncate(source.getTruncate());
+        return partition;
+    }
+
+    /**
+     * Immutable topics of one cluster with the trigram index of their names.
+     */
+    private static class Snapshot {
+        private final List<PartitionsInfo> topics;
+        private final String[] names;
+        private final Map<String, int[]> grams = new HashMap<>();
+
+        private Snapshot(List<PartitionsInfo> topics) {
+            this.topics = topics;
+            this.names = new String[topics.size()];
+            Map<String, List<Integer>> postings = new HashMap<>();
+            for (int i = 0; i < topics.size(); i++) {
+                names[i] = topics.get(i).getTopic();
+                for (int j = 0; j + GRAM <= names[i].length(); j++) {
+                    String gram = names[i].substring(j, j + GRAM);
+                    List<Integer> posting = postings.computeIfAbsent(gram, k -> new ArrayList<>());
+                    // a topic is added once even if the trigram repeats in its name
+                    if (posting.isEmpty() || posting.get(posting.size() - 1) != i) {
+                        posting.add(i);
+                    }
+                }
+            }
+            for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+                int[] posting = new int[entry.getValue().size()];
+                for (int i = 0; i < posting.length; i++) {
+                    posting[i] = entry.getValue().get(i);
+                }
+                grams.put(entry.getKey(), posting);
+            }
+        }
+
+        /**
+         * Get the positions of the topics whose name contains the search, in
+         * display order.
+         */
+        private int[] search(String search) {
+            int[] candidates = null;
+            if (search.length() >= GRAM) {
+                for (int j = 0; j + GRAM <= search.length(); j++) {
+                    int[] posting = grams.get(search.substring(j, j + GRAM));
+                    if (posting == null) {
+                        return new int[0];
+                    }
+                    if (candidates == null || posting.length < candidates.length) {
+                        candidates = posting;
+                    }
+                }
+            }
+            int size = candidates == null ? names.length : candidates.length;
+            int[] matches = new int[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int position = candidates == null ? i : candidates[i];
+                if (names[position].contains(search)) {
+                    matches[count++] = position;
+                }
+            }
+            return Arrays.copyOf(matches, count);
+        }
+    }
+
+}
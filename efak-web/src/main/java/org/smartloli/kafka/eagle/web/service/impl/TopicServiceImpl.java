@@ -20,17 +20,20 @@ package org.smartloli.kafka.eagle.web.service.impl;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.gson.Gson;
+import org.smartloli.kafka.eagle.common.constant.JmxConstants.BrokerServer;
 import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
 import org.smartloli.kafka.eagle.common.protocol.MBeanInfo;
 import org.smartloli.kafka.eagle.common.protocol.MetadataInfo;
 import org.smartloli.kafka.eagle.common.protocol.PartitionsInfo;
 import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenBarInfo;
 import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.common.protocol.cache.TopicMBeanCache;
 import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupsInfo;
 import org.smartloli.kafka.eagle.common.protocol.topic.TopicConfig;
 import org.smartloli.kafka.eagle.common.protocol.topic.TopicLogSize;
 import org.smartloli.kafka.eagle.common.protocol.topic.TopicRank;
 import org.smartloli.kafka.eagle.common.protocol.topic.TopicSqlHistory;
+import org.smartloli.kafka.eagle.common.util.BrokerCollectorUtils;
 import org.smartloli.kafka.eagle.common.util.CalendarUtils;
 import org.smartloli.kafka.eagle.common.util.KConstants;
 import org.smartloli.kafka.eagle.common.util.KConstants.BrokerSever;
@@ -51,6 +54,7 @@ import org.smartloli.kafka.eagle.core.metrics.KafkaMetricsFactory;
 import org.smartloli.kafka.eagle.core.metrics.KafkaMetricsService;
 import org.smartloli.kafka.eagle.core.sql.execute.KafkaSqlParser;
 import org.smartloli.kafka.eagle.core.task.schedule.JobClient;
+import org.smartloli.kafka.eagle.core.metrics.storage.MetricsStorage;
 import org.smartloli.kafka.eagle.web.dao.TopicDao;
 import org.smartloli.kafka.eagle.web.service.TopicService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -74,6 +78,9 @@ public class TopicServiceImpl implements TopicService {
     @Autowired
     private TopicDao topicDao;
 
+    @Autowired
+    private MetricsStorage metricsStorage;
+
     /**
      * Kafka service interface.
      */
@@ -89,6 +96,11 @@ public class TopicServiceImpl implements TopicService {
      */
     private static BrokerService brokerService = new BrokerFactory().create();
 
+    /**
+     * Topics of the topic list page, refreshed in the background.
+     */
+    private final TopicCatalog topicCatalog = new TopicCatalog(this::readTopicCatalog);
+
     /**
      * Mx4j service interface.
      */
@@ -207,33 +219,59 @@ public class TopicServiceImpl implements TopicService {
      * Get topic numbers.
      */
     public long getTopicNumbers(String clusterAlias) {
-        return brokerService.topicNumbers(clusterAlias);
+        return topicCatalog.count(clusterAlias, null);
     }
 
     @Override
     public long getTopicNumbers(String clusterAlias, String topic) {
-        return brokerService.topicNumbers(clusterAlias, topic);
+        return topic == null ? 0L : topicCatalog.count(clusterAlias, topic);
     }
 
     /**
      * Get topic list.
      */
     public List<PartitionsInfo> list(String clusterAlias, Map<String, Object> params) {
-        List<PartitionsInfo> topicRecords = brokerService.topicRecords(clusterAlias, params);
+        String search = params.containsKey("search") ? params.get("search").toString() : "";
+        int start = Integer.parseInt(params.get("start").toString());
+        int length = Integer.parseInt(params.get("length").toString());
+        return topicCatalog.page(clusterAlias, search, start, length);
+    }
+
+    @Override
+    public void refreshTopicCatalog(String clusterAlias) {
+        topicCatalog.refresh(clusterAlias);
+    }
+
+    /**
+     * Read all topics of the cluster with their broker spread, skewed, leader
+     * skewed and truncate state, each rank is read with one query per tkey.
+     */
+    private List<PartitionsInfo> readTopicCatalog(String clusterAlias) {
+        List<PartitionsInfo> topicRecords = brokerService.topicCatalog(clusterAlias);
+        Map<String, Long> spreads = readTopicRanks(clusterAlias, Topic.BROKER_SPREAD);
+        Map<String, Long> skeweds = readTopicRanks(clusterAlias, Topic.BROKER_SKEWED);
+        Map<String, Long> leaderSkeweds = readTopicRanks(clusterAlias, Topic.BROKER_LEADER_SKEWED);
+        Map<String, Long> truncates = readTopicRanks(clusterAlias, Topic.TRUNCATE);
         for (PartitionsInfo partitionInfo : topicRecords) {
-            Map<String, Object> spread = new HashMap<>();
-            spread.put("cluster", clusterAlias);
-            spread.put("topic", partitionInfo.getTopic());
-            spread.put("tkey", Topic.BROKER_SPREAD);
-            partitionInfo.setBrokersSpread(topicDao.readBrokerPerformance(spread) == null ? 0 : topicDao.readBrokerPerformance(spread).getTvalue());
-            spread.put("tkey", Topic.BROKER_SKEWED);
-            partitionInfo.setBrokersSkewed(topicDao.readBrokerPerformance(spread) == null ? 0 : topicDao.readBrokerPerformance(spread).getTvalue());
-            spread.put("tkey", Topic.BROKER_LEADER_SKEWED);
-            partitionInfo.setBrokersLeaderSkewed(topicDao.readBrokerPerformance(spread) == null ? 0 : topicDao.readBrokerPerformance(spread).getTvalue());
+            partitionInfo.setBrokersSpread(spreads.getOrDefault(partitionInfo.getTopic(), 0L));
+            partitionInfo.setBrokersSkewed(skeweds.getOrDefault(partitionInfo.getTopic(), 0L));
+            partitionInfo.setBrokersLeaderSkewed(leaderSkeweds.getOrDefault(partitionInfo.getTopic(), 0L));
+            partitionInfo.setTruncate(truncates.getOrDefault(partitionInfo.getTopic(), -1L));
         }
         return topicRecords;
     }
 
+    private Map<String, Long> readTopicRanks(String clusterAlias, String tkey) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("cluster", clusterAlias);
+        params.put("tkey", tkey);
+        Map<String, Long> ranks = new HashMap<>();
+        for (TopicRank topicRank : topicDao.getAllTopicRank(params)) {
+            ranks.put(topicRank.getTopic(), topicRank.getTvalue());
+        }
+        return ranks;
+    }
+
     /**
      * Get topic name.
      */
@@ -251,64 +289,50 @@ public class TopicServiceImpl implements TopicService {
 
     @Override
     public String getTopicMBean(String clusterAlias, String topic) {
-        List<BrokersInfo> brokers = kafkaService.getAllBrokersInfo(clusterAlias);
-        Map<String, MBeanInfo> mbeans = new HashMap<>();
-        for (BrokersInfo broker : brokers) {
-            String uri = broker.getHost() + ":" + broker.getJmxPort();
-            MBeanInfo bytesIn = mx4jService.bytesInPerSec(clusterAlias, uri, topic);
-            MBeanInfo bytesOut = mx4jService.bytesOutPerSec(clusterAlias, uri, topic);
-            MBeanInfo bytesRejected = mx4jService.bytesRejectedPerSec(clusterAlias, uri, topic);
-            MBeanInfo failedFetchRequest = mx4jService.failedFetchRequestsPerSec(clusterAlias, uri, topic);
-            MBeanInfo failedProduceRequest = mx4jService.failedProduceRequestsPerSec(clusterAlias, uri, topic);
-            MBeanInfo messageIn = mx4jService.messagesInPerSec(clusterAlias, uri, topic);
-            MBeanInfo produceMessageConversions = mx4jService.produceMessageConversionsPerSec(clusterAlias, uri, topic);
-            MBeanInfo totalFetchRequests = mx4jService.totalFetchRequestsPerSec(clusterAlias, uri, topic);
-            MBeanInfo totalProduceRequests = mx4jService.totalProduceRequestsPerSec(clusterAlias, uri, topic);
-
-            assembleMBeanInfo(mbeans, MBean.MESSAGES_IN, messageIn);
-            assembleMBeanInfo(mbeans, MBean.BYTES_IN, bytesIn);
-            assembleMBeanInfo(mbeans, MBean.BYTES_OUT, bytesOut);
-            assembleMBeanInfo(mbeans, MBean.BYTES_REJECTED, bytesRejected);
-            assembleMBeanInfo(mbeans, MBean.FAILED_FETCH_REQUEST, failedFetchRequest);
-            assembleMBeanInfo(mbeans, MBean.FAILED_PRODUCE_REQUEST, failedProduceRequest);
-            assembleMBeanInfo(mbeans, MBean.PRODUCEMESSAGECONVERSIONS, produceMessageConversions);
-            assembleMBeanInfo(mbeans, MBean.TOTALFETCHREQUESTSPERSEC, totalFetchRequests);
-            assembleMBeanInfo(mbeans, MBean.TOTALPRODUCEREQUESTSPERSEC, totalProduceRequests);
-        }
-        for (Entry<String, MBeanInfo> entry : mbeans.entrySet()) {
-            if (entry == null || entry.getValue() == null) {
-                continue;
-            }
-            entry.getValue().setFifteenMinute(StrUtils.assembly(entry.getValue().getFifteenMinute()));
-            entry.getValue().setFiveMinute(StrUtils.assembly(entry.getValue().getFiveMinute()));
-            entry.getValue().setMeanRate(StrUtils.assembly(entry.getValue().getMeanRate()));
-            entry.getValue().setOneMinute(StrUtils.assembly(entry.getValue().getOneMinute()));
+        Map<BrokerServer, double[]> rates = TopicMBeanCache.get(clusterAlias, topic);
+        if (rates == null) {
+            rates = readTopicMBean(clusterAlias, topic);
         }
+        Map<String, MBeanInfo> mbeans = new HashMap<>();
+        mbeans.put(MBean.MESSAGES_IN, toMBeanInfo(rates.get(BrokerServer.MESSAGES_IN_PER_SEC)));
+        mbeans.put(MBean.BYTES_IN, toMBeanInfo(rates.get(BrokerServer.BYTES_IN_PER_SEC)));
+        mbeans.put(MBean.BYTES_OUT, toMBeanInfo(rates.get(BrokerServer.BYTES_OUT_PER_SEC)));
+        mbeans.put(MBean.BYTES_REJECTED, toMBeanInfo(rates.get(BrokerServer.BYTES_REJECTED_PER_SEC)));
+        mbeans.put(MBean.FAILED_FETCH_REQUEST, toMBeanInfo(rates.get(BrokerServer.FAILED_FETCH_REQUESTS_PER_SEC)));
+        mbeans.put(MBean.FAILED_PRODUCE_REQUEST, toMBeanInfo(rates.get(BrokerServer.FAILED_PRODUCE_REQUESTS_PER_SEC)));
+        mbeans.put(MBean.PRODUCEMESSAGECONVERSIONS, toMBeanInfo(rates.get(BrokerServer.PRODUCE_MESSAGE_CONVERSIONS_PER_SEC)));
+        mbeans.put(MBean.TOTALFETCHREQUESTSPERSEC, toMBeanInfo(rates.get(BrokerServer.TOTAL_FETCH_REQUESTS_PER_SEC)));
+        mbeans.put(MBean.TOTALPRODUCEREQUESTSPERSEC, toMBeanInfo(rates.get(BrokerServer.TOTAL_PRODUCE_REQUESTS_PER_SEC)));
         return new Gson().toJson(mbeans);
     }
 
-    private void assembleMBeanInfo(Map<String, MBeanInfo> mbeans, String mBeanInfoKey, MBeanInfo mBeanInfo) {
-        if (mbeans.containsKey(mBeanInfoKey) && mBeanInfo != null) {
-            MBeanInfo mbeanInfo = mbeans.get(mBeanInfoKey);
-            String fifteenMinuteOld = mbeanInfo.getFifteenMinute() == null ? "0.0" : mbeanInfo.getFifteenMinute();
-            String fifteenMinuteLastest = mBeanInfo.getFifteenMinute() == null ? "0.0" : mBeanInfo.getFifteenMinute();
-            String fiveMinuteOld = mbeanInfo.getFiveMinute() == null ? "0.0" : mbeanInfo.getFiveMinute();
-            String fiveMinuteLastest = mBeanInfo.getFiveMinute() == null ? "0.0" : mBeanInfo.getFiveMinute();
-            String meanRateOld = mbeanInfo.getMeanRate() == null ? "0.0" : mbeanInfo.getMeanRate();
-            String meanRateLastest = mBeanInfo.getMeanRate() == null ? "0.0" : mBeanInfo.getMeanRate();
-            String oneMinuteOld = mbeanInfo.getOneMinute() == null ? "0.0" : mbeanInfo.getOneMinute();
-            String oneMinuteLastest = mBeanInfo.getOneMinute() == null ? "0.0" : mBeanInfo.getOneMinute();
-            long fifteenMinute = Math.round(StrUtils.numberic(fifteenMinuteOld)) + Math.round(StrUtils.numberic(fifteenMinuteLastest));
-            long fiveMinute = Math.round(StrUtils.numberic(fiveMinuteOld)) + Math.round(StrUtils.numberic(fiveMinuteLastest));
-            long meanRate = Math.round(StrUtils.numberic(meanRateOld)) + Math.round(StrUtils.numberic(meanRateLastest));
-            long oneMinute = Math.round(StrUtils.numberic(oneMinuteOld)) + Math.round(StrUtils.numberic(oneMinuteLastest));
-            mbeanInfo.setFifteenMinute(String.valueOf(fifteenMinute));
-            mbeanInfo.setFiveMinute(String.valueOf(fiveMinute));
-            mbeanInfo.setMeanRate(String.valueOf(meanRate));
-            mbeanInfo.setOneMinute(String.valueOf(oneMinute));
-        } else {
-            mbeans.put(mBeanInfoKey, mBeanInfo);
+    /**
+     * Read the rates of the topic from all brokers in parallel, used when the
+     * topic mbean cache of the cluster is not collected on this node.
+     */
+    private Map<BrokerServer, double[]> readTopicMBean(String clusterAlias, String topic) {
+        Map<BrokerServer, double[]> rates = new HashMap<>();
+        List<BrokersInfo> brokers = kafkaService.getAllBrokersInfo(clusterAlias);
+        Map<BrokersInfo, Map<BrokerServer, MBeanInfo>> brokerMeters = BrokerCollectorUtils.collect(clusterAlias, brokers, (cluster, broker) -> mx4jService.metrics(cluster, broker.getHost() + ":" + broker.getJmxPort(), TopicMBeanCache.METERS, topic));
+        for (Map<BrokerServer, MBeanInfo> meters : brokerMeters.values()) {
+            for (Entry<BrokerServer, MBeanInfo> entry : meters.entrySet()) {
+                double[] sum = rates.computeIfAbsent(entry.getKey(), k -> new double[TopicMBeanCache.RATES]);
+                sum[TopicMBeanCache.FIFTEEN_MINUTE] += Double.parseDouble(entry.getValue().getFifteenMinute());
+                sum[TopicMBeanCache.FIVE_MINUTE] += Double.parseDouble(entry.getValue().getFiveMinute());
+                sum[TopicMBeanCache.MEAN_RATE] += Double.parseDouble(entry.getValue().getMeanRate());
+                sum[TopicMBeanCache.ONE_MINUTE] += Double.parseDouble(entry.getValue().getOneMinute());
+            }
         }
+        return rates;
+    }
+
+    private MBeanInfo toMBeanInfo(double[] rates) {
+        MBeanInfo mbeanInfo = new MBeanInfo();
+        mbeanInfo.setFifteenMinute(StrUtils.stringify(rates == null ? 0L : Math.round(rates[TopicMBeanCache.FIFTEEN_MINUTE])));
+        mbeanInfo.setFiveMinute(StrUtils.stringify(rates == null ? 0L : Math.round(rates[TopicMBeanCache.FIVE_MINUTE])));
+        mbeanInfo.setMeanRate(StrUtils.stringify(rates == null ? 0L : Math.round(rates[TopicMBeanCache.MEAN_RATE])));
+        mbeanInfo.setOneMinute(StrUtils.stringify(rates == null ? 0L : Math.round(rates[TopicMBeanCache.ONE_MINUTE])));
+        return mbeanInfo;
     }
 
     /**
@@ -333,7 +357,7 @@ public class TopicServiceImpl implements TopicService {
      * Get topic producer logsize chart datasets.
      */
     public String queryTopicProducerChart(Map<String, Object> params) {
-        List<TopicLogSize> topicLogSizes = topicDao.queryTopicProducerChart(params);
+        List<TopicLogSize> topicLogSizes = metricsStorage.queryTopicProducerChart(params);
         JSONArray arrays = new JSONArray();
         for (TopicLogSize topicLogSize : topicLogSizes) {
             JSONObject object = new JSONObject();
@@ -346,13 +370,21 @@ public class TopicServiceImpl implements TopicService {
 
     @Override
     public String getSelectTopics(String clusterAlias, String prefixTopic) {
-        return brokerService.topicListParams(clusterAlias, prefixTopic);
+        JSONArray targets = new JSONArray();
+        int id = 1;
+        for (String topic : topicCatalog.names(clusterAlias, prefixTopic, 15)) {
+            JSONObject object = new JSONObject();
+            object.put("id", id++);
+            object.put("name", topic);
+            targets.add(object);
+        }
+        return targets.toString();
     }
 
     @Override
     public String getSelectTopicsLogSize(String clusterAlias, Map<String, Object> params) {
         JSONArray array = new JSONArray();
-        List<BScreenBarInfo> bsProducers = topicDao.queryProducerHistoryBar(params);
+        List<BScreenBarInfo> bsProducers = metricsStorage.queryProducerHistoryBar(params);
         Map<String, Object> bsMaps = new HashMap<>();
         for (BScreenBarInfo bsProducer : bsProducers) {
             if (bsProducer != null) {
@@ -475,7 +507,7 @@ public class TopicServiceImpl implements TopicService {
 
     @Override
     public long getActiveTopicNumbers(Map<String, Object> params) {
-        return topicDao.getActiveTopicNumbers(params);
+        return metricsStorage.getActiveTopicNumbers(params);
     }
 
     @Override
@@ -505,7 +537,7 @@ public class TopicServiceImpl implements TopicService {
 
     @Override
     public BScreenConsumerInfo readBScreenLastTopic(Map<String, Object> params) {
-        return topicDao.readBScreenLastTopic(params);
+        return metricsStorage.readBScreenLastTopic(params);
     }
 
     @Override
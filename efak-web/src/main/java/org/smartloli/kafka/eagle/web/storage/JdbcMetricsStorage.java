@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.storage;
+
+import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
+import org.smartloli.kafka.eagle.common.protocol.TopicCapacityInfo;
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenBarInfo;
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.common.protocol.topic.TopicLogSize;
+import org.smartloli.kafka.eagle.core.metrics.storage.MetricsStorage;
+import org.smartloli.kafka.eagle.web.dao.MBeanDao;
+import org.smartloli.kafka.eagle.web.dao.TopicDao;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kpi, topic logsize and bscreen consumer storage on the ke_metrics,
+ * ke_logsize and ke_consumer_bscreen_press tables of the mysql or sqlite
+ * database.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class JdbcMetricsStorage implements MetricsStorage {
+
+    public static final String NAME = "jdbc";
+
+    private final MBeanDao mbeanDao;
+
+    private final TopicDao topicDao;
+
+    public JdbcMetricsStorage(MBeanDao mbeanDao, TopicDao topicDao) {
+        this.mbeanDao = mbeanDao;
+        this.topicDao = topicDao;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int insert(List<KpiInfo> kpis) {
+        return mbeanDao.insert(kpis);
+    }
+
+    @Override
+    public List<KpiInfo> query(Map<String, Object> params) {
+        return mbeanDao.query(params);
+    }
+
+    @Override
+    public List<KpiInfo> getDashboradPanelBrokerChart(Map<String, Object> params) {
+        return mbeanDao.getDashboradPanelBrokerChart(params);
+    }
+
+    @Override
+    public KpiInfo getBrokersKpi(Map<String, Object> params) {
+        return mbeanDao.getBrokersKpi(params);
+    }
+
+    @Override
+    public List<KpiInfo> getOsMem(Map<String, Object> params) {
+        return mbeanDao.getOsMem(params);
+    }
+
+    @Override
+    public List<KpiInfo> getUsedCPU(Map<String, Object> params) {
+        return mbeanDao.getUsedCPU(params);
+    }
+
+    @Override
+    public void remove(int tm) {
+        mbeanDao.remove(tm);
+    }
+
+    @Override
+    public int writeTopicLogSize(List<TopicLogSize> topicLogSize) {
+        return topicDao.writeTopicLogSize(topicLogSize);
+    }
+
+    @Override
+    public TopicLogSize readLastTopicLogSize(Map<String, Object> params) {
+        return topicDao.readLastTopicLogSize(params);
+    }
+
+    @Override
+    public List<TopicLogSize> queryTopicProducerChart(Map<String, Object> params) {
+        return topicDao.queryTopicProducerChart(params);
+    }
+
+    @Override
+    public List<TopicLogSize> queryTopicProducerByAlarm(Map<String, Object> params) {
+        return topicDao.queryTopicProducerByAlarm(params);
+    }
+
+    @Override
+    public List<BScreenBarInfo> queryProducerHistoryBar(Map<String, Object> params) {
+        return topicDao.queryProducerHistoryBar(params);
+    }
+
+    @Override
+    public long getBScreenTotalRecords(Map<String, Object> params) {
+        return topicDao.getBScreenTotalRecords(params);
+    }
+
+    @Override
+    public long getActiveTopicNumbers(Map<String, Object> params) {
+        return topicDao.getActiveTopicNumbers(params);
+    }
+
+    @Override
+    public TopicCapacityInfo getTopicCapacityScatter(Map<String, Object> params) {
+        return topicDao.getTopicCapacityScatter(params);
+    }
+
+    @Override
+    public void cleanTopicLogSize(int tm) {
+        topicDao.cleanTopicLogSize(tm);
+    }
+
+    @Override
+    public int writeBSreenConsumerTopic(List<BScreenConsumerInfo> bscreenConsumers) {
+        return topicDao.writeBSreenConsumerTopic(bscreenConsumers);
+    }
+
+    @Override
+    public BScreenConsumerInfo readBScreenLastTopic(Map<String, Object> params) {
+        return topicDao.readBScreenLastTopic(params);
+    }
+
+    @Override
+    public List<BScreenBarInfo> queryConsumerHistoryBar(Map<String, Object> params) {
+        return topicDao.queryConsumerHistoryBar(params);
+    }
+
+    @Override
+    public List<BScreenConsumerInfo> queryTodayBScreenConsumer(Map<String, Object> params) {
+        return topicDao.queryTodayBScreenConsumer(params);
+    }
+
+    @Override
+    public long queryLastestLag(Map<String, Object> params) {
+        return topicDao.queryLastestLag(params);
+    }
+
+    @Override
+    public void cleanBScreenConsumerTopic(int tm) {
+        topicDao.cleanBScreenConsumerTopic(tm);
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.storage;
+
+import org.smartloli.kafka.eagle.common.protocol.topic.TopicRank;
+import org.smartloli.kafka.eagle.common.util.KConstants.Topic;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.core.metrics.storage.MetricsStorage;
+import org.smartloli.kafka.eagle.core.metrics.storage.TimeSeriesMetricsStorage;
+import org.smartloli.kafka.eagle.core.metrics.tsdb.MBeanTimeSeries;
+import org.smartloli.kafka.eagle.web.dao.MBeanDao;
+import org.smartloli.kafka.eagle.web.dao.TopicDao;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Select the kpi, topic logsize and bscreen consumer storage by
+ * efak.metrics.storage. The embedded time series store is local to the node,
+ * so distributed mode always uses the database.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+@Configuration
+public class MetricsStorageConfig {
+
+    @Bean
+    public MetricsStorage metricsStorage(MBeanDao mbeanDao, TopicDao topicDao) {
+        MetricsStorage storage = MBeanTimeSeries.isEnabled() ? new TimeSeriesMetricsStorage(cluster -> capacities(topicDao, cluster)) : new JdbcMetricsStorage(mbeanDao, topicDao);
+        LoggerUtils.print(this.getClass()).info("Kafka eagle metrics storage is " + storage.getName() + ".");
+        return storage;
+    }
+
+    /**
+     * Topic capacities of the cluster from ke_topic_rank.
+     */
+    private static Map<String, Long> capacities(TopicDao topicDao, String cluster) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("cluster", cluster);
+        params.put("tkey", Topic.CAPACITY);
+        Map<String, Long> capacities = new HashMap<>();
+        for (TopicRank topicRank : topicDao.getAllTopicRank(params)) {
+            capacities.put(topicRank.getTopic(), topicRank.getTvalue());
+        }
+        return capacities;
+    }
+
+}
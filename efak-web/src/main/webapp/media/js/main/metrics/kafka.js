@@ -140,7 +140,7 @@ $(document).ready(function () {
         $.ajax({
             type: 'get',
             dataType: 'json',
-            url: '/metrics/trend/mbean/ajax?stime=' + stime + '&etime=' + etime + '&type=' + type + '&modules=' + modules,
+            url: '/metrics/trend/mbean/ajax?stime=' + stime + '&etime=' + etime + '&type=' + type + '&modules=' + modules + '&width=' + $(window).width(),
             beforeSend: function (xmlHttp) {
                 xmlHttp.setRequestHeader("If-Modified-Since", "0");
                 xmlHttp.setRequestHeader("Cache-Control", "no-cache");
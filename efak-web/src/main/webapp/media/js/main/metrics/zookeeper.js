@@ -167,7 +167,7 @@ $(document).ready(function () {
         $.ajax({
             type: 'get',
             dataType: 'json',
-            url: '/metrics/trend/mbean/ajax?stime=' + stime + '&etime=' + etime + '&type=' + type,
+            url: '/metrics/trend/mbean/ajax?stime=' + stime + '&etime=' + etime + '&type=' + type + '&width=' + $(window).width(),
             beforeSend: function (xmlHttp) {
                 xmlHttp.setRequestHeader("If-Modified-Since", "0");
                 xmlHttp.setRequestHeader("Cache-Control", "no-cache");